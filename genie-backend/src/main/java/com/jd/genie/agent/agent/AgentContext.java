@@ -2,8 +2,14 @@ package com.jd.genie.agent.agent;
 
 import com.jd.genie.agent.dto.File;
 import com.jd.genie.agent.dto.Memory;
+import com.jd.genie.agent.llm.UsageLedger;
 import com.jd.genie.agent.printer.Printer;
 import com.jd.genie.agent.tool.ToolCollection;
+import com.jd.genie.agent.tool.ToolResultCache;
+import com.jd.genie.agent.tool.common.FileContentReader;
+import com.jd.genie.agent.tool.common.FileUploader;
+import com.jd.genie.agent.util.SpringContextHolder;
+import com.jd.genie.config.GenieConfig;
 import com.jd.genie.model.dto.FileInformation;
 import com.jd.genie.model.req.AgentRequest;
 import lombok.AllArgsConstructor;
@@ -35,4 +41,44 @@ public class AgentContext {
     Integer agentType;
     List<File> taskProductFiles;
     Memory memory; // 添加memory字段，用于工具访问消息历史
-}
\ No newline at end of file
+    ToolResultCache toolResultCache; // 会话内工具结果缓存，首次使用时创建
+    FileUploader.Session uploadSession; // 后台上传状态，首次提交后台上传时创建
+    FileContentReader fileContentReader; // 文件读取（按 URL + ETag 缓存内容），首次读取时创建
+    UsageLedger.RequestLedger usageLedger; // token 与费用账本，创建上下文时登记
+    volatile boolean cancelled; // 调度被取消（同 requestId 重新执行），智能体在下一步前结束
+
+    public synchronized ToolResultCache getToolResultCache() {
+        if (toolResultCache == null) {
+            GenieConfig genieConfig = SpringContextHolder.getApplicationContext().getBean(GenieConfig.class);
+            toolResultCache = new ToolResultCache(requestId, genieConfig.getToolCacheMaxEntries());
+        }
+        return toolResultCache;
+    }
+
+    public synchronized FileContentReader getFileContentReader() {
+        if (fileContentReader == null) {
+            fileContentReader = new FileContentReader(requestId);
+        }
+        return fileContentReader;
+    }
+
+    public synchronized FileUploader.Session getUploadSession() {
+        if (uploadSession == null) {
+            uploadSession = new FileUploader.Session();
+        }
+        return uploadSession;
+    }
+
+    public synchronized FileUploader.Session peekUploadSession() {
+        return uploadSession;
+    }
+
+    /**
+     * 读取文件列表前调用：等待已提交的后台上传完成
+     */
+    public void awaitUploads() {
+        if (peekUploadSession() != null) {
+            SpringContextHolder.getApplicationContext().getBean(FileUploader.class).await(this);
+        }
+    }
+}
@@ -1,20 +1,32 @@
 package com.jd.genie.agent.agent;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jd.genie.agent.dto.Memory;
+import com.jd.genie.agent.dto.FileRequest;
 import com.jd.genie.agent.dto.Message;
 import com.jd.genie.agent.dto.tool.ToolCall;
 import com.jd.genie.agent.enums.AgentState;
 import com.jd.genie.agent.enums.RoleType;
 import com.jd.genie.agent.llm.LLM;
+import com.jd.genie.agent.llm.UsageLedger;
 import com.jd.genie.agent.printer.Printer;
+import com.jd.genie.agent.tool.BaseTool;
+import com.jd.genie.agent.tool.ToolArgumentBinder;
 import com.jd.genie.agent.tool.ToolCollection;
+import com.jd.genie.agent.tool.ToolSelection;
+import com.jd.genie.agent.tool.ToolSelector;
+import com.jd.genie.agent.tool.TypedTool;
+import com.jd.genie.agent.tool.common.FileTool;
+import com.jd.genie.agent.util.IncrementalJsonRepair;
+import com.jd.genie.agent.util.ObservationShaper;
+import com.jd.genie.agent.util.SpringContextHolder;
 import com.jd.genie.agent.util.ThreadUtil;
+import com.jd.genie.config.GenieConfig;
 import lombok.Data;
 import lombok.experimental.Accessors;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -59,6 +71,10 @@ public abstract class BaseAgent {
     // digital employee prompt
     private String digitalEmployeePrompt;
 
+    // 本次运行的任务与工具选择（首次询问模型时按任务选择）
+    private String runQuery;
+    private ToolSelection toolSelection;
+
     /**
      * 设置上下文，同时将memory设置到context中，以便工具可以访问
      */
@@ -92,6 +108,28 @@ public abstract class BaseAgent {
         return memory;
     }
 
+    /**
+     * 本步发送给模型的工具：按本次运行的任务筛选相关工具（见 ToolSelector）
+     */
+    protected ToolCollection selectTools() {
+        ToolSelector toolSelector = SpringContextHolder.getApplicationContext().getBean(ToolSelector.class);
+        if (toolSelection == null) {
+            String text = Objects.toString(runQuery, "") + "\n" + Objects.toString(context.getQuery(), "");
+            toolSelection = toolSelector.select(availableTools, text);
+        }
+        return toolSelector.apply(toolSelection, availableTools);
+    }
+
+    /**
+     * 记录模型本步调用的工具（更新历史与命中率，调用了被筛掉的已注册工具时回退到全部工具）
+     */
+    protected void recordToolSelection(List<ToolCall> calls) {
+        if (toolSelection == null) {
+            return;
+        }
+        SpringContextHolder.getApplicationContext().getBean(ToolSelector.class).record(toolSelection, availableTools, calls);
+    }
+
     /**
      * 执行单个步骤
      */
@@ -103,6 +141,8 @@ public abstract class BaseAgent {
     public String run(String query) {
         setState(AgentState.IDLE);
         clearToolCallHistory(); // 清空工具调用历史
+        runQuery = query;
+        toolSelection = null;
 
         if (!query.isEmpty()) {
             updateMemory(RoleType.USER, query, null);
@@ -111,8 +151,25 @@ public abstract class BaseAgent {
         List<String> results = new ArrayList<>();
         try {
             while (currentStep < maxSteps && state != AgentState.FINISHED) {
+                if (Objects.nonNull(context) && context.isCancelled()) {
+                    log.warn("{} {} run cancelled", context.getRequestId(), getName());
+                    setState(AgentState.FINISHED);
+                    results.add("Terminated: cancelled");
+                    break;
+                }
+                String exceeded = budgetExceeded();
+                if (Objects.nonNull(exceeded)) {
+                    // 超出预算：不再执行新步骤，以已有结果结束
+                    setState(AgentState.FINISHED);
+                    results.add(onBudgetExceeded(exceeded));
+                    break;
+                }
                 currentStep++;
                 log.info("{} {} Executing step {}/{}", getContext().getRequestId(), getName(), currentStep, maxSteps);
+                if (Objects.nonNull(llm)) {
+                    llm.setUsageRole(getName());
+                    llm.setUsageStep(currentStep);
+                }
                 String stepResult = step();
                 results.add(stepResult);
                 
@@ -172,6 +229,25 @@ public abstract class BaseAgent {
         return results.isEmpty() ? "No steps executed" : results.get(results.size() - 1);
     }
 
+    /**
+     * 请求或用户超出 token/费用预算时返回原因（见 UsageLedger），否则返回 null
+     */
+    protected String budgetExceeded() {
+        if (Objects.isNull(context) || Objects.isNull(context.getUsageLedger())) {
+            return null;
+        }
+        return SpringContextHolder.getApplicationContext().getBean(UsageLedger.class).exceeded(context.getUsageLedger());
+    }
+
+    /**
+     * 超出预算时本次运行的结果：记入记忆，供总结说明任务因预算提前结束
+     */
+    protected String onBudgetExceeded(String reason) {
+        log.warn("{} {} stop for budget: {}", context.getRequestId(), getName(), reason);
+        updateMemory(RoleType.ASSISTANT, "已达到资源预算上限（" + reason + "），停止执行后续步骤，请基于已有结果总结。", null);
+        return "Terminated: " + reason;
+    }
+
     /**
      * 检查是否为重复工具调用
      */
@@ -211,74 +287,18 @@ public abstract class BaseAgent {
     
     /**
      * 修复被截断的JSON参数
+     * 除补齐括号外，还处理截断在字符串、转义、key、冒号、逗号和 true/false/null/数字中间的情况
      */
     private String fixTruncatedJson(String jsonStr) {
         if (jsonStr == null || jsonStr.trim().isEmpty()) {
             return jsonStr;
         }
-        
-        String fixed = jsonStr.trim();
-        
-        // 如果JSON没有以{开头，添加它
-        if (!fixed.startsWith("{")) {
-            fixed = "{" + fixed;
-        }
-        
-        // 计算大括号和方括号的平衡
-        int openBraces = 0;
-        int openBrackets = 0;
-        boolean inString = false;
-        boolean escaped = false;
-        
-        for (int i = 0; i < fixed.length(); i++) {
-            char c = fixed.charAt(i);
-            
-            if (escaped) {
-                escaped = false;
-                continue;
-            }
-            
-            if (c == '\\') {
-                escaped = true;
-                continue;
-            }
-            
-            if (c == '"' && !escaped) {
-                inString = !inString;
-                continue;
-            }
-            
-            if (!inString) {
-                if (c == '{') {
-                    openBraces++;
-                } else if (c == '}') {
-                    openBraces--;
-                } else if (c == '[') {
-                    openBrackets++;
-                } else if (c == ']') {
-                    openBrackets--;
-                }
-            }
-        }
-        
-        // 添加缺失的闭合字符
-        StringBuilder balanced = new StringBuilder(fixed);
-        
-        // 先添加缺失的方括号闭合
-        for (int i = 0; i < openBrackets; i++) {
-            balanced.append(']');
-        }
-        
-        // 再添加缺失的大括号闭合
-        for (int i = 0; i < openBraces; i++) {
-            balanced.append('}');
-        }
-        
-        String result = balanced.toString();
-        log.debug("{} JSON修复完成: 原始长度={}, 修复后长度={}, 添加了{}个方括号和{}个大括号", 
-            getContext() != null ? getContext().getRequestId() : "unknown", 
-            jsonStr.length(), result.length(), openBrackets, openBraces);
-        
+
+        String result = IncrementalJsonRepair.repair(jsonStr);
+        log.debug("{} JSON修复完成: 原始长度={}, 修复后长度={}",
+            getContext() != null ? getContext().getRequestId() : "unknown",
+            jsonStr.length(), result.length());
+
         return result;
     }
 
@@ -316,25 +336,42 @@ public abstract class BaseAgent {
         if (command == null || command.getFunction() == null || command.getFunction().getName() == null) {
             return "Error: Invalid function call format";
         }
+        long startTime = System.currentTimeMillis();
+        try {
+            return invokeTool(command);
+        } finally {
+            if (Objects.nonNull(context) && Objects.nonNull(context.getUsageLedger())) {
+                SpringContextHolder.getApplicationContext().getBean(UsageLedger.class).recordTool(context.getUsageLedger(),
+                        getName(), currentStep, command.getFunction().getName(), System.currentTimeMillis() - startTime);
+            }
+        }
+    }
 
+    private String invokeTool(ToolCall command) {
         String name = command.getFunction().getName();
         try {
-            // 解析参数
-            ObjectMapper mapper = new ObjectMapper();
+            // 解析参数：声明了参数类型的工具按 schema 校验后一次绑定，不合法时把错误说明返回给模型
             String argumentsStr = command.getFunction().getArguments();
-            
-            // 尝试修复可能被截断的JSON参数
-            // 处理空参数的情况
-            Object args = null;
+            String fixedArguments = "{}";
             if (argumentsStr != null && !argumentsStr.trim().isEmpty()) {
                 // 尝试修复可能被截断的JSON参数
-                String fixedArguments = fixTruncatedJson(argumentsStr);
-                args = mapper.readValue(fixedArguments, Object.class);
+                fixedArguments = fixTruncatedJson(argumentsStr);
             } else {
                 // 参数为空时，使用空的Map作为默认参数
-                args = new java.util.HashMap<>();
                 log.info("{} 工具 {} 参数为空，使用默认空参数", getContext().getRequestId(), name);
             }
+            Object args;
+            BaseTool tool = availableTools.getTool(name);
+            if (tool instanceof TypedTool) {
+                ToolArgumentBinder.Binding<?> binding = ToolArgumentBinder.of((TypedTool<?>) tool).bind(fixedArguments);
+                if (!binding.isOk()) {
+                    log.warn("{} tool {} arguments rejected: {}", getContext().getRequestId(), name, binding.getError());
+                    return binding.getError();
+                }
+                args = binding.getValue();
+            } else {
+                args = ToolArgumentBinder.mapper().readValue(fixedArguments, Object.class);
+            }
             // 执行工具
             Object result = availableTools.execute(name, args);
             log.info("{} execute tool: {} {} result {}", getContext().getRequestId(), name, args, result);
@@ -393,6 +430,39 @@ public abstract class BaseAgent {
         return result;
     }
 
-
-
-}
\ No newline at end of file
+    /**
+     * 写入记忆前处理工具结果：超过 maxObserve 时按内容类型压缩（见 ObservationShaper），
+     * 完整内容在后台保存为会话内部文件，并在压缩结果末尾注明文件名，模型需要细节时可用 file_tool 读取
+     */
+    protected String observe(ToolCall command, String result, Integer maxObserve) {
+        if (Objects.isNull(result) || Objects.isNull(maxObserve) || result.length() <= maxObserve) {
+            return result;
+        }
+        GenieConfig genieConfig = SpringContextHolder.getApplicationContext().getBean(GenieConfig.class);
+        if (!Boolean.TRUE.equals(genieConfig.getObservationEnable())) {
+            return result.substring(0, maxObserve);
+        }
+        String toolName = command.getFunction().getName();
+        String type = ObservationShaper.detect(result);
+        String reference = "";
+        if (Boolean.TRUE.equals(genieConfig.getObservationStoreFull())
+                && !Arrays.asList(genieConfig.getObservationStoreSkipTools().split(",")).contains(toolName)) {
+            String suffix = ObservationShaper.TYPE_CSV.equals(type) ? "csv" : ObservationShaper.TYPE_MARKDOWN.equals(type) ? "md" : "txt";
+            String fileName = toolName + "_结果_" + Integer.toHexString(result.hashCode()) + "." + suffix;
+            FileTool fileTool = new FileTool();
+            fileTool.setAgentContext(context);
+            fileTool.uploadFileAsync(FileRequest.builder()
+                    .requestId(context.getRequestId())
+                    .fileName(fileName)
+                    .description(toolName + " 的完整执行结果")
+                    .content(result)
+                    .build(), false, true);
+            reference = "\n[完整结果共 " + result.length() + " 字符，已保存为文件 " + fileName + "，需要时可使用 file_tool 读取]";
+        }
+        ObservationShaper.Shaped shaped = ObservationShaper.shape(result, type,
+                Math.max(0, maxObserve - reference.length()), genieConfig.getObservationSampleRows());
+        log.info("{} tool {} observation shaped as {}: {} -> {} chars", context.getRequestId(), toolName, type,
+                result.length(), shaped.getText().length());
+        return shaped.getText() + reference;
+    }
+}
@@ -9,6 +9,7 @@ import com.jd.genie.agent.enums.RoleType;
 import com.jd.genie.agent.llm.LLM;
 import com.jd.genie.agent.prompt.ToolCallPrompt;
 import com.jd.genie.agent.tool.BaseTool;
+import com.jd.genie.agent.tool.ToolCollection;
 import com.jd.genie.agent.util.FileUtil;
 import com.jd.genie.agent.util.SpringContextHolder;
 import com.jd.genie.config.GenieConfig;
@@ -82,7 +83,8 @@ public class ExecutorAgent extends ReActAgent {
 
     @Override
     public boolean think() {
-        // 获取文件内容
+        // 获取文件内容（等待后台上传完成）
+        context.awaitUploads();
         String filesStr = FileUtil.formatFileInfo(context.getProductFiles(), true);
         setSystemPrompt(getSystemPromptSnapshot().replace("{{files}}", filesStr));
         setNextStepPrompt(getNextStepPromptSnapshot().replace("{{files}}", filesStr));
@@ -94,17 +96,19 @@ public class ExecutorAgent extends ReActAgent {
 
         try {
             // 获取带工具选项的响应
-            log.info("{} executor ask tool {}", context.getRequestId(), JSON.toJSONString(availableTools));
+            ToolCollection selectedTools = selectTools();
+            log.info("{} executor ask tool {}", context.getRequestId(), JSON.toJSONString(selectedTools));
             CompletableFuture<LLM.ToolCallResponse> future = getLlm().askTool(
                     context,
                     getMemory().getMessages(),
                     Message.systemMessage(getSystemPrompt(), null),
-                    availableTools,
+                    selectedTools,
                     ToolChoice.AUTO, null, false, 300
             );
 
             LLM.ToolCallResponse response = future.get();
             setToolCalls(response.getToolCalls());
+            recordToolSelection(response.getToolCalls());
 
             // 记录响应信息
             if (response.getContent() != null && !response.getContent().trim().isEmpty()) {
@@ -198,9 +202,7 @@ public class ExecutorAgent extends ReActAgent {
                                 .toolResult(result)
                                 .build(), null);
             }
-            if (maxObserve != null) {
-                result = result.substring(0, Math.min(result.length(), maxObserve));
-            }
+            result = observe(command, result, maxObserve);
 
             // 添加工具响应到记忆
             if ("struct_parse".equals(llm.getFunctionCallType())) {
@@ -81,7 +81,8 @@ public class PlanningAgent extends ReActAgent {
     @Override
     public boolean think() {
         long startTime = System.currentTimeMillis();
-        // 获取文件内容
+        // 获取文件内容（等待后台上传完成）
+        context.awaitUploads();
         String filesStr = FileUtil.formatFileInfo(context.getProductFiles(), false);
         setSystemPrompt(getSystemPromptSnapshot().replace("{{files}}", filesStr));
         setNextStepPrompt(getNextStepPromptSnapshot().replace("{{files}}", filesStr));
@@ -150,9 +151,7 @@ public class PlanningAgent extends ReActAgent {
         long startTime = System.currentTimeMillis();
         for (ToolCall toolCall : toolCalls) {
             String result = executeTool(toolCall);
-            if (maxObserve != null) {
-                result = result.substring(0, Math.min(result.length(), maxObserve));
-            }
+            result = observe(toolCall, result, maxObserve);
             results.add(result);
 
             // 添加工具响应到记忆
@@ -206,6 +205,15 @@ public class PlanningAgent extends ReActAgent {
         return "";
     }
 
+    /**
+     * 超出预算时规划以 finish 结束，由调度进入总结
+     */
+    @Override
+    protected String onBudgetExceeded(String reason) {
+        super.onBudgetExceeded(reason);
+        return "finish";
+    }
+
     @Override
     public String run(String request) {
         if (Objects.isNull(planningTool.getPlan())) {
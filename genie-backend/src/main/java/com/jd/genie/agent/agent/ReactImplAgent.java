@@ -83,7 +83,8 @@ public class ReactImplAgent extends ReActAgent {
 
     @Override
     public boolean think() {
-        // 获取文件内容
+        // 获取文件内容（等待后台上传完成）
+        getContext().awaitUploads();
         String filesStr = FileUtil.formatFileInfo(getContext().getProductFiles(), true);
         setSystemPrompt(getSystemPromptSnapshot().replace("{{files}}", filesStr));
         setNextStepPrompt(getNextStepPromptSnapshot().replace("{{files}}", filesStr));
@@ -99,11 +100,12 @@ public class ReactImplAgent extends ReActAgent {
             
             log.info("{} 开始调用LLM，等待响应...", getContext().getRequestId());
 
+            ToolCollection selectedTools = selectTools();
             CompletableFuture<LLM.ToolCallResponse> future = getLlm().askTool(
                     context,
                     getMemory().getMessages(),
                     Message.systemMessage(getSystemPrompt(), null),
-                    availableTools,
+                    selectedTools,
                     ToolChoice.AUTO, null, false, 300
             );
 
@@ -115,6 +117,7 @@ public class ReactImplAgent extends ReActAgent {
                     response.getContent() != null ? response.getContent().length() : 0);
 
             setToolCalls(response.getToolCalls());
+            recordToolSelection(response.getToolCalls());
 
             // 记录响应信息
             if (!getContext().getIsStream() && response.getContent() != null && !response.getContent().isEmpty()) {
@@ -189,6 +192,7 @@ public class ReactImplAgent extends ReActAgent {
                             .toolParam(JSON.parseObject(command.getFunction().getArguments(), Map.class))
                             .toolResult(result)
                             .build(), null);
+                    result = observe(command, result, maxObserve);
                     
                     // 添加工具响应到记忆
                     if ("struct_parse".equals(getLlm().getFunctionCallType())) {
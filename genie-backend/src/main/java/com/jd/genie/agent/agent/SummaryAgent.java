@@ -5,6 +5,8 @@ import com.jd.genie.agent.dto.Message;
 import com.jd.genie.agent.dto.TaskSummaryResult;
 import com.jd.genie.agent.enums.RoleType;
 import com.jd.genie.agent.llm.LLM;
+import com.jd.genie.agent.llm.TokenCounter;
+import com.jd.genie.agent.printer.StreamFlushPolicy;
 import com.jd.genie.agent.util.SpringContextHolder;
 import com.jd.genie.config.GenieConfig;
 import lombok.Data;
@@ -17,9 +19,13 @@ import org.springframework.util.CollectionUtils;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 @Data
@@ -29,6 +35,13 @@ public class SummaryAgent extends BaseAgent {
     private String requestId;
     private Integer messageSizeLimit;
     public static final String logFlag = "summaryTaskResult";
+    /**
+     * 分块提炼的 LLM 调用并发许可（进程内共享）
+     */
+    private static Semaphore mapPermits;
+    private static final String DEFAULT_MAP_PROMPT = "以下是为完成用户问题而执行的工具结果中的第 {{index}}/{{total}} 部分。"
+            + "请提炼其中与用户问题相关的关键事实、数据、结论和生成的文件名，保留具体数字与来源，不要编造。\n\n"
+            + "用户问题：{{query}}\n\n工具结果：\n{{chunk}}";
 
     public SummaryAgent(AgentContext context) {
         ApplicationContext applicationContext = SpringContextHolder.getApplicationContext();
@@ -38,6 +51,7 @@ public class SummaryAgent extends BaseAgent {
         setContext(context);
         setRequestId(context.getRequestId());
         setLlm(new LLM(context.getAgentType() == 3 ? genieConfig.getPlannerModelName() : genieConfig.getReactModelName(), ""));
+        getLlm().setUsageRole("summary");
         setMessageSizeLimit(genieConfig.getMessageSizeLimit());
     }
 
@@ -50,6 +64,7 @@ public class SummaryAgent extends BaseAgent {
 
     // 构造文件信息
     private String createFileInfo() {
+        context.awaitUploads();
         List<File> files = context.getProductFiles();
         if (CollectionUtils.isEmpty(files)) {
             log.info("requestId: {} no files found in context", requestId);
@@ -101,6 +116,7 @@ public class SummaryAgent extends BaseAgent {
         String summary = parts1[0];
         String fileNames = parts1[1];
 
+        context.awaitUploads();
         List<File> files = context.getProductFiles();
         if (!CollectionUtils.isEmpty(files)) {
             Collections.reverse(files);
@@ -136,6 +152,147 @@ public class SummaryAgent extends BaseAgent {
     }
 
 
+    /**
+     * 分块提炼任务历史：按工具结果边界切分为不超过 chunk_tokens 的块，在并发上限内并行提炼，
+     * 提炼结果仍超过阈值时再提炼一轮（最多 max_rounds 轮）；单块提炼失败时保留该块开头 chunk_tokens/4 个 token
+     */
+    private String mapReduceHistory(String taskHistory, String query, GenieConfig genieConfig) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        int chunkTokens = Math.max(1000, genieConfig.getSummaryMapReduceChunkTokens());
+        String history = taskHistory;
+        for (int round = 1; round <= Math.max(1, genieConfig.getSummaryMapReduceMaxRounds()); round++) {
+            List<String> chunks = splitHistory(history, chunkTokens);
+            if (chunks.size() <= 1 && round > 1) {
+                break;
+            }
+            long deadline = start + genieConfig.getSummaryMapReduceTimeout();
+            List<CompletableFuture<String>> futures = new ArrayList<>(chunks.size());
+            for (int i = 0; i < chunks.size(); i++) {
+                futures.add(mapChunk(chunks.get(i), i + 1, chunks.size(), query, deadline, genieConfig));
+            }
+            StringBuilder reduced = new StringBuilder();
+            int failed = 0;
+            for (int i = 0; i < futures.size(); i++) {
+                String part;
+                try {
+                    part = futures.get(i).get(Math.max(1, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                } catch (ExecutionException | TimeoutException e) {
+                    log.warn("requestId: {} {} map chunk {} failed: {}", requestId, logFlag, i + 1, e.toString());
+                    futures.get(i).cancel(true);
+                    String chunk = chunks.get(i);
+                    part = chunk.substring(0, prefixWithinTokens(chunk, 0, chunkTokens / 4));
+                    failed++;
+                }
+                reduced.append(String.format("工具执行结果摘要 %d:\n%s\n\n", i + 1, part));
+            }
+            log.info("requestId: {} {} map round {}: {} chunks, {} failed, {} -> {} chars, {}ms", requestId, logFlag, round,
+                    chunks.size(), failed, history.length(), reduced.length(), System.currentTimeMillis() - start);
+            history = reduced.toString();
+            if (getLlm().getTokenCounter().countText(history) <= genieConfig.getSummaryMapReduceThresholdTokens()) {
+                break;
+            }
+        }
+        return history;
+    }
+
+    /**
+     * 按工具结果边界切块，单个结果超过块大小时按 token 数切分（与整块判断用同一计数器）
+     */
+    private List<String> splitHistory(String history, int chunkTokens) {
+        List<String> chunks = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String part : history.split("(?=工具执行结果(摘要)? \\d+:\n)")) {
+            if (current.length() > 0 && getLlm().getTokenCounter().countText(current.toString() + part) > chunkTokens) {
+                chunks.add(current.toString());
+                current.setLength(0);
+            }
+            if (getLlm().getTokenCounter().countText(part) > chunkTokens) {
+                for (int i = 0; i < part.length(); ) {
+                    int end = prefixWithinTokens(part, i, chunkTokens);
+                    chunks.add(part.substring(i, end));
+                    i = end;
+                }
+                continue;
+            }
+            current.append(part);
+        }
+        if (current.length() > 0) {
+            chunks.add(current.toString());
+        }
+        return chunks;
+    }
+
+    /**
+     * text 从 from 开始不超过 maxTokens 的最长前缀的结束位置（至少前进一个字符，不拆开代理对）：
+     * 按 token 计数倍增探测上界后二分，不假定字符与 token 的比例
+     */
+    private int prefixWithinTokens(String text, int from, int maxTokens) {
+        TokenCounter counter = getLlm().getTokenCounter();
+        int remaining = text.length() - from;
+        if (counter.countText(text.substring(from)) <= maxTokens) {
+            return text.length();
+        }
+        int low = 0;
+        int high = Math.max(1, Math.min(remaining, maxTokens));
+        while (high < remaining && counter.countText(text.substring(from, from + high)) <= maxTokens) {
+            low = high;
+            high = (int) Math.min(remaining, 2L * high);
+        }
+        // low 不超过 maxTokens，high 超过
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            if (counter.countText(text.substring(from, from + mid)) <= maxTokens) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        int end = from + Math.max(1, low);
+        if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) {
+            end = low > 1 ? end - 1 : end + 1;
+        }
+        return end;
+    }
+
+    /**
+     * 提炼单块，先取得并发许可（全局共享，多个请求的提炼调用合计不超过 concurrency）；
+     * 超时取消返回的 future 会中止对应的 HTTP 请求
+     */
+    private CompletableFuture<String> mapChunk(String chunk, int index, int total, String query, long deadline,
+                                               GenieConfig genieConfig) throws InterruptedException {
+        Semaphore permits = mapPermits(genieConfig.getSummaryMapReduceConcurrency());
+        if (!permits.tryAcquire(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            future.completeExceptionally(new TimeoutException("summary map permit timeout"));
+            return future;
+        }
+        String prompt = (StringUtils.isBlank(genieConfig.getSummaryMapPrompt()) ? DEFAULT_MAP_PROMPT : genieConfig.getSummaryMapPrompt())
+                .replace("{{query}}", query)
+                .replace("{{index}}", String.valueOf(index))
+                .replace("{{total}}", String.valueOf(total))
+                .replace("{{chunk}}", chunk);
+        // 许可在 HTTP 调用真正结束时归还：超时取消只中止请求，中止生效前仍占用许可
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        };
+        try {
+            return getLlm().askCancellable(context, Collections.singletonList(createSystemMessage(prompt)), Collections.emptyList(), 0.01, release);
+        } catch (RuntimeException e) {
+            release.run();
+            throw e;
+        }
+    }
+
+    private static synchronized Semaphore mapPermits(int concurrency) {
+        if (Objects.isNull(mapPermits)) {
+            mapPermits = new Semaphore(Math.max(1, concurrency));
+        }
+        return mapPermits;
+    }
+
     // 总结任务
     public TaskSummaryResult summaryTaskResult(List<Message> messages, String query) {
         long startTime = System.currentTimeMillis();
@@ -167,22 +324,42 @@ public class SummaryAgent extends BaseAgent {
             if (toolMessageCount == 0) {
                 log.warn("requestId: {} summaryTaskResult: 没有找到工具调用结果，将使用空的任务历史", requestId);
             }
+            // 任务历史过长时先分块并行提炼（map），再用提炼结果生成最终总结（reduce）
+            GenieConfig genieConfig = SpringContextHolder.getApplicationContext().getBean(GenieConfig.class);
+            if (Boolean.TRUE.equals(genieConfig.getSummaryMapReduceEnable())
+                    && getLlm().getTokenCounter().countText(taskHistory) > genieConfig.getSummaryMapReduceThresholdTokens()) {
+                taskHistory = mapReduceHistory(taskHistory, query, genieConfig);
+            }
             String formattedPrompt = formatSystemPrompt(taskHistory, query);
             Message userMessage = createSystemMessage(formattedPrompt);
 
-            // 3. 调用LLM并处理结果
+            // 3. 调用LLM并处理结果；流式模式下总结正文边生成边以 agent_stream 发送，文件列表部分不发送
+            boolean stream = Boolean.TRUE.equals(genieConfig.getSummaryStream()) && Boolean.TRUE.equals(context.getIsStream());
+            SummaryStream summaryStream = stream
+                    ? new SummaryStream(context.getPrinter(), StreamFlushPolicy.of(SummaryStream.MESSAGE_TYPE)) : null;
             CompletableFuture<String> summaryFuture = getLlm().ask(
                     context,
                     Collections.singletonList(userMessage),
                     Collections.emptyList(),
-                    false,
-                    0.01);
+                    stream,
+                    0.01,
+                    summaryStream);
 
             // 5. 解析响应（设置超时时间避免无限等待）
             String llmResponse = summaryFuture.get(300, java.util.concurrent.TimeUnit.SECONDS);
             log.info("requestId: {} summaryTaskResult: {}", requestId, llmResponse);
+            Long firstTokenMs = null;
+            if (Objects.nonNull(summaryStream)) {
+                summaryStream.finish();
+                // 未收到增量（如模型直接结束）时不记录首 token 耗时
+                firstTokenMs = summaryStream.getFirstTokenMs() >= 0 ? summaryStream.getFirstTokenMs() : null;
+                log.info("requestId: {} {} first token {}ms, total {}ms", requestId, logFlag, firstTokenMs,
+                        System.currentTimeMillis() - startTime);
+            }
 
-            return parseLlmResponse(llmResponse);
+            TaskSummaryResult result = parseLlmResponse(llmResponse);
+            result.setFirstTokenMs(firstTokenMs);
+            return result;
         } catch (Exception e) {
             log.error("requestId: {} in summaryTaskResult failed,", requestId, e);
 
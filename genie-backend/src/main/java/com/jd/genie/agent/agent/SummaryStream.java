@@ -0,0 +1,99 @@
+package com.jd.genie.agent.agent;
+
+import com.jd.genie.agent.printer.Printer;
+import com.jd.genie.agent.printer.StreamFlushPolicy;
+import com.jd.genie.agent.util.StringUtil;
+
+import java.util.function.Consumer;
+
+/**
+ * 总结的流式输出：LLM 增量按刷新策略合并后以 agent_stream 发送，遇到文件列表分隔符 $$$ 后不再发送。
+ * 分隔符可能跨增量到达，末尾可能是分隔符前缀的字符先保留，确认不是分隔符后再发送；
+ * 增量回调在读取 LLM 流的线程上执行，模型停顿时缓冲内容由刷新策略的定时线程按 maxIntervalMs 发送
+ */
+public class SummaryStream implements Consumer<String> {
+    public static final String MESSAGE_TYPE = "agent_stream";
+    static final String SEPARATOR = "$$$";
+
+    private final Printer printer;
+    private final String messageId = StringUtil.getUUID();
+    private final StreamFlushPolicy.Buffer buffer;
+    private final StringBuilder held = new StringBuilder();
+    private final long startTime = System.currentTimeMillis();
+    private volatile long firstTokenMs = -1;
+    private boolean separated;
+
+    public SummaryStream(Printer printer, StreamFlushPolicy policy) {
+        this.printer = printer;
+        this.buffer = policy.newBuffer(this::send);
+    }
+
+    @Override
+    public synchronized void accept(String delta) {
+        if (firstTokenMs < 0) {
+            firstTokenMs = System.currentTimeMillis() - startTime;
+        }
+        if (separated || delta.isEmpty()) {
+            return;
+        }
+        held.append(delta);
+        int index = held.indexOf(SEPARATOR);
+        if (index >= 0) {
+            emit(held.substring(0, index));
+            held.setLength(0);
+            separated = true;
+            flush();
+            return;
+        }
+        int safe = held.length() - separatorPrefix();
+        if (safe > 0) {
+            emit(held.substring(0, safe));
+            held.delete(0, safe);
+        }
+    }
+
+    /**
+     * 流结束：发送保留的字符与未刷新的内容
+     */
+    public synchronized void finish() {
+        if (!separated) {
+            emit(held.toString());
+            held.setLength(0);
+        }
+        flush();
+    }
+
+    /**
+     * 首个增量到达的耗时（毫秒），未收到增量为 -1
+     */
+    public long getFirstTokenMs() {
+        return firstTokenMs;
+    }
+
+    /**
+     * 末尾与分隔符前缀相同的字符数
+     */
+    private int separatorPrefix() {
+        for (int n = Math.min(SEPARATOR.length() - 1, held.length()); n > 0; n--) {
+            if (SEPARATOR.startsWith(held.substring(held.length() - n))) {
+                return n;
+            }
+        }
+        return 0;
+    }
+
+    private void emit(String text) {
+        buffer.offer(text);
+    }
+
+    private void flush() {
+        String rest = buffer.close();
+        if (!rest.isEmpty()) {
+            send(rest);
+        }
+    }
+
+    private void send(String text) {
+        printer.send(messageId, MESSAGE_TYPE, text, null, false);
+    }
+}
@@ -0,0 +1,328 @@
+package com.jd.genie.agent.checkpoint;
+
+import com.jd.genie.agent.agent.AgentContext;
+import com.jd.genie.agent.agent.ExecutorAgent;
+import com.jd.genie.agent.agent.PlanningAgent;
+import com.jd.genie.agent.util.StringUtil;
+import com.jd.genie.config.GenieConfig;
+import com.jd.genie.model.req.AgentRequest;
+import com.jd.genie.model.response.AgentResponse;
+import com.jd.genie.util.SseEventStream;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * plan_solve 运行日志（本地追加写）
+ * 每个请求一个 jsonl 文件：begin 记录调度请求，之后每个规划步骤完成写一条 step 增量记录
+ * （计划及步骤状态、规划/执行智能体记忆增量、产出文件、回放缓冲新增事件）。
+ * 记录在调用线程序列化后入队，由刷盘线程按间隔批量写入并 fsync，不阻塞智能体执行；
+ * 运行结束后删除文件，服务重启时剩余的文件即为未完成的运行。
+ * 文件名为 requestId 的 SHA-256，原始 requestId 记录在文件内，加载时校验两者一致。
+ */
+@Slf4j
+@Component
+public class CheckpointJournal {
+    private static final String SUFFIX = ".journal";
+
+    @Autowired
+    private GenieConfig genieConfig;
+
+    private Path dir;
+    private ScheduledExecutorService flusher;
+    private final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<>();
+    /**
+     * 仅在 flush 内访问
+     */
+    private final Map<Path, FileChannel> channels = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+        if (!enabled()) {
+            return;
+        }
+        dir = Paths.get(genieConfig.getCheckpointDir());
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            log.error("checkpoint dir {} create failed, checkpoint disabled", dir, e);
+            dir = null;
+            return;
+        }
+        long interval = Math.max(10L, genieConfig.getCheckpointFsyncInterval());
+        flusher = Executors.newSingleThreadScheduledExecutor(
+                new BasicThreadFactory.Builder().namingPattern("checkpoint-flush-%d").daemon(true).build());
+        flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (Objects.isNull(flusher)) {
+            return;
+        }
+        flusher.shutdown();
+        flush();
+        for (FileChannel channel : channels.values()) {
+            closeQuietly(channel);
+        }
+        channels.clear();
+    }
+
+    public boolean enabled() {
+        return Boolean.TRUE.equals(genieConfig.getCheckpointEnable());
+    }
+
+    /**
+     * 新运行：写入 begin 记录
+     */
+    public RunJournal open(AgentRequest request) {
+        if (Objects.isNull(dir)) {
+            return new RunJournal(request.getRequestId(), null);
+        }
+        RunJournal journal = new RunJournal(request.getRequestId(), path(request.getRequestId()));
+        journal.append(CheckpointRecord.builder()
+                .type(CheckpointRecord.BEGIN)
+                .requestId(request.getRequestId())
+                .time(System.currentTimeMillis())
+                .request(request)
+                .build(), false);
+        return journal;
+    }
+
+    /**
+     * 恢复的运行：在原日志上继续追加，以恢复出的记忆为增量基线
+     */
+    public RunJournal reopen(RunCheckpoint checkpoint, PlanningAgent planning, ExecutorAgent executor) {
+        RunJournal journal = new RunJournal(checkpoint.getRequestId(), Objects.isNull(dir) ? null : checkpoint.getPath());
+        journal.planner.reset(planning.getMemory().getMessages());
+        journal.executor.reset(executor.getMemory().getMessages());
+        journal.lastEventSeq = checkpoint.getLastEventSeq();
+        return journal;
+    }
+
+    /**
+     * 扫描未完成的运行；已结束、未完成首次规划或超过 max_age 的日志直接删除
+     */
+    public List<RunCheckpoint> scan() {
+        List<RunCheckpoint> result = new ArrayList<>();
+        if (Objects.isNull(dir)) {
+            return result;
+        }
+        long expireBefore = System.currentTimeMillis() - genieConfig.getCheckpointMaxAge();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    if (Files.getLastModifiedTime(file).toMillis() < expireBefore) {
+                        log.info("checkpoint {} expired, delete", file);
+                        Files.deleteIfExists(file);
+                        continue;
+                    }
+                    long start = System.currentTimeMillis();
+                    RunCheckpoint checkpoint = RunCheckpoint.load(file);
+                    if (!checkpoint.isConsistent() || Objects.isNull(checkpoint.getRequestId())
+                            || !file.getFileName().equals(path(checkpoint.getRequestId()).getFileName())) {
+                        log.warn("checkpoint {} requestId {} does not match file name, skip", file, checkpoint.getRequestId());
+                        continue;
+                    }
+                    if (!checkpoint.isResumable()) {
+                        Files.deleteIfExists(file);
+                        continue;
+                    }
+                    log.info("{} checkpoint loaded, step {}, records {}, events {}, cost {}ms", checkpoint.getRequestId(),
+                            checkpoint.getStep(), checkpoint.getRecords(), checkpoint.getEvents().size(),
+                            System.currentTimeMillis() - start);
+                    result.add(checkpoint);
+                } catch (Exception e) {
+                    log.error("checkpoint {} load failed", file, e);
+                }
+            }
+        } catch (IOException e) {
+            log.error("checkpoint dir {} scan failed", dir, e);
+        }
+        result.sort(Comparator.comparingLong(RunCheckpoint::getLastModified));
+        return result;
+    }
+
+    /**
+     * 批量写入队列中的记录，每个文件写完 fsync 一次
+     */
+    public synchronized void flush() {
+        if (queue.isEmpty()) {
+            return;
+        }
+        Map<Path, List<Pending>> batches = new LinkedHashMap<>();
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            batches.computeIfAbsent(pending.path, k -> new ArrayList<>()).add(pending);
+        }
+        for (Map.Entry<Path, List<Pending>> batch : batches.entrySet()) {
+            List<Pending> records = batch.getValue();
+            int from = 0;
+            for (int i = 0; i < records.size(); i++) {
+                // 结束记录之后的记录属于同一请求的下一次执行，分段写入
+                if (records.get(i).last || i == records.size() - 1) {
+                    write(batch.getKey(), records.subList(from, i + 1), records.get(i).last);
+                    from = i + 1;
+                }
+            }
+        }
+    }
+
+    private void write(Path path, List<Pending> records, boolean last) {
+        try {
+            FileChannel channel = channels.get(path);
+            if (Objects.isNull(channel)) {
+                channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                channels.put(path, channel);
+            }
+            ByteBuffer[] buffers = new ByteBuffer[records.size()];
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = ByteBuffer.wrap(records.get(i).data);
+            }
+            while (buffers[buffers.length - 1].hasRemaining()) {
+                channel.write(buffers);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            log.error("checkpoint {} write failed", path, e);
+            closeQuietly(channels.remove(path));
+        }
+        if (last) {
+            closeQuietly(channels.remove(path));
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("checkpoint {} delete failed", path, e);
+            }
+        }
+    }
+
+    /**
+     * 文件名取 requestId 的哈希，不同 requestId 不会因字符替换落到同一文件
+     */
+    private Path path(String requestId) {
+        return dir.resolve(StringUtil.sha256Hex(requestId) + SUFFIX);
+    }
+
+    private void closeQuietly(FileChannel channel) {
+        if (Objects.isNull(channel)) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("checkpoint channel close failed", e);
+        }
+    }
+
+    private static class Pending {
+        private final Path path;
+        private final byte[] data;
+        private final boolean last;
+
+        private Pending(Path path, byte[] data, boolean last) {
+            this.path = path;
+            this.data = data;
+            this.last = last;
+        }
+    }
+
+    /**
+     * 单个运行的日志句柄，检查点关闭或目录不可用时为空操作
+     */
+    public class RunJournal {
+        private final String requestId;
+        private final Path path;
+        private final MemoryTracker planner = new MemoryTracker();
+        private final MemoryTracker executor = new MemoryTracker();
+        private long lastEventSeq;
+
+        private RunJournal(String requestId, Path path) {
+            this.requestId = requestId;
+            this.path = path;
+        }
+
+        /**
+         * 规划步骤完成
+         *
+         * @param step           下一个待执行的步骤序号
+         * @param planningResult 规划给出的待执行任务（finish 表示进入总结）
+         */
+        public void step(int step, String planningResult, PlanningAgent planning, ExecutorAgent executorAgent, AgentContext context) {
+            if (Objects.isNull(path)) {
+                return;
+            }
+            // 快照包含本步骤后台上传的文件
+            context.awaitUploads();
+            try {
+                CheckpointRecord.CheckpointRecordBuilder record = CheckpointRecord.builder()
+                        .type(CheckpointRecord.STEP)
+                        .requestId(requestId)
+                        .time(System.currentTimeMillis())
+                        .step(step)
+                        .planningResult(planningResult)
+                        .plan(planning.getPlanningTool().getPlan())
+                        .plannerMemory(planner.delta(planning.getMemory().getMessages()))
+                        .executorMemory(executor.delta(executorAgent.getMemory().getMessages()))
+                        .plannerState(planning.getState())
+                        .executorState(executorAgent.getState())
+                        .plannerCurrentStep(planning.getCurrentStep())
+                        .executorCurrentStep(executorAgent.getCurrentStep())
+                        .productFiles(new ArrayList<>(context.getProductFiles()));
+                SseEventStream stream = SseEventStream.get(SseEventStream.SCOPE_AGENT, requestId);
+                if (Objects.nonNull(stream)) {
+                    List<CheckpointRecord.ReplayEvent> events = new ArrayList<>();
+                    for (Map.Entry<Long, Object> entry : stream.eventsAfter(lastEventSeq).entrySet()) {
+                        if (entry.getValue() instanceof AgentResponse response) {
+                            events.add(new CheckpointRecord.ReplayEvent(entry.getKey(), response));
+                        }
+                    }
+                    lastEventSeq = stream.getLastSeq();
+                    record.events(events).lastEventSeq(lastEventSeq);
+                }
+                append(record.build(), false);
+            } catch (Exception e) {
+                log.error("{} checkpoint step {} failed", requestId, step, e);
+            }
+        }
+
+        /**
+         * 运行结束（正常或异常），日志刷盘后删除
+         */
+        public void finish() {
+            if (Objects.isNull(path)) {
+                return;
+            }
+            append(CheckpointRecord.builder()
+                    .type(CheckpointRecord.END)
+                    .requestId(requestId)
+                    .time(System.currentTimeMillis())
+                    .build(), true);
+        }
+
+        private void append(CheckpointRecord record, boolean last) {
+            try {
+                queue.add(new Pending(path, record.toJsonLine(), last));
+            } catch (IOException e) {
+                log.error("{} checkpoint serialize failed", requestId, e);
+            }
+        }
+    }
+}
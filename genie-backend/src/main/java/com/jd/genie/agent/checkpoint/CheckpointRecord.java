@@ -0,0 +1,97 @@
+package com.jd.genie.agent.checkpoint;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jd.genie.agent.dto.File;
+import com.jd.genie.agent.dto.Message;
+import com.jd.genie.agent.dto.Plan;
+import com.jd.genie.agent.enums.AgentState;
+import com.jd.genie.model.req.AgentRequest;
+import com.jd.genie.model.response.AgentResponse;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 运行日志记录，每条记录一行 JSON
+ * begin：请求开始，记录调度请求；step：每个规划步骤完成后的增量状态；end：运行结束（正常或异常）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CheckpointRecord {
+    public static final String BEGIN = "begin";
+    public static final String STEP = "step";
+    public static final String END = "end";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private String type;
+    private String requestId;
+    private Long time;
+
+    /**
+     * begin：调度请求（已拼接输出类型）
+     */
+    private AgentRequest request;
+
+    /**
+     * step：下一个待执行的步骤序号，以及规划给出的待执行任务
+     */
+    private Integer step;
+    private String planningResult;
+    private Plan plan;
+    private MemoryDelta plannerMemory;
+    private MemoryDelta executorMemory;
+    private AgentState plannerState;
+    private AgentState executorState;
+    private Integer plannerCurrentStep;
+    private Integer executorCurrentStep;
+    private List<File> productFiles;
+
+    /**
+     * step：上一条记录之后发布的事件（回放缓冲），及最新事件序号
+     */
+    private List<ReplayEvent> events;
+    private Long lastEventSeq;
+
+    /**
+     * 记忆增量：截断到 base 条后追加 messages
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class MemoryDelta {
+        private int base;
+        private List<Message> messages;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ReplayEvent {
+        private long seq;
+        private AgentResponse event;
+    }
+
+    public byte[] toJsonLine() throws IOException {
+        byte[] json = MAPPER.writeValueAsBytes(this);
+        byte[] line = new byte[json.length + 1];
+        System.arraycopy(json, 0, line, 0, json.length);
+        line[json.length] = '\n';
+        return line;
+    }
+
+    public static CheckpointRecord parse(String line) throws IOException {
+        return MAPPER.readValue(line, CheckpointRecord.class);
+    }
+}
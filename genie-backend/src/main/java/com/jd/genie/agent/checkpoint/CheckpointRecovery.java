@@ -0,0 +1,90 @@
+package com.jd.genie.agent.checkpoint;
+
+import com.jd.genie.agent.enums.AgentType;
+import com.jd.genie.agent.printer.ResumePrinter;
+import com.jd.genie.agent.util.ThreadUtil;
+import com.jd.genie.config.GenieConfig;
+import com.jd.genie.handler.AgentResponseHandler;
+import com.jd.genie.model.multi.EventResult;
+import com.jd.genie.model.req.AgentRequest;
+import com.jd.genie.model.response.AgentResponse;
+import com.jd.genie.model.response.GptProcessResult;
+import com.jd.genie.service.IAgentRunService;
+import com.jd.genie.util.SseEventStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * 启动时恢复未完成的 plan_solve 运行
+ * 先由日志中的事件恢复两个事件流（客户端可携带 Last-Event-ID 重连），
+ * 增量事件流的 EventResult 通过按序重放已记录事件重建，再从最后一个完成的步骤继续执行
+ */
+@Slf4j
+@Component
+public class CheckpointRecovery implements ApplicationRunner {
+    @Autowired
+    private GenieConfig genieConfig;
+    @Autowired
+    private CheckpointJournal checkpointJournal;
+    @Autowired
+    private IAgentRunService agentRunService;
+    @Autowired
+    private Map<AgentType, AgentResponseHandler> handlerMap;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!checkpointJournal.enabled() || !Boolean.TRUE.equals(genieConfig.getCheckpointResumeOnStartup())) {
+            return;
+        }
+        List<RunCheckpoint> checkpoints = checkpointJournal.scan();
+        if (!checkpoints.isEmpty()) {
+            log.info("checkpoint recovery, {} unfinished runs", checkpoints.size());
+        }
+        for (RunCheckpoint checkpoint : checkpoints) {
+            try {
+                resume(checkpoint);
+            } catch (Exception e) {
+                log.error("{} checkpoint resume failed", checkpoint.getRequestId(), e);
+            }
+        }
+    }
+
+    private void resume(RunCheckpoint checkpoint) {
+        AgentRequest request = checkpoint.getRequest();
+        String requestId = checkpoint.getRequestId();
+        SseEventStream agentStream = SseEventStream.restore(SseEventStream.SCOPE_AGENT, requestId,
+                checkpoint.getEvents(), checkpoint.getLastEventSeq());
+
+        // 重建增量组装状态，增量事件流序号由 1 重新开始
+        AgentResponseHandler handler = handlerMap.get(AgentType.PLAN_SOLVE);
+        EventResult eventResult = new EventResult();
+        List<AgentResponse> agentRespList = new ArrayList<>();
+        TreeMap<Long, Object> incrEvents = new TreeMap<>();
+        long incrSeq = 0;
+        for (AgentResponse event : checkpoint.getEvents().values()) {
+            GptProcessResult result = handler.handle(request, event, agentRespList, eventResult);
+            if (Objects.nonNull(result)) {
+                incrEvents.put(++incrSeq, result);
+            }
+        }
+        SseEventStream incrStream = SseEventStream.restore(SseEventStream.SCOPE_INCR, requestId, incrEvents, incrSeq);
+
+        ResumePrinter printer = new ResumePrinter(request, agentStream, incrStream, handler, eventResult);
+        ThreadUtil.execute(() -> {
+            try {
+                agentRunService.resume(checkpoint, printer);
+            } finally {
+                agentRunService.release(requestId);
+            }
+        });
+    }
+}
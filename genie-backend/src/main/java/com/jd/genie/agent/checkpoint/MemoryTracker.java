@@ -0,0 +1,64 @@
+package com.jd.genie.agent.checkpoint;
+
+import com.jd.genie.agent.dto.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 记录已写入日志的记忆，计算下一次的增量
+ * 记忆大多只追加，但也会被 clearToolContext 删除中间消息、或原地修改最后一条消息内容，
+ * 因此按对象引用（消息与内容）比对已记录前缀，从第一个不一致的位置开始记录。
+ */
+public class MemoryTracker {
+    private final List<Message> messages = new ArrayList<>();
+    private final List<String> contents = new ArrayList<>();
+
+    /**
+     * 计算增量并记为已写入，无变化返回 null
+     */
+    public CheckpointRecord.MemoryDelta delta(List<Message> current) {
+        int base = 0;
+        int n = Math.min(messages.size(), current.size());
+        // 引用比较：内容被 setContent 替换后引用必然变化
+        while (base < n && current.get(base) == messages.get(base) && current.get(base).getContent() == contents.get(base)) {
+            base++;
+        }
+        if (base == messages.size() && base == current.size()) {
+            return null;
+        }
+        List<Message> appended = new ArrayList<>(current.subList(base, current.size()));
+        messages.subList(base, messages.size()).clear();
+        contents.subList(base, contents.size()).clear();
+        for (Message message : appended) {
+            messages.add(message);
+            contents.add(message.getContent());
+        }
+        return new CheckpointRecord.MemoryDelta(base, appended);
+    }
+
+    /**
+     * 从检查点恢复后，以恢复出的记忆为已写入基线
+     */
+    public void reset(List<Message> current) {
+        messages.clear();
+        contents.clear();
+        for (Message message : current) {
+            messages.add(message);
+            contents.add(message.getContent());
+        }
+    }
+
+    /**
+     * 应用增量
+     */
+    public static void apply(List<Message> target, CheckpointRecord.MemoryDelta delta) {
+        if (delta == null) {
+            return;
+        }
+        target.subList(Math.min(delta.getBase(), target.size()), target.size()).clear();
+        if (delta.getMessages() != null) {
+            target.addAll(delta.getMessages());
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.jd.genie.agent.checkpoint;
+
+import com.jd.genie.agent.dto.File;
+import com.jd.genie.agent.dto.Message;
+import com.jd.genie.agent.dto.Plan;
+import com.jd.genie.agent.enums.AgentState;
+import com.jd.genie.model.req.AgentRequest;
+import com.jd.genie.model.response.AgentResponse;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * 由运行日志回放得到的运行状态（最后一个完成的步骤）
+ */
+@Slf4j
+@Data
+public class RunCheckpoint {
+    private Path path;
+    private String requestId;
+    private AgentRequest request;
+    private long lastModified;
+
+    private Integer step;
+    private String planningResult;
+    private Plan plan;
+    private List<Message> plannerMessages = new ArrayList<>();
+    private List<Message> executorMessages = new ArrayList<>();
+    private AgentState plannerState;
+    private AgentState executorState;
+    private int plannerCurrentStep;
+    private int executorCurrentStep;
+    private List<File> productFiles = new ArrayList<>();
+    private TreeMap<Long, AgentResponse> events = new TreeMap<>();
+    private long lastEventSeq;
+
+    private boolean finished;
+    private int records;
+    /**
+     * 所有记录的 requestId 相同
+     */
+    private boolean consistent = true;
+
+    /**
+     * 读取日志并按顺序回放；末尾不完整的记录（写入中途宕机）被忽略
+     */
+    public static RunCheckpoint load(Path path) throws IOException {
+        RunCheckpoint checkpoint = new RunCheckpoint();
+        checkpoint.path = path;
+        checkpoint.lastModified = Files.getLastModifiedTime(path).toMillis();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                CheckpointRecord record;
+                try {
+                    record = CheckpointRecord.parse(line);
+                } catch (IOException e) {
+                    log.warn("{} checkpoint journal truncated after {} records", path, checkpoint.records);
+                    break;
+                }
+                checkpoint.apply(record);
+            }
+        }
+        return checkpoint;
+    }
+
+    public void apply(CheckpointRecord record) {
+        records++;
+        if (Objects.nonNull(requestId) && !requestId.equals(record.getRequestId())) {
+            consistent = false;
+        }
+        requestId = record.getRequestId();
+        if (Objects.isNull(record.getType())) {
+            return;
+        }
+        switch (record.getType()) {
+            case CheckpointRecord.BEGIN:
+                // 同一请求重新执行时日志从新的 begin 开始
+                request = record.getRequest();
+                step = null;
+                planningResult = null;
+                plan = null;
+                plannerMessages.clear();
+                executorMessages.clear();
+                productFiles = new ArrayList<>();
+                events.clear();
+                lastEventSeq = 0;
+                finished = false;
+                break;
+            case CheckpointRecord.STEP:
+                step = record.getStep();
+                planningResult = record.getPlanningResult();
+                plan = record.getPlan();
+                MemoryTracker.apply(plannerMessages, record.getPlannerMemory());
+                MemoryTracker.apply(executorMessages, record.getExecutorMemory());
+                plannerState = record.getPlannerState();
+                executorState = record.getExecutorState();
+                plannerCurrentStep = Objects.requireNonNullElse(record.getPlannerCurrentStep(), 0);
+                executorCurrentStep = Objects.requireNonNullElse(record.getExecutorCurrentStep(), 0);
+                if (Objects.nonNull(record.getProductFiles())) {
+                    productFiles = new ArrayList<>(record.getProductFiles());
+                }
+                if (Objects.nonNull(record.getEvents())) {
+                    for (CheckpointRecord.ReplayEvent event : record.getEvents()) {
+                        events.put(event.getSeq(), event.getEvent());
+                    }
+                }
+                if (Objects.nonNull(record.getLastEventSeq())) {
+                    lastEventSeq = record.getLastEventSeq();
+                }
+                break;
+            case CheckpointRecord.END:
+                finished = true;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 未结束且至少完成了首次规划
+     */
+    public boolean isResumable() {
+        return !finished && Objects.nonNull(request) && Objects.nonNull(step);
+    }
+}
@@ -25,6 +25,9 @@ public class CodeInterpreterRequest {
     private Boolean contentStream;
     private Map<String, Object> streamMode;
     private List<String> toolResults; // 工具调用结果列表（TOOL角色的消息content）
+    private List<String> evidenceRefs; // 按内容哈希引用的工具结果（会话内全部，按产生顺序）
+    private Map<String, String> evidence; // genie-tool 尚未持有的工具结果，哈希 -> 内容
+    private List<String> relevantRefs; // 按与任务相关度排序的引用子集，为空时使用全部引用
 
     @Data
     @AllArgsConstructor
@@ -14,4 +14,5 @@ public class FileRequest {
     private String fileName;
     private String description;
     private String content;
+    private String filePath; // 本地存储中的内容路径，genie-tool 按路径引用而不是内联 content
 }
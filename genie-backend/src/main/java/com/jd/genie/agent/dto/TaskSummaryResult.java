@@ -14,4 +14,5 @@ import java.util.List;
 public class TaskSummaryResult {
     private String taskSummary;
     private List<File> files;
+    private Long firstTokenMs; // 流式总结首个 token 的耗时（毫秒），非流式为空
 }
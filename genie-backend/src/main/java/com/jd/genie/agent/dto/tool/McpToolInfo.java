@@ -14,4 +14,8 @@ public class McpToolInfo {
     String name;
     String desc;
     String parameters;
+    /**
+     * 服务端声明为只读（annotations.readOnlyHint）
+     */
+    Boolean readOnly;
 }
@@ -9,11 +9,14 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jd.genie.agent.agent.AgentContext;
 import com.jd.genie.agent.dto.Message;
 import com.jd.genie.agent.enums.RoleType;
-import com.jd.genie.agent.dto.tool.McpToolInfo;
 import com.jd.genie.agent.dto.tool.ToolCall;
 import com.jd.genie.agent.dto.tool.ToolChoice;
-import com.jd.genie.agent.tool.BaseTool;
+import com.jd.genie.agent.printer.StreamFlushPolicy;
 import com.jd.genie.agent.tool.ToolCollection;
+import com.jd.genie.agent.tool.ToolDefinition;
+import com.jd.genie.agent.tool.ToolDefinitionRegistry;
+import com.jd.genie.agent.util.IncrementalJsonRepair;
+import com.jd.genie.agent.util.ObservationShaper;
 import com.jd.genie.agent.util.SpringContextHolder;
 import com.jd.genie.agent.util.StringUtil;
 import com.jd.genie.config.GenieConfig;
@@ -34,8 +37,8 @@ import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * LLM 类
@@ -44,6 +47,8 @@ import java.util.regex.Pattern;
 @Data
 public class LLM {
     private static final Map<String, LLM> instances = new ConcurrentHashMap<>();
+    // struct_parse 首次刷新前至少累积的增量数，避免 ```json 围栏的前几个字符先输出
+    private static final int STRUCT_PARSE_FIRST_DELTAS = 3;
 
     private final String model;
     private final String llmErp;
@@ -57,9 +62,17 @@ public class LLM {
     private final ObjectMapper objectMapper;
     private final Map<String, Object> extParams;
 
+    /**
+     * 服务端曾以 400 拒绝 stream_options，之后的流式请求不再附带
+     */
+    private volatile boolean streamUsageRejected;
     private int totalInputTokens;
     private Integer maxInputTokens;
 
+    // 账本记录的智能体角色与步骤，由 BaseAgent 每步开始时设置
+    private volatile String usageRole;
+    private volatile int usageStep;
+
     public LLM(String modelName, String llmErp) {
         this.llmErp = llmErp;
 
@@ -130,6 +143,9 @@ public class LLM {
         List<Message> truncatedMessages = new ArrayList<>();
         final int MAX_CONTENT_LENGTH = 50000; // 最大内容长度（256k上下文下可以更长）
         final int MAX_TOOL_CONTENT_LENGTH = 10000; // 工具消息最大长度（256k上下文下可以更长）
+        // 工具结果按内容类型压缩（observation.enable），关闭时与其他消息一样截取开头
+        GenieConfig genieConfig = SpringContextHolder.getApplicationContext().getBean(GenieConfig.class);
+        boolean shapeToolContent = Boolean.TRUE.equals(genieConfig.getObservationEnable());
         
         for (Message message : messages) {
             Message truncatedMessage = new Message();
@@ -143,7 +159,13 @@ public class LLM {
                 // 根据消息类型设置不同的截断长度
                 int maxLength = (message.getRole() == RoleType.TOOL) ? MAX_TOOL_CONTENT_LENGTH : MAX_CONTENT_LENGTH;
                 
-                if (content.length() > maxLength) {
+                if (content.length() > maxLength && message.getRole() == RoleType.TOOL && shapeToolContent) {
+                    // 工具结果按内容类型压缩，保留结构、表头与结尾
+                    String shapedContent = ObservationShaper.shape(content, maxLength, genieConfig.getObservationSampleRows()).getText();
+                    truncatedMessage.setContent(shapedContent);
+                    log.warn("工具消息内容过长已压缩：原始长度={}, 压缩后长度={}",
+                        content.length(), shapedContent.length());
+                } else if (content.length() > maxLength) {
                     // 截断内容并添加提示
                     String truncatedContent = content.substring(0, maxLength) + 
                         "\n\n[注意：内容已截断，原始长度：" + content.length() + " 字符]";
@@ -294,6 +316,50 @@ public class LLM {
             boolean stream,
             Double temperature
     ) {
+        return ask(context, messages, systemMsgs, stream, temperature, null);
+    }
+
+    /**
+     * 向 LLM 发送请求并获取响应；流式请求时每个内容增量回调 onDelta（在读取流的线程上），返回完整响应
+     */
+    public CompletableFuture<String> ask(
+            AgentContext context,
+            List<Message> messages,
+            List<Message> systemMsgs,
+            boolean stream,
+            Double temperature,
+            Consumer<String> onDelta
+    ) {
+        return ask(context, messages, systemMsgs, stream, temperature, onDelta, null);
+    }
+
+    /**
+     * 可中止的非流式请求：返回的 future 被取消时中止 HTTP 调用，
+     * onEnd 在 HTTP 调用真正结束（响应读完、失败或中止生效）后执行一次，调用方据此归还并发许可
+     */
+    public CompletableFuture<String> askCancellable(
+            AgentContext context,
+            List<Message> messages,
+            List<Message> systemMsgs,
+            Double temperature,
+            Runnable onEnd
+    ) {
+        return ask(context, messages, systemMsgs, false, temperature, null, onEnd);
+    }
+
+    private CompletableFuture<String> ask(
+            AgentContext context,
+            List<Message> messages,
+            List<Message> systemMsgs,
+            boolean stream,
+            Double temperature,
+            Consumer<String> onDelta,
+            Runnable onEnd
+    ) {
+        long startTime = System.currentTimeMillis();
+        String role = usageRole;
+        int step = usageStep;
+        boolean dispatched = false;
         try {
             List<Map<String, Object>> formattedMessages;
             // 格式化系统和用户消息
@@ -334,9 +400,10 @@ public class LLM {
                 params.put("stream", false);
 
                 // 调用 API
-                CompletableFuture<String> future = callOpenAI(params);
+                CompletableFuture<String> future = callOpenAI(params, 300, onEnd);
+                dispatched = true;
 
-                return future.thenApply(response -> {
+                CompletableFuture<String> result = future.thenApply(response -> {
                     try {
                         // 解析响应
                         log.info("{} call llm response {}", context.getRequestId(), response);
@@ -347,105 +414,44 @@ public class LLM {
                             throw new IllegalArgumentException("Empty or invalid response from LLM");
                         }
 
-                        return choices.get(0).get("message").get("content").asText();
+                        String content = choices.get(0).get("message").get("content").asText();
+                        UsageLedger.Tokens tokens = new UsageLedger.Tokens();
+                        UsageLedger.readUsage(jsonResponse, tokens);
+                        recordUsage(context, role, step, tokens, formattedMessages, content, startTime);
+                        return content;
                     } catch (IOException e) {
                         throw new CompletionException(e);
                     }
                 });
+                // 取消结果时一并取消底层调用（进而中止 HTTP 请求）
+                result.whenComplete((content, e) -> {
+                    if (result.isCancelled()) {
+                        future.cancel(true);
+                    }
+                });
+                return result;
             } else {
                 // 处理流式请求
                 params.put("stream", true);
+                boolean streamUsage = requestStreamUsage(params);
+                UsageLedger.Tokens tokens = new UsageLedger.Tokens();
                 // 调用流式 API
-                return callOpenAIStream(params);
+                return retryWithoutStreamUsage(params, streamUsage, () -> callOpenAIStream(params, onDelta, tokens)).thenApply(content -> {
+                    recordUsage(context, role, step, tokens, formattedMessages, content, startTime);
+                    return content;
+                });
             }
         } catch (Exception e) {
             log.error("{} Unexpected error in ask: {}", e.getMessage(), e);
+            if (!dispatched && Objects.nonNull(onEnd)) {
+                onEnd.run();
+            }
             CompletableFuture<String> future = new CompletableFuture<>();
             future.completeExceptionally(e);
             return future;
         }
     }
 
-    public <T> T deepCopy(T original) {
-        try {
-            // 序列化为 JSON 字节数组
-            byte[] jsonBytes = objectMapper.writeValueAsBytes(original);
-
-            // 从 JSON 反序列化为新对象
-            return objectMapper.readValue(jsonBytes,
-                    objectMapper.getTypeFactory().constructType(original.getClass()));
-        } catch (Exception e) {
-            throw new RuntimeException("深拷贝失败", e);
-        }
-    }
-
-
-    /**
-     * 将OpenAI GPT工具定义转换为Claude工具格式
-     *
-     * @param gptTools OpenAI GPT格式的工具定义列表
-     * @return Claude格式的工具定义列表
-     */
-    public List<Map<String, Object>> gptToClaudeTool(List<Map<String, Object>> gptTools) {
-        List<Map<String, Object>> newGptTools = deepCopy(gptTools);
-        List<Map<String, Object>> claudeTools = new ArrayList<>();
-        for (Map<String, Object> gptToolWrapper : newGptTools) {
-            // 提取function对象
-            Map<String, Object> gptTool = (Map<String, Object>) gptToolWrapper.get("function");
-            Map<String, Object> claudeTool = new HashMap<>();
-            claudeTool.put("name", gptTool.get("name"));
-            claudeTool.put("description", gptTool.get("description"));
-            // parameters
-            Map<String, Object> parameters = (Map<String, Object>) gptTool.get("parameters");
-            // require
-            ArrayList<String> newRequired = new ArrayList<>();
-            newRequired.add("function_name");
-            if (parameters.containsKey("required") && Objects.nonNull(parameters.get("required"))) {
-                newRequired.addAll((List<String>) parameters.get("required"));
-            }
-            parameters.put("required", newRequired);
-            // properties
-            Map<String, Object> newProperties = new HashMap<>();
-            Map<String, Object> functionNameMap = new HashMap<>();
-            functionNameMap.put("description", "默认值为工具名: " + gptTool.get("name"));
-            functionNameMap.put("type", "string");
-            newProperties.put("function_name", functionNameMap);
-            if (parameters.containsKey("properties") && Objects.nonNull(parameters.get("properties"))) {
-                newProperties.putAll((Map<String, Object>) parameters.get("properties"));
-            }
-            parameters.put("properties", newProperties);
-
-            // 提取参数结构
-            claudeTool.put("input_schema", gptTool.get("parameters"));
-            claudeTools.add(claudeTool);
-        }
-        return claudeTools;
-    }
-
-
-    private Map<String, Object> addFunctionNameParam(Map<String, Object> parameters, String toolName) {
-        Map<String, Object> newParameters = deepCopy(parameters);
-        // require
-        ArrayList<String> newRequired = new ArrayList<>();
-        newRequired.add("function_name");
-        if (parameters.containsKey("required") && Objects.nonNull(parameters.get("required"))) {
-            newRequired.addAll((List<String>) parameters.get("required"));
-        }
-        newParameters.put("required", newRequired);
-
-        // properties
-        Map<String, Object> newProperties = new HashMap<>();
-        Map<String, Object> functionNameMap = new HashMap<>();
-        functionNameMap.put("description", "默认值为工具名: " + toolName);
-        functionNameMap.put("type", "string");
-        newProperties.put("function_name", functionNameMap);
-        if (parameters.containsKey("properties") && Objects.nonNull(parameters.get("properties"))) {
-            newProperties.putAll((Map<String, Object>) parameters.get("properties"));
-        }
-        newParameters.put("properties", newProperties);
-        return newParameters;
-    }
-
     /**
      * 向 LLM 发送工具请求并获取响应
      */
@@ -465,61 +471,26 @@ public class LLM {
                 throw new IllegalArgumentException("Invalid tool_choice: " + toolChoice);
             }
             long startTime = System.currentTimeMillis();
+            String role = usageRole;
+            int step = usageStep;
 
             // 设置 API 请求
             Map<String, Object> params = new HashMap<>();
 
-            // tools
+            // tools：使用注册表中预序列化的工具定义
+            ToolDefinitionRegistry toolDefinitionRegistry = SpringContextHolder.getApplicationContext().getBean(ToolDefinitionRegistry.class);
+            List<ToolDefinition> toolDefinitions = toolDefinitionRegistry.definitions(tools);
             StringBuilder stringBuilder = new StringBuilder();
-            List<Map<String, Object>> formattedTools = new ArrayList<>();
+            List<ToolDefinition.Fragment> formattedTools = new ArrayList<>();
             if ("struct_parse".equals(functionCallType)) {
                 GenieConfig genieConfig = SpringContextHolder.getApplicationContext().getBean(GenieConfig.class);
                 stringBuilder.append(genieConfig.getStructParseToolSystemPrompt());
-                // base tool
-                for (BaseTool tool : tools.getToolMap().values()) {
-                    Map<String, Object> functionMap = new HashMap<>();
-                    functionMap.put("name", tool.getName());
-                    functionMap.put("description", tool.getDescription());
-                    functionMap.put("parameters", addFunctionNameParam(tool.toParams(), tool.getName()));
-                    stringBuilder.append(String.format("- `%s`\n```json %s ```\n", tool.getName(), JSON.toJSONString(functionMap)));
+                for (ToolDefinition definition : toolDefinitions) {
+                    stringBuilder.append(definition.getStructParsePrompt());
                 }
-                // mcp tool
-                for (McpToolInfo tool : tools.getMcpToolMap().values()) {
-                    Map<String, Object> parameters = JSON.parseObject(tool.getParameters(), new TypeReference<Map<String, Object>>() {});
-                    Map<String, Object> functionMap = new HashMap<>();
-                    functionMap.put("name", tool.getName());
-                    functionMap.put("description", tool.getDesc());
-                    functionMap.put("parameters", addFunctionNameParam(parameters, tool.getName()));
-                    stringBuilder.append(String.format("- `%s`\n```json %s ```\n", tool.getName(), JSON.toJSONString(functionMap)));
-                }
-
             } else { // function_call
-                // base tool
-                for (BaseTool tool : tools.getToolMap().values()) {
-                    Map<String, Object> functionMap = new HashMap<>();
-                    functionMap.put("name", tool.getName());
-                    functionMap.put("description", tool.getDescription());
-                    functionMap.put("parameters", tool.toParams());
-                    Map<String, Object> toolMap = new HashMap<>();
-                    toolMap.put("type", "function");
-                    toolMap.put("function", functionMap);
-                    formattedTools.add(toolMap);
-                }
-                // mcp tool
-                for (McpToolInfo tool : tools.getMcpToolMap().values()) {
-                    Map<String, Object> parameters = JSON.parseObject(tool.getParameters(), new TypeReference<Map<String, Object>>() {});
-                    Map<String, Object> functionMap = new HashMap<>();
-                    functionMap.put("name", tool.getName());
-                    functionMap.put("description", tool.getDesc());
-                    functionMap.put("parameters", parameters);
-                    Map<String, Object> toolMap = new HashMap<>();
-                    toolMap.put("type", "function");
-                    toolMap.put("function", functionMap);
-                    formattedTools.add(toolMap);
-                }
-
-                if (model.contains("claude")) {
-                    formattedTools = gptToClaudeTool(formattedTools);
+                for (ToolDefinition definition : toolDefinitions) {
+                    formattedTools.add(model.contains("claude") ? definition.getClaudeSchema() : definition.getOpenAiSchema());
                 }
             }
 
@@ -602,19 +573,17 @@ public class LLM {
                         // 提取工具调用
                         List<ToolCall> toolCalls = new ArrayList<>();
                         if ("struct_parse".equals(functionCallType)) {
-                            // 匹配方式: 直接匹配 ```json ... ``` 代码块
-                            String pattern = "```json\\s*([\\s\\S]*?)\\s*```";
-                            List<String> matches = findMatches(content, pattern);
-                            if (!matches.isEmpty()) {
-                                for (String match : matches) {
-                                    ToolCall oneToolCall = parseToolCall(context, match);
-                                    if (Objects.nonNull(oneToolCall)) {
-                                        toolCalls.add(oneToolCall);
-                                    }
+                            // 匹配方式: 扫描 ```json ... ``` 代码块，被截断未闭合的代码块补全后解析
+                            StructParseScanner scanner = StructParseScanner.scan(content);
+                            for (String block : scanner.getBlocks()) {
+                                ToolCall oneToolCall = parseToolCall(context, block);
+                                if (Objects.nonNull(oneToolCall)) {
+                                    toolCalls.add(oneToolCall);
                                 }
                             }
-                            int stopPos = content.indexOf("```json");
-                            content = content.substring(0, stopPos > 0 ? stopPos : content.length());
+                            if (Objects.nonNull(content) && scanner.isFenceOpened()) {
+                                content = content.substring(0, scanner.getTextEnd());
+                            }
                         } else { // function call
                             if (message.has("tool_calls")) {
                                 JsonNode toolCallsNode = message.get("tool_calls");
@@ -632,11 +601,12 @@ public class LLM {
                         }
                         // 提取其他信息
                         String finishReason = choices.get(0).get("finish_reason").asText();
-                        int totalTokens = jsonResponse.get("usage").get("total_tokens").asInt();
-
-                        long endTime = System.currentTimeMillis();
-                        long duration = endTime - startTime;
-                        return new ToolCallResponse(content, toolCalls, finishReason, totalTokens, duration);
+                        UsageLedger.Tokens tokens = new UsageLedger.Tokens();
+                        UsageLedger.readUsage(jsonResponse, tokens);
+                        long duration = recordUsage(context, role, step, tokens, formattedMessages,
+                                Objects.toString(content, "") + JSON.toJSONString(toolCalls), startTime);
+                        return new ToolCallResponse(content, toolCalls, finishReason,
+                                (int) (tokens.getPrompt() + tokens.getCompletion()), duration);
                     } catch (IOException e) {
                         throw new CompletionException(e);
                     }
@@ -644,12 +614,22 @@ public class LLM {
             } else {
                 // 处理流式请求
                 params.put("stream", true);
-
+                UsageLedger.Tokens tokens = new UsageLedger.Tokens();
+                CompletableFuture<ToolCallResponse> future;
                 if (model.contains("claude")) {
-                    return callClaudeFunctionCallStream(context, params);
+                    future = callClaudeFunctionCallStream(context, params, tokens);
+                } else {
+                    boolean streamUsage = requestStreamUsage(params);
+                    // 调用流式 API
+                    future = retryWithoutStreamUsage(params, streamUsage, () -> callOpenAIFunctionCallStream(context, params, tokens));
                 }
-                // 调用流式 API
-                return callOpenAIFunctionCallStream(context, params);
+                return future.thenApply(response -> {
+                    long duration = recordUsage(context, role, step, tokens, formattedMessages,
+                            Objects.toString(response.getContent(), "") + JSON.toJSONString(response.getToolCalls()), startTime);
+                    response.setTotalTokens((int) (tokens.getPrompt() + tokens.getCompletion()));
+                    response.setDuration(duration);
+                    return response;
+                });
             }
 
         } catch (Exception e) {
@@ -671,7 +651,15 @@ public class LLM {
      * 调用 OpenAI API（抽象方法，实际实现需要在子类中提供）
      */
     protected CompletableFuture<String> callOpenAI(Map<String, Object> params, int timeout) {
+        return callOpenAI(params, timeout, null);
+    }
+
+    /**
+     * 调用 OpenAI API；future 被取消时中止 HTTP 请求，onEnd 在请求结束（回调返回或未能发出）后执行
+     */
+    protected CompletableFuture<String> callOpenAI(Map<String, Object> params, int timeout, Runnable onEnd) {
         CompletableFuture<String> future = new CompletableFuture<>();
+        Runnable ended = Objects.isNull(onEnd) ? () -> { } : onEnd;
 
         try {
             OkHttpClient client = new OkHttpClient.Builder()
@@ -696,10 +684,20 @@ public class LLM {
 
             Request request = requestBuilder.build();
 
-            client.newCall(request).enqueue(new Callback() {
+            Call httpCall = client.newCall(request);
+            future.whenComplete((result, e) -> {
+                if (future.isCancelled()) {
+                    httpCall.cancel();
+                }
+            });
+            httpCall.enqueue(new Callback() {
                 @Override
                 public void onFailure(Call call, IOException e) {
-                    future.completeExceptionally(e);
+                    try {
+                        future.completeExceptionally(e);
+                    } finally {
+                        ended.run();
+                    }
                 }
 
                 @Override
@@ -715,11 +713,14 @@ public class LLM {
                         } else {
                             future.complete(responseBody.string());
                         }
+                    } finally {
+                        ended.run();
                     }
                 }
             });
         } catch (Exception e) {
             future.completeExceptionally(e);
+            ended.run();
         }
 
         return future;
@@ -728,7 +729,8 @@ public class LLM {
     /**
      * 调用 OpenAI 流式 API（抽象方法，实际实现需要在子类中提供）
      */
-    public CompletableFuture<ToolCallResponse> callOpenAIFunctionCallStream(AgentContext context, Map<String, Object> params) {
+    public CompletableFuture<ToolCallResponse> callOpenAIFunctionCallStream(AgentContext context, Map<String, Object> params,
+                                                                         UsageLedger.Tokens tokens) {
         CompletableFuture<ToolCallResponse> future = new CompletableFuture<>();
         try {
             OkHttpClient client = new OkHttpClient.Builder()
@@ -749,10 +751,7 @@ public class LLM {
             requestBuilder.addHeader("Authorization", "Bearer " + apiKey);
             Request request = requestBuilder.build();
 
-            GenieConfig genieConfig = SpringContextHolder.getApplicationContext().getBean(GenieConfig.class);
-            String[] interval = genieConfig.getMessageInterval().getOrDefault("llm", "1,3").split(",");
-            int firstInterval = "struct_parse".equals(functionCallType) ? Math.max(3, Integer.parseInt(interval[0])) : Integer.parseInt(interval[0]);
-            int sendInterval = Integer.parseInt(interval[1]);
+            StreamFlushPolicy flushPolicy = StreamFlushPolicy.of(context.getStreamMessageType());
 
             client.newCall(request).enqueue(new Callback() {
                 @Override
@@ -769,15 +768,18 @@ public class LLM {
                             String errorBody = responseBody != null ? responseBody.string() : "No error body";
                             log.error("{} ask tool stream response error: code={}, message={}, body={}", 
                                 context.getRequestId(), response.code(), response.message(), errorBody);
-                            future.completeExceptionally(new IOException("Unexpected response code: " + response + ", body: " + errorBody));
+                            future.completeExceptionally(new HttpStatusException(response, errorBody));
                             return;
                         }
 
                         String messageId = StringUtil.getUUID();
-                        StringBuilder stringBuilder = new StringBuilder();
+                        StreamFlushPolicy.Buffer flushBuffer = flushPolicy.newBuffer(
+                                text -> context.getPrinter().send(messageId, context.getStreamMessageType(), text, false),
+                                "struct_parse".equals(functionCallType) ? STRUCT_PARSE_FIRST_DELTAS : 1);
                         StringBuilder stringBuilderAll = new StringBuilder();
-                        int index = 1;
+                        StructParseScanner structScanner = new StructParseScanner();
                         Map<Integer, OpenAIToolCall> openToolCallsMap = new HashMap<>();
+                        Map<Integer, IncrementalJsonRepair> argumentsMap = new HashMap<>();
                         String line;
                         BufferedReader reader = new BufferedReader(
                                 new InputStreamReader(responseBody.byteStream())
@@ -803,6 +805,7 @@ public class LLM {
                                 try {
                                     JsonNode chunk = objectMapper.readTree(data);
                                     log.debug("{} 解析JSON块: {}", context.getRequestId(), chunk);
+                                    UsageLedger.readUsage(chunk, tokens);
                                     if (chunk.has("choices") && !chunk.get("choices").isEmpty()) {
                                         for (JsonNode element : chunk.get("choices")) {
                                             OpenAIChoice choice = objectMapper.convertValue(element, OpenAIChoice.class);
@@ -812,20 +815,21 @@ public class LLM {
                                                 // log.info("{} recv content data: >>{}<<", context.getRequestId(), content);
                                                 if (!isContent) { // 忽略json内容
                                                     stringBuilderAll.append(content);
+                                                    structScanner.feed(content);
                                                     continue;
                                                 }
-                                                stringBuilder.append(content);
                                                 stringBuilderAll.append(content);
+                                                String visible = content;
                                                 if ("struct_parse".equals(functionCallType)) {
-                                                    if (stringBuilderAll.toString().contains("```json")) {
+                                                    // 增量扫描，只输出 ```json 之前的正文
+                                                    visible = structScanner.feed(content);
+                                                    if (structScanner.isFenceOpened()) {
                                                         isContent = false;
                                                     }
                                                 }
-                                                if (index == firstInterval || index % sendInterval == 0) {
-                                                    context.getPrinter().send(messageId, context.getStreamMessageType(), stringBuilder.toString(), false);
-                                                    stringBuilder.setLength(0);
+                                                if (!visible.isEmpty()) {
+                                                    flushBuffer.offer(visible);
                                                 }
-                                                index++;
                                             }
                                             // tool call
                                             if (Objects.nonNull(choice.delta.tool_calls)) {
@@ -848,11 +852,8 @@ public class LLM {
                                                             currentToolCall.function = toolCall.function;
                                                         }
                                                         if (Objects.nonNull(toolCall.function.arguments)) {
-                                                            if (currentToolCall.function.arguments == null) {
-                                                                currentToolCall.function.arguments = toolCall.function.arguments;
-                                                            } else {
-                                                                currentToolCall.function.arguments += toolCall.function.arguments;
-                                                            }
+                                                            argumentsMap.computeIfAbsent(toolCall.index, k -> new IncrementalJsonRepair())
+                                                                    .append(toolCall.function.arguments);
                                                         }
                                                     }
                                                     openToolCallsMap.put(toolCall.index, currentToolCall);
@@ -896,12 +897,14 @@ public class LLM {
                                     
                                     // 解析备用响应
                                     JsonNode fallbackJson = objectMapper.readTree(fallbackResponse);
+                                    UsageLedger.readUsage(fallbackJson, tokens);
                                     if (fallbackJson.has("choices") && !fallbackJson.get("choices").isEmpty()) {
                                         JsonNode choice = fallbackJson.get("choices").get(0);
                                         if (choice.has("message") && choice.get("message").has("content")) {
                                             String fallbackContent = choice.get("message").get("content").asText();
                                             if (StringUtils.isNotBlank(fallbackContent)) {
                                                 stringBuilderAll.append(fallbackContent);
+                                                structScanner.feed(fallbackContent);
                                                 log.info("{} 使用备用响应内容: {}", context.getRequestId(), fallbackContent);
                                             }
                                         }
@@ -913,44 +916,46 @@ public class LLM {
                         }
                         
                         String contentAll = stringBuilderAll.toString();
+                        String pending = flushBuffer.close();
                         if ("struct_parse".equals(functionCallType)) {
-                            int stopPos = stringBuilder.indexOf("```json");
                             context.getPrinter().send(messageId, context.getStreamMessageType(),
-                                    stringBuilder.substring(0, stopPos >= 0 ? stopPos : stringBuilder.length()),
+                                    pending + structScanner.finish(),
                                     false);
-                            stopPos = stringBuilderAll.indexOf("```json");
-                            contentAll = stringBuilderAll.substring(0, stopPos >= 0 ? stopPos : stringBuilderAll.length());
+                            if (structScanner.isFenceOpened()) {
+                                contentAll = stringBuilderAll.substring(0, structScanner.getTextEnd());
+                            }
                             if (!contentAll.isEmpty()) {
                                 context.getPrinter().send(messageId, context.getStreamMessageType(), contentAll, true);
                             }
                         } else { // function_call
                             if (!contentAll.isEmpty()) {
-                                context.getPrinter().send(messageId, context.getStreamMessageType(), stringBuilder.toString(), false);
+                                if (!pending.isEmpty()) {
+                                    context.getPrinter().send(messageId, context.getStreamMessageType(), pending, false);
+                                }
                                 context.getPrinter().send(messageId, context.getStreamMessageType(), stringBuilderAll.toString(), true);
                             }
                         }
 
                         List<ToolCall> toolCalls = new ArrayList<>();
                         if ("struct_parse".equals(functionCallType)) {
-                            // 匹配方式: 直接匹配 ```json ... ``` 代码块
-                            String pattern = "```json\\s*([\\s\\S]*?)\\s*```";
-                            List<String> matches = findMatches(stringBuilderAll.toString(), pattern);
-                            if (!matches.isEmpty()) {
-                                for (String match : matches) {
-                                    ToolCall oneToolCall = parseToolCall(context, match);
-                                    if (Objects.nonNull(oneToolCall)) {
-                                        toolCalls.add(oneToolCall);
-                                    }
+                            // 代码块已在接收过程中增量切分，未闭合的代码块在 finish 时补全
+                            for (String block : structScanner.getBlocks()) {
+                                ToolCall oneToolCall = parseToolCall(context, block);
+                                if (Objects.nonNull(oneToolCall)) {
+                                    toolCalls.add(oneToolCall);
                                 }
                             }
                         } else { // function call
-                            for (OpenAIToolCall toolCall : openToolCallsMap.values()) {
+                            for (Map.Entry<Integer, OpenAIToolCall> entry : openToolCallsMap.entrySet()) {
+                                OpenAIToolCall toolCall = entry.getValue();
+                                // 参数按增量拼接，输出被截断时补全为合法 JSON
+                                IncrementalJsonRepair arguments = argumentsMap.get(entry.getKey());
                                 toolCalls.add(ToolCall.builder()
                                         .id(toolCall.id)
                                         .type(toolCall.type)
                                         .function(ToolCall.Function.builder()
                                                 .name(toolCall.function.name)
-                                                .arguments(toolCall.function.arguments)
+                                                .arguments(Objects.nonNull(arguments) ? arguments.repaired() : toolCall.function.arguments)
                                                 .build())
                                         .build());
                             }
@@ -982,7 +987,8 @@ public class LLM {
     /**
      * 调用 OpenAI 流式 API（抽象方法，实际实现需要在子类中提供）
      */
-    public CompletableFuture<ToolCallResponse> callClaudeFunctionCallStream(AgentContext context, Map<String, Object> params) {
+    public CompletableFuture<ToolCallResponse> callClaudeFunctionCallStream(AgentContext context, Map<String, Object> params,
+                                                                         UsageLedger.Tokens tokens) {
         CompletableFuture<ToolCallResponse> future = new CompletableFuture<>();
         try {
             OkHttpClient client = new OkHttpClient.Builder()
@@ -1003,10 +1009,7 @@ public class LLM {
             requestBuilder.addHeader("Authorization", "Bearer " + apiKey);
             Request request = requestBuilder.build();
 
-            GenieConfig genieConfig = SpringContextHolder.getApplicationContext().getBean(GenieConfig.class);
-            String[] interval = genieConfig.getMessageInterval().getOrDefault("llm", "1,3").split(",");
-            int firstInterval = "struct_parse".equals(functionCallType) ? Math.max(3, Integer.parseInt(interval[0])) : Integer.parseInt(interval[0]);
-            int sendInterval = Integer.parseInt(interval[1]);
+            StreamFlushPolicy flushPolicy = StreamFlushPolicy.of(context.getStreamMessageType());
 
             client.newCall(request).enqueue(new Callback() {
                 @Override
@@ -1028,11 +1031,13 @@ public class LLM {
                         }
 
                         String messageId = StringUtil.getUUID();
-                        StringBuilder stringBuilder = new StringBuilder();
+                        StreamFlushPolicy.Buffer flushBuffer = flushPolicy.newBuffer(
+                                text -> context.getPrinter().send(messageId, context.getStreamMessageType(), text, false),
+                                "struct_parse".equals(functionCallType) ? STRUCT_PARSE_FIRST_DELTAS : 1);
                         StringBuilder stringBuilderAll = new StringBuilder();
-                        StringBuilder stringBuilderTool = new StringBuilder();
+                        StructParseScanner structScanner = new StructParseScanner();
+                        IncrementalJsonRepair toolJson = new IncrementalJsonRepair();
 
-                        Integer index = 1;
                         Map<Integer, OpenAIToolCall> openToolCallsMap = new HashMap<>();
                         String line;
                         BufferedReader reader = new BufferedReader(
@@ -1049,6 +1054,7 @@ public class LLM {
                                 try {
                                     // log.info("{} recv data: >>{}<<", context.getRequestId(), data);
                                     JsonNode chunk = objectMapper.readTree(data);
+                                    UsageLedger.readUsage(chunk, tokens);
                                     ClaudeResponse claudeResponse = objectMapper.convertValue(chunk, ClaudeResponse.class);
 
                                     if (Objects.isNull(claudeResponse.delta)) {
@@ -1065,27 +1071,28 @@ public class LLM {
 
                                         if (!isContent) { // 忽略json内容
                                             stringBuilderAll.append(content);
+                                            structScanner.feed(content);
                                             continue;
                                         }
                                         // log.info("{} recv content data: >>{}<<", context.getRequestId(), content);
-                                        stringBuilder.append(content);
                                         stringBuilderAll.append(content);
+                                        String visible = content;
                                         if ("struct_parse".equals(functionCallType)) {
-                                            if (stringBuilderAll.toString().contains("```json")) {
+                                            // 增量扫描，只输出 ```json 之前的正文
+                                            visible = structScanner.feed(content);
+                                            if (structScanner.isFenceOpened()) {
                                                 isContent = false;
                                             }
                                         }
-                                        if (index == firstInterval || index % sendInterval == 0) {
-                                            context.getPrinter().send(messageId, context.getStreamMessageType(), stringBuilder.toString(), false);
-                                            stringBuilder.setLength(0);
+                                        if (!visible.isEmpty()) {
+                                            flushBuffer.offer(visible);
                                         }
-                                        index++;
                                     }
                                     // tool call
                                     if ("input_json_delta".equals(claudeResponse.delta.type)) {
                                         String content = claudeResponse.delta.partial_json;
                                         // log.info("{} recv tool call data: >>{}<<", context.getRequestId(), content);
-                                        stringBuilderTool.append(content);
+                                        toolJson.append(content);
                                     }
                                     // id
                                     id = claudeResponse.id;
@@ -1097,44 +1104,44 @@ public class LLM {
                         }
 
                         String contentAll = stringBuilderAll.toString();
+                        String pending = flushBuffer.close();
                         if ("struct_parse".equals(functionCallType)) {
-                            int stopPos = stringBuilder.indexOf("```json");
                             context.getPrinter().send(messageId, context.getStreamMessageType(),
-                                    stringBuilder.substring(0, stopPos >= 0 ? stopPos : stringBuilder.length()),
+                                    pending + structScanner.finish(),
                                     false);
-                            stopPos = stringBuilderAll.indexOf("```json");
-                            contentAll = stringBuilderAll.substring(0, stopPos >= 0 ? stopPos : stringBuilderAll.length());
+                            if (structScanner.isFenceOpened()) {
+                                contentAll = stringBuilderAll.substring(0, structScanner.getTextEnd());
+                            }
                             if (!contentAll.isEmpty()) {
                                 context.getPrinter().send(messageId, context.getStreamMessageType(), contentAll, true);
                             }
                         } else { // function call
                             if (!contentAll.isEmpty()) {
-                                context.getPrinter().send(messageId, context.getStreamMessageType(), stringBuilder.toString(), false);
+                                if (!pending.isEmpty()) {
+                                    context.getPrinter().send(messageId, context.getStreamMessageType(), pending, false);
+                                }
                                 context.getPrinter().send(messageId, context.getStreamMessageType(), stringBuilderAll.toString(), true);
                             }
                         }
                         List<ToolCall> toolCalls = new ArrayList<>();
                         if ("struct_parse".equals(functionCallType)) {
-                            // 匹配方式: 直接匹配 ```json ... ``` 代码块
-                            String pattern = "```json\\s*([\\s\\S]*?)\\s*```";
-                            List<String> matches = findMatches(stringBuilderAll.toString(), pattern);
-                            if (!matches.isEmpty()) {
-                                for (String match : matches) {
-                                    ToolCall oneToolCall = parseToolCall(context, match);
-                                    if (Objects.nonNull(oneToolCall)) {
-                                        toolCalls.add(oneToolCall);
-                                    }
+                            // 代码块已在接收过程中增量切分，未闭合的代码块在 finish 时补全
+                            for (String block : structScanner.getBlocks()) {
+                                ToolCall oneToolCall = parseToolCall(context, block);
+                                if (Objects.nonNull(oneToolCall)) {
+                                    toolCalls.add(oneToolCall);
                                 }
                             }
                         } else { // function_call
-                            JsonNode arguments = objectMapper.readTree(stringBuilderTool.toString());
-                            if (!stringBuilderTool.toString().isEmpty() && arguments.hasNonNull("function_name")) {
+                            String toolArguments = toolJson.repaired();
+                            JsonNode arguments = objectMapper.readTree(toolArguments);
+                            if (!toolArguments.isEmpty() && arguments.hasNonNull("function_name")) {
                                 OpenAIToolCall currentToolCall = new OpenAIToolCall();
                                 currentToolCall.id = id;
                                 currentToolCall.type = "function";
                                 currentToolCall.function = new OpenAIFunction();
                                 currentToolCall.function.name = arguments.get("function_name").asText();
-                                currentToolCall.function.arguments = stringBuilderTool.toString();
+                                currentToolCall.function.arguments = toolArguments;
                                 openToolCallsMap.put(0, currentToolCall); // claude only call one function
                                 for (OpenAIToolCall toolCall : openToolCallsMap.values()) {
                                     toolCalls.add(ToolCall.builder()
@@ -1174,7 +1181,8 @@ public class LLM {
     /**
      * 调用 OpenAI 流式 API（抽象方法，实际实现需要在子类中提供）
      */
-    protected CompletableFuture<String> callOpenAIStream(Map<String, Object> params) {
+    protected CompletableFuture<String> callOpenAIStream(Map<String, Object> params, Consumer<String> onDelta,
+                                                         UsageLedger.Tokens tokens) {
         // 这里是一个简化的流式请求实现示例
         CompletableFuture<String> future = new CompletableFuture<>();
         StringBuilder collectedMessages = new StringBuilder();
@@ -1215,9 +1223,7 @@ public class LLM {
                             String errorBody = responseBody != null ? responseBody.string() : "No error body";
                             log.error("LLM API调用失败: code={}, message={}, body={}", 
                                 response.code(), response.message(), errorBody);
-                            future.completeExceptionally(
-                                    new IOException("Unexpected response code: " + response + ", body: " + errorBody)
-                            );
+                            future.completeExceptionally(new HttpStatusException(response, errorBody));
                             return;
                         }
 
@@ -1237,12 +1243,16 @@ public class LLM {
 
                                     try {
                                         JsonNode chunk = objectMapper.readTree(data);
+                                        UsageLedger.readUsage(chunk, tokens);
                                         if (chunk.has("choices") && !chunk.get("choices").isEmpty()) {
                                             JsonNode choice = chunk.get("choices").get(0);
                                             if (choice.has("delta") && choice.get("delta").has("content")) {
                                                 String content = choice.get("delta").get("content").asText();
                                                 collectedMessages.append(content);
                                                 log.info("recv data: {}", content);
+                                                if (Objects.nonNull(onDelta)) {
+                                                    onDelta.accept(content);
+                                                }
                                             }
                                         }
                                     } catch (Exception e) {
@@ -1277,16 +1287,87 @@ public class LLM {
 
 
     /**
-     * 查找匹配的工具调用
+     * 流式请求附带 stream_options.include_usage，由最后一个数据块返回本次调用的 token 用量；返回是否附带
+     */
+    private boolean requestStreamUsage(Map<String, Object> params) {
+        GenieConfig genieConfig = SpringContextHolder.getApplicationContext().getBean(GenieConfig.class);
+        if (Boolean.TRUE.equals(genieConfig.getLedgerStreamUsage()) && !streamUsageRejected
+                && !params.containsKey("stream_options")) {
+            params.put("stream_options", Collections.singletonMap("include_usage", true));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 附带 stream_options 的请求被服务端以 400 拒绝（不支持该参数）时，去掉后重试一次，之后不再附带
      */
-    private List<String> findMatches(String text, String pattern) {
-        Pattern r = Pattern.compile(pattern);
-        Matcher m = r.matcher(text);
-        List<String> matches = new ArrayList<>();
-        while (m.find()) {
-            matches.add(m.group(1));
+    private <T> CompletableFuture<T> retryWithoutStreamUsage(Map<String, Object> params, boolean streamUsage,
+                                                             Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> first = call.get();
+        if (!streamUsage) {
+            return first;
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        first.whenComplete((value, e) -> {
+            Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            if (cause instanceof HttpStatusException && ((HttpStatusException) cause).getCode() == 400) {
+                log.warn("LLM 服务拒绝 stream_options，去掉后重试，之后的流式请求不再附带: model={}", model);
+                streamUsageRejected = true;
+                params.remove("stream_options");
+                call.get().whenComplete((retryValue, retryError) -> {
+                    if (Objects.nonNull(retryError)) {
+                        result.completeExceptionally(retryError);
+                    } else {
+                        result.complete(retryValue);
+                    }
+                });
+            } else if (Objects.nonNull(e)) {
+                result.completeExceptionally(e);
+            } else {
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 非 2xx 响应，保留状态码供重试判断
+     */
+    private static class HttpStatusException extends IOException {
+        private final int code;
+
+        HttpStatusException(Response response, String errorBody) {
+            super("Unexpected response code: " + response + ", body: " + errorBody);
+            this.code = response.code();
+        }
+
+        int getCode() {
+            return code;
+        }
+    }
+
+    /**
+     * 把一次调用的用量记入请求账本，服务端未返回用量时按本地 tokenizer 估算；返回调用耗时（毫秒）
+     */
+    private long recordUsage(AgentContext context, String role, int step, UsageLedger.Tokens tokens,
+                             List<Map<String, Object>> formattedMessages, String output, long startTime) {
+        long duration = System.currentTimeMillis() - startTime;
+        try {
+            if (!tokens.isReported()) {
+                tokens.setPrompt(tokenCounter.countListMessageTokens(formattedMessages));
+                tokens.setCompletion(tokenCounter.countText(output));
+                tokens.setEstimated(true);
+            }
+            totalInputTokens += (int) tokens.getPrompt();
+            if (Objects.nonNull(context) && Objects.nonNull(context.getUsageLedger())) {
+                SpringContextHolder.getApplicationContext().getBean(UsageLedger.class).recordLlm(context.getUsageLedger(),
+                        Objects.toString(role, "other"), step, model, tokens, duration);
+            }
+        } catch (Exception e) {
+            log.warn("{} record llm usage failed", Objects.nonNull(context) ? context.getRequestId() : "", e);
         }
-        return matches;
+        return duration;
     }
 
     /**
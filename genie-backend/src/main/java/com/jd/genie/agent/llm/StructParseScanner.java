@@ -0,0 +1,160 @@
+package com.jd.genie.agent.llm;
+
+import com.jd.genie.agent.util.IncrementalJsonRepair;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * struct_parse 模式的流式输出扫描器
+ * 逐字符识别 ```json 代码块的开始与结束（每个增量 O(增量长度)，不回扫已接收内容）：
+ * 第一个 ```json 之前是回复正文，之后的内容不再输出；代码块内容交给 IncrementalJsonRepair 跟踪，
+ * 只有在 JSON 字符串之外出现的 ``` 才结束代码块。输出被截断时未闭合的代码块在 finish 时补全。
+ */
+public class StructParseScanner {
+    private static final String OPEN = "```json";
+    private static final int[] OPEN_FAILURE = failure(OPEN);
+    private static final int CLOSE_TICKS = 3;
+
+    private final List<String> blocks = new ArrayList<>();
+    private final StringBuilder held = new StringBuilder();
+    private long position;
+    private long textEnd = -1;
+    private int openMatched;
+
+    private IncrementalJsonRepair body;
+    private int closeTicks;
+
+    /**
+     * 一次性扫描完整输出
+     */
+    public static StructParseScanner scan(String content) {
+        StructParseScanner scanner = new StructParseScanner();
+        if (content != null) {
+            scanner.feed(content);
+        }
+        scanner.finish();
+        return scanner;
+    }
+
+    /**
+     * 接收一个增量，返回其中可以作为正文输出的部分（可能是 ```json 开头的字符会暂存到确认不匹配为止）
+     */
+    public String feed(String delta) {
+        StringBuilder visible = new StringBuilder();
+        for (int i = 0; i < delta.length(); i++) {
+            feed(delta.charAt(i), visible);
+        }
+        return visible.toString();
+    }
+
+    /**
+     * 流结束：补全未闭合的代码块，返回尚在暂存中的正文
+     */
+    public String finish() {
+        if (body != null) {
+            if (closeTicks > 0) {
+                body.append("`".repeat(closeTicks));
+                closeTicks = 0;
+            }
+            addBlock();
+        }
+        String rest = textEnd < 0 ? held.toString() : "";
+        held.setLength(0);
+        openMatched = 0;
+        return rest;
+    }
+
+    /**
+     * 是否已经出现过 ```json（之后的内容不再作为正文输出）
+     */
+    public boolean isFenceOpened() {
+        return textEnd >= 0;
+    }
+
+    /**
+     * 正文长度：第一个 ```json 之前的字符数，未出现时为 -1
+     */
+    public int getTextEnd() {
+        return (int) textEnd;
+    }
+
+    /**
+     * 已结束的代码块（修复后的 JSON）
+     */
+    public List<String> getBlocks() {
+        return blocks;
+    }
+
+    private void feed(char c, StringBuilder visible) {
+        position++;
+        if (body != null) {
+            feedBody(c);
+            return;
+        }
+        int matched = openMatched;
+        while (matched > 0 && OPEN.charAt(matched) != c) {
+            matched = OPEN_FAILURE[matched - 1];
+        }
+        if (OPEN.charAt(matched) == c) {
+            matched++;
+        }
+        held.append(c);
+        if (matched == OPEN.length()) {
+            if (textEnd < 0) {
+                textEnd = position - OPEN.length();
+            }
+            held.setLength(0);
+            openMatched = 0;
+            body = new IncrementalJsonRepair();
+            return;
+        }
+        openMatched = matched;
+        // 暂存区只保留可能构成 ```json 的后缀
+        int release = held.length() - matched;
+        if (release > 0) {
+            if (textEnd < 0) {
+                visible.append(held, 0, release);
+            }
+            held.delete(0, release);
+        }
+    }
+
+    private void feedBody(char c) {
+        if (c == '`' && !body.inString()) {
+            if (++closeTicks == CLOSE_TICKS) {
+                closeTicks = 0;
+                addBlock();
+            }
+            return;
+        }
+        if (closeTicks > 0) {
+            body.append("`".repeat(closeTicks));
+            closeTicks = 0;
+        }
+        body.append(c);
+    }
+
+    private void addBlock() {
+        String json = body.repaired().trim();
+        if (!json.isEmpty()) {
+            blocks.add(json);
+        }
+        body = null;
+    }
+
+    private static int[] failure(String pattern) {
+        int[] failure = new int[pattern.length()];
+        int k = 0;
+        for (int i = 1; i < pattern.length(); i++) {
+            while (k > 0 && pattern.charAt(i) != pattern.charAt(k)) {
+                k = failure[k - 1];
+            }
+            if (pattern.charAt(i) == pattern.charAt(k)) {
+                k++;
+            }
+            failure[i] = k;
+        }
+        return failure;
+    }
+}
@@ -0,0 +1,423 @@
+package com.jd.genie.agent.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.jd.genie.config.GenieConfig;
+import jakarta.annotation.PostConstruct;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * token 与费用账本：每个请求一本账，按智能体角色与步骤记录 LLM 调用的 prompt/completion token、LLM 耗时与工具耗时，
+ * 费用按模型单价（每千 token）计算；同时按用户（erp）按小时分桶累计用量，统计窗口为当前小时及之前 N-1 小时（滚动）。
+ * 请求或用户超出预算时 BaseAgent 在下一步开始前结束运行并进入总结
+ */
+@Slf4j
+@Component
+public class UsageLedger {
+    private static final String DEFAULT_PRICE = "default";
+    private static final int MAX_ENTRIES = 500;
+    private static final long PRUNE_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+
+    @Autowired
+    private GenieConfig genieConfig;
+
+    private Map<String, RequestLedger> requests;
+    private final Map<String, UserUsage> users = new HashMap<>();
+    private long lastPrune;
+
+    @PostConstruct
+    public void init() {
+        int maxRequests = Math.max(1, genieConfig.getLedgerMaxRequests());
+        requests = Collections.synchronizedMap(new LinkedHashMap<String, RequestLedger>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RequestLedger> eldest) {
+                return size() > maxRequests;
+            }
+        });
+    }
+
+    /**
+     * 为请求创建账本（同 requestId 重新执行时替换旧账本）
+     */
+    public RequestLedger open(String requestId, String user) {
+        RequestLedger ledger = new RequestLedger(requestId, StringUtils.defaultIfBlank(user, ""));
+        requests.put(requestId, ledger);
+        return ledger;
+    }
+
+    /**
+     * 记录一次 LLM 调用
+     */
+    public void recordLlm(RequestLedger ledger, String role, int step, String model, Tokens tokens, long ms) {
+        double cost = cost(model, tokens);
+        ledger.add(new Entry("llm", role, step, model, tokens.getPrompt(), tokens.getCompletion(),
+                tokens.isEstimated(), ms, cost));
+        if (!ledger.getUser().isEmpty()) {
+            synchronized (users) {
+                int windowHours = windowHours();
+                users.computeIfAbsent(ledger.getUser(), k -> new UserUsage())
+                        .add(tokens.getPrompt() + tokens.getCompletion(), cost, windowHours);
+                // 定期清理窗口内已无用量的用户，避免只在查看 stats 时才回收
+                long now = System.currentTimeMillis();
+                if (now - lastPrune >= PRUNE_INTERVAL_MS) {
+                    lastPrune = now;
+                    users.values().removeIf(usage -> usage.prune(windowHours).isEmpty());
+                }
+            }
+        }
+    }
+
+    /**
+     * 记录一次工具调用耗时
+     */
+    public void recordTool(RequestLedger ledger, String role, int step, String tool, long ms) {
+        ledger.add(new Entry("tool", role, step, tool, 0, 0, false, ms, 0));
+    }
+
+    /**
+     * 检查请求与用户预算，超出时返回原因（记录在账本上），否则返回 null
+     */
+    public String exceeded(RequestLedger ledger) {
+        String reason = null;
+        Totals total = ledger.totals();
+        long maxTokens = genieConfig.getLedgerRequestMaxTokens();
+        double maxCost = genieConfig.getLedgerRequestMaxCost();
+        if (maxTokens > 0 && total.tokens() >= maxTokens) {
+            reason = "本次请求已使用 " + total.tokens() + " token，达到预算 " + maxTokens;
+        } else if (maxCost > 0 && total.getCost() >= maxCost) {
+            reason = "本次请求费用 " + round(total.getCost()) + "，达到预算 " + maxCost;
+        } else if (!ledger.getUser().isEmpty()) {
+            long userMaxTokens = genieConfig.getLedgerUserMaxTokens();
+            double userMaxCost = genieConfig.getLedgerUserMaxCost();
+            long userTokens = 0;
+            double userCost = 0;
+            synchronized (users) {
+                UserUsage usage = users.get(ledger.getUser());
+                if (Objects.nonNull(usage)) {
+                    usage.prune(windowHours());
+                    userTokens = usage.tokens;
+                    userCost = usage.cost;
+                }
+            }
+            if (userMaxTokens > 0 && userTokens >= userMaxTokens) {
+                reason = "用户 " + ledger.getUser() + " " + genieConfig.getLedgerUserWindowHours() + " 小时内已使用 "
+                        + userTokens + " token，达到预算 " + userMaxTokens;
+            } else if (userMaxCost > 0 && userCost >= userMaxCost) {
+                reason = "用户 " + ledger.getUser() + " " + genieConfig.getLedgerUserWindowHours() + " 小时内费用 "
+                        + round(userCost) + "，达到预算 " + userMaxCost;
+            }
+        }
+        if (Objects.nonNull(reason) && Objects.isNull(ledger.exceeded)) {
+            ledger.exceeded = reason;
+            log.warn("{} budget exceeded: {}", ledger.getRequestId(), reason);
+        }
+        return reason;
+    }
+
+    /**
+     * 单个请求的账本明细，不存在返回 null
+     */
+    public Map<String, Object> detail(String requestId) {
+        RequestLedger ledger = requests.get(requestId);
+        return Objects.isNull(ledger) ? null : ledger.detail();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Map<String, Object> budget = new LinkedHashMap<>();
+        budget.put("requestMaxTokens", genieConfig.getLedgerRequestMaxTokens());
+        budget.put("requestMaxCost", genieConfig.getLedgerRequestMaxCost());
+        budget.put("userMaxTokens", genieConfig.getLedgerUserMaxTokens());
+        budget.put("userMaxCost", genieConfig.getLedgerUserMaxCost());
+        budget.put("userWindowHours", genieConfig.getLedgerUserWindowHours());
+        stats.put("budget", budget);
+        List<Map<String, Object>> recent = new ArrayList<>();
+        synchronized (requests) {
+            for (RequestLedger ledger : requests.values()) {
+                recent.add(ledger.summary());
+            }
+        }
+        Collections.reverse(recent);
+        stats.put("requests", recent);
+        Map<String, Object> userStats = new LinkedHashMap<>();
+        synchronized (users) {
+            int windowHours = windowHours();
+            lastPrune = System.currentTimeMillis();
+            users.values().removeIf(usage -> usage.prune(windowHours).isEmpty());
+            for (Map.Entry<String, UserUsage> entry : users.entrySet()) {
+                Map<String, Object> usage = new LinkedHashMap<>();
+                usage.put("tokens", entry.getValue().tokens);
+                usage.put("cost", round(entry.getValue().cost));
+                usage.put("firstBucket", entry.getValue().firstBucketTime());
+                userStats.put(entry.getKey(), usage);
+            }
+        }
+        stats.put("users", userStats);
+        return stats;
+    }
+
+    /**
+     * 从响应或流式数据块中读取 token 用量：OpenAI 的 usage.prompt_tokens/completion_tokens，
+     * Claude 的 message.usage.input_tokens（message_start）与 usage.output_tokens（message_delta）
+     */
+    public static void readUsage(JsonNode node, Tokens tokens) {
+        if (Objects.isNull(node)) {
+            return;
+        }
+        for (JsonNode usage : new JsonNode[]{node.get("usage"), node.path("message").get("usage")}) {
+            if (Objects.isNull(usage) || !usage.isObject()) {
+                continue;
+            }
+            long prompt = usage.has("prompt_tokens") ? usage.get("prompt_tokens").asLong() : usage.path("input_tokens").asLong();
+            long completion = usage.has("completion_tokens") ? usage.get("completion_tokens").asLong() : usage.path("output_tokens").asLong();
+            // 流式数据块中的用量是累计值
+            tokens.prompt = Math.max(tokens.prompt, prompt);
+            tokens.completion = Math.max(tokens.completion, completion);
+            tokens.reported = tokens.reported || prompt > 0 || completion > 0;
+        }
+    }
+
+    private double cost(String model, Tokens tokens) {
+        Map<String, Map<String, Double>> prices = genieConfig.getLedgerPrices();
+        Map<String, Double> price = prices.getOrDefault(model, prices.get(DEFAULT_PRICE));
+        if (Objects.isNull(price)) {
+            return 0;
+        }
+        return (tokens.getPrompt() * price.getOrDefault("input", 0d)
+                + tokens.getCompletion() * price.getOrDefault("output", 0d)) / 1000;
+    }
+
+    private int windowHours() {
+        return Math.max(1, genieConfig.getLedgerUserWindowHours());
+    }
+
+    private static double round(double cost) {
+        return Math.round(cost * 1_000_000) / 1_000_000d;
+    }
+
+    /**
+     * 一次 LLM 调用的 token 用量；服务端未返回用量时按本地估算（estimated）
+     */
+    @Data
+    public static class Tokens {
+        private long prompt;
+        private long completion;
+        private boolean reported;
+        private boolean estimated;
+    }
+
+    /**
+     * 账本的一条记录
+     */
+    @Data
+    public static class Entry {
+        private final String kind;
+        private final String role;
+        private final int step;
+        private final String name;
+        private final long promptTokens;
+        private final long completionTokens;
+        private final boolean estimated;
+        private final long ms;
+        private final double cost;
+        private final long time = System.currentTimeMillis();
+    }
+
+    /**
+     * 合计
+     */
+    @Data
+    public static class Totals {
+        private int llmCalls;
+        private int estimatedCalls;
+        private long promptTokens;
+        private long completionTokens;
+        private long llmMs;
+        private int toolCalls;
+        private long toolMs;
+        private double cost;
+
+        public long tokens() {
+            return promptTokens + completionTokens;
+        }
+
+        void add(Entry entry) {
+            if ("llm".equals(entry.getKind())) {
+                llmCalls++;
+                estimatedCalls += entry.isEstimated() ? 1 : 0;
+                promptTokens += entry.getPromptTokens();
+                completionTokens += entry.getCompletionTokens();
+                llmMs += entry.getMs();
+                cost += entry.getCost();
+            } else {
+                toolCalls++;
+                toolMs += entry.getMs();
+            }
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("llmCalls", llmCalls);
+            map.put("promptTokens", promptTokens);
+            map.put("completionTokens", completionTokens);
+            map.put("totalTokens", tokens());
+            map.put("estimatedCalls", estimatedCalls);
+            map.put("llmMs", llmMs);
+            map.put("toolCalls", toolCalls);
+            map.put("toolMs", toolMs);
+            map.put("cost", round(cost));
+            return map;
+        }
+    }
+
+    /**
+     * 单个请求的账本，可由多个执行线程并发记录
+     */
+    public static class RequestLedger {
+        private final String requestId;
+        private final String user;
+        private final long startTime = System.currentTimeMillis();
+        private final Totals total = new Totals();
+        private final Map<String, Totals> roles = new LinkedHashMap<>();
+        private final List<Entry> entries = new ArrayList<>();
+        private int droppedEntries;
+        private volatile String exceeded;
+
+        RequestLedger(String requestId, String user) {
+            this.requestId = requestId;
+            this.user = user;
+        }
+
+        public String getRequestId() {
+            return requestId;
+        }
+
+        public String getUser() {
+            return user;
+        }
+
+        /**
+         * 超出预算的原因，未超出为 null
+         */
+        public String getExceeded() {
+            return exceeded;
+        }
+
+        synchronized void add(Entry entry) {
+            total.add(entry);
+            roles.computeIfAbsent(entry.getRole(), k -> new Totals()).add(entry);
+            if (entries.size() < MAX_ENTRIES) {
+                entries.add(entry);
+            } else {
+                droppedEntries++;
+            }
+        }
+
+        synchronized Totals totals() {
+            Totals copy = new Totals();
+            copy.setPromptTokens(total.getPromptTokens());
+            copy.setCompletionTokens(total.getCompletionTokens());
+            copy.setCost(total.getCost());
+            return copy;
+        }
+
+        /**
+         * 合计与按角色的小计，随最终 result 事件发送
+         */
+        public synchronized Map<String, Object> summary() {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("requestId", requestId);
+            summary.put("user", user);
+            summary.put("startTime", startTime);
+            summary.put("wallMs", System.currentTimeMillis() - startTime);
+            summary.putAll(total.toMap());
+            Map<String, Object> byRole = new LinkedHashMap<>();
+            roles.forEach((role, totals) -> byRole.put(role, totals.toMap()));
+            summary.put("roles", byRole);
+            if (Objects.nonNull(exceeded)) {
+                summary.put("budgetExceeded", exceeded);
+            }
+            return summary;
+        }
+
+        synchronized Map<String, Object> detail() {
+            Map<String, Object> detail = summary();
+            detail.put("entries", new ArrayList<>(entries));
+            detail.put("droppedEntries", droppedEntries);
+            return detail;
+        }
+    }
+
+    /**
+     * 用户在滚动窗口内的用量：按小时分桶，tokens/cost 为窗口内各桶之和（仅在 users 锁内访问）
+     */
+    private static class UserUsage {
+        private final Deque<Bucket> buckets = new ArrayDeque<>();
+        private long tokens;
+        private double cost;
+
+        /**
+         * 移出窗口外（早于当前小时之前 windowHours-1 小时）的桶
+         */
+        UserUsage prune(int windowHours) {
+            long oldest = currentHour() - windowHours + 1;
+            while (!buckets.isEmpty() && buckets.peekFirst().hour < oldest) {
+                Bucket bucket = buckets.pollFirst();
+                tokens -= bucket.tokens;
+                cost -= bucket.cost;
+            }
+            if (buckets.isEmpty()) {
+                tokens = 0;
+                cost = 0;
+            }
+            return this;
+        }
+
+        void add(long tokens, double cost, int windowHours) {
+            prune(windowHours);
+            long hour = currentHour();
+            if (buckets.isEmpty() || buckets.peekLast().hour != hour) {
+                buckets.addLast(new Bucket(hour));
+            }
+            Bucket bucket = buckets.peekLast();
+            bucket.tokens += tokens;
+            bucket.cost += cost;
+            this.tokens += tokens;
+            this.cost += cost;
+        }
+
+        boolean isEmpty() {
+            return buckets.isEmpty();
+        }
+
+        /**
+         * 窗口内最早一个桶的起始时间，无用量时为 0
+         */
+        long firstBucketTime() {
+            return buckets.isEmpty() ? 0 : TimeUnit.HOURS.toMillis(buckets.peekFirst().hour);
+        }
+
+        private static long currentHour() {
+            return TimeUnit.MILLISECONDS.toHours(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * 一个小时内的用量
+     */
+    private static class Bucket {
+        private final long hour;
+        private long tokens;
+        private double cost;
+
+        Bucket(long hour) {
+            this.hour = hour;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.jd.genie.agent.printer;
+
+import com.alibaba.fastjson.JSON;
+import com.jd.genie.agent.enums.AgentType;
+import com.jd.genie.agent.util.StringUtil;
+import com.jd.genie.model.req.AgentRequest;
+import com.jd.genie.model.response.AgentResponse;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.BeanUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 面向客户端连接的 Printer 基类
+ * 负责把智能体消息组装为 AgentResponse，具体传输（SSE、WebSocket）由子类实现 emit
+ */
+@Slf4j
+@Setter
+public abstract class BaseAgentPrinter implements Printer {
+    protected AgentRequest request;
+    protected Integer agentType;
+
+    protected BaseAgentPrinter(AgentRequest request, Integer agentType) {
+        this.request = request;
+        this.agentType = agentType;
+    }
+
+    /**
+     * 发送组装好的消息，实现方不应阻塞生产线程
+     */
+    protected abstract void emit(AgentResponse response);
+
+    @Override
+    public void send(String messageId, String messageType, Object message, String digitalEmployee, Boolean isFinal) {
+        try {
+            if (Objects.isNull(messageId)) {
+                messageId = StringUtil.getUUID();
+            }
+            log.info("{} sse send {} {} {}", request.getRequestId(), messageType, message, digitalEmployee);
+            emit(buildResponse(messageId, messageType, message, digitalEmployee, isFinal));
+        } catch (Exception e) {
+            log.error("sse send error ", e);
+        }
+    }
+
+    protected AgentResponse buildResponse(String messageId, String messageType, Object message, String digitalEmployee, Boolean isFinal) {
+        boolean finish = "result".equals(messageType);
+        Map<String, Object> resultMap = new HashMap<>();
+        resultMap.put("agentType", agentType);
+        AgentResponse response = AgentResponse.builder()
+                .requestId(request.getRequestId())
+                .messageId(messageId)
+                .messageType(messageType)
+                .messageTime(String.valueOf(System.currentTimeMillis()))
+                .resultMap(resultMap)
+                .finish(finish)
+                .isFinal(isFinal)
+                .build();
+        if (!StringUtils.isEmpty(digitalEmployee)) {
+            response.setDigitalEmployee(digitalEmployee);
+        }
+        switch (messageType) {
+            case "tool_thought":
+                response.setToolThought((String) message);
+                break;
+            case "task":
+                response.setTask(((String) message).replaceAll("^执行顺序(\\d+)\\.\\s?", ""));
+                break;
+            case "task_summary":
+                if (message instanceof Map) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> taskSummary = (Map<String, Object>) message;
+                    Object summary = taskSummary.get("taskSummary");
+                    response.setResultMap(taskSummary);
+                    response.setTaskSummary(summary != null ? summary.toString() : null);
+                } else {
+                    log.error("ssePrinter task_summary format is illegal");
+                }
+                break;
+            case "plan_thought":
+                response.setPlanThought((String) message);
+                break;
+            case "plan":
+                AgentResponse.Plan plan = new AgentResponse.Plan();
+                BeanUtils.copyProperties(message, plan);
+                response.setPlan(AgentResponse.formatSteps(plan));
+                break;
+            case "tool_result":
+                response.setToolResult((AgentResponse.ToolResult) message);
+                break;
+            case "browser":
+            case "code":
+            case "html":
+            case "markdown":
+            case "ppt":
+            case "file":
+            case "knowledge":
+            case "deep_search":
+                response.setResultMap(JSON.parseObject(JSON.toJSONString(message)));
+                response.getResultMap().put("agentType", agentType);
+                break;
+            case "agent_stream":
+                response.setResult((String) message);
+                break;
+            case "result":
+                if (message instanceof String) {
+                    response.setResult((String) message);
+                } else if (message instanceof Map) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> taskResult = (Map<String, Object>) message;
+                    Object summary = taskResult.get("taskSummary");
+                    Object fileList = taskResult.get("fileList");
+                    log.info("{} result消息处理 - taskSummary: {}, fileList: {}", request.getRequestId(), summary, fileList);
+                    if (fileList instanceof List) {
+                        log.info("{} fileList是List类型，大小: {}", request.getRequestId(), ((List<?>) fileList).size());
+                    }
+                    response.setResultMap(taskResult);
+                    response.setResult(summary != null ? summary.toString() : null);
+                } else {
+                    Map<String, Object> taskResult = JSON.parseObject(JSON.toJSONString(message));
+                    response.setResultMap(taskResult);
+                    response.setResult(taskResult.get("taskSummary").toString());
+                }
+                response.getResultMap().put("agentType", agentType);
+                break;
+            default:
+                break;
+        }
+        return response;
+    }
+
+    @Override
+    public void send(String messageType, Object message, String digitalEmployee) {
+        send(null, messageType, message, digitalEmployee, true);
+    }
+
+    @Override
+    public void send(String messageType, Object message) {
+        send(null, messageType, message, null, true);
+    }
+
+    @Override
+    public void send(String messageId, String messageType, Object message, Boolean isFinal) {
+        send(messageId, messageType, message, null, isFinal);
+    }
+
+    @Override
+    public void updateAgentType(AgentType agentType) {
+        this.agentType = agentType.getValue();
+    }
+}
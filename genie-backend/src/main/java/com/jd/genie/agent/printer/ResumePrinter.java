@@ -0,0 +1,55 @@
+package com.jd.genie.agent.printer;
+
+import com.jd.genie.handler.AgentResponseHandler;
+import com.jd.genie.model.multi.EventResult;
+import com.jd.genie.model.req.AgentRequest;
+import com.jd.genie.model.response.AgentResponse;
+import com.jd.genie.model.response.GptProcessResult;
+import com.jd.genie.util.SseEventStream;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 服务重启后恢复运行使用的 Printer
+ * 原 /AutoAgent 连接与增量转发连接已随进程断开，事件直接发布到由运行日志恢复的两个事件流：
+ * 智能体事件流（序号延续）与增量事件流（由恢复的 EventResult 继续组装），等待客户端重连
+ */
+@Slf4j
+public class ResumePrinter extends BaseAgentPrinter {
+    private final SseEventStream agentStream;
+    private final SseEventStream incrStream;
+    private final AgentResponseHandler handler;
+    private final EventResult eventResult;
+    private final List<AgentResponse> agentRespList = new ArrayList<>();
+
+    public ResumePrinter(AgentRequest request, SseEventStream agentStream, SseEventStream incrStream,
+                         AgentResponseHandler handler, EventResult eventResult) {
+        super(request, request.getAgentType());
+        this.agentStream = agentStream;
+        this.incrStream = incrStream;
+        this.handler = handler;
+        this.eventResult = eventResult;
+    }
+
+    @Override
+    protected void emit(AgentResponse response) {
+        agentStream.publish(response);
+        GptProcessResult result = handler.handle(request, response, agentRespList, eventResult);
+        if (Objects.isNull(result)) {
+            return;
+        }
+        incrStream.publish(result);
+        if (result.isFinished()) {
+            incrStream.complete();
+        }
+    }
+
+    @Override
+    public void close() {
+        agentStream.complete();
+        incrStream.complete();
+    }
+}
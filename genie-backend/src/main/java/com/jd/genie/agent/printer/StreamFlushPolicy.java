@@ -0,0 +1,189 @@
+package com.jd.genie.agent.printer;
+
+import com.jd.genie.agent.util.SpringContextHolder;
+import com.jd.genie.config.GenieConfig;
+import lombok.Data;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 流式增量刷新策略（LLM 流、deep_search、report 共用）
+ * 累积字节数达到 maxBytes，或距上次刷新超过滞留时长时刷新一帧；首个增量立即刷新。
+ * 滞留时长随实测 token 速率自适应：平均增量间隔小于 minIntervalMs 时 hold = clamp(平均间隔 × batch, minIntervalMs, maxIntervalMs)，
+ * 模型越快每帧合并的增量越多；平均间隔不小于 minIntervalMs 时逐个增量刷新，慢模型不会被额外压住文本。
+ * 按 messageType 配置：autobots.autoagent.stream_flush，未配置的类型使用 default。
+ * 带输出回调的缓冲在有未刷新内容时登记截止时间，模型停顿时由定时线程在距上次刷新 maxIntervalMs 后刷新，
+ * 不必等到下一个增量或流结束。
+ */
+@Data
+public class StreamFlushPolicy {
+    public static final String DEFAULT = "default";
+
+    private static final ScheduledExecutorService FLUSH_TICKER = Executors.newSingleThreadScheduledExecutor(
+            new BasicThreadFactory.Builder().namingPattern("stream-flush-%d").daemon(true).build());
+
+    private long minIntervalMs = 50;
+    private long maxIntervalMs = 300;
+    private int maxBytes = 1024;
+    private int batch = 4;
+
+    /**
+     * 获取 messageType 对应的刷新策略
+     */
+    public static StreamFlushPolicy of(String messageType) {
+        GenieConfig genieConfig = SpringContextHolder.getApplicationContext().getBean(GenieConfig.class);
+        Map<String, StreamFlushPolicy> policies = genieConfig.getStreamFlushPolicies();
+        StreamFlushPolicy policy = policies.get(messageType);
+        if (Objects.isNull(policy)) {
+            policy = policies.get(DEFAULT);
+        }
+        return Objects.nonNull(policy) ? policy : new StreamFlushPolicy();
+    }
+
+    public Buffer newBuffer() {
+        return new Buffer(null, 1);
+    }
+
+    /**
+     * 带输出回调的缓冲：通过 offer 追加，到期内容由 sink 输出（读取线程或定时线程，输出顺序与追加顺序一致）
+     */
+    public Buffer newBuffer(Consumer<String> sink) {
+        return new Buffer(sink, 1);
+    }
+
+    /**
+     * @param firstDeltas 首次刷新前至少累积的增量数
+     */
+    public Buffer newBuffer(Consumer<String> sink, int firstDeltas) {
+        return new Buffer(sink, firstDeltas);
+    }
+
+    /**
+     * 单条流式消息的增量缓冲，由读取流的线程追加；带输出回调时定时线程也会刷新，方法均加锁
+     */
+    public class Buffer {
+        private final StringBuilder pending = new StringBuilder();
+        private final Consumer<String> sink;
+        private final int firstDeltas;
+        private int pendingBytes;
+        private long lastFlushTime;
+        private long lastAppendTime;
+        private double avgGapMs = -1;
+        private int flushCount;
+        private int appendCount;
+        private ScheduledFuture<?> deadline;
+        private boolean closed;
+
+        private Buffer(Consumer<String> sink, int firstDeltas) {
+            this.sink = sink;
+            this.firstDeltas = Math.max(1, firstDeltas);
+        }
+
+        /**
+         * 追加增量，返回是否应立即刷新
+         */
+        public synchronized boolean append(String delta) {
+            if (Objects.isNull(delta) || delta.isEmpty()) {
+                return false;
+            }
+            appendCount++;
+            long now = System.currentTimeMillis();
+            if (lastAppendTime > 0) {
+                long gap = now - lastAppendTime;
+                avgGapMs = avgGapMs < 0 ? gap : avgGapMs * 0.8 + gap * 0.2;
+            }
+            lastAppendTime = now;
+            pending.append(delta);
+            pendingBytes += utf8Length(delta);
+            return shouldFlush(now);
+        }
+
+        /**
+         * 追加增量，应刷新时立即输出，否则登记截止时间（需要输出回调）
+         */
+        public synchronized void offer(String delta) {
+            if (closed) {
+                return;
+            }
+            if (append(delta)) {
+                sink.accept(drain());
+            } else if (flushCount > 0 && pending.length() > 0 && Objects.isNull(deadline)) {
+                // 首次刷新前由 firstDeltas 控制，之后未刷新内容最迟在距上次刷新 maxIntervalMs 时输出
+                long delay = Math.max(1, lastFlushTime + maxIntervalMs - System.currentTimeMillis());
+                deadline = FLUSH_TICKER.schedule(this::onDeadline, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /**
+         * 流结束：取消截止时间并取出剩余内容，之后不再输出
+         */
+        public synchronized String close() {
+            closed = true;
+            if (Objects.nonNull(deadline)) {
+                deadline.cancel(false);
+                deadline = null;
+            }
+            return drain();
+        }
+
+        private synchronized void onDeadline() {
+            deadline = null;
+            if (!closed && pending.length() > 0) {
+                try {
+                    sink.accept(drain());
+                } catch (Exception e) {
+                    // 输出失败不影响读取线程，后续增量照常追加
+                }
+            }
+        }
+
+        private boolean shouldFlush(long now) {
+            if (flushCount == 0 && appendCount < firstDeltas) {
+                return false;
+            }
+            if (flushCount == 0 || pendingBytes >= maxBytes || avgGapMs >= minIntervalMs) {
+                return true;
+            }
+            long hold = avgGapMs < 0 ? minIntervalMs
+                    : Math.min(maxIntervalMs, Math.max(minIntervalMs, (long) (avgGapMs * batch)));
+            return now - lastFlushTime >= hold;
+        }
+
+        /**
+         * 取出待刷新内容并重置
+         */
+        public synchronized String drain() {
+            String text = pending.toString();
+            pending.setLength(0);
+            pendingBytes = 0;
+            lastFlushTime = System.currentTimeMillis();
+            flushCount++;
+            return text;
+        }
+    }
+
+    private static int utf8Length(String text) {
+        int bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,31 @@
+package com.jd.genie.agent.printer;
+
+import com.jd.genie.model.req.AgentRequest;
+import com.jd.genie.model.response.AgentResponse;
+import com.jd.genie.util.AsyncWsWriter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * WebSocket 会话 Printer，消息写入连接上对应 channel
+ */
+@Slf4j
+public class WebSocketPrinter extends BaseAgentPrinter {
+    private final AsyncWsWriter writer;
+    private final int channel;
+
+    public WebSocketPrinter(AsyncWsWriter writer, int channel, AgentRequest request, Integer agentType) {
+        super(request, agentType);
+        this.writer = writer;
+        this.channel = channel;
+    }
+
+    @Override
+    protected void emit(AgentResponse response) {
+        writer.send(channel, response);
+    }
+
+    @Override
+    public void close() {
+        writer.end(channel);
+    }
+}
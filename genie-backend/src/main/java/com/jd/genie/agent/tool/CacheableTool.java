@@ -0,0 +1,29 @@
+package com.jd.genie.agent.tool;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+
+/**
+ * 声明只读/幂等调用的工具，其结果可由会话内的 ToolResultCache 复用
+ */
+public interface CacheableTool {
+    /**
+     * 本次调用是否只读/幂等（参数为绑定后的参数对象）
+     */
+    boolean isCacheable(Object args);
+
+    /**
+     * 结果依赖的文件名，会话写入这些文件时结果失效
+     */
+    default Collection<String> dependentFiles(Object args) {
+        return Collections.emptyList();
+    }
+
+    /**
+     * 结果是否可以保留（失败结果不保留）
+     */
+    default boolean isCacheableResult(Object result) {
+        return Objects.nonNull(result);
+    }
+}
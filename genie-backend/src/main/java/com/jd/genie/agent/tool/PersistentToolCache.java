@@ -0,0 +1,271 @@
+package com.jd.genie.agent.tool;
+
+import com.alibaba.fastjson.JSON;
+import com.jd.genie.agent.util.StringUtil;
+import com.jd.genie.config.GenieConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 跨会话的工具结果缓存（deep_search 回答与只读 MCP 工具结果）
+ * key 为 工具名 + 日期分桶 + 规范化参数，按工具配置 TTL；内存 LRU 在前，
+ * 本地目录（每个 key 一个文件，先写临时文件再原子替换）在后，服务重启后仍可命中。
+ * 过期文件由后台线程定期清理
+ */
+@Slf4j
+@Component
+public class PersistentToolCache {
+    private static final String SUFFIX = ".json";
+    private static final String DEFAULT_TTL = "default";
+
+    @Autowired
+    private GenieConfig genieConfig;
+
+    private Path dir;
+    private ScheduledExecutorService cleaner;
+    private Map<String, Record> memory;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        int memoryEntries = Math.max(1, genieConfig.getToolCachePersistentMemoryEntries());
+        memory = Collections.synchronizedMap(new LinkedHashMap<String, Record>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Record> eldest) {
+                return size() > memoryEntries;
+            }
+        });
+        if (!enabled()) {
+            return;
+        }
+        dir = Paths.get(genieConfig.getToolCachePersistentDir());
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            log.error("tool cache dir {} create failed, only memory tier is used", dir, e);
+            dir = null;
+            return;
+        }
+        cleaner = Executors.newSingleThreadScheduledExecutor(
+                new BasicThreadFactory.Builder().namingPattern("tool-cache-clean-%d").daemon(true).build());
+        cleaner.scheduleWithFixedDelay(this::purge, 0, 10, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (Objects.nonNull(cleaner)) {
+            cleaner.shutdownNow();
+        }
+    }
+
+    public boolean enabled() {
+        return Boolean.TRUE.equals(genieConfig.getToolCacheEnable())
+                && Boolean.TRUE.equals(genieConfig.getToolCachePersistentEnable());
+    }
+
+    /**
+     * 读取缓存结果，未命中或已过期返回 null
+     *
+     * @param tool 工具名
+     * @param args 规范化后的参数
+     */
+    public <T> T get(String tool, String args, Class<T> type) {
+        if (!enabled() || ttl(tool) <= 0) {
+            return null;
+        }
+        String key = key(tool, args);
+        long now = System.currentTimeMillis();
+        Record record = memory.get(key);
+        boolean fromDisk = false;
+        if (Objects.isNull(record)) {
+            record = read(key);
+            fromDisk = Objects.nonNull(record);
+        }
+        if (Objects.isNull(record) || !key.equals(record.getKey())) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (record.getExpireTime() < now) {
+            expired.incrementAndGet();
+            memory.remove(key);
+            return null;
+        }
+        try {
+            T value = JSON.parseObject(record.getValue(), type);
+            if (fromDisk) {
+                memory.put(key, record);
+                diskHits.incrementAndGet();
+            } else {
+                memoryHits.incrementAndGet();
+            }
+            log.info("tool cache {} hit {} ({}), age {}ms", tool, args, fromDisk ? "disk" : "memory", now - record.getCreateTime());
+            return value;
+        } catch (Exception e) {
+            log.warn("tool cache {} record unreadable: {}", tool, e.getMessage());
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * 写入缓存结果（TTL 不大于 0 的工具不缓存）
+     */
+    public void put(String tool, String args, Object value) {
+        long ttl = ttl(tool);
+        if (!enabled() || ttl <= 0 || Objects.isNull(value)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Record record = new Record();
+        record.setTool(tool);
+        record.setKey(key(tool, args));
+        record.setCreateTime(now);
+        record.setExpireTime(now + ttl);
+        record.setValue(value instanceof String ? (String) value : JSON.toJSONString(value));
+        memory.put(record.getKey(), record);
+        write(record);
+        writes.incrementAndGet();
+    }
+
+    /**
+     * 查询规范化：全半角统一、转小写、合并空白（中文两侧的空白去掉）、去掉首尾标点，使同一问题的不同写法落到同一个 key
+     */
+    public static String normalizeQuery(String query) {
+        if (Objects.isNull(query)) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(query, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        normalized = normalized.replaceAll("\\s+", " ").trim();
+        // 中文与相邻字符之间的空白不影响语义
+        normalized = normalized.replaceAll("(?<=\\p{IsHan})\\s+|\\s+(?=\\p{IsHan})", "");
+        return normalized.replaceAll("^[\\p{P}\\s]+|[\\p{P}\\s]+$", "");
+    }
+
+    public long ttl(String tool) {
+        Map<String, Long> ttls = genieConfig.getToolCachePersistentTtl();
+        Long ttl = ttls.get(tool);
+        if (Objects.isNull(ttl)) {
+            ttl = ttls.getOrDefault(DEFAULT_TTL, 0L);
+        }
+        return ttl;
+    }
+
+    public Map<String, Object> stats() {
+        long hits = memoryHits.get() + diskHits.get();
+        long lookups = hits + misses.get() + expired.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enable", enabled());
+        stats.put("dir", Objects.nonNull(dir) ? dir.toAbsolutePath().toString() : null);
+        stats.put("memoryEntries", memory.size());
+        stats.put("memoryHits", memoryHits.get());
+        stats.put("diskHits", diskHits.get());
+        stats.put("misses", misses.get());
+        stats.put("expired", expired.get());
+        stats.put("writes", writes.get());
+        stats.put("hitRate", lookups > 0 ? (double) hits / lookups : 0);
+        stats.put("ttl", genieConfig.getToolCachePersistentTtl());
+        return stats;
+    }
+
+    /**
+     * 日期分桶：同一天的相同查询共用结果，跨天重新执行
+     */
+    private static String key(String tool, String args) {
+        return tool + "|" + LocalDate.now() + "|" + args;
+    }
+
+    private Path path(String key) {
+        return dir.resolve(StringUtil.sha256Hex(key) + SUFFIX);
+    }
+
+    private Record read(String key) {
+        if (Objects.isNull(dir)) {
+            return null;
+        }
+        Path path = path(key);
+        try {
+            if (!Files.exists(path)) {
+                return null;
+            }
+            return JSON.parseObject(new String(Files.readAllBytes(path), StandardCharsets.UTF_8), Record.class);
+        } catch (Exception e) {
+            log.warn("tool cache read {} failed: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    private void write(Record record) {
+        if (Objects.isNull(dir)) {
+            return;
+        }
+        Path path = path(record.getKey());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp." + Thread.currentThread().getId());
+        try {
+            Files.write(tmp, JSON.toJSONString(record).getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            log.warn("tool cache write {} failed: {}", path, e.getMessage());
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+                // 临时文件由下次清理删除
+            }
+        }
+    }
+
+    /**
+     * 删除超过最长 TTL 的文件（记录内的过期时间在读取时再校验）
+     */
+    private void purge() {
+        long maxTtl = genieConfig.getToolCachePersistentTtl().values().stream().mapToLong(Long::longValue).max().orElse(0L);
+        long expireBefore = System.currentTimeMillis() - maxTtl;
+        int removed = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                try {
+                    if (Files.getLastModifiedTime(file).toMillis() < expireBefore) {
+                        Files.deleteIfExists(file);
+                        removed++;
+                    }
+                } catch (IOException e) {
+                    log.warn("tool cache purge {} failed: {}", file, e.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            log.error("tool cache purge failed", e);
+        }
+        if (removed > 0) {
+            log.info("tool cache purged {} expired files", removed);
+        }
+    }
+
+    @Data
+    public static class Record {
+        private String tool;
+        private String key;
+        private long createTime;
+        private long expireTime;
+        private String value;
+    }
+}
@@ -0,0 +1,279 @@
+package com.jd.genie.agent.tool;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeType;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 工具参数绑定器
+ * 每个工具按其参数 schema（toParams）预编译一份校验规则与 Jackson reader，全局缓存；
+ * 参数串解析一次为树，校验后直接从树绑定为参数类型。校验错误汇总为一段说明返回给模型，不向上抛异常
+ */
+@Slf4j
+public final class ToolArgumentBinder<A> {
+    /**
+     * 未声明字段忽略，字段名大小写不敏感（与此前 fastjson 按名称宽松匹配的行为一致）
+     */
+    private static final ObjectMapper MAPPER = JsonMapper.builder()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .configure(MapperFeature.ACCEPT_CASE_INSENSITIVE_PROPERTIES, true)
+            .build();
+    private static final Map<String, ToolArgumentBinder<?>> BINDERS = new ConcurrentHashMap<>();
+
+    private final String toolName;
+    private final ObjectReader reader;
+    private final SchemaCheck schema;
+
+    private ToolArgumentBinder(String toolName, Class<A> type, Map<String, Object> parameters) {
+        this.toolName = toolName;
+        this.reader = MAPPER.readerFor(type);
+        this.schema = SchemaCheck.compile(parameters);
+    }
+
+    /**
+     * 共享的 ObjectMapper（线程安全），解析未声明类型的工具参数时使用
+     */
+    public static ObjectMapper mapper() {
+        return MAPPER;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <A> ToolArgumentBinder<A> of(TypedTool<A> tool) {
+        return (ToolArgumentBinder<A>) BINDERS.computeIfAbsent(tool.getClass().getName() + "#" + tool.getName(),
+                k -> new ToolArgumentBinder<>(tool.getName(), tool.argumentType(),
+                        Objects.requireNonNullElse(tool.toParams(), Collections.emptyMap())));
+    }
+
+    /**
+     * 清空预编译结果（工具参数配置变更后重建）
+     */
+    public static void clear() {
+        BINDERS.clear();
+    }
+
+    /**
+     * 从模型给出的参数串绑定，空串视为 {}
+     */
+    public Binding<A> bind(String arguments) {
+        JsonNode node;
+        try {
+            node = MAPPER.readTree(StringUtils.isBlank(arguments) ? "{}" : arguments);
+        } catch (JsonProcessingException e) {
+            return Binding.error(String.format("工具 %s 参数不是合法的 JSON：%s。请按工具参数定义重新调用。", toolName, e.getOriginalMessage()));
+        }
+        return bind(node);
+    }
+
+    /**
+     * 从已解析的对象（Map 等）绑定
+     */
+    public Binding<A> convert(Object input) {
+        return bind(MAPPER.valueToTree(Objects.requireNonNullElse(input, Collections.emptyMap())));
+    }
+
+    private Binding<A> bind(JsonNode node) {
+        if (Objects.isNull(node) || node.isNull() || node.isMissingNode()) {
+            node = MAPPER.createObjectNode();
+        }
+        List<String> errors = new ArrayList<>();
+        schema.validate("", node, errors);
+        if (!errors.isEmpty()) {
+            return Binding.error(String.format("工具 %s 参数错误：%s。请按工具参数定义重新调用。", toolName, String.join("；", errors)));
+        }
+        try {
+            return Binding.ok(reader.readValue(node));
+        } catch (Exception e) {
+            log.warn("tool {} bind arguments failed: {}", toolName, e.getMessage());
+            return Binding.error(String.format("工具 %s 参数错误：%s。请按工具参数定义重新调用。", toolName, e.getMessage()));
+        }
+    }
+
+    /**
+     * 绑定结果：成功时为参数对象，失败时为返回给模型的错误说明
+     */
+    public static final class Binding<A> {
+        private final A value;
+        private final String error;
+
+        private Binding(A value, String error) {
+            this.value = value;
+            this.error = error;
+        }
+
+        static <A> Binding<A> ok(A value) {
+            return new Binding<>(value, null);
+        }
+
+        static <A> Binding<A> error(String error) {
+            return new Binding<>(null, error);
+        }
+
+        public boolean isOk() {
+            return Objects.isNull(error);
+        }
+
+        public A getValue() {
+            return value;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+
+    /**
+     * 预编译的 JSON Schema 子集校验：type、required、properties、items、enum。
+     * 标量类型按绑定时的宽松转换判断（如 "3" 可作为 integer）
+     */
+    private static final class SchemaCheck {
+        private static final SchemaCheck ANY = new SchemaCheck(Collections.emptySet(), Collections.emptyList(),
+                Collections.emptyMap(), null, Collections.emptySet());
+
+        private final Set<String> types;
+        private final List<String> required;
+        private final Map<String, SchemaCheck> properties;
+        private final SchemaCheck items;
+        private final Set<String> enumValues;
+
+        private SchemaCheck(Set<String> types, List<String> required, Map<String, SchemaCheck> properties,
+                            SchemaCheck items, Set<String> enumValues) {
+            this.types = types;
+            this.required = required;
+            this.properties = properties;
+            this.items = items;
+            this.enumValues = enumValues;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static SchemaCheck compile(Object schema) {
+            if (!(schema instanceof Map)) {
+                return ANY;
+            }
+            Map<String, Object> map = (Map<String, Object>) schema;
+            Set<String> types = new HashSet<>();
+            Object type = map.get("type");
+            if (type instanceof String) {
+                types.add((String) type);
+            } else if (type instanceof Collection) {
+                for (Object t : (Collection<Object>) type) {
+                    types.add(String.valueOf(t));
+                }
+            }
+            List<String> required = new ArrayList<>();
+            if (map.get("required") instanceof Collection) {
+                for (Object name : (Collection<Object>) map.get("required")) {
+                    required.add(String.valueOf(name));
+                }
+            }
+            Map<String, SchemaCheck> properties = new HashMap<>();
+            if (map.get("properties") instanceof Map) {
+                for (Map.Entry<String, Object> entry : ((Map<String, Object>) map.get("properties")).entrySet()) {
+                    properties.put(entry.getKey(), compile(entry.getValue()));
+                }
+            }
+            SchemaCheck items = map.containsKey("items") ? compile(map.get("items")) : null;
+            Set<String> enumValues = new LinkedHashSet<>();
+            if (map.get("enum") instanceof Collection) {
+                for (Object value : (Collection<Object>) map.get("enum")) {
+                    enumValues.add(String.valueOf(value));
+                }
+            }
+            return new SchemaCheck(types, required, properties, items, enumValues);
+        }
+
+        private void validate(String path, JsonNode node, List<String> errors) {
+            if (!types.isEmpty() && !matchesType(node)) {
+                errors.add(String.format("%s应为 %s 类型", label(path), String.join("/", types)));
+                return;
+            }
+            if (!enumValues.isEmpty() && !node.isNull() && !enumValues.contains(node.asText())) {
+                errors.add(String.format("%s取值应为 %s 之一", label(path), String.join("、", enumValues)));
+            }
+            if (node.isObject()) {
+                for (String name : required) {
+                    JsonNode value = field(node, name);
+                    if (Objects.isNull(value) || value.isNull()) {
+                        errors.add("缺少必填参数 " + join(path, name));
+                    }
+                }
+                for (Map.Entry<String, SchemaCheck> entry : properties.entrySet()) {
+                    JsonNode value = field(node, entry.getKey());
+                    if (Objects.nonNull(value) && !value.isNull()) {
+                        entry.getValue().validate(join(path, entry.getKey()), value, errors);
+                    }
+                }
+            } else if (node.isArray() && Objects.nonNull(items)) {
+                for (int i = 0; i < node.size(); i++) {
+                    items.validate(path + "[" + i + "]", node.get(i), errors);
+                }
+            }
+        }
+
+        /**
+         * 按名称取字段，大小写不敏感（与绑定时 ACCEPT_CASE_INSENSITIVE_PROPERTIES 一致）
+         */
+        private static JsonNode field(JsonNode node, String name) {
+            JsonNode value = node.get(name);
+            if (Objects.nonNull(value)) {
+                return value;
+            }
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                if (field.getKey().equalsIgnoreCase(name)) {
+                    return field.getValue();
+                }
+            }
+            return null;
+        }
+
+        private boolean matchesType(JsonNode node) {
+            for (String type : types) {
+                if (matchesType(type, node)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean matchesType(String type, JsonNode node) {
+            JsonNodeType nodeType = node.getNodeType();
+            switch (type) {
+                case "string":
+                    return node.isValueNode();
+                case "integer":
+                    return node.isIntegralNumber() || (node.isTextual() && node.asText().trim().matches("-?\\d+"));
+                case "number":
+                    return node.isNumber() || (node.isTextual() && node.asText().trim().matches("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?"));
+                case "boolean":
+                    return node.isBoolean() || (node.isTextual() && ("true".equals(node.asText()) || "false".equals(node.asText())));
+                case "object":
+                    return nodeType == JsonNodeType.OBJECT;
+                case "array":
+                    return nodeType == JsonNodeType.ARRAY;
+                case "null":
+                    return node.isNull();
+                default:
+                    return true;
+            }
+        }
+
+        private static String label(String path) {
+            return path.isEmpty() ? "参数" : "参数 " + path + " ";
+        }
+
+        private static String join(String path, String name) {
+            return path.isEmpty() ? name : path + "." + name;
+        }
+    }
+}
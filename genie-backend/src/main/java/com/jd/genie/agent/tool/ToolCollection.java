@@ -4,12 +4,13 @@ import com.alibaba.fastjson.JSONObject;
 import com.jd.genie.agent.agent.AgentContext;
 import com.jd.genie.agent.dto.tool.McpToolInfo;
 import com.jd.genie.agent.tool.mcp.McpTool;
+import com.jd.genie.agent.util.SpringContextHolder;
+import com.jd.genie.config.GenieConfig;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 /**
  * 工具集合类 - 管理可用的工具
@@ -30,6 +31,11 @@ public class ToolCollection {
     private String currentTask;
     private JSONObject digitalEmployees;
 
+    /**
+     * MCP 调用入口（无状态，会话由 McpSessionPool 共享），整个集合复用一个实例
+     */
+    private McpTool mcpTool;
+
     public ToolCollection() {
         this.toolMap = new HashMap<>();
         this.mcpToolMap = new HashMap<>();
@@ -61,6 +67,13 @@ public class ToolCollection {
                 .build());
     }
 
+    /**
+     * 添加MCP工具（保留目录中的只读声明）
+     */
+    public void addMcpTool(McpToolInfo toolInfo) {
+        mcpToolMap.put(toolInfo.getName(), toolInfo);
+    }
+
     /**
      * 获取MCP工具
      */
@@ -68,6 +81,27 @@ public class ToolCollection {
         return mcpToolMap.get(name);
     }
 
+    /**
+     * 只含指定工具的集合（用于向模型发送筛选后的工具），上下文与数字员工信息共享
+     */
+    public ToolCollection subset(Set<String> names) {
+        ToolCollection subset = new ToolCollection();
+        subset.setAgentContext(agentContext);
+        subset.setCurrentTask(currentTask);
+        subset.setDigitalEmployees(digitalEmployees);
+        for (Map.Entry<String, BaseTool> entry : toolMap.entrySet()) {
+            if (names.contains(entry.getKey())) {
+                subset.getToolMap().put(entry.getKey(), entry.getValue());
+            }
+        }
+        for (Map.Entry<String, McpToolInfo> entry : mcpToolMap.entrySet()) {
+            if (names.contains(entry.getKey())) {
+                subset.getMcpToolMap().put(entry.getKey(), entry.getValue());
+            }
+        }
+        return subset;
+    }
+
 
     /**
      * 执行工具
@@ -81,14 +115,27 @@ public class ToolCollection {
                 BaseTool tool = getTool(name);
                 log.info("{} 找到工具: {}, 开始执行", 
                     agentContext != null ? agentContext.getRequestId() : "unknown", name);
-                Object result = tool.execute(toolInput);
+                Object result;
+                if (tool instanceof CacheableTool && cacheEnabled() && ((CacheableTool) tool).isCacheable(toolInput)) {
+                    CacheableTool cacheable = (CacheableTool) tool;
+                    result = agentContext.getToolResultCache().execute(name, toolInput, cacheable.dependentFiles(toolInput),
+                            cacheable::isCacheableResult, () -> tool.execute(toolInput));
+                } else {
+                    result = tool.execute(toolInput);
+                }
                 log.info("{} 工具 {} 执行完成，结果: {}", 
                     agentContext != null ? agentContext.getRequestId() : "unknown", name, result);
                 return result;
             } else if (mcpToolMap.containsKey(name)) {
                 McpToolInfo toolInfo = mcpToolMap.get(name);
-                McpTool mcpTool = new McpTool();
-                mcpTool.setAgentContext(agentContext);
+                if (mcpTool == null) {
+                    mcpTool = new McpTool();
+                    mcpTool.setAgentContext(agentContext);
+                }
+                if (cacheEnabled() && isReadOnlyMcpTool(toolInfo)) {
+                    return agentContext.getToolResultCache().execute(name, toolInput, Collections.emptyList(),
+                            McpTool::isSuccess, () -> callReadOnlyMcpTool(toolInfo, toolInput));
+                }
                 return mcpTool.callTool(toolInfo.getMcpServerUrl(), name, toolInput);
             } else {
                 log.error("{} 错误: 未知工具 {}", 
@@ -102,6 +149,46 @@ public class ToolCollection {
         }
     }
 
+    /**
+     * 只读 MCP 工具先查跨会话缓存，成功结果写回；带用户凭据的调用结果因人而异，不进入跨会话缓存
+     */
+    private Object callReadOnlyMcpTool(McpToolInfo toolInfo, Object toolInput) {
+        if (McpTool.hasCredential(toolInput)) {
+            return mcpTool.callTool(toolInfo.getMcpServerUrl(), toolInfo.getName(), toolInput);
+        }
+        PersistentToolCache cache = SpringContextHolder.getApplicationContext().getBean(PersistentToolCache.class);
+        String args;
+        try {
+            args = ToolResultCache.canonicalArgs(toolInput);
+        } catch (Exception e) {
+            return mcpTool.callTool(toolInfo.getMcpServerUrl(), toolInfo.getName(), toolInput);
+        }
+        String cached = cache.get(toolInfo.getName(), args, String.class);
+        if (Objects.nonNull(cached)) {
+            return cached;
+        }
+        String result = mcpTool.callTool(toolInfo.getMcpServerUrl(), toolInfo.getName(), toolInput);
+        if (McpTool.isSuccess(result)) {
+            cache.put(toolInfo.getName(), args, result);
+        }
+        return result;
+    }
+
+    private boolean cacheEnabled() {
+        return agentContext != null
+                && Boolean.TRUE.equals(SpringContextHolder.getApplicationContext().getBean(GenieConfig.class).getToolCacheEnable());
+    }
+
+    private boolean isReadOnlyMcpTool(McpToolInfo toolInfo) {
+        if (Boolean.TRUE.equals(toolInfo.getReadOnly())) {
+            return true;
+        }
+        String readOnly = SpringContextHolder.getApplicationContext().getBean(GenieConfig.class).getToolCacheMcpReadOnly();
+        return StringUtils.isNotBlank(readOnly) && Arrays.stream(readOnly.split(","))
+                .map(String::trim)
+                .anyMatch(toolInfo.getName()::equals);
+    }
+
     /**
      * 设置数字员工
      */
@@ -0,0 +1,155 @@
+package com.jd.genie.agent.tool;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONAware;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * 工具定义（不可变）
+ * 名称、描述与参数 schema 在构建时序列化为 OpenAI / Claude / struct_parse 三种格式的片段，
+ * askTool 每一步直接拼入请求，不再重复调用 getDescription/toParams 或解析 MCP inputSchema
+ */
+public final class ToolDefinition {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String name;
+    private final String description;
+    private final Fragment openAiSchema;
+    private final Fragment claudeSchema;
+    private final String structParsePrompt;
+    /**
+     * 构建来源（MCP 工具为 inputSchema 原文），用于判断是否需要重建
+     */
+    private final String source;
+
+    private ToolDefinition(String name, String description, Map<String, Object> parameters, String source) throws JsonProcessingException {
+        this.name = name;
+        this.description = description;
+        this.source = source;
+
+        Map<String, Object> function = new LinkedHashMap<>();
+        function.put("name", name);
+        function.put("description", description);
+        function.put("parameters", parameters);
+        Map<String, Object> openAi = new LinkedHashMap<>();
+        openAi.put("type", "function");
+        openAi.put("function", function);
+        this.openAiSchema = new Fragment(MAPPER.writeValueAsString(openAi));
+
+        Map<String, Object> withFunctionName = addFunctionNameParam(parameters, name);
+        Map<String, Object> claude = new LinkedHashMap<>();
+        claude.put("name", name);
+        claude.put("description", description);
+        claude.put("input_schema", withFunctionName);
+        this.claudeSchema = new Fragment(MAPPER.writeValueAsString(claude));
+
+        Map<String, Object> struct = new LinkedHashMap<>();
+        struct.put("name", name);
+        struct.put("description", description);
+        struct.put("parameters", withFunctionName);
+        this.structParsePrompt = String.format("- `%s`\n```json %s ```\n", name, JSON.toJSONString(struct));
+    }
+
+    public static ToolDefinition of(String name, String description, Map<String, Object> parameters, String source) throws JsonProcessingException {
+        return new ToolDefinition(name, description, parameters, source);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * {"type":"function","function":{...}}
+     */
+    public Fragment getOpenAiSchema() {
+        return openAiSchema;
+    }
+
+    /**
+     * {"name":..,"description":..,"input_schema":{...}}，参数中附加 function_name
+     */
+    public Fragment getClaudeSchema() {
+        return claudeSchema;
+    }
+
+    /**
+     * struct_parse 模式拼接到系统提示词中的工具说明
+     */
+    public String getStructParsePrompt() {
+        return structParsePrompt;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * 参数中加入必填的 function_name 字段（Claude / struct_parse 格式使用）
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> addFunctionNameParam(Map<String, Object> parameters, String toolName) {
+        Map<String, Object> newParameters = new LinkedHashMap<>(parameters);
+        // require
+        List<Object> newRequired = new ArrayList<>();
+        newRequired.add("function_name");
+        if (Objects.nonNull(parameters.get("required"))) {
+            newRequired.addAll((Collection<Object>) parameters.get("required"));
+        }
+        newParameters.put("required", newRequired);
+
+        // properties
+        Map<String, Object> newProperties = new LinkedHashMap<>();
+        Map<String, Object> functionNameMap = new LinkedHashMap<>();
+        functionNameMap.put("description", "默认值为工具名: " + toolName);
+        functionNameMap.put("type", "string");
+        newProperties.put("function_name", functionNameMap);
+        if (Objects.nonNull(parameters.get("properties"))) {
+            newProperties.putAll((Map<String, Object>) parameters.get("properties"));
+        }
+        newParameters.put("properties", newProperties);
+        return newParameters;
+    }
+
+    /**
+     * 已序列化的 JSON 片段，Jackson（请求体）与 fastjson（日志）序列化时原样写出
+     */
+    public static final class Fragment implements JsonSerializable, JSONAware {
+        private final String json;
+
+        private Fragment(String json) {
+            this.json = json;
+        }
+
+        @Override
+        public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            gen.writeRawValue(json);
+        }
+
+        @Override
+        public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+            gen.writeRawValue(json);
+        }
+
+        @Override
+        public String toJSONString() {
+            return json;
+        }
+
+        @Override
+        public String toString() {
+            return json;
+        }
+    }
+}
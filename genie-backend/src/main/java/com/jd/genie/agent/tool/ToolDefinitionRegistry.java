@@ -0,0 +1,146 @@
+package com.jd.genie.agent.tool;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.jd.genie.agent.dto.tool.McpToolInfo;
+import com.jd.genie.agent.tool.common.CodeInterpreterTool;
+import com.jd.genie.agent.tool.common.DeepSearchTool;
+import com.jd.genie.agent.tool.common.FileTool;
+import com.jd.genie.agent.tool.common.PlanningTool;
+import com.jd.genie.agent.tool.common.ReportTool;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 工具定义注册表（全局共享）
+ * 启动时为内置工具构建不可变的 ToolDefinition，MCP 工具在目录快照发布时构建；配置变更后调用 reload 重建。
+ * 请求内的工具实例只持有上下文，askTool 从这里取预序列化的 schema 片段
+ */
+@Slf4j
+@Component
+public class ToolDefinitionRegistry implements SmartInitializingSingleton {
+    private final Map<String, ToolDefinition> tools = new ConcurrentHashMap<>();
+    private final Map<String, ToolDefinition> mcpTools = new ConcurrentHashMap<>();
+    private final Map<String, McpToolInfo> mcpToolInfos = new ConcurrentHashMap<>();
+    private volatile long buildTime;
+
+    /**
+     * 内置工具的描述读取 GenieConfig，所有单例初始化后再构建
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        reload();
+    }
+
+    /**
+     * 重建全部工具定义（配置变更后调用）
+     */
+    public synchronized void reload() {
+        long start = System.currentTimeMillis();
+        tools.clear();
+        ToolArgumentBinder.clear();
+        for (BaseTool tool : Arrays.asList(new FileTool(), new CodeInterpreterTool(), new ReportTool(),
+                new DeepSearchTool(), new PlanningTool())) {
+            try {
+                definition(tool);
+            } catch (Exception e) {
+                // 构建失败的工具在首次使用时重试
+                log.error("build tool definition {} failed", tool.getName(), e);
+            }
+        }
+        mcpTools.clear();
+        for (McpToolInfo tool : mcpToolInfos.values()) {
+            definition(tool);
+        }
+        buildTime = System.currentTimeMillis();
+        log.info("tool definitions built in {}ms, {} tools, {} mcp tools", buildTime - start, tools.size(), mcpTools.size());
+    }
+
+    /**
+     * 按 MCP 目录快照预构建定义，移除已下线的工具
+     */
+    public synchronized void retainMcpTools(Collection<McpToolInfo> infos) {
+        Set<String> keys = new HashSet<>();
+        for (McpToolInfo info : infos) {
+            keys.add(mcpKey(info));
+            mcpToolInfos.put(mcpKey(info), info);
+            definition(info);
+        }
+        mcpToolInfos.keySet().retainAll(keys);
+        mcpTools.keySet().retainAll(keys);
+    }
+
+    /**
+     * 请求工具集合对应的定义列表（内置工具在前，MCP 工具在后）
+     */
+    public List<ToolDefinition> definitions(ToolCollection collection) {
+        List<ToolDefinition> definitions = new ArrayList<>(collection.getToolMap().size() + collection.getMcpToolMap().size());
+        for (BaseTool tool : collection.getToolMap().values()) {
+            definitions.add(definition(tool));
+        }
+        for (McpToolInfo tool : collection.getMcpToolMap().values()) {
+            definitions.add(definition(tool));
+        }
+        return definitions;
+    }
+
+    public ToolDefinition definition(BaseTool tool) {
+        return tools.computeIfAbsent(tool.getClass().getName() + "#" + tool.getName(), k -> build(tool));
+    }
+
+    public ToolDefinition definition(McpToolInfo tool) {
+        String key = mcpKey(tool);
+        ToolDefinition definition = mcpTools.get(key);
+        if (Objects.nonNull(definition) && Objects.equals(definition.getSource(), tool.getParameters())
+                && Objects.equals(definition.getDescription(), tool.getDesc())) {
+            return definition;
+        }
+        definition = build(tool);
+        mcpTools.put(key, definition);
+        return definition;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("toolCount", tools.size());
+        stats.put("mcpToolCount", mcpTools.size());
+        stats.put("buildTime", buildTime);
+        return stats;
+    }
+
+    private static ToolDefinition build(BaseTool tool) {
+        try {
+            return ToolDefinition.of(tool.getName(), tool.getDescription(),
+                    Objects.requireNonNullElse(tool.toParams(), Collections.emptyMap()), null);
+        } catch (Exception e) {
+            throw new IllegalStateException("build tool definition failed: " + tool.getName(), e);
+        }
+    }
+
+    private static ToolDefinition build(McpToolInfo tool) {
+        Map<String, Object> parameters = null;
+        try {
+            parameters = JSON.parseObject(tool.getParameters());
+        } catch (Exception e) {
+            log.error("mcp tool {} invalid inputSchema: {}", tool.getName(), tool.getParameters());
+        }
+        if (Objects.isNull(parameters)) {
+            parameters = new JSONObject();
+            parameters.put("type", "object");
+            parameters.put("properties", new JSONObject());
+        }
+        try {
+            return ToolDefinition.of(tool.getName(), tool.getDesc(), parameters, tool.getParameters());
+        } catch (Exception e) {
+            throw new IllegalStateException("build mcp tool definition failed: " + tool.getName(), e);
+        }
+    }
+
+    private static String mcpKey(McpToolInfo tool) {
+        return tool.getMcpServerUrl() + "#" + tool.getName();
+    }
+}
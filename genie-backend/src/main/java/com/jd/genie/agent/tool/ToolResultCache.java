@@ -0,0 +1,241 @@
+package com.jd.genie.agent.tool;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.jd.genie.agent.util.StringUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 会话内工具结果缓存（挂在 AgentContext 上，并行子执行器与后续 ReAct 步骤共享）
+ * 只缓存声明为只读/幂等的调用，key 为工具名 + 规范化参数（对象字段按名称排序）。
+ * 相同调用并发到达时共用一个执行中的 future；会话写入文件时，依赖该文件的结果失效
+ */
+@Slf4j
+public class ToolResultCache {
+    private static final ObjectMapper CANONICAL = JsonMapper.builder()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true)
+            .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+            .build();
+
+    /**
+     * 全部会话累计的命中统计
+     */
+    private static final Counters GLOBAL = new Counters();
+
+    private final String requestId;
+    private final int maxEntries;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Counters counters = new Counters();
+
+    public ToolResultCache(String requestId, int maxEntries) {
+        this.requestId = requestId;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * 执行可缓存的调用：命中已完成或执行中的相同调用时直接复用其结果
+     *
+     * @param toolName    工具名
+     * @param args        调用参数（绑定后的参数对象或 Map）
+     * @param files       结果依赖的文件名，这些文件被写入时结果失效
+     * @param cacheResult 结果是否可以保留（失败结果只共享给并发等待者，不保留）
+     * @param call        实际执行
+     */
+    public Object execute(String toolName, Object args, Collection<String> files,
+                          Predicate<Object> cacheResult, Supplier<Object> call) {
+        String key = key(toolName, args);
+        if (Objects.isNull(key)) {
+            return call.get();
+        }
+        Entry entry = new Entry(toolName, normalize(files));
+        Entry existing = entries.putIfAbsent(key, entry);
+        if (Objects.nonNull(existing)) {
+            if (existing.future.isDone()) {
+                count(toolName, c -> c.hits);
+                log.info("{} tool cache hit {}", requestId, toolName);
+            } else {
+                count(toolName, c -> c.joins);
+                log.info("{} tool cache join in-flight {}", requestId, toolName);
+            }
+            return join(existing.future);
+        }
+        count(toolName, c -> c.misses);
+        if (entries.size() > maxEntries) {
+            // 超出容量时仍然共享执行中的调用，结束后不保留
+            entry.future.whenComplete((r, e) -> entries.remove(key, entry));
+        }
+        Object result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            entries.remove(key, entry);
+            entry.future.completeExceptionally(e);
+            throw e;
+        }
+        if (!cacheResult.test(result)) {
+            entries.remove(key, entry);
+            count(toolName, c -> c.rejected);
+        }
+        entry.future.complete(result);
+        return result;
+    }
+
+    /**
+     * 会话写入了文件：依赖该文件的结果（包括执行中的调用）不再复用
+     */
+    public void invalidateFile(String fileName) {
+        String file = normalize(fileName);
+        if (file.isEmpty()) {
+            return;
+        }
+        int removed = 0;
+        for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Entry> item = it.next();
+            if (item.getValue().files.contains(file)) {
+                it.remove();
+                removed++;
+                count(item.getValue().toolName, c -> c.invalidations);
+            }
+        }
+        if (removed > 0) {
+            log.info("{} tool cache invalidated {} entries for file {}", requestId, removed, fileName);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = counters.snapshot();
+        stats.put("entries", entries.size());
+        return stats;
+    }
+
+    /**
+     * 全部会话累计统计
+     */
+    public static Map<String, Object> globalStats() {
+        return GLOBAL.snapshot();
+    }
+
+    /**
+     * 参数的规范化 JSON：对象字段按名称排序，字段顺序不同的相同参数得到同一个串
+     */
+    public static String canonicalArgs(Object args) throws JsonProcessingException {
+        Object tree = Objects.isNull(args) ? Collections.emptyMap() : CANONICAL.convertValue(args, Object.class);
+        return CANONICAL.writeValueAsString(tree);
+    }
+
+    private String key(String toolName, Object args) {
+        try {
+            return toolName + "\u0000" + canonicalArgs(args);
+        } catch (Exception e) {
+            log.warn("{} tool cache key failed for {}: {}", requestId, toolName, e.getMessage());
+            return null;
+        }
+    }
+
+    private void count(String toolName, Function<Counter, AtomicLong> field) {
+        field.apply(counters.total).incrementAndGet();
+        field.apply(counters.tool(toolName)).incrementAndGet();
+        field.apply(GLOBAL.total).incrementAndGet();
+        field.apply(GLOBAL.tool(toolName)).incrementAndGet();
+    }
+
+    private static Object join(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static Set<String> normalize(Collection<String> files) {
+        if (Objects.isNull(files) || files.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> normalized = new HashSet<>();
+        for (String file : files) {
+            String name = normalize(file);
+            if (!name.isEmpty()) {
+                normalized.add(name);
+            }
+        }
+        return normalized;
+    }
+
+    /**
+     * 与上传时的文件名清理规则一致，读写两侧按同一名称比较
+     */
+    private static String normalize(String fileName) {
+        return Objects.isNull(fileName) ? "" : StringUtil.removeSpecialChars(fileName);
+    }
+
+    private static class Entry {
+        private final String toolName;
+        private final Set<String> files;
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+
+        private Entry(String toolName, Set<String> files) {
+            this.toolName = toolName;
+            this.files = files;
+        }
+    }
+
+    private static class Counter {
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong joins = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong invalidations = new AtomicLong();
+
+        private Map<String, Object> snapshot() {
+            long reused = hits.get() + joins.get();
+            long calls = reused + misses.get();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("calls", calls);
+            stats.put("hits", hits.get());
+            stats.put("inFlightJoins", joins.get());
+            stats.put("misses", misses.get());
+            stats.put("rejected", rejected.get());
+            stats.put("invalidations", invalidations.get());
+            stats.put("hitRate", calls > 0 ? (double) reused / calls : 0);
+            return stats;
+        }
+    }
+
+    private static class Counters {
+        private final Counter total = new Counter();
+        private final Map<String, Counter> tools = new ConcurrentHashMap<>();
+
+        private Counter tool(String toolName) {
+            return tools.computeIfAbsent(toolName, k -> new Counter());
+        }
+
+        private Map<String, Object> snapshot() {
+            Map<String, Object> stats = total.snapshot();
+            Map<String, Object> perTool = new TreeMap<>();
+            for (Map.Entry<String, Counter> entry : tools.entrySet()) {
+                perTool.put(entry.getKey(), entry.getValue().snapshot());
+            }
+            stats.put("tools", perTool);
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.jd.genie.agent.tool;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 一次运行的工具选择结果（由 ToolSelector 生成，模型调用了被筛掉的工具时回退到全部工具）
+ */
+public class ToolSelection {
+    private final Set<String> selected;
+    private volatile boolean full;
+
+    private ToolSelection(Set<String> selected, boolean full) {
+        this.selected = selected;
+        this.full = full;
+    }
+
+    public static ToolSelection full() {
+        return new ToolSelection(new LinkedHashSet<>(), true);
+    }
+
+    public static ToolSelection of(Set<String> selected) {
+        return new ToolSelection(new LinkedHashSet<>(selected), false);
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public Set<String> getSelected() {
+        return selected;
+    }
+
+    /**
+     * 放弃筛选，之后发送全部工具
+     */
+    public void fallback() {
+        full = true;
+    }
+}
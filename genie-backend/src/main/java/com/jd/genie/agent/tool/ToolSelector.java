@@ -0,0 +1,304 @@
+package com.jd.genie.agent.tool;
+
+import com.jd.genie.agent.dto.tool.McpToolInfo;
+import com.jd.genie.agent.dto.tool.ToolCall;
+import com.jd.genie.agent.llm.TokenCounter;
+import com.jd.genie.config.GenieConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 工具筛选器
+ * 按当前任务文本对工具名称与描述做 BM25 排序（中文按二元组、英文按单词切分），结合历史调用次数，
+ * 每步只发送常驻工具与排名前 top_k 的工具；模型调用了已注册但未发送的工具时之后回退到全部工具，
+ * 调用未注册的工具时计为未命中并保留选择（全部工具中也没有该工具，回退无济于事）
+ */
+@Slf4j
+@Component
+public class ToolSelector {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    /**
+     * 工具名在文档中的重复次数（提高名称命中的权重）
+     */
+    private static final int NAME_BOOST = 3;
+
+    @Autowired
+    private GenieConfig genieConfig;
+    @Autowired
+    private ToolDefinitionRegistry toolDefinitionRegistry;
+
+    private final TokenCounter tokenCounter = new TokenCounter();
+    /**
+     * 工具定义不可变，按实例缓存分词结果；定义重建后旧条目随之回收
+     */
+    private final Map<ToolDefinition, Document> documents = Collections.synchronizedMap(new WeakHashMap<>());
+    private final Map<String, AtomicLong> usage = new ConcurrentHashMap<>();
+
+    private final AtomicLong selections = new AtomicLong();
+    private final AtomicLong fullSets = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final AtomicLong sentTools = new AtomicLong();
+    private final AtomicLong candidateTools = new AtomicLong();
+    private final AtomicLong sentTokens = new AtomicLong();
+    private final AtomicLong savedTokens = new AtomicLong();
+    private final AtomicLong callsInSelection = new AtomicLong();
+    private final AtomicLong callsOutsideSelection = new AtomicLong();
+    private final AtomicLong unknownCalls = new AtomicLong();
+
+    /**
+     * 为一次运行（一个任务）选择工具；工具数不超过常驻工具加 top_k 时不筛选
+     */
+    public ToolSelection select(ToolCollection tools, String text) {
+        Set<String> names = names(tools);
+        Set<String> pinned = new LinkedHashSet<>();
+        for (String name : StringUtils.split(StringUtils.defaultString(genieConfig.getToolSelectorPinned()), ",")) {
+            if (names.contains(name.trim())) {
+                pinned.add(name.trim());
+            }
+        }
+        int topK = genieConfig.getToolSelectorTopK();
+        if (!Boolean.TRUE.equals(genieConfig.getToolSelectorEnable()) || names.size() <= pinned.size() + topK) {
+            return ToolSelection.full();
+        }
+
+        List<ToolDefinition> definitions = toolDefinitionRegistry.definitions(tools);
+        List<Document> docs = new ArrayList<>(definitions.size());
+        for (ToolDefinition definition : definitions) {
+            docs.add(document(definition));
+        }
+        Map<String, Double> relevance = bm25(docs, new HashSet<>(tokenize(text)));
+        double maxRelevance = relevance.values().stream().mapToDouble(Double::doubleValue).max().orElse(0);
+        long maxUsage = 0;
+        for (String name : names) {
+            maxUsage = Math.max(maxUsage, usage(name));
+        }
+        double historyWeight = genieConfig.getToolSelectorHistoryWeight();
+        Map<String, Double> scores = new HashMap<>();
+        for (String name : names) {
+            double score = maxRelevance > 0 ? relevance.getOrDefault(name, 0D) / maxRelevance : 0;
+            if (maxUsage > 0) {
+                score += historyWeight * Math.log1p(usage(name)) / Math.log1p(maxUsage);
+            }
+            scores.put(name, score);
+        }
+
+        Set<String> selected = new LinkedHashSet<>(pinned);
+        names.stream()
+                .filter(name -> !pinned.contains(name))
+                .sorted(Comparator.comparingDouble((String name) -> scores.get(name)).reversed().thenComparing(name -> name))
+                .limit(topK)
+                .forEach(selected::add);
+        selections.incrementAndGet();
+        log.info("tool selector selected {} of {} tools: {}", selected.size(), names.size(), selected);
+        return ToolSelection.of(selected);
+    }
+
+    /**
+     * 当前步骤实际发送的工具集合，并累计发送/节省的 token
+     */
+    public ToolCollection apply(ToolSelection selection, ToolCollection tools) {
+        ToolCollection sent = selection.isFull() ? tools : tools.subset(selection.getSelected());
+        if (selection.isFull()) {
+            fullSets.incrementAndGet();
+        }
+        long sentCount = 0;
+        long candidateCount = 0;
+        long sentSize = 0;
+        long savedSize = 0;
+        for (ToolDefinition definition : toolDefinitionRegistry.definitions(tools)) {
+            int size = document(definition).tokens;
+            candidateCount++;
+            if (selection.isFull() || selection.getSelected().contains(definition.getName())) {
+                sentCount++;
+                sentSize += size;
+            } else {
+                savedSize += size;
+            }
+        }
+        sentTools.addAndGet(sentCount);
+        candidateTools.addAndGet(candidateCount);
+        sentTokens.addAndGet(sentSize);
+        savedTokens.addAndGet(savedSize);
+        return sent;
+    }
+
+    /**
+     * 记录模型本步调用的工具：更新历史次数与命中率，调用了被筛掉的已注册工具时放弃筛选
+     */
+    public void record(ToolSelection selection, ToolCollection tools, List<ToolCall> toolCalls) {
+        if (Objects.isNull(toolCalls)) {
+            return;
+        }
+        Set<String> names = names(tools);
+        for (ToolCall toolCall : toolCalls) {
+            if (Objects.isNull(toolCall.getFunction()) || Objects.isNull(toolCall.getFunction().getName())) {
+                continue;
+            }
+            String name = toolCall.getFunction().getName();
+            if (!names.contains(name)) {
+                // 模型臆造的工具名，全部工具中也没有，计为未命中，保留当前选择
+                unknownCalls.incrementAndGet();
+                log.warn("tool selector unknown tool {}, keep selection", name);
+                continue;
+            }
+            usage.computeIfAbsent(name, k -> new AtomicLong()).incrementAndGet();
+            if (selection.isFull() || selection.getSelected().contains(name)) {
+                callsInSelection.incrementAndGet();
+            } else {
+                // 模型按提示词中的工具说明调用了被筛掉的工具，筛选不可靠，之后的步骤发送全部工具
+                callsOutsideSelection.incrementAndGet();
+                fallbacks.incrementAndGet();
+                selection.fallback();
+                log.warn("tool selector tool {} was filtered out, fall back to full tool set", name);
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long inSelection = callsInSelection.get();
+        long outside = callsOutsideSelection.get();
+        long unknown = unknownCalls.get();
+        long sent = sentTokens.get();
+        long saved = savedTokens.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enable", genieConfig.getToolSelectorEnable());
+        stats.put("topK", genieConfig.getToolSelectorTopK());
+        stats.put("pinned", genieConfig.getToolSelectorPinned());
+        stats.put("selections", selections.get());
+        stats.put("fullSetSteps", fullSets.get());
+        stats.put("fallbacks", fallbacks.get());
+        stats.put("sentTools", sentTools.get());
+        stats.put("candidateTools", candidateTools.get());
+        stats.put("sentSchemaTokens", sent);
+        stats.put("savedSchemaTokens", saved);
+        stats.put("savedRatio", sent + saved > 0 ? (double) saved / (sent + saved) : 0);
+        stats.put("callsInSelection", inSelection);
+        stats.put("callsOutsideSelection", outside);
+        stats.put("unknownCalls", unknown);
+        stats.put("hitRate", inSelection + outside + unknown > 0 ? (double) inSelection / (inSelection + outside + unknown) : 1);
+        stats.put("usage", new TreeMap<>(usage));
+        return stats;
+    }
+
+    /**
+     * 分词：英文/数字按单词（下划线、标点切分），中文按相邻二元组，单个汉字保留为一元
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (StringUtils.isEmpty(text)) {
+            return tokens;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int i = 0;
+        int n = lower.length();
+        while (i < n) {
+            int c = lower.codePointAt(i);
+            if (isHan(c)) {
+                int start = i;
+                List<Integer> run = new ArrayList<>();
+                while (i < n && isHan(lower.codePointAt(i))) {
+                    run.add(lower.codePointAt(i));
+                    i += Character.charCount(lower.codePointAt(i));
+                }
+                if (run.size() == 1) {
+                    tokens.add(lower.substring(start, i));
+                }
+                for (int j = 0; j + 1 < run.size(); j++) {
+                    tokens.add(new StringBuilder().appendCodePoint(run.get(j)).appendCodePoint(run.get(j + 1)).toString());
+                }
+            } else if (Character.isLetterOrDigit(c)) {
+                int start = i;
+                while (i < n && Character.isLetterOrDigit(lower.codePointAt(i)) && !isHan(lower.codePointAt(i))) {
+                    i += Character.charCount(lower.codePointAt(i));
+                }
+                tokens.add(lower.substring(start, i));
+            } else {
+                i += Character.charCount(c);
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isHan(int c) {
+        return Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN;
+    }
+
+    private Map<String, Double> bm25(List<Document> docs, Set<String> queryTerms) {
+        Map<String, Double> scores = new HashMap<>();
+        if (docs.isEmpty() || queryTerms.isEmpty()) {
+            return scores;
+        }
+        double avgLength = docs.stream().mapToInt(doc -> doc.length).average().orElse(1);
+        for (String term : queryTerms) {
+            int df = 0;
+            for (Document doc : docs) {
+                if (doc.terms.containsKey(term)) {
+                    df++;
+                }
+            }
+            if (df == 0) {
+                continue;
+            }
+            double idf = Math.log(1 + (docs.size() - df + 0.5) / (df + 0.5));
+            for (Document doc : docs) {
+                Integer tf = doc.terms.get(term);
+                if (Objects.isNull(tf)) {
+                    continue;
+                }
+                double score = idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * doc.length / avgLength));
+                scores.merge(doc.name, score, Double::sum);
+            }
+        }
+        return scores;
+    }
+
+    private Document document(ToolDefinition definition) {
+        Document doc = documents.get(definition);
+        if (Objects.isNull(doc)) {
+            doc = new Document(definition, tokenCounter);
+            documents.put(definition, doc);
+        }
+        return doc;
+    }
+
+    private long usage(String name) {
+        AtomicLong count = usage.get(name);
+        return Objects.isNull(count) ? 0 : count.get();
+    }
+
+    private static Set<String> names(ToolCollection tools) {
+        Set<String> names = new LinkedHashSet<>(tools.getToolMap().keySet());
+        for (McpToolInfo tool : tools.getMcpToolMap().values()) {
+            names.add(tool.getName());
+        }
+        return names;
+    }
+
+    private static class Document {
+        private final String name;
+        private final Map<String, Integer> terms = new HashMap<>();
+        private final int length;
+        private final int tokens;
+
+        private Document(ToolDefinition definition, TokenCounter tokenCounter) {
+            this.name = definition.getName();
+            List<String> words = new ArrayList<>();
+            for (int i = 0; i < NAME_BOOST; i++) {
+                words.addAll(tokenize(definition.getName()));
+            }
+            words.addAll(tokenize(definition.getDescription()));
+            for (String word : words) {
+                terms.merge(word, 1, Integer::sum);
+            }
+            this.length = Math.max(1, words.size());
+            this.tokens = tokenCounter.countText(definition.getOpenAiSchema().toJSONString());
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.jd.genie.agent.tool;
+
+/**
+ * 声明类型化参数的工具
+ * 模型给出的参数串由 ToolArgumentBinder 按工具 schema 校验后一次绑定为 A，校验失败时把错误说明直接返回给模型
+ */
+public interface TypedTool<A> extends BaseTool {
+    /**
+     * 参数类型（Jackson 可绑定的 Bean，未声明的字段忽略）
+     */
+    Class<A> argumentType();
+
+    /**
+     * 以绑定好的参数执行工具
+     */
+    Object call(A args);
+
+    /**
+     * 兼容按 Map 传参的调用方：先绑定再执行，参数不合法时返回错误说明
+     */
+    @Override
+    default Object execute(Object input) {
+        if (argumentType().isInstance(input)) {
+            return call(argumentType().cast(input));
+        }
+        ToolArgumentBinder.Binding<A> binding = ToolArgumentBinder.of(this).convert(input);
+        return binding.isOk() ? call(binding.getValue()) : binding.getError();
+    }
+}
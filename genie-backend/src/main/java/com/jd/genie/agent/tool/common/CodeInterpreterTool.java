@@ -5,7 +5,7 @@ import com.jd.genie.agent.agent.AgentContext;
 import com.jd.genie.agent.dto.CodeInterpreterRequest;
 import com.jd.genie.agent.dto.CodeInterpreterResponse;
 import com.jd.genie.agent.dto.File;
-import com.jd.genie.agent.tool.BaseTool;
+import com.jd.genie.agent.tool.TypedTool;
 import com.jd.genie.agent.util.SpringContextHolder;
 import com.jd.genie.config.GenieConfig;
 import lombok.Data;
@@ -24,7 +24,7 @@ import java.util.stream.Collectors;
 
 @Slf4j
 @Data
-public class CodeInterpreterTool implements BaseTool {
+public class CodeInterpreterTool implements TypedTool<CodeInterpreterTool.Args> {
 
     private AgentContext agentContext;
 
@@ -61,11 +61,24 @@ public class CodeInterpreterTool implements BaseTool {
         return parameters;
     }
 
+    /**
+     * code_interpreter 参数
+     */
+    @Data
+    public static class Args {
+        private String task;
+    }
+
+    @Override
+    public Class<Args> argumentType() {
+        return Args.class;
+    }
+
     @Override
-    public Object execute(Object input) {
+    public Object call(Args args) {
         try {
-            Map<String, Object> params = (Map<String, Object>) input;
-            String task = (String) params.get("task");
+            String task = args.getTask();
+            agentContext.awaitUploads();
             List<String> fileNames = agentContext.getProductFiles().stream().map(File::getFileName).collect(Collectors.toList());
             CodeInterpreterRequest request = CodeInterpreterRequest.builder()
                     .requestId(agentContext.getSessionId()) // 适配多轮对话
@@ -159,6 +172,9 @@ public class CodeInterpreterTool implements BaseTool {
                                                 .build();
                                         agentContext.getProductFiles().add(file);
                                         agentContext.getTaskProductFiles().add(file);
+                                        agentContext.getToolResultCache().invalidateFile(file.getFileName());
+                                        // genie-tool 生成的新版本，本地存储中的同名旧内容不再使用
+                                        SpringContextHolder.getApplicationContext().getBean(LocalFileStore.class).forget(agentContext.getSessionId(), file.getFileName());
                                     }
                                 }
                                 String digitalEmployee = agentContext.getToolCollection().getDigitalEmployee(getName());
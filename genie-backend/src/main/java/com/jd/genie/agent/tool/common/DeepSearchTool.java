@@ -6,7 +6,9 @@ import com.jd.genie.agent.agent.AgentContext;
 import com.jd.genie.agent.dto.DeepSearchRequest;
 import com.jd.genie.agent.dto.DeepSearchrResponse;
 import com.jd.genie.agent.dto.FileRequest;
-import com.jd.genie.agent.tool.BaseTool;
+import com.jd.genie.agent.printer.StreamFlushPolicy;
+import com.jd.genie.agent.tool.PersistentToolCache;
+import com.jd.genie.agent.tool.TypedTool;
 import com.jd.genie.agent.util.SpringContextHolder;
 import com.jd.genie.agent.util.StringUtil;
 import com.jd.genie.config.GenieConfig;
@@ -18,19 +20,24 @@ import org.springframework.context.ApplicationContext;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
 @Data
 
-public class DeepSearchTool implements BaseTool {
+public class DeepSearchTool implements TypedTool<DeepSearchTool.Args> {
 
     private AgentContext agentContext;
+    /**
+     * 会话内已完成的搜索（归一化 query -> 回放），重复搜索按事件回放；
+     * 不使用 ToolResultCache，其命中只返回文本，前端收不到搜索过程与结果文件
+     */
+    private final Map<String, Replay> sessionReplays = new ConcurrentHashMap<>();
 
     @Override
     public String getName() {
@@ -65,14 +72,36 @@ public class DeepSearchTool implements BaseTool {
         return parameters;
     }
 
+    /**
+     * deep_search 参数
+     */
+    @Data
+    public static class Args {
+        private String query;
+    }
+
     @Override
-    public Object execute(Object input) {
+    public Class<Args> argumentType() {
+        return Args.class;
+    }
+
+    @Override
+    public Object call(Args args) {
         long startTime = System.currentTimeMillis();
 
         try {
             GenieConfig genieConfig = SpringContextHolder.getApplicationContext().getBean(GenieConfig.class);
-            Map<String, Object> params = (Map<String, Object>) input;
-            String query = (String) params.get("query");
+            String query = args.getQuery();
+            // 会话内或跨会话缓存命中：按实时流程的事件顺序回放，前端表现一致
+            String normalized = PersistentToolCache.normalizeQuery(query);
+            Replay cached = sessionReplays.get(normalized);
+            if (Objects.isNull(cached)) {
+                cached = SpringContextHolder.getApplicationContext().getBean(PersistentToolCache.class)
+                        .get(getName(), normalized, Replay.class);
+            }
+            if (Objects.nonNull(cached) && Objects.nonNull(cached.getAnswer())) {
+                return replay(query, cached);
+            }
             Map<String, Object> srcConfig = new HashMap<>();
 
             Map<String, Object> bingConfig = new HashMap<>();
@@ -127,9 +156,9 @@ public class DeepSearchTool implements BaseTool {
                     .post(body);
             Request request = requestBuilder.build();
 
-            String[] interval = genieConfig.getMessageInterval().getOrDefault("search", "5,20").split(",");
-            int firstInterval = Integer.parseInt(interval[0]);
-            int sendInterval = Integer.parseInt(interval[1]);
+            StreamFlushPolicy flushPolicy = StreamFlushPolicy.of(getName());
+            PersistentToolCache cache = applicationContext.getBean(PersistentToolCache.class);
+            Replay replay = new Replay();
 
             client.newCall(request).enqueue(new Callback() {
                 @Override
@@ -150,13 +179,22 @@ public class DeepSearchTool implements BaseTool {
                         }
 
                         int index = 1;
-                        StringBuilder stringBuilderIncr = new StringBuilder();
                         StringBuilder stringBuilderAll = new StringBuilder();
                         String line;
                         BufferedReader reader = new BufferedReader(new InputStreamReader(responseBody.byteStream()));
                         String digitalEmployee = agentContext.getToolCollection().getDigitalEmployee(getName());
+                        // 到期刷新使用最近一个报告增量的外壳与消息 id 发送合并后的内容
+                        AtomicReference<DeepSearchrResponse> lastReport = new AtomicReference<>();
+                        AtomicReference<String> reportMessageId = new AtomicReference<>("");
+                        StreamFlushPolicy.Buffer flushBuffer = flushPolicy.newBuffer(text -> {
+                            DeepSearchrResponse delta = lastReport.get();
+                            delta.setAnswer(text);
+                            agentContext.getPrinter().send(reportMessageId.get(), "deep_search", delta, digitalEmployee, false);
+                        });
                         String result = "搜索结果为空"; // 默认输出
                         String messageId = "";
+                        FileTool fileTool = new FileTool();
+                        fileTool.setAgentContext(agentContext);
                         while ((line = reader.readLine()) != null) {
                             if (line.startsWith("data: ")) {
                                 String data = line.substring(6);
@@ -170,10 +208,10 @@ public class DeepSearchTool implements BaseTool {
                                     log.info("{} deep_search recv data: {}", agentContext.getRequestId(), data);
                                 }
                                 DeepSearchrResponse searchResponse = JSONObject.parseObject(data, DeepSearchrResponse.class);
-                                FileTool fileTool = new FileTool();
-                                fileTool.setAgentContext(agentContext);
                                 // 上传搜索内容到文件中
                                 if (searchResponse.getIsFinal()) {
+                                    // 最终结果包含完整报告，未刷新的增量不再发送
+                                    flushBuffer.close();
                                     if (agentContext.getIsStream()) {
                                         searchResponse.setAnswer(stringBuilderAll.toString());
                                     }
@@ -181,57 +219,29 @@ public class DeepSearchTool implements BaseTool {
                                         log.error("{} deep search answer empty", agentContext.getRequestId());
                                         break;
                                     }
-                                    String fileName = StringUtil.removeSpecialChars(searchResponse.getQuery() + "的搜索结果.md");
-                                    String fileDesc = searchResponse.getAnswer()
-                                            .substring(0, Math.min(searchResponse.getAnswer().length(), genieConfig.getDeepSearchToolFileDescTruncateLen())) + "...";
-                                    FileRequest fileRequest = FileRequest.builder()
-                                            .requestId(agentContext.getRequestId())
-                                            .fileName(fileName)
-                                            .description(fileDesc)
-                                            .content(searchResponse.getAnswer())
-                                            .build();
-                                    fileTool.uploadFile(fileRequest, false, false);
-                                    result = searchResponse.getAnswer().
-                                            substring(0, Math.min(searchResponse.getAnswer().length(), genieConfig.getDeepSearchToolMessageTruncateLen()));
-
-                                    agentContext.getPrinter().send(messageId, "deep_search", searchResponse, digitalEmployee, true);
+                                    result = sendAnswer(searchResponse, messageId, digitalEmployee, fileTool);
+                                    replay.setAnswer(searchResponse);
+                                    String normalized = PersistentToolCache.normalizeQuery(searchRequest.getQuery());
+                                    sessionReplays.put(normalized, replay);
+                                    cache.put(getName(), normalized, replay);
 
-                                } else {
-                                    Map<String, Object> contentMap = new HashMap<>();
-                                    for (int idx = 0; idx < searchResponse.getSearchResult().getQuery().size(); idx++) {
-                                        contentMap.put(searchResponse.getSearchResult().getQuery().get(idx), searchResponse.getSearchResult().getDocs().get(idx));
-                                    }
-
-                                    if ("extend".equals(searchResponse.getMessageType())) {
+                                } else if ("report".equals(searchResponse.getMessageType())) {
+                                    if (index == 1) {
                                         messageId = StringUtil.getUUID();
-                                        searchResponse.setSearchFinish(false);
-                                        agentContext.getPrinter().send(messageId, "deep_search", searchResponse, digitalEmployee, true);
-                                    } else if ("search".equals(searchResponse.getMessageType())) {
-                                        searchResponse.setSearchFinish(true);
-                                        agentContext.getPrinter().send(messageId, "deep_search", searchResponse, digitalEmployee, true);
-                                        FileRequest fileRequest = FileRequest.builder()
-                                                .requestId(agentContext.getRequestId())
-                                                .fileName(searchResponse.getQuery() + "_search_result.txt")
-                                                .description(searchResponse.getQuery() + "...")
-                                                .content(JSON.toJSONString(contentMap))
-                                                .build();
-                                        fileTool.uploadFile(fileRequest, false, true);
-                                    } else if ("report".equals(searchResponse.getMessageType())) {
-                                        if (index == 1) {
-                                            messageId = StringUtil.getUUID();
-                                        }
-                                        stringBuilderIncr.append(searchResponse.getAnswer());
-                                        stringBuilderAll.append(searchResponse.getAnswer());
-                                        if (index == firstInterval || index % sendInterval == 0) {
-                                            searchResponse.setAnswer(stringBuilderIncr.toString());
-                                            agentContext.getPrinter().send(messageId, "deep_search", searchResponse, digitalEmployee, false);
-                                            stringBuilderIncr.setLength(0);
-                                        }
-                                        index++;
                                     }
+                                    String delta = searchResponse.getAnswer();
+                                    stringBuilderAll.append(delta);
+                                    reportMessageId.set(messageId);
+                                    lastReport.set(searchResponse);
+                                    flushBuffer.offer(delta);
+                                    index++;
+                                } else {
+                                    messageId = sendSearchEvent(searchResponse, messageId, digitalEmployee, fileTool);
+                                    replay.getEvents().add(searchResponse);
                                 }
                             }
                         }
+                        flushBuffer.close();
                         future.complete(result);
 
                     } catch (Exception e) {
@@ -247,4 +257,95 @@ public class DeepSearchTool implements BaseTool {
 
         return future;
     }
-}
\ No newline at end of file
+
+    /**
+     * 扩展查询（extend）与检索结果（search）事件；检索结果同时在后台上传为内部文件。返回当前消息 id
+     */
+    private String sendSearchEvent(DeepSearchrResponse searchResponse, String messageId, String digitalEmployee, FileTool fileTool) {
+        Map<String, Object> contentMap = new HashMap<>();
+        for (int idx = 0; idx < searchResponse.getSearchResult().getQuery().size(); idx++) {
+            contentMap.put(searchResponse.getSearchResult().getQuery().get(idx), searchResponse.getSearchResult().getDocs().get(idx));
+        }
+
+        if ("extend".equals(searchResponse.getMessageType())) {
+            messageId = StringUtil.getUUID();
+            searchResponse.setSearchFinish(false);
+            agentContext.getPrinter().send(messageId, "deep_search", searchResponse, digitalEmployee, true);
+        } else if ("search".equals(searchResponse.getMessageType())) {
+            searchResponse.setSearchFinish(true);
+            agentContext.getPrinter().send(messageId, "deep_search", searchResponse, digitalEmployee, true);
+            FileRequest fileRequest = FileRequest.builder()
+                    .requestId(agentContext.getRequestId())
+                    .fileName(searchResponse.getQuery() + "_search_result.txt")
+                    .description(searchResponse.getQuery() + "...")
+                    .content(JSON.toJSONString(contentMap))
+                    .build();
+            // 后台上传，不阻塞流读取
+            fileTool.uploadFileAsync(fileRequest, false, true);
+        }
+        return messageId;
+    }
+
+    /**
+     * 最终回答：提交结果文件的后台上传并发送结束事件，返回给模型的截断结果
+     */
+    private String sendAnswer(DeepSearchrResponse searchResponse, String messageId, String digitalEmployee, FileTool fileTool) {
+        GenieConfig genieConfig = SpringContextHolder.getApplicationContext().getBean(GenieConfig.class);
+        String fileName = StringUtil.removeSpecialChars(searchResponse.getQuery() + "的搜索结果.md");
+        String fileDesc = searchResponse.getAnswer()
+                .substring(0, Math.min(searchResponse.getAnswer().length(), genieConfig.getDeepSearchToolFileDescTruncateLen())) + "...";
+        FileRequest fileRequest = FileRequest.builder()
+                .requestId(agentContext.getRequestId())
+                .fileName(fileName)
+                .description(fileDesc)
+                .content(searchResponse.getAnswer())
+                .build();
+        // 回答文本就绪即返回，文件在后台上传
+        fileTool.uploadFileAsync(fileRequest, false, false);
+        String result = searchResponse.getAnswer().
+                substring(0, Math.min(searchResponse.getAnswer().length(), genieConfig.getDeepSearchToolMessageTruncateLen()));
+
+        agentContext.getPrinter().send(messageId, "deep_search", searchResponse, digitalEmployee, true);
+        return result;
+    }
+
+    /**
+     * 回放缓存的搜索：依次发送 extend/search 事件、正文增量与最终回答，并重新上传结果文件到当前会话
+     */
+    private String replay(String query, Replay cached) {
+        log.info("{} deep_search replay cached result for {}", agentContext.getRequestId(), query);
+        String requestId = agentContext.getRequestId() + ":" + StringUtil.generateRandomString(5);
+        String digitalEmployee = agentContext.getToolCollection().getDigitalEmployee(getName());
+        FileTool fileTool = new FileTool();
+        fileTool.setAgentContext(agentContext);
+        String messageId = "";
+        for (DeepSearchrResponse event : cached.getEvents()) {
+            event.setRequestId(requestId);
+            event.setQuery(query);
+            messageId = sendSearchEvent(event, messageId, digitalEmployee, fileTool);
+        }
+        DeepSearchrResponse answer = cached.getAnswer();
+        answer.setRequestId(requestId);
+        answer.setQuery(query);
+        messageId = StringUtil.getUUID();
+        if (agentContext.getIsStream()) {
+            agentContext.getPrinter().send(messageId, "deep_search", DeepSearchrResponse.builder()
+                    .requestId(requestId)
+                    .query(query)
+                    .answer(answer.getAnswer())
+                    .messageType("report")
+                    .isFinal(false)
+                    .build(), digitalEmployee, false);
+        }
+        return sendAnswer(answer, messageId, digitalEmployee, fileTool);
+    }
+
+    /**
+     * 可回放的一次搜索：extend/search 事件与最终回答
+     */
+    @Data
+    public static class Replay {
+        private List<DeepSearchrResponse> events = new ArrayList<>();
+        private DeepSearchrResponse answer;
+    }
+}
@@ -0,0 +1,182 @@
+package com.jd.genie.agent.tool.common;
+
+import com.jd.genie.agent.util.StringUtil;
+import com.jd.genie.config.GenieConfig;
+import jakarta.annotation.PostConstruct;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 报告证据存储：会话内的工具结果按内容哈希登记，报告请求只携带哈希引用，
+ * 正文只发送 genie-tool 尚未确认收到的部分（上次报告以来的新增）；可选按与任务的相关度预先排序并截取子集。
+ * genie-tool 的证据存放在其各 worker 共享的文件目录中；淘汰或目录被清理导致引用缺失时（409），清空该会话的确认记录并整体重发
+ */
+@Slf4j
+@Component
+public class EvidenceStore {
+    @Autowired
+    private GenieConfig genieConfig;
+
+    private Map<String, Set<String>> acknowledged;
+
+    private final AtomicLong bundles = new AtomicLong();
+    private final AtomicLong refChars = new AtomicLong();
+    private final AtomicLong sentChars = new AtomicLong();
+    private final AtomicLong resends = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        int maxSessions = Math.max(1, genieConfig.getEvidenceMaxSessions());
+        acknowledged = Collections.synchronizedMap(new LinkedHashMap<String, Set<String>>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Set<String>> eldest) {
+                return size() > maxSessions;
+            }
+        });
+    }
+
+    public boolean enabled() {
+        return Boolean.TRUE.equals(genieConfig.getEvidenceEnable());
+    }
+
+    /**
+     * 组装报告证据：全部引用（去重、保持产生顺序）、genie-tool 未确认的新增正文、相关子集
+     *
+     * @param toolResults 会话内全部工具结果
+     * @param task        报告任务与用户问题，用于相关度排序
+     */
+    public Bundle bundle(String sessionId, List<String> toolResults, String task) {
+        Set<String> known = acknowledged.getOrDefault(sessionId, Collections.emptySet());
+        Bundle bundle = new Bundle();
+        Map<String, String> contents = new LinkedHashMap<>();
+        for (String content : toolResults) {
+            String hash = hash(content);
+            if (Objects.nonNull(contents.putIfAbsent(hash, content))) {
+                continue;
+            }
+            bundle.refs.add(hash);
+            bundle.totalChars += content.length();
+            synchronized (known) {
+                if (!known.contains(hash)) {
+                    bundle.delta.put(hash, content);
+                    bundle.deltaChars += content.length();
+                }
+            }
+        }
+        bundle.relevant = relevant(contents, task);
+        bundles.incrementAndGet();
+        refChars.addAndGet(bundle.totalChars);
+        sentChars.addAndGet(bundle.deltaChars);
+        return bundle;
+    }
+
+    /**
+     * 报告请求成功后记录 genie-tool 已持有的内容
+     */
+    public void acknowledge(String sessionId, Bundle bundle) {
+        Set<String> known = acknowledged.computeIfAbsent(sessionId, k -> new HashSet<>());
+        synchronized (known) {
+            known.addAll(bundle.refs);
+        }
+    }
+
+    /**
+     * genie-tool 缺少引用的内容：该会话的确认记录作废，返回携带全部正文的证据
+     */
+    public Bundle resend(String sessionId, List<String> toolResults, String task) {
+        acknowledged.remove(sessionId);
+        resends.incrementAndGet();
+        return bundle(sessionId, toolResults, task);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enable", enabled());
+        stats.put("sessions", acknowledged.size());
+        stats.put("bundles", bundles.get());
+        stats.put("refChars", refChars.get());
+        stats.put("sentChars", sentChars.get());
+        stats.put("resends", resends.get());
+        return stats;
+    }
+
+    /**
+     * 相关子集：按任务词在结果中的命中数排序（同分保持产生顺序），取前 top_k 个且总字符不超过预算；未开启返回 null
+     */
+    private List<String> relevant(Map<String, String> contents, String task) {
+        int topK = genieConfig.getEvidenceRelevantTopK();
+        if (topK <= 0 || contents.size() <= 1) {
+            return null;
+        }
+        Set<String> terms = terms(task);
+        List<String> ranked = new ArrayList<>(contents.keySet());
+        Map<String, Integer> scores = new HashMap<>();
+        for (Map.Entry<String, String> entry : contents.entrySet()) {
+            String content = entry.getValue().toLowerCase(Locale.ROOT);
+            int score = 0;
+            for (String term : terms) {
+                if (content.contains(term)) {
+                    score++;
+                }
+            }
+            scores.put(entry.getKey(), score);
+        }
+        ranked.sort((a, b) -> scores.get(b) - scores.get(a));
+        int maxChars = genieConfig.getEvidenceRelevantMaxChars();
+        List<String> relevant = new ArrayList<>();
+        long chars = 0;
+        for (String hash : ranked) {
+            int length = contents.get(hash).length();
+            if (relevant.size() >= topK || (maxChars > 0 && !relevant.isEmpty() && chars + length > maxChars)) {
+                break;
+            }
+            relevant.add(hash);
+            chars += length;
+        }
+        return relevant;
+    }
+
+    /**
+     * 任务词：英文与数字按词切分，中文按相邻两字切分
+     */
+    static Set<String> terms(String text) {
+        Set<String> terms = new HashSet<>();
+        if (Objects.isNull(text)) {
+            return terms;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        for (String word : lower.split("[^\\p{Alnum}]+")) {
+            if (word.length() >= 2) {
+                terms.add(word);
+            }
+        }
+        for (int i = 0; i + 1 < lower.length(); i++) {
+            if (Character.UnicodeScript.of(lower.charAt(i)) == Character.UnicodeScript.HAN
+                    && Character.UnicodeScript.of(lower.charAt(i + 1)) == Character.UnicodeScript.HAN) {
+                terms.add(lower.substring(i, i + 2));
+            }
+        }
+        return terms;
+    }
+
+    private static String hash(String content) {
+        return StringUtil.sha256Hex(content);
+    }
+
+    /**
+     * 一次报告请求携带的证据
+     */
+    @Data
+    public static class Bundle {
+        private List<String> refs = new ArrayList<>();
+        private Map<String, String> delta = new LinkedHashMap<>();
+        private List<String> relevant;
+        private long totalChars;
+        private long deltaChars;
+    }
+}
@@ -0,0 +1,295 @@
+package com.jd.genie.agent.tool.common;
+
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 按字符预算读取文件内容（挂在 AgentContext 上，会话内共享）
+ * 只读取预算需要的字节：服务端支持 Range 时按范围请求，不支持时读够即断开；截断处对齐 UTF-8 字符边界。
+ * 表格文件可选首尾（head_tail）或抽样行（sample）模式；内容按 URL + ETag 缓存，ETag 未变时不再读取正文
+ */
+@Slf4j
+public class FileContentReader {
+    public static final String MODE_HEAD = "head";
+    public static final String MODE_HEAD_TAIL = "head_tail";
+    public static final String MODE_SAMPLE = "sample";
+
+    /**
+     * UTF-8 下一个 char 最多 3 字节（4 字节字符对应两个 char）
+     */
+    private static final int BYTES_PER_CHAR = 3;
+    private static final int SAMPLE_CHUNK_BYTES = 4096;
+    private static final Pattern CONTENT_RANGE_TOTAL = Pattern.compile("bytes\\s+\\d+-\\d+/(\\d+)");
+
+    private static final OkHttpClient CLIENT = new OkHttpClient.Builder()
+            .connectTimeout(60, TimeUnit.SECONDS) // 设置连接超时时间为 60 秒
+            .readTimeout(60, TimeUnit.SECONDS)    // 设置读取超时时间为 60 秒
+            .writeTimeout(60, TimeUnit.SECONDS)   // 设置写入超时时间为 60 秒
+            .callTimeout(60, TimeUnit.SECONDS)    // 设置调用超时时间为 60 秒
+            .build();
+
+    private final String requestId;
+    private final Map<String, Cached> cache = new ConcurrentHashMap<>();
+
+    public FileContentReader(String requestId) {
+        this.requestId = requestId;
+    }
+
+    /**
+     * 读取文件内容，最多 maxChars 个字符；失败返回 null
+     *
+     * @param url        文件地址
+     * @param mode       head / head_tail / sample
+     * @param sampleRows sample 模式下抽样的行数
+     */
+    public String read(String url, int maxChars, String mode, int sampleRows) throws IOException {
+        String key = mode + "|" + maxChars + "|" + sampleRows + "|" + url;
+        Cached cached = cache.get(key);
+        int maxBytes = Math.max(1, maxChars) * BYTES_PER_CHAR;
+        Request.Builder builder = new Request.Builder().url(url).header("Range", "bytes=0-" + (maxBytes - 1));
+        if (Objects.nonNull(cached)) {
+            builder.header("If-None-Match", cached.etag);
+        }
+        try (Response response = CLIENT.newCall(builder.build()).execute()) {
+            String etag = response.header("ETag");
+            if (Objects.nonNull(cached) && (response.code() == 304 || cached.etag.equals(etag))) {
+                // 文件未变，不读取正文
+                log.info("{} file content cache hit {}", requestId, url);
+                return cached.content;
+            }
+            if (response.code() == 416) {
+                // 空文件不满足任何范围
+                return "";
+            }
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                log.error("{} 获取文件失败 {}", requestId, response.code());
+                return null;
+            }
+            byte[] head = readAtMost(body.byteStream(), maxBytes);
+            long total = totalSize(response);
+            boolean ranged = response.code() == 206;
+            String content = compose(head, total, ranged, maxChars, mode, sampleRows,
+                    (offset, length) -> range(url, "bytes=" + offset + "-" + (offset + length - 1), length));
+            log.info("{} file content read {} bytes of {} from {} ({}, {})", requestId, head.length, total, url,
+                    ranged ? "range" : "stream", mode);
+            if (Objects.nonNull(etag)) {
+                cache.put(key, new Cached(etag, content));
+            }
+            return content;
+        }
+    }
+
+    /**
+     * 从内存映射的本地文件读取，规则与远程读取一致；只复制预算需要的字节
+     */
+    public static String readMapped(ByteBuffer buffer, int maxChars, String mode, int sampleRows) throws IOException {
+        ByteBuffer view = buffer.duplicate();
+        int total = view.limit();
+        byte[] head = new byte[Math.min(total, Math.max(1, maxChars) * BYTES_PER_CHAR)];
+        view.get(head);
+        return compose(head, total, true, maxChars, mode, sampleRows, (offset, length) -> {
+            int from = (int) Math.max(0, Math.min(offset, total));
+            byte[] bytes = new byte[Math.min(length, total - from)];
+            buffer.duplicate().position(from).get(bytes);
+            return bytes;
+        });
+    }
+
+    /**
+     * 开头字节已读取：未超出预算时直接解码，否则按模式补读结尾或抽样位置
+     *
+     * @param total     文件总字节数，未知为 -1
+     * @param rangeable 能否按位置补读
+     */
+    private static String compose(byte[] head, long total, boolean rangeable, int maxChars, String mode, int sampleRows,
+                                  RangeSource source) throws IOException {
+        String content;
+        if (total >= 0 && total <= head.length) {
+            content = new String(head, StandardCharsets.UTF_8);
+        } else if (MODE_HEAD_TAIL.equals(mode) && rangeable && total > 0) {
+            content = headTail(source, head, total, maxChars);
+        } else if (MODE_SAMPLE.equals(mode) && rangeable && total > 0) {
+            content = sample(source, head, total, maxChars, sampleRows);
+        } else {
+            content = decodePrefix(head, head.length);
+        }
+        return content.length() > maxChars ? content.substring(0, maxChars) : content;
+    }
+
+    /**
+     * 开头一半预算 + 结尾一半预算，按行对齐，中间以省略说明连接
+     */
+    private static String headTail(RangeSource source, byte[] head, long total, int maxChars) throws IOException {
+        int half = maxChars / 2;
+        String headText = cutAtLastLine(decodePrefix(head, Math.min(head.length, half * BYTES_PER_CHAR)), half);
+        int tailBytes = (int) Math.min(total, half * BYTES_PER_CHAR);
+        byte[] tail = source.read(total - tailBytes, tailBytes);
+        if (Objects.isNull(tail)) {
+            return decodePrefix(head, head.length);
+        }
+        String tailText = decodeSuffix(tail);
+        // 省略说明也计入预算
+        int tailBudget = Math.max(0, maxChars - headText.length() - 40);
+        if (tailText.length() > tailBudget) {
+            tailText = tailText.substring(tailText.length() - tailBudget);
+        }
+        // 结尾部分从完整的一行开始
+        int firstLine = tailText.indexOf('\n');
+        if (firstLine >= 0 && firstLine < tailText.length() - 1) {
+            tailText = tailText.substring(firstLine + 1);
+        }
+        long skipped = total - headText.getBytes(StandardCharsets.UTF_8).length - tailText.getBytes(StandardCharsets.UTF_8).length;
+        return headText + "\n...（中间省略约 " + Math.max(0, skipped) + " 字节）...\n" + tailText;
+    }
+
+    /**
+     * 表头与开头几行，再在文件中均匀取若干位置各抽一整行
+     */
+    private static String sample(RangeSource source, byte[] head, long total, int maxChars, int sampleRows) throws IOException {
+        String headText = decodePrefix(head, Math.min(head.length, SAMPLE_CHUNK_BYTES));
+        List<String> headLines = new ArrayList<>(Arrays.asList(headText.split("\n", -1)));
+        // 最后一行可能不完整
+        headLines.remove(headLines.size() - 1);
+        if (headLines.isEmpty()) {
+            return decodePrefix(head, head.length);
+        }
+        StringBuilder sb = new StringBuilder();
+        int headRows = Math.min(headLines.size(), Math.max(2, sampleRows / 4));
+        for (int i = 0; i < headRows; i++) {
+            sb.append(headLines.get(i)).append('\n');
+        }
+        sb.append("...（以下为全文均匀抽样的 ").append(sampleRows).append(" 行）...\n");
+        long start = Math.min(head.length, SAMPLE_CHUNK_BYTES);
+        long span = total - start;
+        for (int i = 0; i < sampleRows && span > 0 && sb.length() < maxChars; i++) {
+            long offset = start + span * i / sampleRows;
+            byte[] chunk = source.read(offset, SAMPLE_CHUNK_BYTES);
+            if (Objects.isNull(chunk)) {
+                break;
+            }
+            String text = decodePrefix(chunk, chunk.length);
+            int begin = text.indexOf('\n');
+            int end = begin >= 0 ? text.indexOf('\n', begin + 1) : -1;
+            if (end > begin) {
+                sb.append(text, begin + 1, end).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private byte[] range(String url, String range, int maxBytes) throws IOException {
+        Request request = new Request.Builder().url(url).header("Range", range).build();
+        try (Response response = CLIENT.newCall(request).execute()) {
+            if (response.code() != 206 || response.body() == null) {
+                log.warn("{} range {} not served for {}: {}", requestId, range, url, response.code());
+                return null;
+            }
+            return readAtMost(response.body().byteStream(), maxBytes);
+        }
+    }
+
+    /**
+     * 文件总大小：206 取 Content-Range 的总长度，200 取 Content-Length，未知返回 -1
+     */
+    private static long totalSize(Response response) {
+        String contentRange = response.header("Content-Range");
+        if (Objects.nonNull(contentRange)) {
+            Matcher m = CONTENT_RANGE_TOTAL.matcher(contentRange);
+            if (m.find()) {
+                return Long.parseLong(m.group(1));
+            }
+        }
+        if (response.code() == 200 && Objects.nonNull(response.body())) {
+            return response.body().contentLength();
+        }
+        return -1;
+    }
+
+    /**
+     * 最多读取 maxBytes 字节，读够即停止（服务端不支持 Range 时由关闭响应断开剩余传输）
+     */
+    static byte[] readAtMost(InputStream in, int maxBytes) throws IOException {
+        byte[] buffer = new byte[maxBytes];
+        int length = 0;
+        int n;
+        while (length < maxBytes && (n = in.read(buffer, length, maxBytes - length)) > 0) {
+            length += n;
+        }
+        return length == maxBytes ? buffer : Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * 解码前 length 字节，末尾不完整的 UTF-8 字符丢弃
+     */
+    static String decodePrefix(byte[] bytes, int length) {
+        return new String(bytes, 0, utf8Boundary(bytes, length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 解码从中间开始的字节，开头的续字节（不完整字符）丢弃
+     */
+    static String decodeSuffix(byte[] bytes) {
+        int start = 0;
+        while (start < bytes.length && start < 3 && (bytes[start] & 0xC0) == 0x80) {
+            start++;
+        }
+        return new String(bytes, start, bytes.length - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 不超过 length 的最大完整 UTF-8 字符边界
+     */
+    static int utf8Boundary(byte[] bytes, int length) {
+        int lead = length - 1;
+        while (lead >= 0 && length - lead <= 4 && (bytes[lead] & 0xC0) == 0x80) {
+            lead--;
+        }
+        if (lead < 0) {
+            return length;
+        }
+        int b = bytes[lead] & 0xFF;
+        int expected = b < 0x80 ? 1 : b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : b >= 0xC0 ? 2 : 1;
+        return lead + expected > length ? lead : length;
+    }
+
+    private static String cutAtLastLine(String text, int maxChars) {
+        String cut = text.length() > maxChars ? text.substring(0, maxChars) : text;
+        int lastLine = cut.lastIndexOf('\n');
+        return lastLine > 0 ? cut.substring(0, lastLine) : cut;
+    }
+
+    /**
+     * 按位置补读字节（远程为 Range 请求，本地为映射内存），不可用时返回 null
+     */
+    private interface RangeSource {
+        byte[] read(long offset, int length) throws IOException;
+    }
+
+    private static class Cached {
+        private final String etag;
+        private final String content;
+
+        private Cached(String etag, String content) {
+            this.etag = etag;
+            this.content = content;
+        }
+    }
+}
@@ -6,8 +6,10 @@ import com.jd.genie.agent.dto.CodeInterpreterResponse;
 import com.jd.genie.agent.dto.File;
 import com.jd.genie.agent.dto.FileRequest;
 import com.jd.genie.agent.dto.FileResponse;
-import com.jd.genie.agent.tool.BaseTool;
+import com.jd.genie.agent.tool.CacheableTool;
+import com.jd.genie.agent.tool.TypedTool;
 import com.jd.genie.agent.util.SpringContextHolder;
+import com.jd.genie.agent.util.StreamingBody;
 import com.jd.genie.agent.util.StringUtil;
 import com.jd.genie.config.GenieConfig;
 import lombok.Data;
@@ -16,13 +18,46 @@ import okhttp3.*;
 import org.springframework.context.ApplicationContext;
 
 import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Data
 
-public class FileTool implements BaseTool {
+public class FileTool implements TypedTool<FileTool.Args>, CacheableTool {
+    private static final MediaType JSON_TYPE = MediaType.get("application/json; charset=utf-8");
+    private static final MediaType OCTET_TYPE = MediaType.get("application/octet-stream");
+
+    /**
+     * 上传与查询共用一个客户端（连接池复用），不再每次调用新建
+     */
+    private static final OkHttpClient HTTP_CLIENT = new OkHttpClient.Builder()
+            .connectTimeout(60, TimeUnit.SECONDS) // 设置连接超时时间为 60 秒
+            .readTimeout(300, TimeUnit.SECONDS)    // 设置读取超时时间为 300 秒
+            .writeTimeout(300, TimeUnit.SECONDS)   // 设置写入超时时间为 300 秒
+            .callTimeout(300, TimeUnit.SECONDS)    // 设置调用超时时间为 300 秒
+            .build();
+
+    /**
+     * 文件服务未提供批量上传接口（旧版本）时不再尝试
+     */
+    private static volatile boolean batchUnsupported = false;
+
+    /**
+     * genie-tool 明确答复无法按路径读取本地存储（404/415：未开启引用、不在同一主机/未共享目录）时改为内联内容；
+     * 网络异常与 5xx 只让本次上传改为内联，之后照常尝试引用
+     */
+    private static volatile boolean referenceUnsupported = false;
+
+    /**
+     * 文件服务未提供流式上传接口（旧版本）时大文件也用 JSON 上传
+     */
+    private static volatile boolean streamUnsupported = false;
+
     private AgentContext agentContext;
 
     @Override
@@ -74,16 +109,52 @@ public class FileTool implements BaseTool {
         return parameters;
     }
 
+    /**
+     * file_tool 参数
+     */
+    @Data
+    public static class Args {
+        private String command;
+        private String fileName;
+        private String description;
+        private String content;
+    }
+
+    @Override
+    public Class<Args> argumentType() {
+        return Args.class;
+    }
+
+    /**
+     * get 只读，结果依赖被读取的文件；upload 写文件，不缓存
+     */
+    @Override
+    public boolean isCacheable(Object args) {
+        return args instanceof Args && "get".equals(((Args) args).getCommand());
+    }
+
+    @Override
+    public Collection<String> dependentFiles(Object args) {
+        return args instanceof Args ? Collections.singletonList(((Args) args).getFileName()) : Collections.emptyList();
+    }
+
+    @Override
+    public boolean isCacheableResult(Object result) {
+        return result instanceof String && ((String) result).startsWith("文件内容");
+    }
+
     @Override
-    public Object execute(Object input) {
+    public Object call(Args args) {
         try {
-            Map<String, Object> params = (Map<String, Object>) input;
-            String command = (String) params.getOrDefault("command", "");
-            FileRequest fileRequest = JSON.parseObject(JSON.toJSONString(input), FileRequest.class);
-            fileRequest.setRequestId(agentContext.getRequestId());
-            if ("upload".equals(command)) {
+            FileRequest fileRequest = FileRequest.builder()
+                    .requestId(agentContext.getRequestId())
+                    .fileName(args.getFileName())
+                    .description(args.getDescription())
+                    .content(args.getContent())
+                    .build();
+            if ("upload".equals(args.getCommand())) {
                 return uploadFile(fileRequest, true, false);
-            } else if ("get".equals(command)) {
+            } else if ("get".equals(args.getCommand())) {
                 return getFile(fileRequest, true);
             }
         } catch (Exception e) {
@@ -94,96 +165,289 @@ public class FileTool implements BaseTool {
 
     // 上传文件的 API 请求方法
     public String uploadFile(FileRequest fileRequest, Boolean isNoticeFe, Boolean isInternalFile) {
-        long startTime = System.currentTimeMillis();
-        OkHttpClient client = new OkHttpClient.Builder()
-                .connectTimeout(60, TimeUnit.SECONDS) // 设置连接超时时间为 60 秒
-                .readTimeout(300, TimeUnit.SECONDS)    // 设置读取超时时间为 300 秒
-                .writeTimeout(300, TimeUnit.SECONDS)   // 设置写入超时时间为 300 秒
-                .callTimeout(300, TimeUnit.SECONDS)    // 设置调用超时时间为 300 秒
-                .build();
+        if (!prepareUpload(fileRequest)) {
+            return null;
+        }
+        FileResponse fileResponse = postUpload(fileRequest);
+        return registerUpload(fileRequest, fileResponse, isNoticeFe, isInternalFile);
+    }
 
-        ApplicationContext applicationContext = SpringContextHolder.getApplicationContext();
-        GenieConfig genieConfig = applicationContext.getBean(GenieConfig.class);
-        MediaType mediaType = MediaType.get("application/json; charset=utf-8");
-        String url = genieConfig.getCodeInterpreterUrl() + "/v1/file_tool/upload_file";
+    /**
+     * 后台上传：立即返回，文件在上传完成后加入上下文；读取文件列表前需调用 AgentContext.awaitUploads
+     */
+    public CompletableFuture<String> uploadFileAsync(FileRequest fileRequest, Boolean isNoticeFe, Boolean isInternalFile) {
+        if (!prepareUpload(fileRequest)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return SpringContextHolder.getApplicationContext().getBean(FileUploader.class)
+                .submit(this, fileRequest, isNoticeFe, isInternalFile);
+    }
 
-        // 构建请求体 多轮对话替换requestId为sessionId
+    /**
+     * 多轮对话替换requestId为sessionId，清理文件名中的特殊字符
+     */
+    private boolean prepareUpload(FileRequest fileRequest) {
         fileRequest.setRequestId(agentContext.getSessionId());
-        // 清理文件名中的特殊字符
         fileRequest.setFileName(StringUtil.removeSpecialChars(fileRequest.getFileName()));
         if (fileRequest.getFileName().isEmpty()) {
             String errorMessage = "上传文件失败 文件名为空";
 
             log.error("{} {}", agentContext.getRequestId(), errorMessage);
-            return null;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 上传一个文件：启用本地存储时先按内容去重保存在本地，write_through 模式再按路径引用登记到 genie-tool
+     */
+    private FileResponse postUpload(FileRequest fileRequest) {
+        LocalFileStore store = SpringContextHolder.getApplicationContext().getBean(LocalFileStore.class);
+        LocalFileStore.Entry stored = store.save(fileRequest.getRequestId(), fileRequest.getFileName(),
+                fileRequest.getDescription(), fileRequest.getContent());
+        if (Objects.nonNull(stored) && !store.writeThrough()) {
+            FileResponse local = store.localResponse(stored);
+            store.commit(stored, local);
+            return local;
+        }
+        FileResponse fileResponse = null;
+        if (Objects.nonNull(stored) && !referenceUnsupported) {
+            fileResponse = postUploadRequest(byReference(fileRequest, stored));
+        }
+        if (Objects.isNull(fileResponse)) {
+            fileResponse = postUploadInline(fileRequest, stored);
+        }
+        if (Objects.nonNull(stored) && Objects.nonNull(fileResponse)) {
+            store.commit(stored, fileResponse);
         }
-        RequestBody body = RequestBody.create(JSON.toJSONString(fileRequest), mediaType);
+        return fileResponse;
+    }
+
+    /**
+     * 按路径引用上传的请求：不带内容
+     */
+    private static FileRequest byReference(FileRequest fileRequest, LocalFileStore.Entry stored) {
+        return FileRequest.builder()
+                .requestId(fileRequest.getRequestId())
+                .fileName(fileRequest.getFileName())
+                .description(fileRequest.getDescription())
+                .filePath(stored.getPath())
+                .build();
+    }
+
+    /**
+     * 带内容上传：大文件以 multipart 流式上传（从本地存储的文件或分块编码的文本），小文件用 JSON
+     */
+    private FileResponse postUploadInline(FileRequest fileRequest, LocalFileStore.Entry stored) {
+        GenieConfig genieConfig = SpringContextHolder.getApplicationContext().getBean(GenieConfig.class);
+        String content = fileRequest.getContent();
+        if (!streamUnsupported && Objects.nonNull(content) && content.length() >= genieConfig.getFileUploadStreamThreshold()) {
+            try {
+                RequestBody file = Objects.nonNull(stored)
+                        ? StreamingBody.ofFile(Paths.get(stored.getPath()), OCTET_TYPE)
+                        : StreamingBody.ofText(content, OCTET_TYPE);
+                FileResponse fileResponse = postUploadStream(fileRequest, file);
+                if (Objects.nonNull(fileResponse) || !streamUnsupported) {
+                    return fileResponse;
+                }
+            } catch (IOException e) {
+                log.error("{} stream upload file error", agentContext.getRequestId(), e);
+                return null;
+            }
+        }
+        return postUploadRequest(fileRequest);
+    }
+
+    /**
+     * multipart 流式上传：文件部分边读边写，不生成 JSON 字符串
+     */
+    private FileResponse postUploadStream(FileRequest fileRequest, RequestBody file) {
+        GenieConfig genieConfig = SpringContextHolder.getApplicationContext().getBean(GenieConfig.class);
+        String url = genieConfig.getCodeInterpreterUrl() + "/v1/file_tool/upload_file_stream";
+        MultipartBody body = new MultipartBody.Builder()
+                .setType(MultipartBody.FORM)
+                .addFormDataPart("requestId", fileRequest.getRequestId())
+                .addFormDataPart("fileName", fileRequest.getFileName())
+                .addFormDataPart("description", Objects.nonNull(fileRequest.getDescription()) ? fileRequest.getDescription() : "")
+                .addFormDataPart("file", URLEncoder.encode(fileRequest.getFileName(), StandardCharsets.UTF_8), file)
+                .build();
+        Request request = new Request.Builder()
+                .url(url)
+                .post(body)
+                .build();
+        log.info("{} file tool stream upload {}", agentContext.getRequestId(), fileRequest.getFileName());
+        try (Response response = HTTP_CLIENT.newCall(request).execute()) {
+            if (response.code() == 404) {
+                log.warn("{} stream upload not supported by file service, upload as json", agentContext.getRequestId());
+                streamUnsupported = true;
+                return null;
+            }
+            if (!response.isSuccessful() || response.body() == null) {
+                log.error("{} stream upload file failed {}", agentContext.getRequestId(), response.code());
+                return null;
+            }
+            String result = response.body().string();
+            log.info("{} file tool stream upload response {}", agentContext.getRequestId(), result);
+            return JSON.parseObject(result, FileResponse.class);
+        } catch (Exception e) {
+            log.error("{} stream upload file error", agentContext.getRequestId(), e);
+        }
+        return null;
+    }
+
+    private FileResponse postUploadRequest(FileRequest fileRequest) {
+        GenieConfig genieConfig = SpringContextHolder.getApplicationContext().getBean(GenieConfig.class);
+        String url = genieConfig.getCodeInterpreterUrl() + "/v1/file_tool/upload_file";
+        String json = JSON.toJSONString(fileRequest);
+        RequestBody body = RequestBody.create(json, JSON_TYPE);
         Request request = new Request.Builder()
                 .url(url)
                 .post(body)
                 .addHeader("Content-Type", "application/json")
                 .build();
-        try {
-            log.info("{} file tool upload request {}", agentContext.getRequestId(), JSON.toJSONString(fileRequest));
-            Response response = client.newCall(request).execute();
+        log.info("{} file tool upload request {}", agentContext.getRequestId(), json);
+        try (Response response = HTTP_CLIENT.newCall(request).execute()) {
+            if (Objects.nonNull(fileRequest.getFilePath()) && isReferenceUnsupported(response)) {
+                return null;
+            }
             if (!response.isSuccessful() || response.body() == null) {
                 log.error("{} upload file faied", agentContext.getRequestId());
                 return null;
             }
             String result = response.body().string();
-            FileResponse fileResponse = JSON.parseObject(result, FileResponse.class);
             log.info("{} file tool upload response {}", agentContext.getRequestId(), result);
-            // 构建前端格式
-            Map<String, Object> resultMap = new HashMap<>();
-            resultMap.put("command", "写入文件");
-            List<CodeInterpreterResponse.FileInfo> fileInfo = new ArrayList<>();
-            fileInfo.add(CodeInterpreterResponse.FileInfo.builder()
-                    .fileName(fileRequest.getFileName())
-                    .ossUrl(fileResponse.getOssUrl())
-                    .domainUrl(fileResponse.getDomainUrl())
-                    .fileSize(fileResponse.getFileSize())
-                    .build());
-            resultMap.put("fileInfo", fileInfo);
-            // 获取数字人
-            String digitalEmployee = agentContext.getToolCollection().getDigitalEmployee(getName());
-            log.info("requestId:{} task:{} toolName:{} digitalEmployee:{}", agentContext.getRequestId(),
-                    agentContext.getToolCollection().getCurrentTask(), getName(), digitalEmployee);
-            // 添加文件到上下文
-            File file = File.builder()
-                    .ossUrl(fileResponse.getOssUrl())
-                    .domainUrl(fileResponse.getDomainUrl())
-                    .fileName(fileRequest.getFileName())
-                    .fileSize(fileResponse.getFileSize())
-                    .description(fileRequest.getDescription())
-                    .isInternalFile(isInternalFile)
-                    .build();
-            agentContext.getProductFiles().add(file);
-            if (isNoticeFe) {
-                // 内部文件不通知前端
-                agentContext.getPrinter().send("file", resultMap, digitalEmployee);
-            }
-            if (!isInternalFile) {
-                // 非内部文件，参与交付物
-                agentContext.getTaskProductFiles().add(file);
+            return JSON.parseObject(result, FileResponse.class);
+        } catch (Exception e) {
+            log.error("{} upload file error", agentContext.getRequestId(), e);
+        }
+        return null;
+    }
+
+    /**
+     * 一次请求上传多个文件，结果与请求一一对应；接口不可用时返回 null，由调用方逐个上传
+     */
+    List<FileResponse> postUploadBatch(List<FileRequest> fileRequests) {
+        LocalFileStore store = SpringContextHolder.getApplicationContext().getBean(LocalFileStore.class);
+        if (batchUnsupported || (store.enabled() && (!store.writeThrough() || referenceUnsupported))) {
+            // 本地模式无需请求；引用不可用时逐个内联上传
+            return null;
+        }
+        List<LocalFileStore.Entry> stored = new ArrayList<>(fileRequests.size());
+        List<FileRequest> sent = new ArrayList<>(fileRequests.size());
+        for (FileRequest fileRequest : fileRequests) {
+            LocalFileStore.Entry entry = store.save(fileRequest.getRequestId(), fileRequest.getFileName(),
+                    fileRequest.getDescription(), fileRequest.getContent());
+            stored.add(entry);
+            sent.add(Objects.nonNull(entry) ? byReference(fileRequest, entry) : fileRequest);
+        }
+        List<FileResponse> responses = postUploadBatchRequest(sent);
+        if (Objects.nonNull(responses)) {
+            for (int i = 0; i < stored.size(); i++) {
+                if (Objects.nonNull(stored.get(i))) {
+                    store.commit(stored.get(i), responses.get(i));
+                }
             }
-            // 返回工具执行结果
-            return fileRequest.getFileName() + " 写入到文件链接: " + fileResponse.getOssUrl();
+        }
+        return responses;
+    }
 
+    private List<FileResponse> postUploadBatchRequest(List<FileRequest> fileRequests) {
+        GenieConfig genieConfig = SpringContextHolder.getApplicationContext().getBean(GenieConfig.class);
+        String url = genieConfig.getCodeInterpreterUrl() + "/v1/file_tool/upload_file_batch";
+        Map<String, Object> batch = new HashMap<>();
+        batch.put("files", fileRequests);
+        RequestBody body = RequestBody.create(JSON.toJSONString(batch), JSON_TYPE);
+        Request request = new Request.Builder()
+                .url(url)
+                .post(body)
+                .addHeader("Content-Type", "application/json")
+                .build();
+        log.info("{} file tool batch upload {} files", agentContext.getRequestId(), fileRequests.size());
+        try (Response response = HTTP_CLIENT.newCall(request).execute()) {
+            if (response.code() == 404) {
+                log.warn("{} batch upload not supported by file service, upload one by one", agentContext.getRequestId());
+                batchUnsupported = true;
+                return null;
+            }
+            if (isReferenceUnsupported(response)) {
+                return null;
+            }
+            if (!response.isSuccessful() || response.body() == null) {
+                log.error("{} batch upload file failed {}", agentContext.getRequestId(), response.code());
+                return null;
+            }
+            String result = response.body().string();
+            log.info("{} file tool batch upload response {}", agentContext.getRequestId(), result);
+            List<FileResponse> responses = JSON.parseObject(result).getJSONArray("results").toJavaList(FileResponse.class);
+            return responses.size() == fileRequests.size() ? responses : null;
         } catch (Exception e) {
-            log.error("{} upload file error", agentContext.getRequestId(), e);
+            log.error("{} batch upload file error", agentContext.getRequestId(), e);
         }
         return null;
     }
 
+    /**
+     * 按路径引用上传被明确拒绝（415：genie-tool 读不到该路径；404：接口不认识引用）时之后不再尝试引用
+     */
+    private boolean isReferenceUnsupported(Response response) {
+        if (response.code() != 404 && response.code() != 415) {
+            return false;
+        }
+        log.warn("{} file service cannot read local store paths ({}), upload content inline",
+                agentContext.getRequestId(), response.code());
+        referenceUnsupported = true;
+        return true;
+    }
+
+    /**
+     * 上传成功后：文件加入上下文、缓存失效、通知前端，返回工具执行结果
+     */
+    String registerUpload(FileRequest fileRequest, FileResponse fileResponse, Boolean isNoticeFe, Boolean isInternalFile) {
+        if (Objects.isNull(fileResponse)) {
+            return null;
+        }
+        // 构建前端格式
+        Map<String, Object> resultMap = new HashMap<>();
+        resultMap.put("command", "写入文件");
+        List<CodeInterpreterResponse.FileInfo> fileInfo = new ArrayList<>();
+        fileInfo.add(CodeInterpreterResponse.FileInfo.builder()
+                .fileName(fileRequest.getFileName())
+                .ossUrl(fileResponse.getOssUrl())
+                .domainUrl(fileResponse.getDomainUrl())
+                .fileSize(fileResponse.getFileSize())
+                .build());
+        resultMap.put("fileInfo", fileInfo);
+        // 获取数字人
+        String digitalEmployee = agentContext.getToolCollection().getDigitalEmployee(getName());
+        log.info("requestId:{} task:{} toolName:{} digitalEmployee:{}", agentContext.getRequestId(),
+                agentContext.getToolCollection().getCurrentTask(), getName(), digitalEmployee);
+        // 添加文件到上下文
+        File file = File.builder()
+                .ossUrl(fileResponse.getOssUrl())
+                .domainUrl(fileResponse.getDomainUrl())
+                .fileName(fileRequest.getFileName())
+                .fileSize(fileResponse.getFileSize())
+                .description(fileRequest.getDescription())
+                .isInternalFile(isInternalFile)
+                .build();
+        agentContext.getProductFiles().add(file);
+        // 文件已更新，读取过该文件的缓存结果失效
+        agentContext.getToolResultCache().invalidateFile(fileRequest.getFileName());
+        if (isNoticeFe) {
+            // 内部文件不通知前端
+            agentContext.getPrinter().send("file", resultMap, digitalEmployee);
+        }
+        if (!isInternalFile) {
+            // 非内部文件，参与交付物
+            agentContext.getTaskProductFiles().add(file);
+        }
+        // 返回工具执行结果
+        return fileRequest.getFileName() + " 写入到文件链接: " + fileResponse.getOssUrl();
+    }
+
     // 获取文件的 API 请求方法
     public String getFile(FileRequest fileRequest, Boolean noticeFe) {
         long startTime = System.currentTimeMillis();
-        OkHttpClient client = new OkHttpClient.Builder()
-                .connectTimeout(60, TimeUnit.SECONDS) // 设置连接超时时间为 60 秒
-                .readTimeout(300, TimeUnit.SECONDS)    // 设置读取超时时间为 60 秒
-                .writeTimeout(300, TimeUnit.SECONDS)   // 设置写入超时时间为 60 秒
-                .callTimeout(300, TimeUnit.SECONDS)    // 设置调用超时时间为 60 秒
-                .build();
 
         ApplicationContext applicationContext = SpringContextHolder.getApplicationContext();
         GenieConfig genieConfig = applicationContext.getBean(GenieConfig.class);
@@ -203,15 +467,30 @@ public class FileTool implements BaseTool {
                 .addHeader("Content-Type", "application/json")
                 .build();
         try {
-            log.info("{} file tool get request {}", agentContext.getRequestId(), JSON.toJSONString(getFileRequest));
-            Response response = client.newCall(request).execute();
-            if (!response.isSuccessful() || response.body() == null) {
-                String errMessage = "获取文件失败 " + fileRequest.getFileName();
-                return errMessage;
+            LocalFileStore store = applicationContext.getBean(LocalFileStore.class);
+            LocalFileStore.Entry local = store.lookup(agentContext.getSessionId(), StringUtil.removeSpecialChars(fileRequest.getFileName()));
+            FileResponse fileResponse;
+            if (Objects.nonNull(local)) {
+                // 本地存储已有该文件，不再请求 genie-tool
+                fileResponse = FileResponse.builder()
+                        .ossUrl(local.getOssUrl())
+                        .domainUrl(local.getDomainUrl())
+                        .fileName(local.getFileName())
+                        .fileSize(local.getFileSize())
+                        .build();
+            } else {
+                log.info("{} file tool get request {}", agentContext.getRequestId(), JSON.toJSONString(getFileRequest));
+                String result;
+                try (Response response = HTTP_CLIENT.newCall(request).execute()) {
+                    if (!response.isSuccessful() || response.body() == null) {
+                        String errMessage = "获取文件失败 " + fileRequest.getFileName();
+                        return errMessage;
+                    }
+                    result = response.body().string();
+                }
+                fileResponse = JSON.parseObject(result, FileResponse.class);
+                log.info("{} file tool get response {}", agentContext.getRequestId(), result);
             }
-            String result = response.body().string();
-            FileResponse fileResponse = JSON.parseObject(result, FileResponse.class);
-            log.info("{} file tool get response {}", agentContext.getRequestId(), result);
             // 构建前端格式
             Map<String, Object> resultMap = new HashMap<>();
             resultMap.put("command", "读取文件");
@@ -232,7 +511,10 @@ public class FileTool implements BaseTool {
                 agentContext.getPrinter().send("file", resultMap, digitalEmployee);
             }
             // 返回工具执行结果
-            String fileContent = getUrlContent(fileResponse.getOssUrl());
+            String fileContent = Objects.nonNull(local)
+                    ? store.read(local.getSessionId(), local.getFileName(), genieConfig.getFileToolContentTruncateLen(),
+                    readMode(local.getFileName()), genieConfig.getFileToolReadSampleRows())
+                    : getUrlContent(fileResponse.getOssUrl(), fileRequest.getFileName(), genieConfig.getFileToolContentTruncateLen());
             if (Objects.nonNull(fileContent)) {
                 if (fileContent.length() > genieConfig.getFileToolContentTruncateLen()) {
                     fileContent = fileContent.substring(0, genieConfig.getFileToolContentTruncateLen());
@@ -247,27 +529,28 @@ public class FileTool implements BaseTool {
         return null;
     }
 
-    private String getUrlContent(String url) {
-        OkHttpClient client = new OkHttpClient.Builder()
-                .connectTimeout(60, TimeUnit.SECONDS) // 设置连接超时时间为 60 秒
-                .readTimeout(60, TimeUnit.SECONDS)    // 设置读取超时时间为 60 秒
-                .writeTimeout(60, TimeUnit.SECONDS)   // 设置写入超时时间为 60 秒
-                .callTimeout(60, TimeUnit.SECONDS)    // 设置调用超时时间为 60 秒
-                .build();
-        Request request = new Request.Builder()
-                .url(url)
-                .build();
-        try (Response response = client.newCall(request).execute()) {
-            if (response.isSuccessful() && response.body() != null) {
-                return response.body().string();
-            } else {
-                String errMsg = String.format("获取文件失败, 状态码:%d", response.code());
-                log.error("{} 获取文件失败 {}", agentContext.getRequestId(), response.code());
-                return null;
-            }
+    /**
+     * 按截断长度流式读取文件内容
+     */
+    private String getUrlContent(String url, String fileName, int maxChars) {
+        GenieConfig genieConfig = SpringContextHolder.getApplicationContext().getBean(GenieConfig.class);
+        try {
+            return agentContext.getFileContentReader().read(url, maxChars, readMode(fileName), genieConfig.getFileToolReadSampleRows());
         } catch (IOException e) {
             log.error("{} 获取文件异常", agentContext.getRequestId(), e);
             return null;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 表格文件按配置的模式读取首尾或抽样行，其他文件只读开头
+     */
+    private static String readMode(String fileName) {
+        GenieConfig genieConfig = SpringContextHolder.getApplicationContext().getBean(GenieConfig.class);
+        String suffix = fileName.contains(".") ? fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase() : "";
+        if (Arrays.asList(genieConfig.getFileToolReadTabularSuffix().split(",")).contains(suffix)) {
+            return genieConfig.getFileToolReadTabularMode();
+        }
+        return FileContentReader.MODE_HEAD;
+    }
+}
@@ -0,0 +1,217 @@
+package com.jd.genie.agent.tool.common;
+
+import com.jd.genie.agent.agent.AgentContext;
+import com.jd.genie.agent.dto.FileRequest;
+import com.jd.genie.agent.dto.FileResponse;
+import com.jd.genie.config.GenieConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 后台文件上传器（deep_search 检索结果、回答等无需立即拿到链接的文件）
+ * 有界线程池 + 有界队列，队列满时由提交线程自己上传（背压，不丢文件）；
+ * 同一会话的小文件先攒批，达到批大小或等待超过 linger 后合并为一次请求。
+ * 读取文件列表前调用 {@link #await(AgentContext)} 等待该会话已提交的上传完成
+ */
+@Slf4j
+@Component
+public class FileUploader {
+    @Autowired
+    private GenieConfig genieConfig;
+
+    private ThreadPoolExecutor executor;
+    private ScheduledExecutorService lingerTimer;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong uploaded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong callerRuns = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        int threads = Math.max(1, genieConfig.getFileUploadThreads());
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, genieConfig.getFileUploadQueueCapacity())),
+                new BasicThreadFactory.Builder().namingPattern("file-upload-%d").daemon(true).build(),
+                (task, pool) -> {
+                    // 队列已满：在提交线程上执行，上游自然减速
+                    callerRuns.incrementAndGet();
+                    if (!pool.isShutdown()) {
+                        task.run();
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        lingerTimer = Executors.newSingleThreadScheduledExecutor(
+                new BasicThreadFactory.Builder().namingPattern("file-upload-linger-%d").daemon(true).build());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        lingerTimer.shutdownNow();
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 提交上传，立即返回；future 完成值与 FileTool.uploadFile 的返回一致，失败时为 null
+     */
+    public CompletableFuture<String> submit(FileTool fileTool, FileRequest fileRequest, Boolean isNoticeFe, Boolean isInternalFile) {
+        Upload upload = new Upload(fileTool, fileRequest, isNoticeFe, isInternalFile);
+        Session session = fileTool.getAgentContext().getUploadSession();
+        session.track(upload.future);
+        submitted.incrementAndGet();
+
+        int batchSize = genieConfig.getFileUploadBatchSize();
+        String content = fileRequest.getContent();
+        boolean small = Objects.isNull(content) || content.length() <= genieConfig.getFileUploadSmallFileSize();
+        if (!small || batchSize <= 1) {
+            dispatch(Collections.singletonList(upload));
+            return upload.future;
+        }
+        List<Upload> ready;
+        boolean first;
+        synchronized (session) {
+            first = session.batch.isEmpty();
+            session.batch.add(upload);
+            ready = session.batch.size() >= batchSize ? session.drainBatch() : null;
+        }
+        if (Objects.nonNull(ready)) {
+            dispatch(ready);
+        } else if (first) {
+            lingerTimer.schedule(() -> flush(session), genieConfig.getFileUploadBatchLingerMs(), TimeUnit.MILLISECONDS);
+        }
+        return upload.future;
+    }
+
+    /**
+     * 等待会话已提交的上传完成（未凑满的批次立即发出），超时后不再等待
+     */
+    public void await(AgentContext context) {
+        Session session = context.peekUploadSession();
+        if (Objects.isNull(session)) {
+            return;
+        }
+        flush(session);
+        List<CompletableFuture<String>> pending = session.pending();
+        if (pending.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture[0]))
+                    .get(genieConfig.getFileUploadAwaitTimeout(), TimeUnit.MILLISECONDS);
+            log.info("{} waited {}ms for {} background uploads", context.getRequestId(), System.currentTimeMillis() - start, pending.size());
+        } catch (TimeoutException e) {
+            log.warn("{} background uploads not finished in {}ms, continue without them", context.getRequestId(), genieConfig.getFileUploadAwaitTimeout());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("{} background upload error", context.getRequestId(), e);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("submitted", submitted.get());
+        stats.put("uploaded", uploaded.get());
+        stats.put("failed", failed.get());
+        stats.put("batches", batches.get());
+        stats.put("callerRuns", callerRuns.get());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("active", executor.getActiveCount());
+        return stats;
+    }
+
+    private void flush(Session session) {
+        List<Upload> ready;
+        synchronized (session) {
+            ready = session.drainBatch();
+        }
+        if (!ready.isEmpty()) {
+            dispatch(ready);
+        }
+    }
+
+    private void dispatch(List<Upload> uploads) {
+        executor.execute(() -> upload(uploads));
+    }
+
+    private void upload(List<Upload> uploads) {
+        FileTool fileTool = uploads.get(0).fileTool;
+        List<FileResponse> responses = null;
+        if (uploads.size() > 1) {
+            List<FileRequest> requests = new ArrayList<>(uploads.size());
+            for (Upload upload : uploads) {
+                requests.add(upload.request);
+            }
+            responses = fileTool.postUploadBatch(requests);
+            batches.incrementAndGet();
+        }
+        for (int i = 0; i < uploads.size(); i++) {
+            Upload upload = uploads.get(i);
+            String result = null;
+            try {
+                // 批量接口不可用时逐个上传
+                result = Objects.nonNull(responses)
+                        ? fileTool.registerUpload(upload.request, responses.get(i), upload.isNoticeFe, upload.isInternalFile)
+                        : fileTool.uploadFile(upload.request, upload.isNoticeFe, upload.isInternalFile);
+            } catch (Exception e) {
+                log.error("{} background upload {} error", fileTool.getAgentContext().getRequestId(), upload.request.getFileName(), e);
+            }
+            (Objects.nonNull(result) ? uploaded : failed).incrementAndGet();
+            upload.future.complete(result);
+        }
+    }
+
+    private static class Upload {
+        private final FileTool fileTool;
+        private final FileRequest request;
+        private final Boolean isNoticeFe;
+        private final Boolean isInternalFile;
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+
+        private Upload(FileTool fileTool, FileRequest request, Boolean isNoticeFe, Boolean isInternalFile) {
+            this.fileTool = fileTool;
+            this.request = request;
+            this.isNoticeFe = isNoticeFe;
+            this.isInternalFile = isInternalFile;
+        }
+    }
+
+    /**
+     * 会话的上传状态：未完成的上传与待发出的小文件批次（挂在 AgentContext 上）
+     */
+    public static class Session {
+        private final List<CompletableFuture<String>> pending = new ArrayList<>();
+        private List<Upload> batch = new ArrayList<>();
+
+        private synchronized void track(CompletableFuture<String> future) {
+            pending.removeIf(CompletableFuture::isDone);
+            pending.add(future);
+        }
+
+        private synchronized List<CompletableFuture<String>> pending() {
+            pending.removeIf(CompletableFuture::isDone);
+            return new ArrayList<>(pending);
+        }
+
+        private List<Upload> drainBatch() {
+            List<Upload> drained = batch;
+            batch = new ArrayList<>();
+            return drained;
+        }
+    }
+}
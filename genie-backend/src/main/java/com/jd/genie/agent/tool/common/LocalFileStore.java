@@ -0,0 +1,381 @@
+package com.jd.genie.agent.tool.common;
+
+import com.alibaba.fastjson.JSON;
+import com.jd.genie.agent.dto.FileResponse;
+import com.jd.genie.agent.util.StreamingBody;
+import com.jd.genie.agent.util.StringUtil;
+import com.jd.genie.config.GenieConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地内容寻址文件存储
+ * 文件内容按 SHA-256 去重保存在 blobs 目录，(会话, 文件名) 到内容的索引每条一个 JSON 文件，重启后可恢复。
+ * 读取走内存映射，同一内容只映射一次；上传到 genie-tool 时传本地路径（引用）而不是内联内容。
+ * mode：write_through 本地保存并登记到远程存储（其他工具可见），local 只保存在本地
+ */
+@Slf4j
+@Component
+public class LocalFileStore {
+    public static final String MODE_OFF = "off";
+    public static final String MODE_WRITE_THROUGH = "write_through";
+    public static final String MODE_LOCAL = "local";
+
+    private static final String SUFFIX = ".json";
+
+    @Autowired
+    private GenieConfig genieConfig;
+
+    private Path blobDir;
+    private Path indexDir;
+    private ScheduledExecutorService cleaner;
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+    private Map<String, MappedByteBuffer> mapped;
+
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong dedupWrites = new AtomicLong();
+    private final AtomicLong localReads = new AtomicLong();
+    private final AtomicLong mapHits = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        int mappedEntries = Math.max(1, genieConfig.getFileStoreMappedEntries());
+        mapped = Collections.synchronizedMap(new LinkedHashMap<String, MappedByteBuffer>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MappedByteBuffer> eldest) {
+                return size() > mappedEntries;
+            }
+        });
+        if (!enabled()) {
+            return;
+        }
+        Path root = Paths.get(genieConfig.getFileStoreDir()).toAbsolutePath();
+        blobDir = root.resolve("blobs");
+        indexDir = root.resolve("index");
+        try {
+            Files.createDirectories(blobDir);
+            Files.createDirectories(indexDir);
+            loadIndex();
+        } catch (IOException e) {
+            log.error("file store dir {} create failed, local store disabled", root, e);
+            blobDir = null;
+            return;
+        }
+        cleaner = Executors.newSingleThreadScheduledExecutor(
+                new BasicThreadFactory.Builder().namingPattern("file-store-clean-%d").daemon(true).build());
+        cleaner.scheduleWithFixedDelay(this::purge, 1, 60, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (Objects.nonNull(cleaner)) {
+            cleaner.shutdownNow();
+        }
+    }
+
+    public boolean enabled() {
+        return !MODE_OFF.equals(genieConfig.getFileStoreMode());
+    }
+
+    /**
+     * 保存后是否还需要登记到远程存储
+     */
+    public boolean writeThrough() {
+        return MODE_WRITE_THROUGH.equals(genieConfig.getFileStoreMode());
+    }
+
+    /**
+     * 保存文件内容（相同内容只写一次），返回待登记的条目；失败返回 null
+     * 内容边编码边写入临时文件并计算 hash，不生成完整的 byte[]
+     */
+    public Entry save(String sessionId, String fileName, String description, String content) {
+        if (!enabled() || Objects.isNull(blobDir) || Objects.isNull(content)) {
+            return null;
+        }
+        Path tmp = blobDir.resolve("upload.tmp." + Thread.currentThread().getId() + "." + System.nanoTime());
+        String hash;
+        long size;
+        Path blob;
+        try {
+            MessageDigest digest = StringUtil.sha256();
+            try (OutputStream out = new DigestOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), StreamingBody.BUFFER_SIZE), digest)) {
+                size = StreamingBody.writeUtf8(content, out);
+            }
+            hash = StringUtil.toHex(digest.digest());
+            blob = blobPath(hash);
+            if (touch(blob)) {
+                dedupWrites.incrementAndGet();
+                Files.deleteIfExists(tmp);
+            } else {
+                Files.createDirectories(blob.getParent());
+                Files.move(tmp, blob, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            log.warn("file store write {} failed: {}", fileName, e.getMessage());
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+                // 临时文件由下次清理删除
+            }
+            return null;
+        }
+        writes.incrementAndGet();
+        Entry entry = new Entry();
+        entry.setSessionId(sessionId);
+        entry.setFileName(fileName);
+        entry.setDescription(description);
+        entry.setHash(hash);
+        entry.setFileSize((int) size);
+        entry.setPath(blob.toString());
+        entry.setTime(System.currentTimeMillis());
+        return entry;
+    }
+
+    /**
+     * 登记条目：链接取远程存储的返回（write_through）或本地链接（local），与远程存储的 File/FileResponse 元数据一致
+     */
+    public void commit(Entry entry, FileResponse response) {
+        entry.setOssUrl(response.getOssUrl());
+        entry.setDomainUrl(response.getDomainUrl());
+        index.put(key(entry.getSessionId(), entry.getFileName()), entry);
+        writeIndex(entry);
+    }
+
+    /**
+     * local 模式下由本服务提供下载（/files/{hash}/{fileName}）
+     */
+    public FileResponse localResponse(Entry entry) {
+        String url = genieConfig.getFileStoreBaseUrl() + "/files/" + entry.getHash() + "/"
+                + URLEncoder.encode(entry.getFileName(), StandardCharsets.UTF_8).replace("+", "%20");
+        return FileResponse.builder()
+                .requestId(entry.getSessionId())
+                .fileName(entry.getFileName())
+                .ossUrl(url)
+                .domainUrl(url)
+                .fileSize(entry.getFileSize())
+                .build();
+    }
+
+    /**
+     * 内容文件路径，hash 不合法或文件不存在返回 null
+     */
+    public Path blob(String hash) {
+        if (Objects.isNull(blobDir) || Objects.isNull(hash) || !hash.matches("[0-9a-f]{64}")) {
+            return null;
+        }
+        Path blob = blobPath(hash);
+        return Files.exists(blob) ? blob : null;
+    }
+
+    /**
+     * 同名文件由其他工具在远程存储中重新生成：去掉本地索引，之后从远程读取
+     */
+    public void forget(String sessionId, String fileName) {
+        if (Objects.isNull(fileName)) {
+            return;
+        }
+        Entry entry = index.remove(key(sessionId, StringUtil.removeSpecialChars(fileName)));
+        if (Objects.nonNull(entry) && Objects.nonNull(indexDir)) {
+            try {
+                Files.deleteIfExists(indexPath(entry));
+            } catch (IOException e) {
+                log.warn("file store forget {} failed: {}", fileName, e.getMessage());
+            }
+        }
+    }
+
+    public Entry lookup(String sessionId, String fileName) {
+        Entry entry = index.get(key(sessionId, fileName));
+        if (Objects.isNull(entry) || !Files.exists(Paths.get(entry.getPath()))) {
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * 本地读取文件内容（规则同 FileContentReader），文件不在本地返回 null
+     */
+    public String read(String sessionId, String fileName, int maxChars, String mode, int sampleRows) {
+        Entry entry = lookup(sessionId, fileName);
+        if (Objects.isNull(entry)) {
+            return null;
+        }
+        try {
+            String content = FileContentReader.readMapped(map(entry), maxChars, mode, sampleRows);
+            localReads.incrementAndGet();
+            return content;
+        } catch (IOException e) {
+            log.warn("file store read {} failed: {}", fileName, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 内容文件只读映射，内容不可变，同一 hash 的映射在各会话间共享
+     */
+    private MappedByteBuffer map(Entry entry) throws IOException {
+        MappedByteBuffer buffer = mapped.get(entry.getHash());
+        if (Objects.nonNull(buffer)) {
+            mapHits.incrementAndGet();
+            return buffer;
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(entry.getPath()), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        mapped.put(entry.getHash(), buffer);
+        return buffer;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", genieConfig.getFileStoreMode());
+        stats.put("dir", Objects.nonNull(blobDir) ? blobDir.getParent().toString() : null);
+        stats.put("files", index.size());
+        stats.put("writes", writes.get());
+        stats.put("dedupWrites", dedupWrites.get());
+        stats.put("localReads", localReads.get());
+        stats.put("mappedFiles", mapped.size());
+        stats.put("mapHits", mapHits.get());
+        return stats;
+    }
+
+    private static String key(String sessionId, String fileName) {
+        return sessionId + "|" + fileName;
+    }
+
+    private Path blobPath(String hash) {
+        return blobDir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private Path indexPath(Entry entry) {
+        return indexDir.resolve(StringUtil.sha256Hex(key(entry.getSessionId(), entry.getFileName())) + SUFFIX);
+    }
+
+    private void writeIndex(Entry entry) {
+        if (Objects.isNull(indexDir)) {
+            return;
+        }
+        Path path = indexPath(entry);
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp." + Thread.currentThread().getId());
+        try {
+            Files.write(tmp, JSON.toJSONString(entry).getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("file store index write {} failed: {}", entry.getFileName(), e.getMessage());
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(indexDir, "*" + SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    Entry entry = JSON.parseObject(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), Entry.class);
+                    index.put(key(entry.getSessionId(), entry.getFileName()), entry);
+                } catch (Exception e) {
+                    log.warn("file store index {} unreadable: {}", file, e.getMessage());
+                }
+            }
+        }
+        log.info("file store loaded {} index entries", index.size());
+    }
+
+    /**
+     * 删除超过保留期的索引，再删除不再被任何索引引用的内容文件
+     */
+    private void purge() {
+        long expireBefore = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(genieConfig.getFileStoreRetentionHours());
+        int removed = 0;
+        for (Iterator<Entry> it = index.values().iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (entry.getTime() < expireBefore) {
+                it.remove();
+                removed++;
+                try {
+                    Files.deleteIfExists(indexPath(entry));
+                } catch (IOException e) {
+                    log.warn("file store purge index {} failed: {}", entry.getFileName(), e.getMessage());
+                }
+            }
+        }
+        Set<String> referenced = new HashSet<>();
+        for (Entry entry : index.values()) {
+            referenced.add(entry.getHash());
+        }
+        int blobs = 0;
+        try (DirectoryStream<Path> shards = Files.newDirectoryStream(blobDir)) {
+            for (Path shard : shards) {
+                if (!Files.isDirectory(shard)) {
+                    // 中断写入留下的临时文件
+                    if (Files.getLastModifiedTime(shard).toMillis() < expireBefore) {
+                        Files.deleteIfExists(shard);
+                    }
+                    continue;
+                }
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(shard)) {
+                    for (Path file : files) {
+                        String hash = file.getFileName().toString();
+                        // 刚写入但尚未登记索引的内容保留到下一轮
+                        if (!referenced.contains(hash) && Files.getLastModifiedTime(file).toMillis() < expireBefore) {
+                            mapped.remove(hash);
+                            Files.deleteIfExists(file);
+                            blobs++;
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("file store purge failed", e);
+        }
+        if (removed > 0 || blobs > 0) {
+            log.info("file store purged {} index entries and {} blobs", removed, blobs);
+        }
+    }
+
+    /**
+     * 已有相同内容时刷新修改时间，避免仍在引用的内容按过期被清理；不存在（或刚被清理）返回 false
+     */
+    private static boolean touch(Path blob) throws IOException {
+        try {
+            Files.setLastModifiedTime(blob, FileTime.fromMillis(System.currentTimeMillis()));
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    @Data
+    public static class Entry {
+        private String sessionId;
+        private String fileName;
+        private String description;
+        private String hash;
+        private Integer fileSize;
+        private String path;
+        private String ossUrl;
+        private String domainUrl;
+        private long time;
+    }
+}
@@ -8,7 +8,8 @@ import com.jd.genie.agent.dto.File;
 import com.jd.genie.agent.dto.Memory;
 import com.jd.genie.agent.dto.Message;
 import com.jd.genie.agent.enums.RoleType;
-import com.jd.genie.agent.tool.BaseTool;
+import com.jd.genie.agent.printer.StreamFlushPolicy;
+import com.jd.genie.agent.tool.TypedTool;
 import com.jd.genie.agent.util.SpringContextHolder;
 import com.jd.genie.agent.util.StringUtil;
 import com.jd.genie.config.GenieConfig;
@@ -22,14 +23,15 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Data
 
-public class ReportTool implements BaseTool {
+public class ReportTool implements TypedTool<ReportTool.Args> {
     private AgentContext agentContext;
 
     @Override
@@ -65,16 +67,31 @@ public class ReportTool implements BaseTool {
         return parameters;
     }
 
+    /**
+     * report_tool 参数
+     */
+    @Data
+    public static class Args {
+        private String task;
+        private String fileDescription;
+        private String fileName;
+        private String fileType;
+    }
+
+    @Override
+    public Class<Args> argumentType() {
+        return Args.class;
+    }
+
     @Override
-    public Object execute(Object input) {
+    public Object call(Args args) {
         long startTime = System.currentTimeMillis();
 
         try {
-            Map<String, Object> params = (Map<String, Object>) input;
-            String task = (String) params.get("task");
-            String fileDescription = (String) params.get("fileDescription");
-            String fileName = (String) params.get("fileName");
-            String fileType = (String) params.get("fileType");
+            String task = args.getTask();
+            String fileDescription = args.getFileDescription();
+            String fileName = args.getFileName();
+            String fileType = args.getFileType();
 
 
             if (fileName.isEmpty()) {
@@ -83,6 +100,7 @@ public class ReportTool implements BaseTool {
                 return null;
             }
 
+            agentContext.awaitUploads();
             List<String> fileNames = agentContext.getProductFiles().stream().map(File::getFileName).collect(Collectors.toList());
             
             // 从memory中提取所有TOOL角色的消息content（工具调用结果）
@@ -135,6 +153,12 @@ public class ReportTool implements BaseTool {
                     agentContext.getRequestId(), toolResults.size(), 
                     toolResults.stream().mapToInt(String::length).sum());
             
+            // 工具结果按哈希引用，只发送 genie-tool 尚未持有的部分
+            EvidenceStore evidenceStore = SpringContextHolder.getApplicationContext().getBean(EvidenceStore.class);
+            String evidenceTask = agentContext.getQuery() + "\n" + task;
+            EvidenceStore.Bundle bundle = evidenceStore.enabled()
+                    ? evidenceStore.bundle(agentContext.getSessionId(), toolResults, evidenceTask) : null;
+
             Map<String, Object> streamMode = new HashMap<>();
             streamMode.put("mode", "token");
             streamMode.put("token", 10);
@@ -149,12 +173,26 @@ public class ReportTool implements BaseTool {
                     .contentStream(agentContext.getIsStream())
                     .streamMode(streamMode)
                     .fileType(fileType)
-                    .toolResults(toolResults) // 传递工具调用结果
+                    .toolResults(Objects.isNull(bundle) ? toolResults : null) // 传递工具调用结果
                     .build();
-            
+            attachEvidence(request, bundle);
+
             // 调用流式 API
-            Future future = callCodeAgentStream(request);
-            Object object = future.get();
+            Object object;
+            try {
+                object = callCodeAgentStream(request).get();
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof EvidenceMissingException)) {
+                    throw e;
+                }
+                log.warn("{} report_tool evidence missing on genie-tool, resend all", agentContext.getRequestId());
+                bundle = evidenceStore.resend(agentContext.getSessionId(), toolResults, evidenceTask);
+                attachEvidence(request, bundle);
+                object = callCodeAgentStream(request).get();
+            }
+            if (Objects.nonNull(bundle)) {
+                evidenceStore.acknowledge(agentContext.getSessionId(), bundle);
+            }
 
             return object;
         } catch (Exception e) {
@@ -164,6 +202,27 @@ public class ReportTool implements BaseTool {
         return null;
     }
 
+    private void attachEvidence(CodeInterpreterRequest request, EvidenceStore.Bundle bundle) {
+        if (Objects.isNull(bundle)) {
+            return;
+        }
+        request.setEvidenceRefs(bundle.getRefs());
+        request.setEvidence(bundle.getDelta());
+        request.setRelevantRefs(bundle.getRelevant());
+        log.info("{} report_tool evidence {} refs ({} chars), send {} new ({} chars), relevant {}",
+                agentContext.getRequestId(), bundle.getRefs().size(), bundle.getTotalChars(), bundle.getDelta().size(),
+                bundle.getDeltaChars(), Objects.nonNull(bundle.getRelevant()) ? bundle.getRelevant().size() : "all");
+    }
+
+    /**
+     * genie-tool 缺少引用的证据内容（409），需要整体重发
+     */
+    private static class EvidenceMissingException extends IOException {
+        private EvidenceMissingException(String missing) {
+            super("evidence missing: " + missing);
+        }
+    }
+
     /**
      * 过滤模型输出中的think内容
      * @param content 原始内容
@@ -227,15 +286,17 @@ public class ReportTool implements BaseTool {
             ApplicationContext applicationContext = SpringContextHolder.getApplicationContext();
             GenieConfig genieConfig = applicationContext.getBean(GenieConfig.class);
             String url = genieConfig.getCodeInterpreterUrl() + "/v1/tool/report";
+            String requestJson = JSONObject.toJSONString(codeRequest);
             RequestBody body = RequestBody.create(
                     MediaType.parse("application/json"),
-                    JSONObject.toJSONString(codeRequest)
+                    requestJson
             );
 
-            String requestJson = JSONObject.toJSONString(codeRequest);
             log.info("{} report_tool request {}", agentContext.getRequestId(), requestJson);
             // 特别检查 toolResults 字段是否在 JSON 中
-            if (codeRequest.getToolResults() != null && !codeRequest.getToolResults().isEmpty()) {
+            if (codeRequest.getEvidenceRefs() != null) {
+                log.info("{} report_tool request中按引用包含 {} 个工具结果", agentContext.getRequestId(), codeRequest.getEvidenceRefs().size());
+            } else if (codeRequest.getToolResults() != null && !codeRequest.getToolResults().isEmpty()) {
                 log.info("{} report_tool request中包含 {} 个toolResults", agentContext.getRequestId(), codeRequest.getToolResults().size());
                 if (requestJson.contains("toolResults")) {
                     log.info("{} report_tool JSON中包含toolResults字段", agentContext.getRequestId());
@@ -250,9 +311,7 @@ public class ReportTool implements BaseTool {
                     .post(body);
             Request request = requestBuilder.build();
 
-            String[] interval = genieConfig.getMessageInterval().getOrDefault("report", "1,4").split(",");
-            int firstInterval = Integer.parseInt(interval[0]);
-            int sendInterval = Integer.parseInt(interval[1]);
+            StreamFlushPolicy flushPolicy = StreamFlushPolicy.of(codeRequest.getFileType());
             client.newCall(request).enqueue(new Callback() {
                 @Override
                 public void onFailure(Call call, IOException e) {
@@ -269,6 +328,11 @@ public class ReportTool implements BaseTool {
                             .build();
                     try {
                         ResponseBody responseBody = response.body();
+                        if (response.code() == 409 && codeRequest.getEvidenceRefs() != null) {
+                            String missing = responseBody != null ? responseBody.string() : "";
+                            future.completeExceptionally(new EvidenceMissingException(missing));
+                            return;
+                        }
                         if (!response.isSuccessful() || responseBody == null) {
                             log.error("{} report_tool request error.", agentContext.getRequestId());
                             future.completeExceptionally(new IOException("Unexpected response code: " + response));
@@ -276,11 +340,17 @@ public class ReportTool implements BaseTool {
                         }
 
                         int index = 1;
-                        StringBuilder stringBuilderIncr = new StringBuilder();
                         String line;
                         String messageId = StringUtil.getUUID();
                         // 获取数字人名称
                         String digitalEmployee = agentContext.getToolCollection().getDigitalEmployee(getName());
+                        // 到期刷新使用最近一个增量的外壳发送合并后的内容
+                        AtomicReference<CodeInterpreterResponse> lastDelta = new AtomicReference<>();
+                        StreamFlushPolicy.Buffer flushBuffer = flushPolicy.newBuffer(text -> {
+                            CodeInterpreterResponse delta = lastDelta.get();
+                            delta.setData(text);
+                            agentContext.getPrinter().send(messageId, codeRequest.getFileType(), delta, digitalEmployee, false);
+                        });
                         BufferedReader reader = new BufferedReader(new InputStreamReader(responseBody.byteStream()));
                         while ((line = reader.readLine()) != null) {
                             if (line.startsWith("data: ")) {
@@ -296,6 +366,8 @@ public class ReportTool implements BaseTool {
                                 }
                                 codeResponse = JSONObject.parseObject(data, CodeInterpreterResponse.class);
                                 if (codeResponse.getIsFinal()) {
+                                    // 最终结果包含完整内容，未刷新的增量不再发送
+                                    flushBuffer.close();
                                     // report_tool 只会输出一个文件，使用模型输出的文件名和描述
                                     if (Objects.nonNull(codeResponse.getFileInfo())) {
                                         for (CodeInterpreterResponse.FileInfo fileInfo : codeResponse.getFileInfo()) {
@@ -309,20 +381,21 @@ public class ReportTool implements BaseTool {
                                                     .build();
                                             agentContext.getProductFiles().add(file);
                                             agentContext.getTaskProductFiles().add(file);
+                                            agentContext.getToolResultCache().invalidateFile(file.getFileName());
+                                            // genie-tool 生成的新版本，本地存储中的同名旧内容不再使用
+                                            SpringContextHolder.getApplicationContext().getBean(LocalFileStore.class).forget(agentContext.getSessionId(), file.getFileName());
                                         }
                                     }
                                     agentContext.getPrinter().send(messageId, codeRequest.getFileType(), codeResponse, digitalEmployee, true);
                                 } else {
-                                    stringBuilderIncr.append(filterThinkContent(codeResponse.getData()));
-                                    if (index == firstInterval || index % sendInterval == 0) {
-                                        codeResponse.setData(stringBuilderIncr.toString());
-                                        agentContext.getPrinter().send(messageId, codeRequest.getFileType(), codeResponse, digitalEmployee, false);
-                                        stringBuilderIncr.setLength(0);
-                                    }
+                                    String delta = filterThinkContent(codeResponse.getData());
+                                    lastDelta.set(codeResponse);
+                                    flushBuffer.offer(delta);
                                 }
                                 index++;
                             }
                         }
+                        flushBuffer.close();
                     } catch (Exception e) {
                         log.error("{} report_tool request error", agentContext.getRequestId(), e);
                         future.completeExceptionally(e);
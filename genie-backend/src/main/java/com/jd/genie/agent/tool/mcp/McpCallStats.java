@@ -0,0 +1,71 @@
+package com.jd.genie.agent.tool.mcp;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MCP 工具调用耗时统计
+ * 每个工具保留最近 WINDOW 次调用的耗时，查询时计算分位数
+ */
+public class McpCallStats {
+    private static final int WINDOW = 1024;
+
+    private final Map<String, ToolStats> tools = new ConcurrentHashMap<>();
+
+    public void record(String tool, long latencyMs, boolean success) {
+        tools.computeIfAbsent(tool, k -> new ToolStats()).record(latencyMs, success);
+    }
+
+    /**
+     * 各工具调用次数、失败次数与 p50/p90/p99/max 耗时（毫秒）
+     */
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> result = new TreeMap<>();
+        for (Map.Entry<String, ToolStats> entry : tools.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return result;
+    }
+
+    private static class ToolStats {
+        private final long[] window = new long[WINDOW];
+        private int size;
+        private int next;
+        private long count;
+        private long failures;
+
+        private synchronized void record(long latencyMs, boolean success) {
+            window[next] = latencyMs;
+            next = (next + 1) % WINDOW;
+            size = Math.min(size + 1, WINDOW);
+            count++;
+            if (!success) {
+                failures++;
+            }
+        }
+
+        private Map<String, Object> snapshot() {
+            long[] samples;
+            Map<String, Object> stats = new LinkedHashMap<>();
+            synchronized (this) {
+                samples = Arrays.copyOf(window, size);
+                stats.put("count", count);
+                stats.put("failures", failures);
+            }
+            Arrays.sort(samples);
+            stats.put("p50", percentile(samples, 0.50));
+            stats.put("p90", percentile(samples, 0.90));
+            stats.put("p99", percentile(samples, 0.99));
+            stats.put("max", samples.length == 0 ? 0 : samples[samples.length - 1]);
+            return stats;
+        }
+
+        private static long percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.jd.genie.agent.tool.mcp;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.jd.genie.config.GenieConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * MCP 会话池：每个 MCP 服务一条长连接会话（McpSseSession），所有请求的工具调用复用并多路复用
+ * 会话断开后下次调用时重建；建立失败后在 retry_interval 内直接失败，由调用方回退到 MCP 网关
+ */
+@Slf4j
+@Component
+public class McpSessionPool {
+    @Autowired
+    private GenieConfig genieConfig;
+
+    private final Map<String, McpSseSession> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+    private final Map<String, Long> retryAfter = new ConcurrentHashMap<>();
+    private final McpCallStats callStats = new McpCallStats();
+
+    public boolean enabled() {
+        return Boolean.TRUE.equals(genieConfig.getMcpSessionEnable());
+    }
+
+    /**
+     * 获取（必要时建立）服务会话，无法建立时抛出 IOException
+     */
+    public McpSseSession session(String serverUrl) throws IOException {
+        McpSseSession session = sessions.get(serverUrl);
+        if (Objects.nonNull(session) && session.isOpen()) {
+            return session;
+        }
+        synchronized (locks.computeIfAbsent(serverUrl, k -> new Object())) {
+            session = sessions.get(serverUrl);
+            if (Objects.nonNull(session) && session.isOpen()) {
+                return session;
+            }
+            long retry = retryAfter.getOrDefault(serverUrl, 0L);
+            if (System.currentTimeMillis() < retry) {
+                throw new IOException(serverUrl + " mcp session unavailable, retry after " + retry);
+            }
+            try {
+                session = new McpSseSession(serverUrl, genieConfig.getMcpSessionConnectTimeout()).connect();
+            } catch (IOException e) {
+                retryAfter.put(serverUrl, System.currentTimeMillis() + genieConfig.getMcpSessionRetryInterval());
+                throw e;
+            }
+            retryAfter.remove(serverUrl);
+            sessions.put(serverUrl, session);
+            return session;
+        }
+    }
+
+    /**
+     * 调用工具，返回 MCP CallToolResult；会话建立失败抛出 IOException（未发出调用）
+     */
+    public JSONObject callTool(String serverUrl, String name, Object arguments) throws IOException, McpCallException {
+        McpSseSession session = session(serverUrl);
+        JSONObject params = new JSONObject(true);
+        params.put("name", name);
+        params.put("arguments", Objects.requireNonNullElse(arguments, Collections.emptyMap()));
+        return await(session.request("tools/call", params), genieConfig.getMcpSessionCallTimeout());
+    }
+
+    /**
+     * 列出服务的全部工具（处理分页）
+     */
+    public JSONArray listTools(String serverUrl) throws IOException, McpCallException {
+        McpSseSession session = session(serverUrl);
+        JSONArray tools = new JSONArray();
+        String cursor = null;
+        do {
+            JSONObject params = new JSONObject();
+            if (Objects.nonNull(cursor)) {
+                params.put("cursor", cursor);
+            }
+            JSONObject result = await(session.request("tools/list", params), genieConfig.getMcpSessionCallTimeout());
+            if (Objects.nonNull(result.getJSONArray("tools"))) {
+                tools.addAll(result.getJSONArray("tools"));
+            }
+            cursor = result.getString("nextCursor");
+        } while (Objects.nonNull(cursor) && !cursor.isEmpty());
+        return tools;
+    }
+
+    public McpCallStats getCallStats() {
+        return callStats;
+    }
+
+    public Map<String, Object> stats() {
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> servers = new ArrayList<>();
+        for (Map.Entry<String, McpSseSession> entry : sessions.entrySet()) {
+            Map<String, Object> server = new LinkedHashMap<>();
+            server.put("serverUrl", entry.getKey());
+            server.put("open", entry.getValue().isOpen());
+            server.put("pendingCalls", entry.getValue().getPendingCount());
+            server.put("ageMs", now - entry.getValue().getCreateTime());
+            server.put("closeReason", entry.getValue().getCloseReason());
+            servers.add(server);
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sessionEnable", enabled());
+        stats.put("sessions", servers);
+        stats.put("tools", callStats.snapshot());
+        return stats;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        for (McpSseSession session : sessions.values()) {
+            session.close("shutdown");
+        }
+        sessions.clear();
+    }
+
+    private static JSONObject await(CompletableFuture<JSONObject> future, long timeoutMs) throws McpCallException {
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            throw new McpCallException("timeout after " + timeoutMs + "ms", e);
+        } catch (ExecutionException e) {
+            throw new McpCallException(e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(false);
+            throw new McpCallException("interrupted", e);
+        }
+    }
+
+    /**
+     * 调用已发出但失败（服务返回错误、超时、会话中途断开），不应回退重试
+     */
+    public static class McpCallException extends Exception {
+        public McpCallException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.jd.genie.agent.tool.mcp;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.*;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 与单个 MCP 服务的长连接会话（MCP HTTP+SSE 传输）
+ * GET 服务地址建立 SSE 流，服务端首先下发 endpoint 事件给出消息提交地址；
+ * 之后每个 JSON-RPC 请求 POST 到该地址，响应从同一条 SSE 流按 id 返回。
+ * 并发调用共用这条会话，按 id 匹配响应，互不阻塞。SSE 流断开后会话失效，未完成的调用立即失败。
+ */
+@Slf4j
+public class McpSseSession {
+    private static final String PROTOCOL_VERSION = "2024-11-05";
+    private static final MediaType JSON_TYPE = MediaType.get("application/json; charset=utf-8");
+
+    /**
+     * 所有会话共用连接池；SSE 流长期保持，不设读超时，调用超时由各请求自行控制
+     */
+    private static final OkHttpClient CLIENT = new OkHttpClient.Builder()
+            .readTimeout(0, TimeUnit.MILLISECONDS)
+            .dispatcher(new Dispatcher(Executors.newCachedThreadPool(
+                    new BasicThreadFactory.Builder().namingPattern("mcp-session-%d").daemon(true).build())))
+            .build();
+
+    static {
+        CLIENT.dispatcher().setMaxRequests(256);
+        CLIENT.dispatcher().setMaxRequestsPerHost(64);
+    }
+
+    private final String serverUrl;
+    private final long connectTimeout;
+    private final AtomicLong ids = new AtomicLong();
+    private final Map<Long, CompletableFuture<JSONObject>> pending = new ConcurrentHashMap<>();
+    private final CompletableFuture<String> endpoint = new CompletableFuture<>();
+    private final long createTime = System.currentTimeMillis();
+    private volatile Call stream;
+    private volatile boolean closed;
+    private volatile String closeReason;
+
+    public McpSseSession(String serverUrl, long connectTimeout) {
+        this.serverUrl = serverUrl;
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * 建立 SSE 流并完成 initialize 握手
+     */
+    public McpSseSession connect() throws IOException {
+        Request request = new Request.Builder().url(serverUrl).header("Accept", "text/event-stream").get().build();
+        stream = CLIENT.newCall(request);
+        stream.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                close("connect failed: " + e.getMessage());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (ResponseBody body = response.body()) {
+                    if (!response.isSuccessful() || Objects.isNull(body)) {
+                        close("sse status " + response.code());
+                        return;
+                    }
+                    read(body);
+                    close("sse stream ended");
+                } catch (Exception e) {
+                    close("sse stream error: " + e.getMessage());
+                }
+            }
+        });
+        try {
+            endpoint.get(connectTimeout, TimeUnit.MILLISECONDS);
+            JSONObject params = new JSONObject();
+            params.put("protocolVersion", PROTOCOL_VERSION);
+            params.put("capabilities", new JSONObject());
+            params.put("clientInfo", Map.of("name", "genie-backend", "version", "0.1.0"));
+            request("initialize", params).get(connectTimeout, TimeUnit.MILLISECONDS);
+            notify("notifications/initialized", null);
+        } catch (Exception e) {
+            close("initialize failed: " + e.getMessage());
+            throw new IOException(serverUrl + " mcp session connect failed: " + e.getMessage(), e);
+        }
+        log.info("mcp session {} connected, endpoint {}", serverUrl, endpoint.getNow(""));
+        return this;
+    }
+
+    /**
+     * 发送 JSON-RPC 请求，返回 result；服务端返回 error 或会话断开时异常完成
+     */
+    public CompletableFuture<JSONObject> request(String method, Object params) {
+        long id = ids.incrementAndGet();
+        CompletableFuture<JSONObject> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(new IOException("mcp session closed: " + closeReason));
+            return future;
+        }
+        pending.put(id, future);
+        future.whenComplete((r, e) -> pending.remove(id));
+        JSONObject message = new JSONObject(true);
+        message.put("jsonrpc", "2.0");
+        message.put("id", id);
+        message.put("method", method);
+        if (Objects.nonNull(params)) {
+            message.put("params", params);
+        }
+        post(message, future);
+        if (closed) {
+            // 与 close 并发：close 可能已遍历过 pending
+            future.completeExceptionally(new IOException("mcp session closed: " + closeReason));
+        }
+        return future;
+    }
+
+    public void notify(String method, Object params) {
+        JSONObject message = new JSONObject(true);
+        message.put("jsonrpc", "2.0");
+        message.put("method", method);
+        if (Objects.nonNull(params)) {
+            message.put("params", params);
+        }
+        post(message, null);
+    }
+
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public long getCreateTime() {
+        return createTime;
+    }
+
+    public String getCloseReason() {
+        return closeReason;
+    }
+
+    public void close(String reason) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        closeReason = reason;
+        if (Objects.nonNull(stream)) {
+            stream.cancel();
+        }
+        endpoint.completeExceptionally(new IOException(reason));
+        IOException error = new IOException("mcp session closed: " + reason);
+        for (CompletableFuture<JSONObject> future : pending.values()) {
+            future.completeExceptionally(error);
+        }
+        log.info("mcp session {} closed: {}", serverUrl, reason);
+    }
+
+    private void post(JSONObject message, CompletableFuture<JSONObject> future) {
+        String url;
+        try {
+            url = endpoint.get(connectTimeout, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            if (Objects.nonNull(future)) {
+                future.completeExceptionally(new IOException("mcp session endpoint unavailable", e));
+            }
+            return;
+        }
+        Request request = new Request.Builder().url(url).post(RequestBody.create(message.toJSONString(), JSON_TYPE)).build();
+        CLIENT.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                if (Objects.nonNull(future)) {
+                    future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                // 响应从 SSE 流返回，这里只确认提交成功（202 Accepted）
+                try (response) {
+                    if (!response.isSuccessful() && Objects.nonNull(future)) {
+                        future.completeExceptionally(new IOException("mcp message status " + response.code()));
+                    }
+                }
+            }
+        });
+    }
+
+    private void read(ResponseBody body) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body.byteStream(), StandardCharsets.UTF_8));
+        String event = "message";
+        StringBuilder data = new StringBuilder();
+        String line;
+        while (!closed && (line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                if (data.length() > 0) {
+                    dispatch(event, data.toString());
+                }
+                event = "message";
+                data.setLength(0);
+            } else if (line.startsWith("event:")) {
+                event = line.substring(6).trim();
+            } else if (line.startsWith("data:")) {
+                if (data.length() > 0) {
+                    data.append('\n');
+                }
+                data.append(line.startsWith("data: ") ? line.substring(6) : line.substring(5));
+            }
+        }
+    }
+
+    private void dispatch(String event, String data) {
+        if ("endpoint".equals(event)) {
+            HttpUrl url = HttpUrl.get(serverUrl).resolve(data.trim());
+            if (Objects.isNull(url)) {
+                close("invalid endpoint " + data);
+                return;
+            }
+            endpoint.complete(url.toString());
+            return;
+        }
+        if (!"message".equals(event)) {
+            return;
+        }
+        JSONObject message;
+        try {
+            message = JSON.parseObject(data);
+        } catch (Exception e) {
+            log.warn("mcp session {} invalid message: {}", serverUrl, data);
+            return;
+        }
+        if (message.containsKey("method")) {
+            // 服务端发起的请求（如 ping）回复空结果，通知忽略
+            if (message.containsKey("id")) {
+                JSONObject reply = new JSONObject(true);
+                reply.put("jsonrpc", "2.0");
+                reply.put("id", message.get("id"));
+                reply.put("result", new JSONObject());
+                post(reply, null);
+            }
+            return;
+        }
+        Long id = message.getLong("id");
+        CompletableFuture<JSONObject> future = Objects.isNull(id) ? null : pending.get(id);
+        if (Objects.isNull(future)) {
+            return;
+        }
+        if (message.containsKey("error")) {
+            JSONObject error = message.getJSONObject("error");
+            future.completeExceptionally(new McpException(error.getIntValue("code"), error.getString("message")));
+        } else {
+            future.complete(Objects.requireNonNullElse(message.getJSONObject("result"), new JSONObject()));
+        }
+    }
+
+    /**
+     * MCP 服务返回的 JSON-RPC error
+     */
+    public static class McpException extends IOException {
+        private final int code;
+
+        public McpException(int code, String message) {
+            super(message);
+            this.code = code;
+        }
+
+        public int getCode() {
+            return code;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.jd.genie.agent.tool.mcp;
 
 import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.serializer.SerializerFeature;
 import com.jd.genie.agent.agent.AgentContext;
 import com.jd.genie.agent.tool.BaseTool;
 import com.jd.genie.agent.util.OkHttpUtil;
@@ -12,7 +14,9 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
 import java.util.Map;
+import java.util.Objects;
 
 @Slf4j
 @Data
@@ -60,6 +64,15 @@ public class McpTool implements BaseTool {
     }
 
     public String listTool(String mcpServerUrl) {
+        McpSessionPool sessionPool = SpringContextHolder.getApplicationContext().getBean(McpSessionPool.class);
+        if (sessionPool.enabled()) {
+            try {
+                return response(200, "success", sessionPool.listTools(mcpServerUrl));
+            } catch (IOException | McpSessionPool.McpCallException e) {
+                // 会话不可用时回退到网关
+                log.warn("{} mcp session list tool failed, fallback to gateway: {}", mcpServerUrl, e.getMessage());
+            }
+        }
         try {
             GenieConfig genieConfig = SpringContextHolder.getApplicationContext().getBean(GenieConfig.class);
             String mcpClientUrl = genieConfig.getMcpClientUrl() + "/v1/tool/list";
@@ -77,22 +90,94 @@ public class McpTool implements BaseTool {
     }
 
     public String callTool(String mcpServerUrl, String toolName, Object input) {
+        McpSessionPool sessionPool = SpringContextHolder.getApplicationContext().getBean(McpSessionPool.class);
+        String requestId = agentContext != null ? agentContext.getRequestId() : "sync-task";
+        long start = System.currentTimeMillis();
+        String response = null;
         try {
-            GenieConfig genieConfig = SpringContextHolder.getApplicationContext().getBean(GenieConfig.class);
-            String mcpClientUrl = genieConfig.getMcpClientUrl() + "/v1/tool/call";
-            Map<String, Object> params = (Map<String, Object>) input;
-            McpToolRequest mcpToolRequest = McpToolRequest.builder()
-                    .name(toolName)
-                    .server_url(mcpServerUrl)
-                    .arguments(params)
-                    .build();
-            String response = OkHttpUtil.postJson(mcpClientUrl, JSON.toJSONString(mcpToolRequest), null, 30L);
-            log.info("call tool request: {} response: {}", JSON.toJSONString(mcpToolRequest), response);
+            // 携带用户凭据（Cookie 参数）的调用走网关，由网关按请求设置鉴权头；长连接会话按服务共用，不能带单个用户的凭据
+            response = sessionPool.enabled() && !hasCredential(input)
+                    ? callBySession(sessionPool, mcpServerUrl, toolName, input) : null;
+            if (Objects.isNull(response)) {
+                response = callByGateway(mcpServerUrl, toolName, input);
+            }
             return response;
         } catch (Exception e) {
-            String requestId = agentContext != null ? agentContext.getRequestId() : "sync-task";
             log.error("{} call tool error ", requestId, e);
+        } finally {
+            long latency = System.currentTimeMillis() - start;
+            boolean success = isSuccess(response);
+            sessionPool.getCallStats().record(toolName, latency, success);
+            log.info("{} call tool {} cost {}ms, success {}", requestId, toolName, latency, success);
         }
         return "";
     }
+
+    /**
+     * 经长连接会话调用（不带用户凭据）；会话无法建立返回 null（调用未发出，由网关兜底）
+     */
+    private String callBySession(McpSessionPool sessionPool, String mcpServerUrl, String toolName, Object input) {
+        try {
+            JSONObject result = sessionPool.callTool(mcpServerUrl, toolName, input);
+            log.info("call tool {} by session {} result: {}", toolName, mcpServerUrl, result);
+            return response(200, "success", result);
+        } catch (IOException e) {
+            log.warn("{} mcp session unavailable, fallback to gateway: {}", mcpServerUrl, e.getMessage());
+            return null;
+        } catch (McpSessionPool.McpCallException e) {
+            return response(500, "Error calling tool " + toolName + ": " + e.getMessage(), null);
+        }
+    }
+
+    private String callByGateway(String mcpServerUrl, String toolName, Object input) throws IOException {
+        GenieConfig genieConfig = SpringContextHolder.getApplicationContext().getBean(GenieConfig.class);
+        String mcpClientUrl = genieConfig.getMcpClientUrl() + "/v1/tool/call";
+        Map<String, Object> params = (Map<String, Object>) input;
+        McpToolRequest mcpToolRequest = McpToolRequest.builder()
+                .name(toolName)
+                .server_url(mcpServerUrl)
+                .arguments(params)
+                .build();
+        String response = OkHttpUtil.postJson(mcpClientUrl, JSON.toJSONString(mcpToolRequest), null, 30L);
+        log.info("call tool request: {} response: {}", JSON.toJSONString(mcpToolRequest), response);
+        return response;
+    }
+
+    /**
+     * 参数中是否带有用户凭据（Cookie），网关会将其转为请求头
+     */
+    public static boolean hasCredential(Object input) {
+        if (!(input instanceof Map)) {
+            return false;
+        }
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) input).entrySet()) {
+            if (entry.getKey() instanceof String && "Cookie".equalsIgnoreCase((String) entry.getKey())
+                    && Objects.nonNull(entry.getValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 调用结果是否成功（code 200），失败结果不进入缓存
+     */
+    public static boolean isSuccess(Object response) {
+        try {
+            return response instanceof String && JSON.parseObject((String) response).getIntValue("code") == 200;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 与 MCP 网关（genie-client）相同的响应结构
+     */
+    private static String response(int code, String message, Object data) {
+        JSONObject response = new JSONObject(true);
+        response.put("code", code);
+        response.put("message", message);
+        response.put("data", data);
+        return JSON.toJSONString(response, SerializerFeature.WriteMapNullValue);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,260 @@
+package com.jd.genie.agent.tool.mcp;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.jd.genie.agent.dto.tool.McpToolInfo;
+import com.jd.genie.agent.tool.ToolDefinitionRegistry;
+import com.jd.genie.config.GenieConfig;
+import com.jd.genie.service.McpServerManagementService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * MCP 工具目录（全局共享）
+ * 启动时并行拉取所有 MCP 服务的工具列表，之后按间隔或管理接口触发在后台刷新；
+ * 某个服务拉取失败时保留其上一次成功的结果。请求只读取当前不可变快照，不再逐个同步调用 listTool。
+ */
+@Slf4j
+@Component
+public class McpToolCatalog implements SmartInitializingSingleton {
+    @Autowired
+    private GenieConfig genieConfig;
+    @Autowired
+    private McpServerManagementService mcpServerManagementService;
+    @Autowired
+    private ToolDefinitionRegistry toolDefinitionRegistry;
+
+    private final Map<String, ServerEntry> entries = new LinkedHashMap<>();
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyList());
+    private CompletableFuture<Snapshot> refreshing;
+
+    private ExecutorService listPool;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * 所有单例初始化后再拉取（listTool 依赖 SpringContextHolder）
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        listPool = Executors.newCachedThreadPool(
+                new BasicThreadFactory.Builder().namingPattern("mcp-catalog-%d").daemon(true).build());
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new BasicThreadFactory.Builder().namingPattern("mcp-catalog-refresh-%d").daemon(true).build());
+        long interval = genieConfig.getMcpCatalogRefreshInterval();
+        scheduler.scheduleWithFixedDelay(this::refresh, interval, interval, TimeUnit.MILLISECONDS);
+        try {
+            refresh().get(genieConfig.getMcpCatalogInitialTimeout(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("mcp catalog initial listing not finished in {}ms, continue in background", genieConfig.getMcpCatalogInitialTimeout());
+        } catch (Exception e) {
+            log.error("mcp catalog initial listing failed", e);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (Objects.isNull(scheduler)) {
+            return;
+        }
+        scheduler.shutdownNow();
+        listPool.shutdownNow();
+    }
+
+    /**
+     * 当前目录快照（不可变），请求构建工具列表时使用
+     */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * 并行刷新所有 MCP 服务，已有刷新进行中时返回同一个结果
+     */
+    public synchronized CompletableFuture<Snapshot> refresh() {
+        if (Objects.nonNull(refreshing) && !refreshing.isDone()) {
+            return refreshing;
+        }
+        String[] servers = activeServers();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (String server : servers) {
+            futures.add(CompletableFuture.runAsync(() -> list(server), listPool));
+        }
+        refreshing = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .handle((v, e) -> publish(servers));
+        return refreshing;
+    }
+
+    /**
+     * 各服务拉取耗时、工具数与过期时长
+     */
+    public Map<String, Object> stats() {
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> servers = new ArrayList<>();
+        synchronized (entries) {
+            for (ServerEntry entry : entries.values()) {
+                Map<String, Object> server = new LinkedHashMap<>();
+                server.put("serverUrl", entry.serverUrl);
+                server.put("toolCount", entry.tools.size());
+                server.put("latencyMs", entry.latencyMs);
+                server.put("lastAttemptTime", entry.lastAttemptTime);
+                server.put("lastSuccessTime", entry.lastSuccessTime);
+                server.put("stalenessMs", entry.lastSuccessTime > 0 ? now - entry.lastSuccessTime : -1);
+                server.put("consecutiveFailures", entry.consecutiveFailures);
+                server.put("error", entry.error);
+                servers.add(server);
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("toolCount", snapshot.getTools().size());
+        stats.put("snapshotTime", snapshot.getCreateTime());
+        stats.put("refreshInterval", genieConfig.getMcpCatalogRefreshInterval());
+        stats.put("servers", servers);
+        return stats;
+    }
+
+    private String[] activeServers() {
+        String[] servers = new String[0];
+        try {
+            servers = mcpServerManagementService.getActiveMcpServerUrls();
+        } catch (Exception e) {
+            log.error("mcp catalog get active servers failed", e);
+        }
+        if (Objects.isNull(servers) || servers.length == 0) {
+            // 如果没有动态配置，回退到默认配置
+            servers = genieConfig.getMcpServerUrlArr();
+        }
+        return Arrays.stream(Objects.requireNonNullElse(servers, new String[0]))
+                .filter(StringUtils::isNotBlank)
+                .distinct()
+                .toArray(String[]::new);
+    }
+
+    private void list(String server) {
+        long start = System.currentTimeMillis();
+        List<McpToolInfo> tools = null;
+        String error = null;
+        try {
+            String listToolResult = new McpTool().listTool(server);
+            if (listToolResult.isEmpty()) {
+                error = "invalid response";
+            } else {
+                JSONObject resp = JSON.parseObject(listToolResult);
+                if (resp.getIntValue("code") != 200) {
+                    error = "code: " + resp.getIntValue("code") + ", message: " + resp.getString("message");
+                } else {
+                    JSONArray data = resp.getJSONArray("data");
+                    tools = new ArrayList<>();
+                    for (int i = 0; Objects.nonNull(data) && i < data.size(); i++) {
+                        JSONObject tool = data.getJSONObject(i);
+                        tools.add(McpToolInfo.builder()
+                                .mcpServerUrl(server)
+                                .name(tool.getString("name"))
+                                .desc(tool.getString("description"))
+                                .parameters(tool.getString("inputSchema"))
+                                .readOnly(isReadOnly(tool.getJSONObject("annotations")))
+                                .build());
+                    }
+                }
+            }
+        } catch (Exception e) {
+            error = e.getMessage();
+        }
+        long latency = System.currentTimeMillis() - start;
+        synchronized (entries) {
+            ServerEntry entry = entries.computeIfAbsent(server, ServerEntry::new);
+            entry.latencyMs = latency;
+            entry.lastAttemptTime = start;
+            entry.error = error;
+            if (Objects.nonNull(tools)) {
+                entry.tools = Collections.unmodifiableList(tools);
+                entry.lastSuccessTime = System.currentTimeMillis();
+                entry.consecutiveFailures = 0;
+            } else {
+                // 保留上一次成功的工具列表
+                entry.consecutiveFailures++;
+            }
+        }
+        if (Objects.nonNull(error)) {
+            log.error("mcp server {} list tool failed in {}ms: {}", server, latency, error);
+        } else {
+            log.info("mcp server {} list {} tools in {}ms", server, tools.size(), latency);
+        }
+    }
+
+    /**
+     * 只认 readOnlyHint：幂等（idempotentHint）的写操作结果与调用方有关，不能跨用户复用
+     */
+    private static boolean isReadOnly(JSONObject annotations) {
+        return Objects.nonNull(annotations) && annotations.getBooleanValue("readOnlyHint");
+    }
+
+    private Snapshot publish(String[] servers) {
+        List<McpToolInfo> tools = new ArrayList<>();
+        synchronized (entries) {
+            // 已下线的服务移出目录
+            entries.keySet().retainAll(Arrays.asList(servers));
+            for (String server : servers) {
+                ServerEntry entry = entries.get(server);
+                if (Objects.nonNull(entry)) {
+                    tools.addAll(entry.tools);
+                }
+            }
+        }
+        // 先构建工具定义再发布快照，请求读到新快照时定义已就绪
+        try {
+            toolDefinitionRegistry.retainMcpTools(tools);
+        } catch (Exception e) {
+            log.error("mcp catalog build tool definitions failed", e);
+        }
+        snapshot = new Snapshot(tools);
+        return snapshot;
+    }
+
+    private static class ServerEntry {
+        private final String serverUrl;
+        private List<McpToolInfo> tools = Collections.emptyList();
+        private long latencyMs;
+        private long lastAttemptTime;
+        private long lastSuccessTime;
+        private int consecutiveFailures;
+        private String error;
+
+        private ServerEntry(String serverUrl) {
+            this.serverUrl = serverUrl;
+        }
+    }
+
+    /**
+     * 目录快照，创建后不再修改
+     */
+    public static class Snapshot {
+        private final List<McpToolInfo> tools;
+        private final long createTime = System.currentTimeMillis();
+
+        private Snapshot(List<McpToolInfo> tools) {
+            this.tools = Collections.unmodifiableList(tools);
+        }
+
+        public List<McpToolInfo> getTools() {
+            return tools;
+        }
+
+        public long getCreateTime() {
+            return createTime;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.jd.genie.agent.util;
+
+import java.util.Arrays;
+
+/**
+ * 增量 JSON 修复器
+ * 随流式增量逐字符维护字符串/转义/括号栈/期望的下一个语法成分，任意时刻 repaired() 以 O(嵌套深度) 补全为合法 JSON：
+ * 截断的字符串补引号、截断的转义丢弃、悬空的 key 补 :null、冒号后补 null、末尾逗号去掉、
+ * 未写完的 true/false/null 与数字补全，最后按栈逆序补齐 } 与 ]。
+ * 与原 fixTruncatedJson 一致：首个非空白字符不是 { 时在前面补 {
+ */
+public final class IncrementalJsonRepair {
+    private enum Expect {
+        VALUE, KEY, COLON, COMMA_OR_END, DONE
+    }
+
+    private static final String[] LITERALS = {"true", "false", "null"};
+
+    private final StringBuilder text = new StringBuilder();
+    private char[] stack = new char[16];
+    private int depth;
+    private boolean started;
+    private String prefix = "";
+
+    private Expect expect = Expect.VALUE;
+    private boolean afterColon;
+    private int commaPos = -1;
+
+    private boolean inString;
+    private boolean stringIsKey;
+    private boolean escaped;
+    private int escapeStart;
+    private int unicodeDigits;
+
+    private int tokenStart = -1;
+
+    /**
+     * 一次性修复（BaseAgent 解析截断的工具参数时使用）；不做 trim，截断在字符串中的尾部空白保留
+     */
+    public static String repair(String json) {
+        if (json == null || json.trim().isEmpty()) {
+            return json;
+        }
+        return new IncrementalJsonRepair().append(json).repaired();
+    }
+
+    public IncrementalJsonRepair append(CharSequence delta) {
+        for (int i = 0; i < delta.length(); i++) {
+            append(delta.charAt(i));
+        }
+        return this;
+    }
+
+    /**
+     * 已接收的原始文本
+     */
+    public String text() {
+        return prefix + text;
+    }
+
+    public int length() {
+        return prefix.length() + text.length();
+    }
+
+    /**
+     * 当前是否处于 JSON 字符串内部
+     */
+    public boolean inString() {
+        return inString;
+    }
+
+    /**
+     * 顶层值已完整结束
+     */
+    public boolean isComplete() {
+        return started && expect == Expect.DONE && tokenStart < 0 && !inString;
+    }
+
+    /**
+     * 当前文本补全后的 JSON；尚未收到非空白字符时原样返回
+     */
+    public String repaired() {
+        if (!started) {
+            return text.toString();
+        }
+        StringBuilder out = new StringBuilder(prefix.length() + text.length() + depth + 8);
+        out.append(prefix).append(text);
+        int offset = prefix.length();
+        if (inString) {
+            if (escaped) {
+                out.setLength(offset + escapeStart);
+            }
+            out.append('"');
+            if (stringIsKey) {
+                out.append(":null");
+            }
+        } else if (tokenStart >= 0) {
+            completeToken(out, text.substring(tokenStart));
+        } else if (expect == Expect.COLON) {
+            out.append(":null");
+        } else if ((expect == Expect.VALUE || expect == Expect.KEY) && commaPos >= 0) {
+            out.setLength(offset + commaPos);
+        } else if (expect == Expect.VALUE && afterColon) {
+            out.append("null");
+        }
+        for (int i = depth - 1; i >= 0; i--) {
+            out.append(stack[i] == '{' ? '}' : ']');
+        }
+        return out.toString();
+    }
+
+    public IncrementalJsonRepair append(char c) {
+        if (!started) {
+            if (Character.isWhitespace(c)) {
+                text.append(c);
+                return this;
+            }
+            started = true;
+            if (c != '{') {
+                prefix = "{";
+                push('{');
+                expect = Expect.KEY;
+            }
+        }
+        text.append(c);
+        int pos = text.length() - 1;
+        if (inString) {
+            if (escaped) {
+                if (unicodeDigits > 0) {
+                    if (--unicodeDigits == 0) {
+                        escaped = false;
+                    }
+                } else if (c == 'u') {
+                    unicodeDigits = 4;
+                } else {
+                    escaped = false;
+                }
+            } else if (c == '\\') {
+                escaped = true;
+                escapeStart = pos;
+            } else if (c == '"') {
+                inString = false;
+                expect = stringIsKey ? Expect.COLON : afterValue();
+            }
+            return this;
+        }
+        if (tokenStart >= 0) {
+            if (isTokenChar(c)) {
+                return this;
+            }
+            tokenStart = -1;
+            expect = afterValue();
+        }
+        if (Character.isWhitespace(c)) {
+            return this;
+        }
+        switch (c) {
+            case '{':
+                push('{');
+                expect = Expect.KEY;
+                clearPosition();
+                break;
+            case '[':
+                push('[');
+                expect = Expect.VALUE;
+                clearPosition();
+                break;
+            case '}':
+            case ']':
+                if (depth > 0) {
+                    depth--;
+                }
+                expect = afterValue();
+                clearPosition();
+                break;
+            case ':':
+                expect = Expect.VALUE;
+                commaPos = -1;
+                afterColon = true;
+                break;
+            case ',':
+                expect = depth > 0 && stack[depth - 1] == '{' ? Expect.KEY : Expect.VALUE;
+                afterColon = false;
+                commaPos = pos;
+                break;
+            case '"':
+                inString = true;
+                stringIsKey = expect == Expect.KEY;
+                escaped = false;
+                unicodeDigits = 0;
+                clearPosition();
+                break;
+            default:
+                // 数字或 true/false/null
+                tokenStart = pos;
+                clearPosition();
+                break;
+        }
+        return this;
+    }
+
+    private void completeToken(StringBuilder out, String token) {
+        for (String literal : LITERALS) {
+            if (literal.startsWith(token)) {
+                out.append(literal, token.length(), literal.length());
+                return;
+            }
+        }
+        char last = token.charAt(token.length() - 1);
+        if (last == '-' || last == '+' || last == '.' || last == 'e' || last == 'E') {
+            out.append('0');
+        }
+    }
+
+    private Expect afterValue() {
+        return depth == 0 ? Expect.DONE : Expect.COMMA_OR_END;
+    }
+
+    private void clearPosition() {
+        commaPos = -1;
+        afterColon = false;
+    }
+
+    private void push(char c) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = c;
+    }
+
+    private static boolean isTokenChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '-' || c == '+' || c == '.';
+    }
+}
@@ -0,0 +1,387 @@
+package com.jd.genie.agent.util;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.parser.Feature;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 工具结果（observation）超出预算时按内容类型压缩，代替从开头截断：
+ * JSON 保留结构，长数组只留首尾元素、长字符串截短；CSV/TSV 与 Markdown 表格保留表头、行数与均匀抽样的行；
+ * 日志保留开头、结尾与其间的错误行；其他文本保留开头与结尾。结果不超过预算
+ */
+public class ObservationShaper {
+    public static final String TYPE_JSON = "json";
+    public static final String TYPE_CSV = "csv";
+    public static final String TYPE_MARKDOWN = "markdown";
+    public static final String TYPE_LOG = "log";
+    public static final String TYPE_TEXT = "text";
+
+    private static final int DETECT_LINES = 20;
+    private static final Pattern MARKDOWN_SEPARATOR = Pattern.compile("^\\s*\\|?\\s*:?-{3,}:?\\s*(\\|\\s*:?-{3,}:?\\s*)*\\|?\\s*$");
+    private static final Pattern LOG_LINE = Pattern.compile(
+            "^\\s*(\\[?\\d{4}-\\d{2}-\\d{2}[ T]\\d{2}:\\d{2}|\\[?\\d{2}:\\d{2}:\\d{2}|\\[?(TRACE|DEBUG|INFO|WARN|WARNING|ERROR|FATAL)\\b)");
+    private static final Pattern ERROR_LINE = Pattern.compile(
+            "(?i)(\\berror\\b|exception|traceback|\\bfailed\\b|\\bfatal\\b|错误|异常|失败)");
+
+    private ObservationShaper() {
+    }
+
+    /**
+     * 压缩结果
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Shaped {
+        private String text;
+        private String type;
+        private boolean changed;
+    }
+
+    /**
+     * 按内容类型压缩到不超过 budget 个字符，未超出预算时原样返回
+     *
+     * @param sampleRows 表格抽样行数
+     */
+    public static Shaped shape(String content, int budget, int sampleRows) {
+        if (Objects.isNull(content) || content.length() <= budget) {
+            return new Shaped(content, TYPE_TEXT, false);
+        }
+        return shape(content, detect(content), budget, sampleRows);
+    }
+
+    /**
+     * 按已判断的类型压缩（type 取自 detect）
+     */
+    public static Shaped shape(String content, String type, int budget, int sampleRows) {
+        if (Objects.isNull(content) || content.length() <= budget) {
+            return new Shaped(content, type, false);
+        }
+        String shaped;
+        switch (type) {
+            case TYPE_JSON:
+                shaped = shapeJson(content, budget);
+                break;
+            case TYPE_CSV:
+                shaped = shapeCsv(content, budget, sampleRows);
+                break;
+            case TYPE_MARKDOWN:
+                shaped = shapeMarkdown(content, budget, sampleRows);
+                break;
+            case TYPE_LOG:
+                shaped = shapeLog(content, budget);
+                break;
+            default:
+                shaped = headTail(content, budget);
+                break;
+        }
+        if (shaped.length() > budget) {
+            shaped = headTail(shaped, budget);
+        }
+        return new Shaped(shaped, type, true);
+    }
+
+    /**
+     * 判断内容类型：可解析的 JSON、分隔符列数一致的 CSV/TSV、含 Markdown 表格、带时间戳或级别的日志、其他文本
+     */
+    public static String detect(String content) {
+        if (Objects.isNull(content) || content.isEmpty()) {
+            return TYPE_TEXT;
+        }
+        String trimmed = content.trim();
+        if ((trimmed.startsWith("{") && trimmed.endsWith("}")) || (trimmed.startsWith("[") && trimmed.endsWith("]"))) {
+            try {
+                JSON.parse(trimmed);
+                return TYPE_JSON;
+            } catch (Exception ignored) {
+                // 不是合法 JSON，按文本判断
+            }
+        }
+        List<String> lines = firstLines(content, DETECT_LINES);
+        if (lines.size() >= 3) {
+            if (delimiter(lines) != 0) {
+                return TYPE_CSV;
+            }
+            for (int i = 1; i < lines.size(); i++) {
+                if (lines.get(i - 1).trim().startsWith("|") && MARKDOWN_SEPARATOR.matcher(lines.get(i)).matches()) {
+                    return TYPE_MARKDOWN;
+                }
+            }
+            int logLines = 0;
+            for (String line : lines) {
+                if (LOG_LINE.matcher(line).find()) {
+                    logLines++;
+                }
+            }
+            if (logLines * 2 >= lines.size()) {
+                return TYPE_LOG;
+            }
+        }
+        return TYPE_TEXT;
+    }
+
+    private static String shapeJson(String content, int budget) {
+        Object root = JSON.parse(content.trim(), Feature.OrderedField);
+        // 逐步收紧：每个数组保留的元素数与字符串长度
+        int[][] levels = {{4, 400}, {2, 200}, {1, 80}, {1, 30}};
+        String shaped = content;
+        for (int[] level : levels) {
+            shaped = JSON.toJSONString(elide(root, level[0], level[1]));
+            if (shaped.length() <= budget) {
+                break;
+            }
+        }
+        return shaped;
+    }
+
+    private static Object elide(Object node, int keepItems, int maxString) {
+        if (node instanceof JSONObject) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> entry : ((JSONObject) node).entrySet()) {
+                map.put(entry.getKey(), elide(entry.getValue(), keepItems, maxString));
+            }
+            return map;
+        }
+        if (node instanceof JSONArray) {
+            JSONArray array = (JSONArray) node;
+            List<Object> list = new ArrayList<>();
+            if (array.size() <= keepItems + 1) {
+                for (Object item : array) {
+                    list.add(elide(item, keepItems, maxString));
+                }
+                return list;
+            }
+            int head = Math.max(1, keepItems - 1);
+            for (int i = 0; i < head; i++) {
+                list.add(elide(array.get(i), keepItems, maxString));
+            }
+            list.add("...（省略 " + (array.size() - head - 1) + " 项，共 " + array.size() + " 项）...");
+            list.add(elide(array.get(array.size() - 1), keepItems, maxString));
+            return list;
+        }
+        if (node instanceof String && ((String) node).length() > maxString) {
+            String text = (String) node;
+            return text.substring(0, maxString) + "...（共 " + text.length() + " 字符）";
+        }
+        return node;
+    }
+
+    private static String shapeCsv(String content, int budget, int sampleRows) {
+        String[] lines = content.split("\n", -1);
+        List<String> rows = new ArrayList<>();
+        for (int i = 1; i < lines.length; i++) {
+            if (!lines[i].trim().isEmpty()) {
+                rows.add(lines[i]);
+            }
+        }
+        char delimiter = delimiter(firstLines(content, DETECT_LINES));
+        int columns = count(lines[0], delimiter) + 1;
+        String summary = "[表格：" + columns + " 列，" + rows.size() + " 行数据，以下为表头、开头与均匀抽样的行]\n";
+        return summary + sampleTable(lines[0] + "\n", rows, budget - summary.length(), sampleRows);
+    }
+
+    /**
+     * 超过抽样行数的表格替换为抽样版本，表格外的文字保留
+     */
+    private static String shapeMarkdown(String content, int budget, int sampleRows) {
+        String[] lines = content.split("\n", -1);
+        StringBuilder sb = new StringBuilder();
+        int i = 0;
+        while (i < lines.length) {
+            boolean tableStart = i + 1 < lines.length && lines[i].trim().startsWith("|")
+                    && MARKDOWN_SEPARATOR.matcher(lines[i + 1]).matches();
+            if (!tableStart) {
+                sb.append(lines[i]).append('\n');
+                i++;
+                continue;
+            }
+            String header = lines[i] + "\n" + lines[i + 1] + "\n";
+            List<String> rows = new ArrayList<>();
+            i += 2;
+            while (i < lines.length && lines[i].trim().startsWith("|")) {
+                rows.add(lines[i]);
+                i++;
+            }
+            if (rows.size() <= sampleRows) {
+                sb.append(header);
+                rows.forEach(row -> sb.append(row).append('\n'));
+                continue;
+            }
+            sb.append("[表格：").append(markdownColumns(header)).append(" 列，")
+                    .append(rows.size()).append(" 行数据，以下为表头、开头与均匀抽样的行]\n");
+            sb.append(sampleTable(header, rows, Math.max(header.length(), budget / 2), sampleRows));
+        }
+        return sb.length() > 0 ? sb.substring(0, sb.length() - 1) : "";
+    }
+
+    /**
+     * 表头 + 开头几行 + 均匀抽样的行（含最后一行），行数受预算限制
+     */
+    private static String sampleTable(String header, List<String> rows, int budget, int sampleRows) {
+        StringBuilder sb = new StringBuilder(header);
+        int headRows = Math.min(rows.size(), Math.max(2, sampleRows / 4));
+        Set<Integer> picked = new LinkedHashSet<>();
+        for (int i = 0; i < headRows; i++) {
+            picked.add(i);
+        }
+        int samples = Math.max(1, sampleRows - headRows);
+        for (int i = 1; i <= samples && rows.size() > headRows; i++) {
+            picked.add(headRows + (int) ((long) (rows.size() - headRows - 1) * i / samples));
+        }
+        int last = -1;
+        for (int index : picked) {
+            String row = rows.get(index);
+            String gap = index > last + 1 ? "...（省略 " + (index - last - 1) + " 行）...\n" : "";
+            if (sb.length() + gap.length() + row.length() + 1 > budget && last >= 0) {
+                sb.append("...（省略其余 ").append(rows.size() - last - 1).append(" 行）...\n");
+                return sb.toString();
+            }
+            sb.append(gap).append(row).append('\n');
+            last = index;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 开头与结尾各约三分之一预算，中间只保留错误行（带行号）
+     */
+    private static String shapeLog(String content, int budget) {
+        String[] lines = content.split("\n", -1);
+        int part = budget / 3;
+        int headEnd = 0;
+        int headChars = 0;
+        while (headEnd < lines.length && headChars + lines[headEnd].length() + 1 <= part) {
+            headChars += lines[headEnd++].length() + 1;
+        }
+        int tailStart = lines.length;
+        int tailChars = 0;
+        while (tailStart > headEnd && tailChars + lines[tailStart - 1].length() + 1 <= part) {
+            tailChars += lines[--tailStart].length() + 1;
+        }
+        StringBuilder errors = new StringBuilder();
+        int errorCount = 0;
+        int errorBudget = budget - headChars - tailChars - 80;
+        for (int i = headEnd; i < tailStart; i++) {
+            if (ERROR_LINE.matcher(lines[i]).find()) {
+                errorCount++;
+                String line = "L" + (i + 1) + ": " + lines[i] + "\n";
+                if (errors.length() + line.length() <= errorBudget) {
+                    errors.append(line);
+                }
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < headEnd; i++) {
+            sb.append(lines[i]).append('\n');
+        }
+        sb.append("...（省略第 ").append(headEnd + 1).append("-").append(tailStart).append(" 行");
+        if (errorCount > 0) {
+            sb.append("，其中 ").append(errorCount).append(" 行含错误信息如下");
+        }
+        sb.append("）...\n").append(errors);
+        if (errorCount > 0) {
+            sb.append("...\n");
+        }
+        for (int i = tailStart; i < lines.length; i++) {
+            sb.append(lines[i]);
+            if (i < lines.length - 1) {
+                sb.append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 开头三分之二、结尾三分之一预算，按行对齐，中间以省略说明连接
+     */
+    static String headTail(String content, int budget) {
+        String marker = "\n...（中间省略 " + content.length() + " 字符中的部分内容）...\n";
+        int room = budget - marker.length();
+        if (room <= 0) {
+            return content.substring(0, Math.min(content.length(), budget));
+        }
+        int headLength = room * 2 / 3;
+        String head = content.substring(0, headLength);
+        int headLine = head.lastIndexOf('\n');
+        if (headLine > headLength / 2) {
+            head = head.substring(0, headLine);
+        }
+        String tail = content.substring(content.length() - (room - head.length()));
+        int tailLine = tail.indexOf('\n');
+        if (tailLine >= 0 && tailLine < tail.length() / 2) {
+            tail = tail.substring(tailLine + 1);
+        }
+        return head + marker + tail;
+    }
+
+    /**
+     * 前几行中每行个数相同（且不为 0）的分隔符：制表符优先于逗号；没有返回 0
+     */
+    private static char delimiter(List<String> lines) {
+        for (char candidate : new char[]{'\t', ','}) {
+            int expected = count(lines.get(0), candidate);
+            if (expected == 0) {
+                continue;
+            }
+            int matched = 0;
+            for (String line : lines) {
+                if (count(line, candidate) == expected) {
+                    matched++;
+                }
+            }
+            if (matched * 10 >= lines.size() * 9) {
+                return candidate;
+            }
+        }
+        return 0;
+    }
+
+    private static int markdownColumns(String header) {
+        String line = header.substring(0, header.indexOf('\n')).trim();
+        if (line.startsWith("|")) {
+            line = line.substring(1);
+        }
+        if (line.endsWith("|")) {
+            line = line.substring(0, line.length() - 1);
+        }
+        return count(line, '|') + 1;
+    }
+
+    private static int count(String line, char c) {
+        int n = 0;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == c) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private static List<String> firstLines(String content, int max) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        while (lines.size() < max && start < content.length()) {
+            int end = content.indexOf('\n', start);
+            if (end < 0) {
+                end = content.length();
+            }
+            String line = content.substring(start, end);
+            if (!line.trim().isEmpty()) {
+                lines.add(line);
+            }
+            start = end + 1;
+        }
+        return lines;
+    }
+}
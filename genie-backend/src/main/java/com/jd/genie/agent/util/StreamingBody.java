@@ -0,0 +1,146 @@
+package com.jd.genie.agent.util;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 流式请求体：文本按固定大小的缓冲区分块编码为 UTF-8 写出，文件直接从磁盘拷贝到连接，
+ * 不生成完整的 byte[]/JSON 字符串，上传占用的内存与文件大小无关
+ */
+public class StreamingBody {
+    /**
+     * 每次编码的字节数
+     */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private StreamingBody() {
+    }
+
+    /**
+     * 文本请求体，长度预先按 UTF-8 计算（不编码）
+     */
+    public static RequestBody ofText(CharSequence text, MediaType mediaType) {
+        long length = utf8Length(text);
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return mediaType;
+            }
+
+            @Override
+            public long contentLength() {
+                return length;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                writeUtf8(text, sink.outputStream());
+            }
+        };
+    }
+
+    /**
+     * 文件请求体，每次写出时重新打开文件（重试时可重复写）
+     */
+    public static RequestBody ofFile(Path file, MediaType mediaType) throws IOException {
+        long length = Files.size(file);
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return mediaType;
+            }
+
+            @Override
+            public long contentLength() {
+                return length;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                try (Source source = Okio.source(file)) {
+                    sink.writeAll(source);
+                }
+            }
+        };
+    }
+
+    /**
+     * 分块编码写出，返回写出的字节数；不完整的代理对按替换字符写出，与 String.getBytes 一致
+     */
+    public static long writeUtf8(CharSequence text, OutputStream out) throws IOException {
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer in = CharBuffer.wrap(text);
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long written = 0;
+        // 先编码全部输入，最后一次以 endOfInput 结束编码，再 flush
+        boolean endOfInput = false;
+        while (true) {
+            CoderResult result = encoder.encode(in, buffer, endOfInput);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (result.isOverflow()) {
+                written += drain(buffer, out);
+            } else if (!endOfInput) {
+                endOfInput = true;
+            } else {
+                break;
+            }
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            written += drain(buffer, out);
+        }
+        written += drain(buffer, out);
+        out.flush();
+        return written;
+    }
+
+    /**
+     * UTF-8 编码后的字节数（不编码）
+     */
+    public static long utf8Length(CharSequence text) {
+        long length = 0;
+        int n = text.length();
+        for (int i = 0; i < n; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // 不成对的代理字符编码为替换字符 '?'
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static int drain(ByteBuffer buffer, OutputStream out) throws IOException {
+        buffer.flip();
+        int size = buffer.remaining();
+        out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), size);
+        buffer.clear();
+        return size;
+    }
+}
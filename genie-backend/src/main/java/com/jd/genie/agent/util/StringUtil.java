@@ -1,5 +1,8 @@
 package com.jd.genie.agent.util;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.*;
 import java.util.regex.Matcher;
@@ -130,6 +133,32 @@ public class StringUtil {
         return result.toString();
     }
 
+    /**
+     * UTF-8 字节的 SHA-256，小写十六进制
+     */
+    public static String sha256Hex(String text) {
+        return sha256Hex(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String sha256Hex(byte[] bytes) {
+        return toHex(sha256().digest(bytes));
+    }
+
+    /**
+     * SHA-256 摘要实例，供流式计算（如 DigestOutputStream）后用 toHex 输出
+     */
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String toHex(byte[] bytes) {
+        return HexFormat.of().formatHex(bytes);
+    }
+
     public static String getUUID() {
         UUID uuid = UUID.randomUUID();
         return uuid.toString();
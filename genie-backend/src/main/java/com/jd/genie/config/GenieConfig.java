@@ -4,6 +4,7 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.alibaba.fastjson.TypeReference;
 import com.jd.genie.agent.llm.LLMSettings;
+import com.jd.genie.agent.printer.StreamFlushPolicy;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -139,6 +140,24 @@ public class GenieConfig {
     @Value("${autobots.autoagent.tool.file_tool.truncate_len:5000}")
     private Integer fileToolContentTruncateLen;
 
+    /**
+     * 表格文件超出截断长度时的读取方式：head 只读开头，head_tail 开头与结尾各一半，sample 表头加全文均匀抽样行
+     */
+    @Value("${autobots.autoagent.tool.file_tool.read.tabular_mode:head}")
+    private String fileToolReadTabularMode;
+
+    /**
+     * 视为表格文件的后缀（逗号分隔）
+     */
+    @Value("${autobots.autoagent.tool.file_tool.read.tabular_suffix:csv,tsv}")
+    private String fileToolReadTabularSuffix;
+
+    /**
+     * sample 模式抽样的行数
+     */
+    @Value("${autobots.autoagent.tool.file_tool.read.sample_rows:10}")
+    private Integer fileToolReadSampleRows;
+
     @Value("${autobots.autoagent.tool.deep_search.file_desc.truncate_len:500}")
     private Integer deepSearchToolFileDescTruncateLen;
 
@@ -210,6 +229,42 @@ public class GenieConfig {
     @Value("${autobots.autoagent.summary.message_size_limit:1000}")
     private Integer messageSizeLimit;
 
+    /**
+     * 流式请求的最终总结边生成边发送（agent_stream 增量），result 事件不变
+     */
+    @Value("${autobots.autoagent.summary.stream:true}")
+    private Boolean summaryStream;
+
+    /**
+     * 任务历史超过 threshold_tokens 时分块并行提炼后再总结
+     */
+    @Value("${autobots.autoagent.summary.map_reduce.enable:true}")
+    private Boolean summaryMapReduceEnable;
+
+    @Value("${autobots.autoagent.summary.map_reduce.threshold_tokens:60000}")
+    private Integer summaryMapReduceThresholdTokens;
+
+    @Value("${autobots.autoagent.summary.map_reduce.chunk_tokens:20000}")
+    private Integer summaryMapReduceChunkTokens;
+
+    /**
+     * 提炼调用的全局并发上限
+     */
+    @Value("${autobots.autoagent.summary.map_reduce.concurrency:4}")
+    private Integer summaryMapReduceConcurrency;
+
+    /**
+     * 提炼阶段的总超时（毫秒），超时的块保留原文开头部分
+     */
+    @Value("${autobots.autoagent.summary.map_reduce.timeout:180000}")
+    private Long summaryMapReduceTimeout;
+
+    @Value("${autobots.autoagent.summary.map_reduce.max_rounds:2}")
+    private Integer summaryMapReduceMaxRounds;
+
+    @Value("${autobots.autoagent.summary.map_prompt:}")
+    private String summaryMapPrompt;
+
     private Map<String, String> sensitivePatterns = new HashMap<>();
     @Value("${autobots.autoagent.sensitive_patterns:{}}")
     public void setSensitivePatterns(String jsonStr) {
@@ -224,10 +279,23 @@ public class GenieConfig {
         });
     }
 
-    private Map<String, String> messageInterval = new HashMap<>();
-    @Value("${autobots.autoagent.message_interval:{}}")
-    public void setMessageInterval(String jsonStr) {
-        this.messageInterval = JSON.parseObject(jsonStr, new TypeReference<Map<String, String>>() {
+    /**
+     * 流式增量刷新策略，key 为 messageType，未配置的类型使用 default
+     */
+    private Map<String, StreamFlushPolicy> streamFlushPolicies = new HashMap<>();
+    @Value("${autobots.autoagent.stream_flush:{}}")
+    public void setStreamFlushPolicies(String jsonStr) {
+        this.streamFlushPolicies = JSON.parseObject(jsonStr, new TypeReference<Map<String, StreamFlushPolicy>>() {
+        });
+    }
+
+    /**
+     * 模型单价（每千 token），按模型名配置 input/output，default 用于未配置的模型
+     */
+    private Map<String, Map<String, Double>> ledgerPrices = new HashMap<>();
+    @Value("${autobots.autoagent.ledger.price:{}}")
+    public void setLedgerPrices(String jsonStr) {
+        this.ledgerPrices = JSON.parseObject(jsonStr, new TypeReference<Map<String, Map<String, Double>>>() {
         });
     }
 
@@ -243,6 +311,367 @@ public class GenieConfig {
 	@Value("${autobots.multiagent.sseClient.connectTimeout:1800}")
 	private Integer sseClientConnectTimeout;
 
+    /**
+     * SSE 单连接发送队列容量
+     */
+    @Value("${autobots.autoagent.sse_writer.queue_capacity:1024}")
+    private Integer sseWriterQueueCapacity;
+
+    /**
+     * SSE 发送队列溢出策略：drop（丢弃增量消息）、disconnect（断开连接）
+     */
+    @Value("${autobots.autoagent.sse_writer.overflow_policy:drop}")
+    private String sseWriterOverflowPolicy;
+
+    /**
+     * SSE 写出线程数（所有连接共用）
+     */
+    @Value("${autobots.autoagent.sse_writer.threads:32}")
+    private Integer sseWriterThreads;
+
+    /**
+     * restart 时等待已有调度取消结束的最长时间（毫秒，异步等待，不占用请求线程），超时则拒绝重新执行
+     */
+    @Value("${autobots.autoagent.restart_cancel_timeout:30000}")
+    private Long restartCancelTimeout;
+
+    /**
+     * SSE 心跳间隔（毫秒），连接空闲超过该时长才发送心跳
+     */
+    @Value("${autobots.autoagent.sse_heartbeat_interval:10000}")
+    private Long sseHeartbeatInterval;
+
+    /**
+     * SSE 重连回放缓冲容量（每个请求保留的事件数）
+     */
+    @Value("${autobots.autoagent.sse_replay.capacity:1000}")
+    private Integer sseReplayCapacity;
+
+    /**
+     * SSE 重连回放缓冲保留时长（毫秒），请求结束或客户端断开后开始计时
+     */
+    @Value("${autobots.autoagent.sse_replay.grace_period:60000}")
+    private Long sseReplayGracePeriod;
+
+    /**
+     * WebSocket 传输开关（/ws/agent），关闭后只保留 SSE 通道
+     */
+    @Value("${autobots.autoagent.websocket.enable:true}")
+    private Boolean websocketEnable;
+
+    /**
+     * 单个 WebSocket 连接上同时执行的会话数上限
+     */
+    @Value("${autobots.autoagent.websocket.max_channels:8}")
+    private Integer websocketMaxChannels;
+
+    /**
+     * WebSocket 写出线程数（所有连接共用）
+     */
+    @Value("${autobots.autoagent.websocket.writer_threads:16}")
+    private Integer websocketWriterThreads;
+
+    /**
+     * plan_solve 运行检查点开关，每个规划步骤完成后写入本地运行日志
+     */
+    @Value("${autobots.autoagent.checkpoint.enable:true}")
+    private Boolean checkpointEnable;
+
+    /**
+     * 运行日志目录，每个请求一个文件，运行结束后删除
+     */
+    @Value("${autobots.autoagent.checkpoint.dir:./checkpoint}")
+    private String checkpointDir;
+
+    /**
+     * 运行日志批量写入并 fsync 的间隔（毫秒）
+     */
+    @Value("${autobots.autoagent.checkpoint.fsync_interval:200}")
+    private Long checkpointFsyncInterval;
+
+    /**
+     * 启动时是否恢复未完成的运行
+     */
+    @Value("${autobots.autoagent.checkpoint.resume_on_startup:true}")
+    private Boolean checkpointResumeOnStartup;
+
+    /**
+     * 超过该时长（毫秒）未更新的运行日志不再恢复，启动时删除
+     */
+    @Value("${autobots.autoagent.checkpoint.max_age:86400000}")
+    private Long checkpointMaxAge;
+
+    /**
+     * MCP 工具目录后台刷新间隔（毫秒）
+     */
+    @Value("${autobots.autoagent.mcp_catalog.refresh_interval:300000}")
+    private Long mcpCatalogRefreshInterval;
+
+    /**
+     * 启动时等待首次并行拉取 MCP 工具目录的最长时间（毫秒），超时的服务在后台完成后生效
+     */
+    @Value("${autobots.autoagent.mcp_catalog.initial_timeout:10000}")
+    private Long mcpCatalogInitialTimeout;
+
+    /**
+     * 直连 MCP 服务的长连接会话开关，关闭或会话无法建立时经 mcp_client_url 网关调用
+     */
+    @Value("${autobots.autoagent.mcp_session.enable:true}")
+    private Boolean mcpSessionEnable;
+
+    /**
+     * MCP 会话建立（SSE 连接与 initialize 握手）超时（毫秒）
+     */
+    @Value("${autobots.autoagent.mcp_session.connect_timeout:5000}")
+    private Long mcpSessionConnectTimeout;
+
+    /**
+     * MCP 工具调用超时（毫秒）
+     */
+    @Value("${autobots.autoagent.mcp_session.call_timeout:30000}")
+    private Long mcpSessionCallTimeout;
+
+    /**
+     * MCP 会话建立失败后的重试间隔（毫秒），期间直接走网关
+     */
+    @Value("${autobots.autoagent.mcp_session.retry_interval:30000}")
+    private Long mcpSessionRetryInterval;
+
+    /**
+     * 按任务相关性筛选每步发送给模型的工具，关闭时发送全部工具
+     */
+    @Value("${autobots.autoagent.tool_selector.enable:true}")
+    private Boolean toolSelectorEnable;
+
+    /**
+     * 每步发送的相关工具数（不含常驻工具）
+     */
+    @Value("${autobots.autoagent.tool_selector.top_k:6}")
+    private Integer toolSelectorTopK;
+
+    /**
+     * 常驻工具，始终发送
+     */
+    @Value("${autobots.autoagent.tool_selector.pinned:file_tool}")
+    private String toolSelectorPinned;
+
+    /**
+     * 历史调用次数在排序中的权重（相关性得分归一化到 0~1）
+     */
+    @Value("${autobots.autoagent.tool_selector.history_weight:0.3}")
+    private Double toolSelectorHistoryWeight;
+
+    /**
+     * 会话内复用只读/幂等工具调用的结果
+     */
+    @Value("${autobots.autoagent.tool_cache.enable:true}")
+    private Boolean toolCacheEnable;
+
+    /**
+     * 单个会话最多保留的缓存结果数
+     */
+    @Value("${autobots.autoagent.tool_cache.max_entries:256}")
+    private Integer toolCacheMaxEntries;
+
+    /**
+     * 视为只读的 MCP 工具（逗号分隔），服务端以 readOnlyHint 声明的工具无需配置
+     */
+    @Value("${autobots.autoagent.tool_cache.mcp_read_only:}")
+    private String toolCacheMcpReadOnly;
+
+    /**
+     * 跨会话持久化缓存（deep_search 回答与只读 MCP 工具结果）
+     */
+    @Value("${autobots.autoagent.tool_cache.persistent.enable:true}")
+    private Boolean toolCachePersistentEnable;
+
+    /**
+     * 持久化缓存目录
+     */
+    @Value("${autobots.autoagent.tool_cache.persistent.dir:./tool_cache}")
+    private String toolCachePersistentDir;
+
+    /**
+     * 内存层保留的条目数
+     */
+    @Value("${autobots.autoagent.tool_cache.persistent.memory_entries:512}")
+    private Integer toolCachePersistentMemoryEntries;
+
+    /**
+     * 各工具结果的有效期（毫秒），key 为工具名，未配置的工具使用 default，0 表示不缓存；
+     * 结果跨用户共享，default 为 0，需按工具显式开启
+     */
+    private Map<String, Long> toolCachePersistentTtl = new HashMap<>();
+    @Value("${autobots.autoagent.tool_cache.persistent.ttl:{\"deep_search\":21600000,\"default\":0}}")
+    public void setToolCachePersistentTtl(String jsonStr) {
+        this.toolCachePersistentTtl = JSON.parseObject(jsonStr, new TypeReference<Map<String, Long>>() {
+        });
+    }
+
+    /**
+     * 后台文件上传线程数
+     */
+    @Value("${autobots.autoagent.file_upload.threads:4}")
+    private Integer fileUploadThreads;
+
+    /**
+     * 后台上传队列长度，队列满时由提交线程直接上传
+     */
+    @Value("${autobots.autoagent.file_upload.queue_capacity:256}")
+    private Integer fileUploadQueueCapacity;
+
+    /**
+     * 同一会话小文件合并上传的批大小，1 表示不合并
+     */
+    @Value("${autobots.autoagent.file_upload.batch_size:8}")
+    private Integer fileUploadBatchSize;
+
+    /**
+     * 小文件批次未凑满时的最长等待（毫秒）
+     */
+    @Value("${autobots.autoagent.file_upload.batch_linger_ms:50}")
+    private Long fileUploadBatchLingerMs;
+
+    /**
+     * 参与合并的小文件上限（字符数）
+     */
+    @Value("${autobots.autoagent.file_upload.small_file_size:65536}")
+    private Integer fileUploadSmallFileSize;
+
+    /**
+     * 读取文件列表前等待后台上传的最长时间（毫秒）
+     */
+    @Value("${autobots.autoagent.file_upload.await_timeout:120000}")
+    private Long fileUploadAwaitTimeout;
+
+    /**
+     * 超过该字符数的文件以 multipart 流式上传，不拼 JSON
+     */
+    @Value("${autobots.autoagent.file_upload.stream_threshold:1048576}")
+    private Integer fileUploadStreamThreshold;
+
+    /**
+     * 本地文件存储：write_through 本地保存并按路径登记到 genie-tool，local 只保存在本地，off 关闭
+     */
+    @Value("${autobots.autoagent.file_store.mode:write_through}")
+    private String fileStoreMode;
+
+    /**
+     * 本地文件存储目录（与 genie-tool 同机部署时 genie-tool 按路径读取）
+     */
+    @Value("${autobots.autoagent.file_store.dir:./file_store}")
+    private String fileStoreDir;
+
+    /**
+     * local 模式下文件链接的前缀（本服务的外部访问地址）
+     */
+    @Value("${autobots.autoagent.file_store.base_url:}")
+    private String fileStoreBaseUrl;
+
+    /**
+     * 同时保持内存映射的文件数
+     */
+    @Value("${autobots.autoagent.file_store.mapped_entries:256}")
+    private Integer fileStoreMappedEntries;
+
+    /**
+     * 文件保留时长（小时）
+     */
+    @Value("${autobots.autoagent.file_store.retention_hours:168}")
+    private Integer fileStoreRetentionHours;
+
+    /**
+     * report_tool 工具结果按内容哈希引用，只发送 genie-tool 尚未持有的部分
+     */
+    @Value("${autobots.autoagent.tool.report_tool.evidence.enable:true}")
+    private Boolean evidenceEnable;
+
+    /**
+     * 按相关度预先排序后发送的引用数，0 表示使用全部工具结果
+     */
+    @Value("${autobots.autoagent.tool.report_tool.evidence.relevant_top_k:0}")
+    private Integer evidenceRelevantTopK;
+
+    /**
+     * 相关子集的总字符预算，0 表示不限
+     */
+    @Value("${autobots.autoagent.tool.report_tool.evidence.relevant_max_chars:0}")
+    private Integer evidenceRelevantMaxChars;
+
+    /**
+     * 记录 genie-tool 已持有内容的会话数上限，不应大于 genie-tool 的 EVIDENCE_MAX_SESSIONS（默认同为 256），
+     * 否则 genie-tool 已淘汰的会话仍按已持有发送引用
+     */
+    @Value("${autobots.autoagent.tool.report_tool.evidence.max_sessions:256}")
+    private Integer evidenceMaxSessions;
+
+    /**
+     * 工具结果超过 max_observe 时按内容类型压缩（JSON/表格/日志/文本），关闭时从开头截断
+     */
+    @Value("${autobots.autoagent.observation.enable:true}")
+    private Boolean observationEnable;
+
+    /**
+     * 压缩表格时保留的行数（开头几行 + 均匀抽样）
+     */
+    @Value("${autobots.autoagent.observation.sample_rows:10}")
+    private Integer observationSampleRows;
+
+    /**
+     * 被压缩的工具结果完整保存为会话内部文件，模型可通过 file_tool 读取，报告也会收到完整内容
+     */
+    @Value("${autobots.autoagent.observation.store_full:true}")
+    private Boolean observationStoreFull;
+
+    /**
+     * 不保存完整结果的工具（逗号分隔），其结果本身已是文件或文件内容
+     */
+    @Value("${autobots.autoagent.observation.store_skip_tools:file_tool,report_tool,deep_search}")
+    private String observationStoreSkipTools;
+
+    /**
+     * 流式请求携带 stream_options.include_usage，由最后一个数据块返回 token 用量；默认关闭（部分兼容服务不支持，
+     * 开启后服务端以 400 拒绝时去掉该参数重试一次），关闭时按本地 tokenizer 估算
+     */
+    @Value("${autobots.autoagent.ledger.stream_usage:false}")
+    private Boolean ledgerStreamUsage;
+
+    /**
+     * 单次请求的 token 预算，0 表示不限
+     */
+    @Value("${autobots.autoagent.ledger.request_max_tokens:0}")
+    private Long ledgerRequestMaxTokens;
+
+    /**
+     * 单次请求的费用预算，0 表示不限
+     */
+    @Value("${autobots.autoagent.ledger.request_max_cost:0}")
+    private Double ledgerRequestMaxCost;
+
+    /**
+     * 单个用户（erp）在统计窗口内的 token 预算，0 表示不限
+     */
+    @Value("${autobots.autoagent.ledger.user_max_tokens:0}")
+    private Long ledgerUserMaxTokens;
+
+    /**
+     * 单个用户在统计窗口内的费用预算，0 表示不限
+     */
+    @Value("${autobots.autoagent.ledger.user_max_cost:0}")
+    private Double ledgerUserMaxCost;
+
+    /**
+     * 用户预算的统计窗口（小时），按小时分桶滚动：当前小时及之前 N-1 小时
+     */
+    @Value("${autobots.autoagent.ledger.user_window_hours:24}")
+    private Integer ledgerUserWindowHours;
+
+    /**
+     * 保留供查询的最近请求账本数
+     */
+    @Value("${autobots.autoagent.ledger.max_requests:256}")
+    private Integer ledgerMaxRequests;
+
 	@Value("${autobots.autoagent.genie_sop_prompt:}")
 	private String genieSopPrompt;
 
@@ -0,0 +1,67 @@
+package com.jd.genie.config;
+
+import com.jd.genie.controller.AgentWebSocketEndpoint;
+import com.jd.genie.service.IAgentRunService;
+import com.jd.genie.service.IGptProcessService;
+import jakarta.servlet.ServletContext;
+import jakarta.websocket.server.ServerContainer;
+import jakarta.websocket.server.ServerEndpointConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.ServletContextAware;
+
+import java.util.Objects;
+
+/**
+ * 注册智能体事件 WebSocket 端点（autobots.autoagent.websocket.enable 控制）
+ * permessage-deflate 由 Tomcat 按客户端请求协商，无需额外配置
+ */
+@Slf4j
+@Configuration
+public class WebSocketConfig implements ServletContextAware, SmartInitializingSingleton {
+    public static final String AGENT_PATH = "/ws/agent";
+
+    @Autowired
+    private GenieConfig genieConfig;
+    @Autowired
+    private IAgentRunService agentRunService;
+    @Autowired
+    private IGptProcessService gptProcessService;
+
+    private ServletContext servletContext;
+
+    @Override
+    public void setServletContext(ServletContext servletContext) {
+        this.servletContext = servletContext;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!Boolean.TRUE.equals(genieConfig.getWebsocketEnable())) {
+            return;
+        }
+        ServerContainer container = Objects.isNull(servletContext) ? null
+                : (ServerContainer) servletContext.getAttribute(ServerContainer.class.getName());
+        if (Objects.isNull(container)) {
+            log.warn("websocket server container not found, skip {}", AGENT_PATH);
+            return;
+        }
+        ServerEndpointConfig endpointConfig = ServerEndpointConfig.Builder
+                .create(AgentWebSocketEndpoint.class, AGENT_PATH)
+                .configurator(new ServerEndpointConfig.Configurator() {
+                    @Override
+                    public <T> T getEndpointInstance(Class<T> clazz) {
+                        return clazz.cast(new AgentWebSocketEndpoint(agentRunService, gptProcessService, genieConfig));
+                    }
+                })
+                .build();
+        try {
+            container.addEndpoint(endpointConfig);
+            log.info("websocket endpoint registered: {}", AGENT_PATH);
+        } catch (Exception e) {
+            log.error("websocket endpoint {} register failed", AGENT_PATH, e);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.jd.genie.controller;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.jd.genie.agent.printer.WebSocketPrinter;
+import com.jd.genie.config.GenieConfig;
+import com.jd.genie.model.req.AgentRequest;
+import com.jd.genie.model.req.GptQueryReq;
+import com.jd.genie.service.IAgentRunService;
+import com.jd.genie.service.IGptProcessService;
+import com.jd.genie.util.AsyncWsWriter;
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.Session;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 智能体事件 WebSocket 传输（/ws/agent），与 /AutoAgent、queryAgentStreamIncr 的 SSE 通道并存
+ * 客户端以文本消息发送控制指令，服务端以二进制帧（AgentFrameCodec）下发事件，一个连接可同时承载多个会话：
+ * <pre>
+ * {"op":"start","channel":1,"request":{AgentRequest}}   等同 /AutoAgent（同一 requestId 执行中时拒绝，除非 restart）
+ * {"op":"query","channel":2,"request":{GptQueryReq}}    等同 queryAgentStreamIncr 的请求，下发原始智能体事件
+ * {"op":"detach","channel":1}                           停止接收该会话事件（智能体继续执行至结束）
+ * </pre>
+ * 每个连接一个实例，由 WebSocketConfig 注册。
+ */
+@Slf4j
+public class AgentWebSocketEndpoint extends Endpoint {
+    private static final int MAX_TEXT_MESSAGE_SIZE = 1024 * 1024;
+
+    private final IAgentRunService agentRunService;
+    private final IGptProcessService gptProcessService;
+    private final GenieConfig genieConfig;
+    /**
+     * channel -> requestId，会话执行结束后移除，执行中的 channel 不可复用
+     */
+    private final Map<Integer, String> channels = new ConcurrentHashMap<>();
+    private AsyncWsWriter writer;
+
+    public AgentWebSocketEndpoint(IAgentRunService agentRunService, IGptProcessService gptProcessService, GenieConfig genieConfig) {
+        this.agentRunService = agentRunService;
+        this.gptProcessService = gptProcessService;
+        this.genieConfig = genieConfig;
+    }
+
+    @Override
+    public void onOpen(Session session, EndpointConfig config) {
+        log.info("ws {} open, extensions: {}", session.getId(), session.getNegotiatedExtensions());
+        session.setMaxTextMessageBufferSize(MAX_TEXT_MESSAGE_SIZE);
+        writer = new AsyncWsWriter(session, genieConfig.getSseWriterQueueCapacity(), genieConfig.getSseWriterOverflowPolicy());
+        session.addMessageHandler(String.class, this::onControl);
+    }
+
+    @Override
+    public void onClose(Session session, CloseReason closeReason) {
+        log.info("ws {} closed, reason: {}, running channels: {}", session.getId(), closeReason, channels);
+        writer.closed();
+    }
+
+    @Override
+    public void onError(Session session, Throwable thr) {
+        log.warn("ws {} error: {}", session.getId(), thr.getMessage());
+    }
+
+    private void onControl(String text) {
+        JSONObject command;
+        try {
+            command = JSON.parseObject(text);
+        } catch (Exception e) {
+            writer.error(0, "控制消息格式错误");
+            return;
+        }
+        int channel = command.getIntValue("channel");
+        String op = command.getString("op");
+        try {
+            if ("start".equals(op)) {
+                start(channel, command.getObject("request", AgentRequest.class));
+            } else if ("query".equals(op)) {
+                GptQueryReq req = command.getObject("request", GptQueryReq.class);
+                start(channel, Objects.isNull(req) ? null : gptProcessService.buildAgentRequest(req));
+            } else if ("detach".equals(op)) {
+                writer.end(channel);
+            } else {
+                writer.error(channel, "未知操作: " + op);
+            }
+        } catch (Exception e) {
+            log.error("ws control {} error", text, e);
+            writer.error(channel, "请求处理失败: " + e.getMessage());
+        }
+    }
+
+    private void start(int channel, AgentRequest request) {
+        if (channel <= 0 || Objects.isNull(request) || StringUtils.isEmpty(request.getRequestId())) {
+            writer.error(channel, "channel 或 requestId 非法");
+            return;
+        }
+        if (channels.size() >= genieConfig.getWebsocketMaxChannels()) {
+            writer.error(channel, "会话数超过上限 " + genieConfig.getWebsocketMaxChannels());
+            return;
+        }
+        String requestId = request.getRequestId();
+        if (Objects.nonNull(channels.putIfAbsent(channel, requestId))) {
+            writer.error(channel, "channel 已被占用");
+            return;
+        }
+        writer.open(channel, requestId, request.getAgentType());
+        log.info("{} ws auto agent request on channel {}: {}", requestId, channel, JSON.toJSONString(request));
+        // 执行调度引擎
+        agentRunService.start(request,
+                () -> new WebSocketPrinter(writer, channel, request, request.getAgentType()),
+                () -> {
+                    writer.end(channel);
+                    channels.remove(channel);
+                },
+                () -> {
+                    // 二进制帧通道没有回放缓冲，重复提交直接拒绝
+                    writer.error(channel, Boolean.TRUE.equals(request.getRestart())
+                            ? "请求 " + requestId + " 的已有执行未能及时结束，重新执行被拒绝"
+                            : "请求 " + requestId + " 正在执行，如需重新执行请设置 restart");
+                    writer.end(channel);
+                    channels.remove(channel);
+                });
+    }
+}
@@ -1,129 +1,100 @@
 package com.jd.genie.controller;
 
 import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONArray;
-import com.alibaba.fastjson.JSONObject;
-import com.jd.genie.agent.agent.AgentContext;
-import com.jd.genie.agent.printer.Printer;
+import com.jd.genie.agent.llm.UsageLedger;
 import com.jd.genie.agent.printer.SSEPrinter;
-import com.jd.genie.agent.tool.ToolCollection;
-import com.jd.genie.agent.tool.common.CodeInterpreterTool;
-import com.jd.genie.agent.tool.common.DeepSearchTool;
-import com.jd.genie.agent.tool.common.FileTool;
-import com.jd.genie.agent.tool.common.ReportTool;
-import com.jd.genie.agent.tool.common.WeatherTool;
-import com.jd.genie.agent.tool.common.TranslationTool;
-import com.jd.genie.agent.tool.common.CalculatorTool;
-import com.jd.genie.agent.tool.common.StockTool;
-import com.jd.genie.agent.tool.common.NewsDataFetchTool;
-import com.jd.genie.agent.tool.common.NewsContentGeneratorTool;
-import com.jd.genie.agent.tool.common.NewsTTSTool;
-import com.jd.genie.agent.tool.mcp.McpTool;
-import com.jd.genie.agent.util.DateUtil;
-import com.jd.genie.agent.util.ThreadUtil;
+import com.jd.genie.agent.tool.PersistentToolCache;
+import com.jd.genie.agent.tool.ToolDefinitionRegistry;
+import com.jd.genie.agent.tool.ToolResultCache;
+import com.jd.genie.agent.tool.ToolSelector;
+import com.jd.genie.agent.tool.common.EvidenceStore;
+import com.jd.genie.agent.tool.common.FileUploader;
+import com.jd.genie.agent.tool.common.LocalFileStore;
+import com.jd.genie.agent.tool.mcp.McpSessionPool;
+import com.jd.genie.agent.tool.mcp.McpToolCatalog;
 import com.jd.genie.config.GenieConfig;
 import com.jd.genie.model.req.AgentRequest;
 import com.jd.genie.model.req.GptQueryReq;
-import com.jd.genie.service.AgentHandlerService;
+import com.jd.genie.service.IAgentRunService;
 import com.jd.genie.service.IGptProcessService;
 import com.jd.genie.service.McpToolSyncService;
-import com.jd.genie.service.McpServerManagementService;
-import com.jd.genie.service.impl.AgentHandlerFactory;
+import com.jd.genie.util.AsyncSseWriter;
+import com.jd.genie.util.AsyncWsWriter;
+import com.jd.genie.util.SseEventStream;
+import com.jd.genie.util.SseHeartbeatWheel;
+import com.jd.genie.util.SseUtil;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
-import com.jd.genie.agent.tool.BaseTool;
 
 @Slf4j
 @RestController
 @RequestMapping("/")
 public class GenieController {
-    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(5);
-    private static final long HEARTBEAT_INTERVAL = 10_000L; // 10秒心跳间隔
     @Autowired
     protected GenieConfig genieConfig;
     @Autowired
-    private AgentHandlerFactory agentHandlerFactory;
+    private IAgentRunService agentRunService;
     @Autowired
     private IGptProcessService gptProcessService;
     @Autowired
     private McpToolSyncService mcpToolSyncService;
     @Autowired
-    private McpServerManagementService mcpServerManagementService;
-
-    /**
-     * 开启SSE心跳
-     * @param emitter
-     * @param requestId
-     * @return
-     */
-    private ScheduledFuture<?> startHeartbeat(SseEmitter emitter, String requestId) {
-        return executor.scheduleAtFixedRate(() -> {
-            try {
-                // 发送心跳消息
-                log.info("{} send heartbeat", requestId);
-                emitter.send("heartbeat");
-            } catch (Exception e) {
-                // 发送心跳失败，关闭连接
-                log.error("{} heartbeat failed, closing connection", requestId, e);
-                emitter.completeWithError(e);
-            }
-        }, HEARTBEAT_INTERVAL, HEARTBEAT_INTERVAL, TimeUnit.MILLISECONDS);
-    }
+    private McpToolCatalog mcpToolCatalog;
+    @Autowired
+    private McpSessionPool mcpSessionPool;
+    @Autowired
+    private ToolDefinitionRegistry toolDefinitionRegistry;
+    @Autowired
+    private ToolSelector toolSelector;
+    @Autowired
+    private PersistentToolCache persistentToolCache;
+    @Autowired
+    private FileUploader fileUploader;
+    @Autowired
+    private LocalFileStore localFileStore;
+    @Autowired
+    private EvidenceStore evidenceStore;
+    @Autowired
+    private UsageLedger usageLedger;
 
     /**
      * 注册SSE事件
-     * @param emitter
+     * @param writer
      * @param requestId
-     * @param heartbeatFuture
      */
-    private void registerSSEMonitor(SseEmitter emitter, String requestId, ScheduledFuture<?> heartbeatFuture) {
-        // 监听SSE异常事件
-        emitter.onCompletion(() -> {
-            log.info("{} SSE connection completed normally", requestId);
-            heartbeatFuture.cancel(true);
-            // 从MCP工具同步服务注销工具集合
-            mcpToolSyncService.unregisterToolCollection(requestId);
-        });
-
-        // 监听连接超时事件
-        emitter.onTimeout(() -> {
-            log.info("{} SSE connection timed out", requestId);
-            heartbeatFuture.cancel(true);
-            emitter.complete();
-            // 从MCP工具同步服务注销工具集合
-            mcpToolSyncService.unregisterToolCollection(requestId);
-        });
-
-        // 监听连接错误事件
-        emitter.onError((ex) -> {
-            log.info("{} SSE connection error: ", requestId, ex);
-            heartbeatFuture.cancel(true);
-            emitter.completeWithError(ex);
-            // 从MCP工具同步服务注销工具集合
-            mcpToolSyncService.unregisterToolCollection(requestId);
-        });
+    private void registerSSEMonitor(AsyncSseWriter writer, String requestId) {
+        // 连接正常完成、超时、异常均由写出器回调（仅一次）；调度资源在调度结束后释放
+        writer.onClose(() -> log.info("{} SSE connection closed", requestId));
     }
 
     /**
      * 执行智能体调度
+     * 同一 requestId 的调度执行中（前端重试、重复点击）时不重新执行，挂接到已有调度的事件流并从头回放；
+     * 请求设置 restart 时取消已有调度，在其结束后重新执行（事件发到本连接），无法及时结束时拒绝并挂接到已有调度
      * @param request
      * @return
      * @throws UnsupportedEncodingException
@@ -135,202 +106,39 @@ public class GenieController {
 
         Long AUTO_AGENT_SSE_TIMEOUT = 60 * 60 * 1000L;
 
-        SseEmitter emitter = new SseEmitter(AUTO_AGENT_SSE_TIMEOUT);
-        // SSE心跳
-        ScheduledFuture<?> heartbeatFuture = startHeartbeat(emitter, request.getRequestId());
+        // SSE连接，空闲时由心跳时间轮发送心跳
+        SseEmitter emitter = SseUtil.build(AUTO_AGENT_SSE_TIMEOUT, request.getRequestId(), () -> "heartbeat");
+        AsyncSseWriter writer = AsyncSseWriter.of(emitter, request.getRequestId());
         // 监听SSE事件
-        registerSSEMonitor(emitter, request.getRequestId(), heartbeatFuture);
-        // 拼接输出类型
-        request.setQuery(handleOutputStyle(request));
+        registerSSEMonitor(writer, request.getRequestId());
         // 执行调度引擎
-        ThreadUtil.execute(() -> {
-            try {
-                Printer printer = new SSEPrinter(emitter, request, request.getAgentType());
-                AgentContext agentContext = AgentContext.builder()
-                        .requestId(request.getRequestId())
-                        .sessionId(request.getRequestId())
-                        .printer(printer)
-                        .query(request.getQuery())
-                        .task("")
-                        .dateInfo(DateUtil.CurrentDateInfo())
-                        .productFiles(new ArrayList<>())
-                        .taskProductFiles(new ArrayList<>())
-                        .sopPrompt(request.getSopPrompt())
-                        .basePrompt(request.getBasePrompt())
-                        .agentType(request.getAgentType())
-                        .isStream(Objects.nonNull(request.getIsStream()) ? request.getIsStream() : false)
-                        .build();
-
-                // 构建工具列表
-                agentContext.setToolCollection(buildToolCollection(agentContext, request));
-                // 根据数据类型获取对应的处理器
-                AgentHandlerService handler = agentHandlerFactory.getHandler(agentContext, request);
-                // 执行处理逻辑
-                handler.handle(agentContext, request);
-                // 关闭连接
-                emitter.complete();
-
-            } catch (Exception e) {
-                log.error("{} auto agent error", request.getRequestId(), e);
-            }
-        });
+        agentRunService.start(request,
+                () -> new SSEPrinter(emitter, request, request.getAgentType()), null,
+                () -> {
+                    SseEventStream stream = SseEventStream.get(SseEventStream.SCOPE_AGENT, request.getRequestId());
+                    if (Objects.isNull(stream) || !stream.attach(writer, 0L)) {
+                        // 已有调度不是 SSE 传输（WebSocket），无可挂接的事件流
+                        log.warn("{} duplicate auto agent request has no stream to attach", request.getRequestId());
+                        writer.complete();
+                    }
+                });
 
         return emitter;
     }
 
 
     /**
-     * html模式： query+以 html展示
-     * docs模式：query+以 markdown展示
-     * table 模式: query+以 excel 展示
+     * 智能体调度断线重连：补发 Last-Event-ID 之后的事件并继续推送，不重新执行
+     * @param requestId 原请求ID
+     * @param lastEventId 客户端最后收到的事件序号，缺省时从头回放
+     * @return 事件流已过期或不存在时返回 404
      */
-    private String handleOutputStyle(AgentRequest request) {
-        String query = request.getQuery();
-        Map<String, String> outputStyleMap = genieConfig.getOutputStylePrompts();
-        if (!StringUtils.isEmpty(request.getOutputStyle())) {
-            query += outputStyleMap.computeIfAbsent(request.getOutputStyle(), k -> "");
-        }
-        return query;
-    }
-
-
-    /**
-     * 构建工具列表
-     *
-     * @param agentContext
-     * @param request
-     * @return
-     */
-    private ToolCollection buildToolCollection(AgentContext agentContext, AgentRequest request) {
-
-        ToolCollection toolCollection = new ToolCollection();
-        toolCollection.setAgentContext(agentContext);
-        // file
-        FileTool fileTool = new FileTool();
-        fileTool.setAgentContext(agentContext);
-        toolCollection.addTool(fileTool);
-
-        // default tool
-        List<String> agentToolList = Arrays.asList(genieConfig.getMultiAgentToolListMap()
-                .getOrDefault("default", "search,code,report").split(","));
-        if (!agentToolList.isEmpty()) {
-            if (agentToolList.contains("code")) {
-                CodeInterpreterTool codeTool = new CodeInterpreterTool();
-                codeTool.setAgentContext(agentContext);
-                toolCollection.addTool(codeTool);
-            }
-            if (agentToolList.contains("report")) {
-                ReportTool htmlTool = new ReportTool();
-                htmlTool.setAgentContext(agentContext);
-                toolCollection.addTool(htmlTool);
-            }
-            // 内网环境禁用deep_search工具，避免网络连接错误
-            // if (agentToolList.contains("search")) {
-            //     DeepSearchTool deepSearchTool = new DeepSearchTool();
-            //     deepSearchTool.setAgentContext(agentContext);
-            //     toolCollection.addTool(deepSearchTool);
-            // }
-        }
-
-        // 自定义Agent工具
-        WeatherTool weatherTool = new WeatherTool();
-        weatherTool.setAgentContext(agentContext);
-        toolCollection.addTool(weatherTool);
-        
-        TranslationTool translationTool = new TranslationTool();
-        translationTool.setAgentContext(agentContext);
-        toolCollection.addTool(translationTool);
-        
-        CalculatorTool calculatorTool = new CalculatorTool();
-        calculatorTool.setAgentContext(agentContext);
-        toolCollection.addTool(calculatorTool);
-        
-        // 新增新闻查询工具（带容错机制）
-        NewsDataFetchTool newsDataFetchTool = new NewsDataFetchTool();
-        newsDataFetchTool.setAgentContext(agentContext);
-        toolCollection.addTool(newsDataFetchTool);
-        log.info("{} 成功注册新闻工具: agent_news", agentContext.getRequestId());
-        
-        // 立即验证工具注册
-        BaseTool registeredTool = toolCollection.getTool("agent_news");
-        if (registeredTool != null) {
-            log.info("{} 验证成功: agent_news 工具已注册，工具名称: {}", 
-                agentContext.getRequestId(), registeredTool.getName());
-        } else {
-            log.error("{} 验证失败: agent_news 工具注册失败！", agentContext.getRequestId());
-        }
-        
-        // 新增股票查询工具
-        StockTool stockTool = new StockTool();
-        stockTool.setAgentContext(agentContext);
-        toolCollection.addTool(stockTool);
-        log.info("{} 成功注册股票工具: agent_stock", agentContext.getRequestId());
-        
-        // 新增新闻内容生成工具
-        NewsContentGeneratorTool newsContentGeneratorTool = new NewsContentGeneratorTool();
-        newsContentGeneratorTool.setAgentContext(agentContext);
-        toolCollection.addTool(newsContentGeneratorTool);
-        
-        // 新增新闻TTS工具
-        NewsTTSTool newsTTSTool = new NewsTTSTool();
-        newsTTSTool.setAgentContext(agentContext);
-        toolCollection.addTool(newsTTSTool);
-
-        // mcp tool
-        try {
-            McpTool mcpTool = new McpTool();
-            mcpTool.setAgentContext(agentContext);
-            
-            // 使用动态MCP服务器配置
-            String[] activeMcpServerUrls = mcpServerManagementService.getActiveMcpServerUrls();
-            if (activeMcpServerUrls.length == 0) {
-                // 如果没有动态配置，回退到默认配置
-                activeMcpServerUrls = genieConfig.getMcpServerUrlArr();
-            }
-            
-            for (String mcpServer : activeMcpServerUrls) {
-                String listToolResult = mcpTool.listTool(mcpServer);
-                if (listToolResult.isEmpty()) {
-                    log.error("{} mcp server {} invalid", agentContext.getRequestId(), mcpServer);
-                    continue;
-                }
-
-                JSONObject resp = JSON.parseObject(listToolResult);
-                if (resp.getIntValue("code") != 200) {
-                    log.error("{} mcp serve {} code: {}, message: {}", agentContext.getRequestId(), mcpServer,
-                            resp.getIntValue("code"), resp.getString("message"));
-                    continue;
-                }
-                JSONArray data = resp.getJSONArray("data");
-                if (data.isEmpty()) {
-                    log.error("{} mcp serve {} code: {}, message: {}", agentContext.getRequestId(), mcpServer,
-                            resp.getIntValue("code"), resp.getString("message"));
-                    continue;
-                }
-                for (int i = 0; i < data.size(); i++) {
-                    JSONObject tool = data.getJSONObject(i);
-                    String method = tool.getString("name");
-                    String description = tool.getString("description");
-                    String inputSchema = tool.getString("inputSchema");
-                    toolCollection.addMcpTool(method, description, inputSchema, mcpServer);
-                }
-            }
-            
-            // 注册工具集合到MCP同步服务
-            mcpToolSyncService.registerToolCollection(agentContext.getRequestId(), toolCollection);
-            
-        } catch (Exception e) {
-            log.error("{} add mcp tool failed", agentContext.getRequestId(), e);
-        }
-
-        // 工具注册完成，显示总结
-        log.info("{} 工具注册完成，共注册 {} 个工具", 
-            agentContext.getRequestId(), toolCollection.getToolMap().size());
-        for (BaseTool tool : toolCollection.getToolMap().values()) {
-            log.info("{} 已注册工具: {}", agentContext.getRequestId(), tool.getName());
-        }
-
-        return toolCollection;
+    @RequestMapping(value = "/AutoAgent/reconnect", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> reconnectAutoAgent(@RequestParam("requestId") String requestId,
+                                                         @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        SseEmitter emitter = SseUtil.reconnect(SseEventStream.SCOPE_AGENT, requestId, NumberUtils.toLong(lastEventId, 0L),
+                60 * 60 * 1000L, () -> "heartbeat");
+        return Objects.isNull(emitter) ? ResponseEntity.notFound().build() : ResponseEntity.ok(emitter);
     }
 
     /**
@@ -354,6 +162,19 @@ public class GenieController {
         return gptProcessService.queryMultiAgentIncrStream(params);
     }
 
+    /**
+     * Agent流式增量查询断线重连：请求参数与原请求一致，补发 Last-Event-ID 之后的增量结果并继续推送，不重新执行
+     * @param params 原查询请求参数
+     * @param lastEventId 客户端最后收到的事件序号，缺省时从头回放
+     * @return 事件流已过期或不存在时返回 404
+     */
+    @RequestMapping(value = "/web/api/v1/gpt/queryAgentStreamIncr/reconnect", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> reconnectAgentStreamIncr(@RequestBody GptQueryReq params,
+                                                               @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        SseEmitter emitter = gptProcessService.reconnectMultiAgentIncrStream(params, NumberUtils.toLong(lastEventId, 0L));
+        return Objects.isNull(emitter) ? ResponseEntity.notFound().build() : ResponseEntity.ok(emitter);
+    }
+
     /**
      * 手动触发MCP工具同步
      * @return 同步结果信息
@@ -398,5 +219,157 @@ public class GenieController {
         return ResponseEntity.ok(status);
     }
 
+    /**
+     * MCP 工具目录状态：各服务拉取耗时、工具数、过期时长
+     * @return 目录状态
+     */
+    @RequestMapping("/admin/mcp/catalog")
+    public ResponseEntity<Map<String, Object>> getMcpToolCatalog() {
+        Map<String, Object> status = new HashMap<>(mcpToolCatalog.stats());
+        status.put("timestamp", LocalDateTime.now().toString());
+        return ResponseEntity.ok(status);
+    }
+
+    /**
+     * 触发 MCP 工具目录刷新（后台并行拉取，立即返回）
+     * @return 刷新前的目录状态
+     */
+    @PostMapping("/admin/mcp/catalog/refresh")
+    public ResponseEntity<Map<String, Object>> refreshMcpToolCatalog() {
+        mcpToolCatalog.refresh();
+        Map<String, Object> result = new HashMap<>();
+        result.put("status", "success");
+        result.put("message", "MCP工具目录刷新已触发");
+        result.put("catalog", mcpToolCatalog.stats());
+        result.put("timestamp", LocalDateTime.now().toString());
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * 重建工具定义（修改工具描述/参数配置后调用）
+     * @return 重建后的工具定义数量
+     */
+    @PostMapping("/admin/tools/reload")
+    public ResponseEntity<Map<String, Object>> reloadToolDefinitions() {
+        toolDefinitionRegistry.reload();
+        Map<String, Object> result = new HashMap<>(toolDefinitionRegistry.stats());
+        result.put("status", "success");
+        result.put("timestamp", LocalDateTime.now().toString());
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * 工具筛选统计：发送/节省的工具 schema token、调用命中率、回退次数与各工具历史调用次数
+     */
+    @RequestMapping("/admin/tools/selector")
+    public ResponseEntity<Map<String, Object>> getToolSelectorStats() {
+        Map<String, Object> status = new HashMap<>(toolSelector.stats());
+        status.put("timestamp", LocalDateTime.now().toString());
+        return ResponseEntity.ok(status);
+    }
+
+    /**
+     * 工具结果缓存统计：会话内缓存（全部会话累计）的命中、共享执行中调用、失效次数与命中率，按工具细分；
+     * persistent 为跨会话持久化缓存的内存/磁盘命中
+     */
+    @RequestMapping("/admin/tools/cache")
+    public ResponseEntity<Map<String, Object>> getToolCacheStats() {
+        Map<String, Object> status = new HashMap<>(ToolResultCache.globalStats());
+        status.put("enable", genieConfig.getToolCacheEnable());
+        status.put("persistent", persistentToolCache.stats());
+        status.put("timestamp", LocalDateTime.now().toString());
+        return ResponseEntity.ok(status);
+    }
+
+    /**
+     * 后台文件上传统计：提交/成功/失败数、批量请求数、队列满时由提交线程执行的次数；
+     * store 为本地文件存储的写入、去重与本地读取次数
+     */
+    @RequestMapping("/admin/files/upload")
+    public ResponseEntity<Map<String, Object>> getFileUploadStats() {
+        Map<String, Object> status = new HashMap<>(fileUploader.stats());
+        status.put("store", localFileStore.stats());
+        status.put("timestamp", LocalDateTime.now().toString());
+        return ResponseEntity.ok(status);
+    }
+
+    /**
+     * 报告证据统计：报告请求引用的工具结果总字符数与实际发送的字符数、因 genie-tool 缺失内容整体重发的次数
+     */
+    @RequestMapping("/admin/report/evidence")
+    public ResponseEntity<Map<String, Object>> getEvidenceStats() {
+        Map<String, Object> status = new HashMap<>(evidenceStore.stats());
+        status.put("timestamp", LocalDateTime.now().toString());
+        return ResponseEntity.ok(status);
+    }
+
+    /**
+     * token 与费用账本：预算配置、最近请求的用量合计（按智能体角色小计）与各用户统计窗口内的用量
+     */
+    @RequestMapping("/admin/ledger")
+    public ResponseEntity<Map<String, Object>> getUsageLedger() {
+        Map<String, Object> status = new HashMap<>(usageLedger.stats());
+        status.put("timestamp", LocalDateTime.now().toString());
+        return ResponseEntity.ok(status);
+    }
+
+    /**
+     * 单个请求的账本明细：每次 LLM 调用与工具调用的角色、步骤、token、耗时与费用
+     */
+    @RequestMapping("/admin/ledger/{requestId}")
+    public ResponseEntity<Map<String, Object>> getRequestUsageLedger(@PathVariable("requestId") String requestId) {
+        Map<String, Object> detail = usageLedger.detail(requestId);
+        if (Objects.isNull(detail)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(detail);
+    }
+
+    /**
+     * 本地文件存储的文件下载（local 模式下的文件链接），支持 Range
+     */
+    @GetMapping("/files/{hash}/{fileName}")
+    public ResponseEntity<Resource> getStoredFile(@PathVariable("hash") String hash, @PathVariable("fileName") String fileName) {
+        Path blob = localFileStore.blob(hash);
+        if (Objects.isNull(blob)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaTypeFactory.getMediaType(fileName).orElse(MediaType.APPLICATION_OCTET_STREAM))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.inline().filename(fileName, StandardCharsets.UTF_8).build().toString())
+                .eTag(hash)
+                .body(new FileSystemResource(blob));
+    }
+
+    /**
+     * MCP 长连接会话状态与各工具调用耗时分位数（p50/p90/p99）
+     * @return 会话与调用指标
+     */
+    @RequestMapping("/admin/mcp/sessions")
+    public ResponseEntity<Map<String, Object>> getMcpSessions() {
+        Map<String, Object> status = new HashMap<>(mcpSessionPool.stats());
+        status.put("timestamp", LocalDateTime.now().toString());
+        return ResponseEntity.ok(status);
+    }
+
+    /**
+     * 获取SSE连接发送指标（队列深度、写出耗时、合并/丢弃数）
+     * @return 活跃连接指标
+     */
+    @RequestMapping("/admin/sse/stats")
+    public ResponseEntity<Map<String, Object>> getSseStats() {
+        List<Map<String, Object>> connections = AsyncSseWriter.snapshot();
+        Map<String, Object> status = new HashMap<>();
+        status.put("connectionCount", connections.size());
+        status.put("connections", connections);
+        status.putAll(SseHeartbeatWheel.stats());
+        status.putAll(SseEventStream.stats());
+        status.put("activeRuns", agentRunService.getActiveRunCount());
+        status.put("websocketConnections", AsyncWsWriter.snapshot());
+        status.put("timestamp", LocalDateTime.now().toString());
+
+        return ResponseEntity.ok(status);
+    }
+
 }
     
\ No newline at end of file
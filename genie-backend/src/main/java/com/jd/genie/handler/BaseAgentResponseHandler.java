@@ -1,7 +1,5 @@
 package com.jd.genie.handler;
 
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONObject;
 import com.jd.genie.agent.enums.ResponseTypeEnum;
 import com.jd.genie.model.multi.EventMessage;
 import com.jd.genie.model.multi.EventResult;
@@ -53,7 +51,7 @@ public class BaseAgentResponseHandler {
             case "plan_thought":
                 message.setMessageType(agentResponse.getMessageType());
                 message.setMessageOrder(eventResult.getAndIncrOrder(agentResponse.getMessageType()));
-                message.setResultMap(JSON.parseObject(JSONObject.toJSONString(agentResponse)));
+                message.setResultMap(agentResponse);
                 if (isFinal && !eventResult.getResultMap().containsKey("plan_thought")) {
                     eventResult.getResultMap().put("plan_thought", agentResponse.getPlanThought());
                 }
@@ -73,7 +71,7 @@ public class BaseAgentResponseHandler {
                     message.setTaskOrder(eventResult.getTaskOrder().getAndIncrement());
                     message.setMessageType("task");
                     message.setMessageOrder(1);
-                    message.setResultMap(JSON.parseObject(JSONObject.toJSONString(agentResponse)));
+                    message.setResultMap(agentResponse);
                     if (isFinal) {
                         eventResult.setResultMapSubTask(message.getResultMap());
                     }
@@ -84,7 +82,7 @@ public class BaseAgentResponseHandler {
                 message.setTaskOrder(eventResult.getTaskOrder().getAndIncrement());
                 message.setMessageType(agentResponse.getMessageType());
                 message.setMessageOrder(1);
-                message.setResultMap(JSON.parseObject(JSONObject.toJSONString(agentResponse)));
+                message.setResultMap(agentResponse);
                 if (isFinal) {
                     List<Object> task = new ArrayList<>();
                     task.add(message.getResultMap());
@@ -100,15 +98,15 @@ public class BaseAgentResponseHandler {
                     String orderKey = eventResult.getTaskId() + ":" + agentResponse.getMessageType();
                     message.setMessageOrder(eventResult.getAndIncrOrder(orderKey));
                 }
-                message.setResultMap(JSON.parseObject(JSONObject.toJSONString(agentResponse)));
+                message.setResultMap(agentResponse);
                 if (isFinal && !isFilterFinal) {
                     eventResult.setResultMapSubTask(message.getResultMap());
                 }
                 break;
         }
 
-        // 增量缓存
-        resultMap.put("eventData", JSONObject.parseObject(JSON.toJSONString(message)));
+        // 增量缓存：保持强类型对象，仅在 SSE 出口处序列化一次
+        resultMap.put("eventData", message);
         streamResult.setResultMap(resultMap);
         return streamResult;
     }
@@ -7,6 +7,9 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 @Data
@@ -22,45 +25,35 @@ public class EventResult {
     /**
      * 增量消息偏移量（从 1 开始）
      */
-    private Map<String, Integer> orderMapping = new HashMap<>();
+    private Map<String, Integer> orderMapping = new ConcurrentHashMap<>();
 
     public Integer getAndIncrOrder(String key) {
-        Integer order = orderMapping.get(key);
-        if (Objects.isNull(order)) {
-            orderMapping.put(key, 1);
-            return 1;
-        }
-        orderMapping.put(key, order + 1);
-        return order + 1;
+        return orderMapping.merge(key, 1, Integer::sum);
     }
 
     /**
      * 增量计划-初始化标识
      */
-    public Boolean initPlan;
+    private AtomicBoolean initPlan = new AtomicBoolean(false);
 
     public Boolean isInitPlan() {
-        if (Objects.isNull(initPlan) || Boolean.FALSE.equals(initPlan)) {
-            this.initPlan = true;
-            return true;
-        }
-        return false;
+        return initPlan.compareAndSet(false, true);
     }
 
     /**
      * 增量任务
      */
-    private String taskId;
+    private volatile String taskId;
     private AtomicInteger taskOrder = new AtomicInteger(1);
 
-    public String getTaskId() {
+    public synchronized String getTaskId() {
         if (Objects.isNull(this.taskId) || this.taskId.isEmpty()) {
             this.taskId = UUID.randomUUID().toString();
         }
         return this.taskId;
     }
 
-    public String renewTaskId() {
+    public synchronized String renewTaskId() {
         this.getTaskOrder().set(1);
         this.taskId = UUID.randomUUID().toString();
         return this.taskId;
@@ -69,17 +62,12 @@ public class EventResult {
     /**
      * 增量任务-流式消息类型
      */
-    private List<String> streamTaskMessageType = new ArrayList<String>() {{
-        add("html");
-        add("markdown");
-        add("deep_search");
-        add("tool_thought");
-    }};
+    private List<String> streamTaskMessageType = List.of("html", "markdown", "deep_search", "tool_thought", "agent_stream");
 
     /**
      * 全量结果（回放）
      */
-    private Map<String, Object> resultMap = new HashMap<>();
+    private Map<String, Object> resultMap = new ConcurrentHashMap<>();
 
     public List<Object> getResulMapTask() {
         if (this.resultMap.containsKey("tasks")) {
@@ -89,35 +77,28 @@ public class EventResult {
         return null;
     }
 
-    public void setResultMapTask(List<Object> task) {
+    public synchronized void setResultMapTask(List<Object> task) {
         List<Object> tasks = this.getResulMapTask();
         if (Objects.isNull(tasks)) {
-            tasks = new ArrayList<Object>() {{
-                add(task);
-            }};
+            tasks = new CopyOnWriteArrayList<>();
+            tasks.add(new CopyOnWriteArrayList<>(task));
             this.resultMap.put("tasks", tasks);
             return;
         }
-        tasks.add(task);
+        tasks.add(new CopyOnWriteArrayList<>(task));
     }
 
-    public void setResultMapSubTask(Object subTask) {
+    public synchronized void setResultMapSubTask(Object subTask) {
         List<Object> tasks = this.getResulMapTask();
         if (Objects.isNull(tasks)) {
-            tasks = new ArrayList<Object>() {{
-                add(new ArrayList<>());
-            }};
+            tasks = new CopyOnWriteArrayList<>();
+            tasks.add(new CopyOnWriteArrayList<>());
             this.resultMap.put("tasks", tasks);
         }
         List<Object> subTasks = (List<Object>) tasks.get(tasks.size() - 1);
         subTasks.add(subTask);
     }
 
-    /**
-     * 全量结果（重连）
-     */
-    private List<Object> resultList = new ArrayList<>();
-
     public static void main(String[] args) {
         EventResult res = new EventResult();
         List<Object> task = new ArrayList<>();
@@ -27,6 +27,7 @@ public class AgentRequest {
     private Boolean isStream;
     private List<Message> messages;
     private String outputStyle; // 交付物产出格式：html(网页模式）， docs(文档模式）， table(表格模式）
+    private Boolean restart; // 同 requestId 的调度执行中时取消已有调度后重新执行，默认挂接到已有调度的事件流
 
     @Data
     @Builder
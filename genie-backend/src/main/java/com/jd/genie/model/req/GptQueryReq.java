@@ -20,4 +20,8 @@ public class GptQueryReq {
     private String outputStyle;
     private String traceId;
     private String user;
+    /**
+     * 重新执行：同一请求的调度执行中时不挂接，重新开始
+     */
+    private Boolean restart;
 }
@@ -1,5 +1,6 @@
 package com.jd.genie.model.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -13,8 +14,10 @@ import java.util.regex.Pattern;
 
 /**
  * Assistant返回
+ * 空字段不输出，与 fastjson 序列化结果保持一致（SSE 出口直接序列化该对象）
  */
 @Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
@@ -40,6 +43,7 @@ public class AgentResponse {
     @Builder
     @NoArgsConstructor
     @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     public static class Plan {
         private String title;
         private List<String> stages;
@@ -52,6 +56,7 @@ public class AgentResponse {
     @Builder
     @NoArgsConstructor
     @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     public static class ToolResult {
         private String toolName;
         private Map<String, Object> toolParam;
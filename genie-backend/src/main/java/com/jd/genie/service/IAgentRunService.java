@@ -0,0 +1,39 @@
+package com.jd.genie.service;
+
+import com.jd.genie.agent.checkpoint.RunCheckpoint;
+import com.jd.genie.agent.printer.Printer;
+import com.jd.genie.model.req.AgentRequest;
+
+import java.util.function.Supplier;
+
+public interface IAgentRunService {
+
+    /**
+     * 按 requestId 登记并在线程池中异步执行调度，结束后执行 onFinish 并释放资源。
+     * 同一 requestId 的调度执行中且请求未设置 restart 时不重复执行（不创建 printer），执行 onRejected，
+     * 调用方应挂接到已有调度的事件流。设置 restart 时取消已有调度（中断执行线程、智能体结束）后立即返回，
+     * 已有调度结束时再创建 printer 并执行；超过 restart_cancel_timeout 仍未结束则不执行，同样执行 onRejected（在其他线程）
+     */
+    void start(AgentRequest request, Supplier<Printer> printerFactory, Runnable onFinish, Runnable onRejected);
+
+    /**
+     * 当前执行中的调度数
+     */
+    int getActiveRunCount();
+
+    /**
+     * 在当前线程执行一次智能体调度（构建上下文、工具列表，交由对应 handler 处理），结束后关闭 printer.
+     * SSE（/AutoAgent）与 WebSocket 传输共用
+     */
+    void run(AgentRequest request, Printer printer);
+
+    /**
+     * 从运行日志恢复服务重启前未完成的 plan_solve 运行，结束后关闭 printer
+     */
+    void resume(RunCheckpoint checkpoint, Printer printer);
+
+    /**
+     * 连接关闭后释放请求占用的资源
+     */
+    void release(String requestId);
+}
@@ -1,5 +1,6 @@
 package com.jd.genie.service;
 
+import com.jd.genie.model.req.AgentRequest;
 import com.jd.genie.model.req.GptQueryReq;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
@@ -9,4 +10,14 @@ public interface IGptProcessService {
      * 单智能体，多智能体 Agent 增量接口.
      */
     SseEmitter queryMultiAgentIncrStream(GptQueryReq req);
+
+    /**
+     * 增量接口断线重连，从 lastEventId 之后回放并继续推送；事件流不存在或已过期返回 null.
+     */
+    SseEmitter reconnectMultiAgentIncrStream(GptQueryReq req, long lastEventId);
+
+    /**
+     * 补全增量查询请求并转换为智能体调度请求（WebSocket 传输直接在进程内调度）.
+     */
+    AgentRequest buildAgentRequest(GptQueryReq req);
 }
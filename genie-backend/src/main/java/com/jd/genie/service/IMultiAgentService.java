@@ -1,6 +1,7 @@
 package com.jd.genie.service;
 
 import com.jd.genie.model.dto.AutoBotsResult;
+import com.jd.genie.model.req.AgentRequest;
 import com.jd.genie.model.req.GptQueryReq;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
@@ -12,4 +13,9 @@ public interface IMultiAgentService {
      * @return
      */
     AutoBotsResult searchForAgentRequest(GptQueryReq gptQueryReq, SseEmitter sseEmitter);
+
+    /**
+     * 增量查询请求转换为智能体调度请求.
+     */
+    AgentRequest buildAgentRequest(GptQueryReq req);
 }
@@ -0,0 +1,385 @@
+package com.jd.genie.service.impl;
+
+import com.jd.genie.agent.agent.AgentContext;
+import com.jd.genie.agent.checkpoint.RunCheckpoint;
+import com.jd.genie.agent.dto.tool.McpToolInfo;
+import com.jd.genie.agent.llm.UsageLedger;
+import com.jd.genie.agent.printer.Printer;
+import com.jd.genie.agent.tool.BaseTool;
+import com.jd.genie.agent.tool.ToolCollection;
+import com.jd.genie.agent.tool.common.CalculatorTool;
+import com.jd.genie.agent.tool.common.CodeInterpreterTool;
+import com.jd.genie.agent.tool.common.DeepSearchTool;
+import com.jd.genie.agent.tool.common.FileTool;
+import com.jd.genie.agent.tool.common.NewsContentGeneratorTool;
+import com.jd.genie.agent.tool.common.NewsDataFetchTool;
+import com.jd.genie.agent.tool.common.NewsTTSTool;
+import com.jd.genie.agent.tool.common.ReportTool;
+import com.jd.genie.agent.tool.common.StockTool;
+import com.jd.genie.agent.tool.common.TranslationTool;
+import com.jd.genie.agent.tool.common.WeatherTool;
+import com.jd.genie.agent.tool.mcp.McpToolCatalog;
+import com.jd.genie.agent.util.DateUtil;
+import com.jd.genie.agent.util.ThreadUtil;
+import com.jd.genie.config.GenieConfig;
+import com.jd.genie.model.req.AgentRequest;
+import com.jd.genie.service.AgentHandlerService;
+import com.jd.genie.service.IAgentRunService;
+import com.jd.genie.service.McpToolSyncService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 智能体调度执行（从 GenieController 抽出，供 SSE 与 WebSocket 传输共用）
+ */
+@Slf4j
+@Service
+public class AgentRunServiceImpl implements IAgentRunService {
+    @Autowired
+    private GenieConfig genieConfig;
+    @Autowired
+    private AgentHandlerFactory agentHandlerFactory;
+    @Autowired
+    private PlanSolveHandlerImpl planSolveHandler;
+    @Autowired
+    private McpToolSyncService mcpToolSyncService;
+    @Autowired
+    private McpToolCatalog mcpToolCatalog;
+    @Autowired
+    private UsageLedger usageLedger;
+
+    /**
+     * 执行中的调度（requestId -> 调度），重复提交挂接到已有调度
+     */
+    private final Map<String, AgentRun> runs = new ConcurrentHashMap<>();
+
+    private static class AgentRun {
+        private final String requestId;
+        private final long startTime = System.currentTimeMillis();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private Thread thread;
+        private volatile AgentContext context;
+        private volatile boolean cancelled;
+
+        private AgentRun(String requestId) {
+            this.requestId = requestId;
+        }
+
+        private synchronized void bind(Thread thread) {
+            this.thread = thread;
+            if (cancelled && Objects.nonNull(thread)) {
+                thread.interrupt();
+            }
+        }
+
+        private void bind(AgentContext context) {
+            this.context = context;
+            if (cancelled) {
+                context.setCancelled(true);
+            }
+        }
+
+        /**
+         * 取消调度（不等待）：智能体在下一步前结束，执行线程被中断（打断等待中的工具/LLM 调用），结束时完成 done
+         */
+        private void cancel() {
+            synchronized (this) {
+                cancelled = true;
+                if (Objects.nonNull(thread)) {
+                    thread.interrupt();
+                }
+            }
+            AgentContext agentContext = context;
+            if (Objects.nonNull(agentContext)) {
+                agentContext.setCancelled(true);
+            }
+        }
+    }
+
+    @Override
+    public void start(AgentRequest request, Supplier<Printer> printerFactory, Runnable onFinish, Runnable onRejected) {
+        String requestId = request.getRequestId();
+        AgentRun previous = runs.get(requestId);
+        if (Boolean.TRUE.equals(request.getRestart()) && Objects.nonNull(previous)) {
+            // 旧调度结束（日志写完 end、资源释放）后再开始，避免两次执行交错写同一事件流与运行日志；
+            // 在旧调度结束（或等待超时）的回调中继续，不占用请求线程
+            long timeout = genieConfig.getRestartCancelTimeout();
+            log.warn("{} restart requested, cancel previous run started at {}", requestId, previous.startTime);
+            previous.cancel();
+            previous.done.copy().orTimeout(timeout, TimeUnit.MILLISECONDS).whenComplete((v, e) -> {
+                if (Objects.nonNull(e)) {
+                    log.error("{} previous run not stopped within {}ms, restart rejected", requestId, timeout);
+                    reject(onRejected);
+                    return;
+                }
+                try {
+                    launch(request, printerFactory, onFinish, onRejected);
+                } catch (Exception ex) {
+                    log.error("{} restart launch failed", requestId, ex);
+                    reject(onRejected);
+                }
+            });
+            return;
+        }
+        launch(request, printerFactory, onFinish, onRejected);
+    }
+
+    private void launch(AgentRequest request, Supplier<Printer> printerFactory, Runnable onFinish, Runnable onRejected) {
+        String requestId = request.getRequestId();
+        AgentRun run = new AgentRun(requestId);
+        Printer[] printer = new Printer[1];
+        // printer 在登记的同时创建，挂接方看到登记时事件流已存在
+        runs.compute(requestId, (k, existing) -> {
+            if (Objects.nonNull(existing)) {
+                return existing;
+            }
+            printer[0] = printerFactory.get();
+            return run;
+        });
+        if (Objects.isNull(printer[0])) {
+            log.info("{} duplicate auto agent request, attach to running run", requestId);
+            reject(onRejected);
+            return;
+        }
+        ThreadUtil.execute(() -> {
+            run.bind(Thread.currentThread());
+            try {
+                run(request, printer[0], run);
+            } finally {
+                run.bind((Thread) null);
+                // 清除取消时的中断标记，线程归还线程池后不影响后续任务
+                Thread.interrupted();
+                if (runs.remove(requestId, run)) {
+                    release(requestId);
+                }
+                if (Objects.nonNull(onFinish)) {
+                    onFinish.run();
+                }
+                run.done.complete(null);
+            }
+        });
+    }
+
+    private void reject(Runnable onRejected) {
+        if (Objects.nonNull(onRejected)) {
+            onRejected.run();
+        }
+    }
+
+    @Override
+    public int getActiveRunCount() {
+        return runs.size();
+    }
+
+    @Override
+    public void run(AgentRequest request, Printer printer) {
+        run(request, printer, null);
+    }
+
+    private void run(AgentRequest request, Printer printer, AgentRun run) {
+        try {
+            // 拼接输出类型
+            request.setQuery(handleOutputStyle(request));
+            AgentContext agentContext = buildContext(request, printer);
+            if (Objects.nonNull(run)) {
+                run.bind(agentContext);
+            }
+            // 根据数据类型获取对应的处理器
+            AgentHandlerService handler = agentHandlerFactory.getHandler(agentContext, request);
+            // 执行处理逻辑
+            handler.handle(agentContext, request);
+            log.info("{} tool cache stats {}", request.getRequestId(), agentContext.getToolResultCache().stats());
+            // 关闭连接（待发送队列写完后结束）
+            printer.close();
+
+        } catch (Exception e) {
+            log.error("{} auto agent error", request.getRequestId(), e);
+        }
+    }
+
+    @Override
+    public void resume(RunCheckpoint checkpoint, Printer printer) {
+        // 日志中的请求已拼接输出类型
+        AgentRequest request = checkpoint.getRequest();
+        AgentRun run = new AgentRun(request.getRequestId());
+        runs.put(request.getRequestId(), run);
+        run.bind(Thread.currentThread());
+        try {
+            AgentContext agentContext = buildContext(request, printer);
+            run.bind(agentContext);
+            planSolveHandler.resume(agentContext, request, checkpoint);
+        } catch (Exception e) {
+            log.error("{} resume auto agent error", request.getRequestId(), e);
+        } finally {
+            printer.close();
+            run.bind((Thread) null);
+            Thread.interrupted();
+            runs.remove(request.getRequestId(), run);
+            run.done.complete(null);
+        }
+    }
+
+    private AgentContext buildContext(AgentRequest request, Printer printer) {
+        AgentContext agentContext = AgentContext.builder()
+                .requestId(request.getRequestId())
+                .sessionId(request.getRequestId())
+                .printer(printer)
+                .query(request.getQuery())
+                .task("")
+                .dateInfo(DateUtil.CurrentDateInfo())
+                .productFiles(new CopyOnWriteArrayList<>())
+                .taskProductFiles(new CopyOnWriteArrayList<>())
+                .sopPrompt(request.getSopPrompt())
+                .basePrompt(request.getBasePrompt())
+                .agentType(request.getAgentType())
+                .isStream(Objects.nonNull(request.getIsStream()) ? request.getIsStream() : false)
+                .usageLedger(usageLedger.open(request.getRequestId(), request.getErp()))
+                .build();
+
+        // 构建工具列表
+        agentContext.setToolCollection(buildToolCollection(agentContext, request));
+        return agentContext;
+    }
+
+    @Override
+    public void release(String requestId) {
+        // 从MCP工具同步服务注销工具集合
+        mcpToolSyncService.unregisterToolCollection(requestId);
+    }
+
+    /**
+     * html模式： query+以 html展示
+     * docs模式：query+以 markdown展示
+     * table 模式: query+以 excel 展示
+     */
+    private String handleOutputStyle(AgentRequest request) {
+        String query = request.getQuery();
+        Map<String, String> outputStyleMap = genieConfig.getOutputStylePrompts();
+        if (!StringUtils.isEmpty(request.getOutputStyle())) {
+            query += outputStyleMap.computeIfAbsent(request.getOutputStyle(), k -> "");
+        }
+        return query;
+    }
+
+
+    /**
+     * 构建工具列表
+     *
+     * @param agentContext
+     * @param request
+     * @return
+     */
+    private ToolCollection buildToolCollection(AgentContext agentContext, AgentRequest request) {
+
+        ToolCollection toolCollection = new ToolCollection();
+        toolCollection.setAgentContext(agentContext);
+        // file
+        FileTool fileTool = new FileTool();
+        fileTool.setAgentContext(agentContext);
+        toolCollection.addTool(fileTool);
+
+        // default tool
+        List<String> agentToolList = Arrays.asList(genieConfig.getMultiAgentToolListMap()
+                .getOrDefault("default", "search,code,report").split(","));
+        if (!agentToolList.isEmpty()) {
+            if (agentToolList.contains("code")) {
+                CodeInterpreterTool codeTool = new CodeInterpreterTool();
+                codeTool.setAgentContext(agentContext);
+                toolCollection.addTool(codeTool);
+            }
+            if (agentToolList.contains("report")) {
+                ReportTool htmlTool = new ReportTool();
+                htmlTool.setAgentContext(agentContext);
+                toolCollection.addTool(htmlTool);
+            }
+            // 内网环境禁用deep_search工具，避免网络连接错误
+            // if (agentToolList.contains("search")) {
+            //     DeepSearchTool deepSearchTool = new DeepSearchTool();
+            //     deepSearchTool.setAgentContext(agentContext);
+            //     toolCollection.addTool(deepSearchTool);
+            // }
+        }
+
+        // 自定义Agent工具
+        WeatherTool weatherTool = new WeatherTool();
+        weatherTool.setAgentContext(agentContext);
+        toolCollection.addTool(weatherTool);
+        
+        TranslationTool translationTool = new TranslationTool();
+        translationTool.setAgentContext(agentContext);
+        toolCollection.addTool(translationTool);
+        
+        CalculatorTool calculatorTool = new CalculatorTool();
+        calculatorTool.setAgentContext(agentContext);
+        toolCollection.addTool(calculatorTool);
+        
+        // 新增新闻查询工具（带容错机制）
+        NewsDataFetchTool newsDataFetchTool = new NewsDataFetchTool();
+        newsDataFetchTool.setAgentContext(agentContext);
+        toolCollection.addTool(newsDataFetchTool);
+        log.info("{} 成功注册新闻工具: agent_news", agentContext.getRequestId());
+        
+        // 立即验证工具注册
+        BaseTool registeredTool = toolCollection.getTool("agent_news");
+        if (registeredTool != null) {
+            log.info("{} 验证成功: agent_news 工具已注册，工具名称: {}", 
+                agentContext.getRequestId(), registeredTool.getName());
+        } else {
+            log.error("{} 验证失败: agent_news 工具注册失败！", agentContext.getRequestId());
+        }
+        
+        // 新增股票查询工具
+        StockTool stockTool = new StockTool();
+        stockTool.setAgentContext(agentContext);
+        toolCollection.addTool(stockTool);
+        log.info("{} 成功注册股票工具: agent_stock", agentContext.getRequestId());
+        
+        // 新增新闻内容生成工具
+        NewsContentGeneratorTool newsContentGeneratorTool = new NewsContentGeneratorTool();
+        newsContentGeneratorTool.setAgentContext(agentContext);
+        toolCollection.addTool(newsContentGeneratorTool);
+        
+        // 新增新闻TTS工具
+        NewsTTSTool newsTTSTool = new NewsTTSTool();
+        newsTTSTool.setAgentContext(agentContext);
+        toolCollection.addTool(newsTTSTool);
+
+        // mcp tool：读取共享目录快照（后台刷新），不在请求路径上调用 listTool
+        try {
+            McpToolCatalog.Snapshot catalog = mcpToolCatalog.snapshot();
+            for (McpToolInfo tool : catalog.getTools()) {
+                toolCollection.addMcpTool(tool);
+            }
+            if (catalog.getTools().isEmpty()) {
+                log.warn("{} mcp tool catalog is empty", agentContext.getRequestId());
+            }
+
+            // 注册工具集合到MCP同步服务
+            mcpToolSyncService.registerToolCollection(agentContext.getRequestId(), toolCollection);
+            
+        } catch (Exception e) {
+            log.error("{} add mcp tool failed", agentContext.getRequestId(), e);
+        }
+
+        // 工具注册完成，显示总结
+        log.info("{} 工具注册完成，共注册 {} 个工具", 
+            agentContext.getRequestId(), toolCollection.getToolMap().size());
+        for (BaseTool tool : toolCollection.getToolMap().values()) {
+            log.info("{} 已注册工具: {}", agentContext.getRequestId(), tool.getName());
+        }
+
+        return toolCollection;
+    }
+}
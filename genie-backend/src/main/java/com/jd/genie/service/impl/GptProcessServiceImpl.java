@@ -1,9 +1,11 @@
 package com.jd.genie.service.impl;
 
+import com.jd.genie.model.req.AgentRequest;
 import com.jd.genie.model.req.GptQueryReq;
 import com.jd.genie.service.IGptProcessService;
 import com.jd.genie.service.IMultiAgentService;
 import com.jd.genie.util.ChateiUtils;
+import com.jd.genie.util.SseEventStream;
 import com.jd.genie.util.SseUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,13 +22,32 @@ public class GptProcessServiceImpl implements IGptProcessService {
     @Override
     public SseEmitter queryMultiAgentIncrStream(GptQueryReq req) {
         long timeoutMillis = TimeUnit.HOURS.toMillis(1);
+        String traceId = fillRequest(req);
+        final SseEmitter emitter = SseUtil.build(timeoutMillis, traceId, () -> ChateiUtils.buildHeartbeatData(traceId));
+        multiAgentService.searchForAgentRequest(req, emitter);
+        log.info("queryMultiAgentIncrStream GptQueryReq request:{}", req);
+        return emitter;
+    }
+
+    @Override
+    public SseEmitter reconnectMultiAgentIncrStream(GptQueryReq req, long lastEventId) {
+        String traceId = fillRequest(req);
+        log.info("queryMultiAgentIncrStream reconnect traceId:{}, lastEventId:{}", traceId, lastEventId);
+        return SseUtil.reconnect(SseEventStream.SCOPE_INCR, traceId, lastEventId, TimeUnit.HOURS.toMillis(1),
+                () -> ChateiUtils.buildHeartbeatData(traceId));
+    }
+
+    @Override
+    public AgentRequest buildAgentRequest(GptQueryReq req) {
+        fillRequest(req);
+        return multiAgentService.buildAgentRequest(req);
+    }
+
+    private String fillRequest(GptQueryReq req) {
         req.setUser("genie");
         req.setDeepThink(req.getDeepThink() == null ? 0: req.getDeepThink());
         String traceId = ChateiUtils.getRequestId(req);
         req.setTraceId(traceId);
-        final SseEmitter emitter = SseUtil.build(timeoutMillis, req.getTraceId());
-        multiAgentService.searchForAgentRequest(req, emitter);
-        log.info("queryMultiAgentIncrStream GptQueryReq request:{}", req);
-        return emitter;
+        return traceId;
     }
 }
@@ -4,7 +4,6 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.jd.genie.agent.enums.AgentType;
 import com.jd.genie.agent.enums.AutoBotsResultStatus;
-import com.jd.genie.agent.enums.ResponseTypeEnum;
 import com.jd.genie.config.GenieConfig;
 import com.jd.genie.handler.AgentResponseHandler;
 import com.jd.genie.model.dto.AutoBotsResult;
@@ -14,7 +13,9 @@ import com.jd.genie.model.req.GptQueryReq;
 import com.jd.genie.model.response.AgentResponse;
 import com.jd.genie.model.response.GptProcessResult;
 import com.jd.genie.service.IMultiAgentService;
+import com.jd.genie.util.AsyncSseWriter;
 import com.jd.genie.util.ChateiUtils;
+import com.jd.genie.util.SseEventStream;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -53,6 +54,9 @@ public class MultiAgentServiceImpl implements IMultiAgentService {
 
     public void handleMultiAgentRequest(AgentRequest autoReq,SseEmitter sseEmitter) {
         long startTime = System.currentTimeMillis();
+        // 增量事件流，客户端断线后可携带 Last-Event-ID 重连回放
+        SseEventStream stream = SseEventStream.create(SseEventStream.SCOPE_INCR, autoReq.getRequestId(),
+                AsyncSseWriter.of(sseEmitter, autoReq.getRequestId()));
         Request request = buildHttpRequest(autoReq);
         log.info("{} agentRequest:{}", autoReq.getRequestId(), JSON.toJSONString(request));
         OkHttpClient client = new OkHttpClient.Builder()
@@ -66,6 +70,7 @@ public class MultiAgentServiceImpl implements IMultiAgentService {
             @Override
             public void onFailure(Call call, IOException e) {
                 log.error("onFailure {}", e.getMessage(), e);
+                stream.complete();
             }
 
             @Override
@@ -101,9 +106,8 @@ public class MultiAgentServiceImpl implements IMultiAgentService {
                         }
 
                         if (data.startsWith("heartbeat")) {
-                            GptProcessResult result = buildHeartbeatData(autoReq.getRequestId());
-                            sseEmitter.send(result);
-                            log.info("{} heartbeat-data: {}", autoReq.getRequestId(), data);
+                            // 上游心跳只用于保活内部连接，前端连接由心跳时间轮按空闲情况发送
+                            log.debug("{} heartbeat-data: {}", autoReq.getRequestId(), data);
                             continue;
                         }
 
@@ -112,15 +116,18 @@ public class MultiAgentServiceImpl implements IMultiAgentService {
                         AgentType agentType = AgentType.fromCode(autoReq.getAgentType());
                         AgentResponseHandler handler = handlerMap.get(agentType);
                         GptProcessResult result = handler.handle(autoReq, agentResponse,agentRespList, eventResult);
-                        sseEmitter.send(result);
+                        stream.publish(result);
                         if (result.isFinished()) {
                             // 记录任务执行时间
                             log.info("{} task total cost time:{}ms", autoReq.getRequestId(), System.currentTimeMillis() - startTime);
-                            sseEmitter.complete();
+                            stream.complete();
                         }
                     }
                 }catch (Exception e) {
                     log.error("", e);
+                } finally {
+                    // 上游连接结束（含被同一请求的重复提交接替）时关闭增量连接
+                    stream.complete();
                 }
             }
         });
@@ -155,7 +162,8 @@ public class MultiAgentServiceImpl implements IMultiAgentService {
         return result;
     }
 
-    private AgentRequest buildAgentRequest(GptQueryReq req) {
+    @Override
+    public AgentRequest buildAgentRequest(GptQueryReq req) {
         AgentRequest request = new AgentRequest();
         request.setRequestId(req.getTraceId());
         request.setErp(req.getUser());
@@ -165,23 +173,9 @@ public class MultiAgentServiceImpl implements IMultiAgentService {
         request.setBasePrompt(request.getAgentType() == 5 ? genieConfig.getGenieBasePrompt() : "");
         request.setIsStream(true);
         request.setOutputStyle(req.getOutputStyle());
+        request.setRestart(req.getRestart());
 
         return request;
     }
 
-
-    private GptProcessResult buildHeartbeatData(String requestId) {
-        GptProcessResult result = new GptProcessResult();
-        result.setFinished(false);
-        result.setStatus("success");
-        result.setResponseType(ResponseTypeEnum.text.name());
-        result.setResponse("");
-        result.setResponseAll("");
-        result.setUseTimes(0);
-        result.setUseTokens(0);
-        result.setReqId(requestId);
-        result.setPackageType("heartbeat");
-        result.setEncrypted(false);
-        return result;
-    }
 }
@@ -5,6 +5,8 @@ import com.jd.genie.agent.agent.AgentContext;
 import com.jd.genie.agent.agent.ExecutorAgent;
 import com.jd.genie.agent.agent.PlanningAgent;
 import com.jd.genie.agent.agent.SummaryAgent;
+import com.jd.genie.agent.checkpoint.CheckpointJournal;
+import com.jd.genie.agent.checkpoint.RunCheckpoint;
 import com.jd.genie.agent.dto.File;
 import com.jd.genie.agent.dto.TaskSummaryResult;
 import com.jd.genie.agent.enums.AgentState;
@@ -29,6 +31,8 @@ public class PlanSolveHandlerImpl implements AgentHandlerService {
 
     @Autowired
     private GenieConfig genieConfig;
+    @Autowired
+    private CheckpointJournal checkpointJournal;
 
 
     @Override
@@ -36,17 +40,60 @@ public class PlanSolveHandlerImpl implements AgentHandlerService {
 
         PlanningAgent planning = new PlanningAgent(agentContext);
         ExecutorAgent executor = new ExecutorAgent(agentContext);
-        SummaryAgent summary = new SummaryAgent(agentContext);
-        summary.setSystemPrompt(summary.getSystemPrompt().replace("{{query}}", request.getQuery()));
+        CheckpointJournal.RunJournal journal = checkpointJournal.open(request);
+        try {
+            String planningResult = planning.run(agentContext.getQuery());
+            journal.step(0, planningResult, planning, executor, agentContext);
+            solve(agentContext, request, planning, executor, planningResult, 0, journal);
+        } finally {
+            journal.finish();
+        }
+
+        return "";
+    }
 
-        String planningResult = planning.run(agentContext.getQuery());
-        int stepIdx = 0;
+    /**
+     * 从检查点恢复运行（服务重启前未完成），从最后一个完成的规划步骤继续执行
+     */
+    public String resume(AgentContext agentContext, AgentRequest request, RunCheckpoint checkpoint) {
+
+        PlanningAgent planning = new PlanningAgent(agentContext);
+        ExecutorAgent executor = new ExecutorAgent(agentContext);
+        planning.getMemory().addMessages(checkpoint.getPlannerMessages());
+        planning.getPlanningTool().setPlan(checkpoint.getPlan());
+        planning.setCurrentStep(checkpoint.getPlannerCurrentStep());
+        planning.setState(Objects.requireNonNullElse(checkpoint.getPlannerState(), AgentState.IDLE));
+        executor.getMemory().addMessages(checkpoint.getExecutorMessages());
+        executor.setCurrentStep(checkpoint.getExecutorCurrentStep());
+        executor.setState(Objects.requireNonNullElse(checkpoint.getExecutorState(), AgentState.IDLE));
+        agentContext.getProductFiles().addAll(checkpoint.getProductFiles());
+        log.info("{} resume plan solve from step {}, planning result: {}", request.getRequestId(),
+                checkpoint.getStep(), checkpoint.getPlanningResult());
+
+        CheckpointJournal.RunJournal journal = checkpointJournal.reopen(checkpoint, planning, executor);
+        try {
+            int stepIdx = checkpoint.getStep();
+            if (stepIdx > 0 && isTerminated(agentContext, request, planning, executor, checkpoint.getPlanningResult())) {
+                return "";
+            }
+            solve(agentContext, request, planning, executor, checkpoint.getPlanningResult(), stepIdx, journal);
+        } finally {
+            journal.finish();
+        }
+
+        return "";
+    }
+
+    private void solve(AgentContext agentContext, AgentRequest request, PlanningAgent planning, ExecutorAgent executor,
+                       String planningResult, int stepIdx, CheckpointJournal.RunJournal journal) {
         int maxStepNum = genieConfig.getPlannerMaxSteps();
         while (stepIdx <= maxStepNum) {
             List<String> planningResults = Arrays.stream(planningResult.split("<sep>"))
                     .map(task -> "你的任务是：" + task)
                     .collect(Collectors.toList());
             String executorResult;
+            // 上一步的后台上传归属上一步，清空前先等待
+            agentContext.awaitUploads();
             agentContext.getTaskProductFiles().clear();
             if (planningResults.size() == 1) {
                 executorResult = executor.run(planningResults.get(0));
@@ -76,43 +123,65 @@ public class PlanSolveHandlerImpl implements AgentHandlerService {
                 }
                 executorResult = String.join("\n", tmpTaskResult.values());
             }
-            planningResult = planning.run(executorResult);
-            if ("finish".equals(planningResult)) {
-                //任务成功结束，总结任务
-                TaskSummaryResult result = summary.summaryTaskResult(executor.getMemory().getMessages(), request.getQuery());
-
-                Map<String, Object> taskResult = new HashMap<>();
-                taskResult.put("taskSummary", result.getTaskSummary());
-
-                if (CollectionUtils.isEmpty(result.getFiles())) {
-                    if (!CollectionUtils.isEmpty(agentContext.getProductFiles())) {
-                        List<File> fileResponses = agentContext.getProductFiles();
-                        // 过滤中间搜索结果文件
-                        fileResponses.removeIf(file -> Objects.nonNull(file) && Boolean.TRUE.equals(file.getIsInternalFile()));
-                        Collections.reverse(fileResponses);
-                        taskResult.put("fileList", fileResponses);
-                    }
-                } else {
-                    taskResult.put("fileList", result.getFiles());
-                }
-
-                agentContext.getPrinter().send("result", taskResult);
-
-
+            if (agentContext.isCancelled()) {
                 break;
             }
-            if (planning.getState() == AgentState.IDLE || executor.getState() == AgentState.IDLE) {
-                agentContext.getPrinter().send("result", "达到最大迭代次数，任务终止。");
+            planningResult = planning.run(executorResult);
+            if (agentContext.isCancelled()) {
                 break;
             }
-            if (planning.getState() == AgentState.ERROR || executor.getState() == AgentState.ERROR) {
-                agentContext.getPrinter().send("result", "任务执行异常，请联系管理员，任务终止。");
+            journal.step(stepIdx + 1, planningResult, planning, executor, agentContext);
+            if (isTerminated(agentContext, request, planning, executor, planningResult)) {
                 break;
             }
             stepIdx++;
         }
+    }
 
-        return "";
+    /**
+     * 规划完成则总结任务；达到最大迭代次数或执行异常则终止。返回是否结束
+     */
+    private boolean isTerminated(AgentContext agentContext, AgentRequest request, PlanningAgent planning,
+                                 ExecutorAgent executor, String planningResult) {
+        if ("finish".equals(planningResult)) {
+            //任务成功结束，总结任务
+            SummaryAgent summary = new SummaryAgent(agentContext);
+            summary.setSystemPrompt(summary.getSystemPrompt().replace("{{query}}", request.getQuery()));
+            TaskSummaryResult result = summary.summaryTaskResult(executor.getMemory().getMessages(), request.getQuery());
+
+            Map<String, Object> taskResult = new HashMap<>();
+            taskResult.put("taskSummary", result.getTaskSummary());
+            if (Objects.nonNull(result.getFirstTokenMs())) {
+                taskResult.put("firstTokenMs", result.getFirstTokenMs());
+            }
+            if (Objects.nonNull(agentContext.getUsageLedger())) {
+                taskResult.put("ledger", agentContext.getUsageLedger().summary());
+            }
+
+            if (CollectionUtils.isEmpty(result.getFiles())) {
+                if (!CollectionUtils.isEmpty(agentContext.getProductFiles())) {
+                    List<File> fileResponses = agentContext.getProductFiles();
+                    // 过滤中间搜索结果文件
+                    fileResponses.removeIf(file -> Objects.nonNull(file) && Boolean.TRUE.equals(file.getIsInternalFile()));
+                    Collections.reverse(fileResponses);
+                    taskResult.put("fileList", fileResponses);
+                }
+            } else {
+                taskResult.put("fileList", result.getFiles());
+            }
+
+            agentContext.getPrinter().send("result", taskResult);
+            return true;
+        }
+        if (planning.getState() == AgentState.IDLE || executor.getState() == AgentState.IDLE) {
+            agentContext.getPrinter().send("result", "达到最大迭代次数，任务终止。");
+            return true;
+        }
+        if (planning.getState() == AgentState.ERROR || executor.getState() == AgentState.ERROR) {
+            agentContext.getPrinter().send("result", "任务执行异常，请联系管理员，任务终止。");
+            return true;
+        }
+        return false;
     }
 
     @Override
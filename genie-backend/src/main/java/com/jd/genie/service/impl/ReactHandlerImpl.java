@@ -31,10 +31,19 @@ public class ReactHandlerImpl implements AgentHandlerService {
         summary.setSystemPrompt(summary.getSystemPrompt().replace("{{query}}", request.getQuery()));
 
         executor.run(request.getQuery());
+        if (agentContext.isCancelled()) {
+            return "";
+        }
         TaskSummaryResult result = summary.summaryTaskResult(executor.getMemory().getMessages(), request.getQuery());
 
         Map<String, Object> taskResult = new HashMap<>();
         taskResult.put("taskSummary", result.getTaskSummary());
+        if (Objects.nonNull(result.getFirstTokenMs())) {
+            taskResult.put("firstTokenMs", result.getFirstTokenMs());
+        }
+        if (Objects.nonNull(agentContext.getUsageLedger())) {
+            taskResult.put("ledger", agentContext.getUsageLedger().summary());
+        }
 
         if (CollectionUtils.isEmpty(result.getFiles())) {
             if (!CollectionUtils.isEmpty(agentContext.getProductFiles())) {
@@ -0,0 +1,418 @@
+package com.jd.genie.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jd.genie.model.response.AgentResponse;
+import org.springframework.beans.BeanUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * WebSocket 智能体事件二进制帧编解码
+ * 一个 WebSocket 消息即一帧，多个会话（channel）复用同一连接：
+ * <pre>
+ * OPEN  0x01 | channel varint | agentType varint(+1，0 表示空) | requestId str
+ * EVENT 0x02 | channel varint | flags u8 | messageType ref | messageId ref | [digitalEmployee ref] | payload utf8（至帧尾）
+ * END   0x03 | channel varint
+ * ERROR 0x04 | channel varint | message utf8（至帧尾）
+ * str := len varint | utf8
+ * ref := 0 空值；1 新字符串（紧跟 str，按出现顺序编号入表）；n>=2 引用表中第 n-2 项
+ * </pre>
+ * messageType、messageId、digitalEmployee 在连接级字符串表中驻留，同一消息的后续增量只发引用；
+ * agent_stream/tool_thought/plan_thought/task 的 payload 为纯文本，其余类型为去掉头部字段（requestId、messageTime 等）的 JSON。
+ * 字符串表达到上限时编码端置 RESET 标志，解码端先清表再读引用。
+ * 压缩交给 WebSocket 协议层的 permessage-deflate（由容器协商）。
+ */
+public class AgentFrameCodec {
+    public static final byte OPEN = 0x01;
+    public static final byte EVENT = 0x02;
+    public static final byte END = 0x03;
+    public static final byte ERROR = 0x04;
+
+    static final int FLAG_FINAL = 0x01;
+    static final int FLAG_FINISH = 0x02;
+    static final int FLAG_EMPLOYEE = 0x04;
+    static final int FLAG_JSON = 0x08;
+    static final int FLAG_RESET = 0x10;
+    static final int FLAG_AGENT_TYPE = 0x20;
+
+    private static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private AgentFrameCodec() {
+    }
+
+    /**
+     * 编码器，连接级状态（字符串表、各会话 agentType），非线程安全，由连接写出线程独占
+     */
+    public static class Encoder {
+        private final Map<String, Integer> table = new HashMap<>();
+        private final Map<Integer, Integer> agentTypes = new HashMap<>();
+        private final Map<Integer, String> requestIds = new HashMap<>();
+        private final int maxEntries;
+
+        public Encoder() {
+            this(DEFAULT_MAX_ENTRIES);
+        }
+
+        public Encoder(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public ByteBuffer open(int channel, String requestId, Integer agentType) {
+            agentTypes.put(channel, agentType);
+            requestIds.put(channel, requestId);
+            FrameWriter out = new FrameWriter(32 + (Objects.isNull(requestId) ? 0 : requestId.length() * 3));
+            out.writeByte(OPEN);
+            out.writeVarint(channel);
+            out.writeVarint(Objects.isNull(agentType) ? 0 : agentType + 1);
+            out.writeString(Objects.toString(requestId, ""));
+            return out.toBuffer();
+        }
+
+        /**
+         * 编码一条事件；会话 agentType 发生变化时先补发一帧 OPEN
+         */
+        public List<ByteBuffer> event(int channel, AgentResponse response) throws IOException {
+            List<ByteBuffer> frames = new ArrayList<>(1);
+            Map<String, Object> resultMap = response.getResultMap();
+            Object agentType = Objects.isNull(resultMap) ? null : resultMap.get("agentType");
+            if (agentType instanceof Integer type && !type.equals(agentTypes.get(channel))) {
+                frames.add(open(channel, requestIds.get(channel), type));
+            }
+
+            int flags = 0;
+            if (Boolean.TRUE.equals(response.getIsFinal())) {
+                flags |= FLAG_FINAL;
+            }
+            if (Boolean.TRUE.equals(response.getFinish())) {
+                flags |= FLAG_FINISH;
+            }
+            if (Objects.nonNull(response.getDigitalEmployee())) {
+                flags |= FLAG_EMPLOYEE;
+            }
+            if (Objects.nonNull(agentType) && agentType.equals(agentTypes.get(channel))) {
+                flags |= FLAG_AGENT_TYPE;
+            }
+            String text = textPayload(response, flags);
+            byte[] payload;
+            if (Objects.nonNull(text)) {
+                payload = text.getBytes(StandardCharsets.UTF_8);
+            } else {
+                flags |= FLAG_JSON;
+                payload = MAPPER.writeValueAsBytes(strip(response, (flags & FLAG_AGENT_TYPE) != 0));
+            }
+            if (table.size() + 3 > maxEntries) {
+                table.clear();
+                flags |= FLAG_RESET;
+            }
+
+            FrameWriter out = new FrameWriter(payload.length + 64);
+            out.writeByte(EVENT);
+            out.writeVarint(channel);
+            out.writeByte(flags);
+            writeRef(out, response.getMessageType());
+            writeRef(out, response.getMessageId());
+            if ((flags & FLAG_EMPLOYEE) != 0) {
+                writeRef(out, response.getDigitalEmployee());
+            }
+            out.writeBytes(payload);
+            frames.add(out.toBuffer());
+            return frames;
+        }
+
+        public ByteBuffer end(int channel) {
+            agentTypes.remove(channel);
+            requestIds.remove(channel);
+            FrameWriter out = new FrameWriter(8);
+            out.writeByte(END);
+            out.writeVarint(channel);
+            return out.toBuffer();
+        }
+
+        public ByteBuffer error(int channel, String message) {
+            byte[] bytes = Objects.toString(message, "").getBytes(StandardCharsets.UTF_8);
+            FrameWriter out = new FrameWriter(bytes.length + 8);
+            out.writeByte(ERROR);
+            out.writeVarint(channel);
+            out.writeBytes(bytes);
+            return out.toBuffer();
+        }
+
+        private void writeRef(FrameWriter out, String value) {
+            if (Objects.isNull(value)) {
+                out.writeVarint(0);
+                return;
+            }
+            Integer index = table.get(value);
+            if (Objects.nonNull(index)) {
+                out.writeVarint(index + 2);
+                return;
+            }
+            table.put(value, table.size());
+            out.writeVarint(1);
+            out.writeString(value);
+        }
+    }
+
+    /**
+     * 解码器（客户端与测试使用，见 AgentFrameCodecTest），与编码器一一对应，非线程安全
+     */
+    public static class Decoder {
+        private final List<String> table = new ArrayList<>();
+        private final Map<Integer, Integer> agentTypes = new HashMap<>();
+        private final Map<Integer, String> requestIds = new HashMap<>();
+
+        /**
+         * 解码一帧，EVENT 帧的 response 为还原后的 AgentResponse（不含 messageTime）
+         */
+        public Frame decode(ByteBuffer buffer) throws IOException {
+            FrameReader in = new FrameReader(buffer);
+            Frame frame = new Frame();
+            frame.kind = in.readByte();
+            frame.channel = in.readVarint();
+            switch (frame.kind) {
+                case OPEN:
+                    int agentType = in.readVarint();
+                    agentTypes.put(frame.channel, agentType == 0 ? null : agentType - 1);
+                    requestIds.put(frame.channel, in.readString());
+                    break;
+                case EVENT:
+                    frame.response = readEvent(frame.channel, in);
+                    break;
+                case END:
+                    agentTypes.remove(frame.channel);
+                    requestIds.remove(frame.channel);
+                    break;
+                case ERROR:
+                    frame.error = in.readRemaining();
+                    break;
+                default:
+                    throw new IOException("unknown frame kind " + frame.kind);
+            }
+            return frame;
+        }
+
+        private AgentResponse readEvent(int channel, FrameReader in) throws IOException {
+            int flags = in.readByte() & 0xFF;
+            if ((flags & FLAG_RESET) != 0) {
+                table.clear();
+            }
+            String messageType = readRef(in);
+            String messageId = readRef(in);
+            String digitalEmployee = (flags & FLAG_EMPLOYEE) != 0 ? readRef(in) : null;
+            String payload = in.readRemaining();
+
+            AgentResponse response;
+            if ((flags & FLAG_JSON) != 0) {
+                response = MAPPER.readValue(payload, AgentResponse.class);
+            } else {
+                response = new AgentResponse();
+                setText(response, messageType, payload);
+            }
+            response.setRequestId(requestIds.get(channel));
+            response.setMessageType(messageType);
+            response.setMessageId(messageId);
+            response.setDigitalEmployee(digitalEmployee);
+            response.setIsFinal((flags & FLAG_FINAL) != 0);
+            response.setFinish((flags & FLAG_FINISH) != 0);
+            if ((flags & FLAG_AGENT_TYPE) != 0) {
+                if (Objects.isNull(response.getResultMap())) {
+                    response.setResultMap(new HashMap<>());
+                }
+                response.getResultMap().put("agentType", agentTypes.get(channel));
+            }
+            return response;
+        }
+
+        private String readRef(FrameReader in) throws IOException {
+            int ref = in.readVarint();
+            if (ref == 0) {
+                return null;
+            }
+            if (ref == 1) {
+                String value = in.readString();
+                table.add(value);
+                return value;
+            }
+            if (ref - 2 >= table.size()) {
+                throw new IOException("unknown string ref " + ref);
+            }
+            return table.get(ref - 2);
+        }
+    }
+
+    /**
+     * 解码结果
+     */
+    public static class Frame {
+        public byte kind;
+        public int channel;
+        public AgentResponse response;
+        public String error;
+    }
+
+    /**
+     * 纯文本增量类型：除头部字段与 agentType 外只有一个文本字段
+     */
+    private static String textPayload(AgentResponse response, int flags) {
+        String text;
+        switch (Objects.toString(response.getMessageType(), "")) {
+            case "agent_stream":
+                text = response.getResult();
+                break;
+            case "tool_thought":
+                text = response.getToolThought();
+                break;
+            case "plan_thought":
+                text = response.getPlanThought();
+                break;
+            case "task":
+                text = response.getTask();
+                break;
+            default:
+                return null;
+        }
+        AgentResponse rest = strip(response, (flags & FLAG_AGENT_TYPE) != 0);
+        setText(rest, response.getMessageType(), null);
+        return Objects.nonNull(text) && isEmpty(rest) ? text : null;
+    }
+
+    private static void setText(AgentResponse response, String messageType, String text) {
+        switch (messageType) {
+            case "agent_stream":
+                response.setResult(text);
+                break;
+            case "tool_thought":
+                response.setToolThought(text);
+                break;
+            case "plan_thought":
+                response.setPlanThought(text);
+                break;
+            case "task":
+                response.setTask(text);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 去掉帧头已携带或可由连接状态还原的字段，不修改原事件
+     */
+    private static AgentResponse strip(AgentResponse response, boolean dropAgentType) {
+        AgentResponse body = new AgentResponse();
+        BeanUtils.copyProperties(response, body);
+        body.setRequestId(null);
+        body.setMessageId(null);
+        body.setMessageType(null);
+        body.setMessageTime(null);
+        body.setDigitalEmployee(null);
+        body.setIsFinal(null);
+        body.setFinish(null);
+        if (dropAgentType && Objects.nonNull(body.getResultMap())) {
+            Map<String, Object> resultMap = new HashMap<>(body.getResultMap());
+            resultMap.remove("agentType");
+            body.setResultMap(resultMap.isEmpty() ? null : resultMap);
+        }
+        return body;
+    }
+
+    private static boolean isEmpty(AgentResponse body) {
+        return Objects.isNull(body.getPlanThought()) && Objects.isNull(body.getPlan())
+                && Objects.isNull(body.getTask()) && Objects.isNull(body.getTaskSummary())
+                && Objects.isNull(body.getToolThought()) && Objects.isNull(body.getToolResult())
+                && Objects.isNull(body.getResultMap()) && Objects.isNull(body.getResult())
+                && Objects.isNull(body.getExt());
+    }
+
+    private static class FrameWriter {
+        private byte[] buf;
+        private int size;
+
+        FrameWriter(int capacity) {
+            buf = new byte[Math.max(capacity, 16)];
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            buf[size++] = (byte) b;
+        }
+
+        void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            writeByte(value);
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            writeBytes(bytes);
+        }
+
+        void writeBytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, size, bytes.length);
+            size += bytes.length;
+        }
+
+        ByteBuffer toBuffer() {
+            return ByteBuffer.wrap(buf, 0, size);
+        }
+
+        private void ensure(int n) {
+            if (size + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + n));
+            }
+        }
+    }
+
+    private static class FrameReader {
+        private final ByteBuffer buf;
+
+        FrameReader(ByteBuffer buf) {
+            this.buf = buf.slice();
+        }
+
+        byte readByte() throws IOException {
+            if (!buf.hasRemaining()) {
+                throw new IOException("truncated frame");
+            }
+            return buf.get();
+        }
+
+        int readVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("malformed varint");
+        }
+
+        String readString() throws IOException {
+            int len = readVarint();
+            if (len > buf.remaining()) {
+                throw new IOException("truncated frame");
+            }
+            byte[] bytes = new byte[len];
+            buf.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        String readRemaining() {
+            byte[] bytes = new byte[buf.remaining()];
+            buf.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package com.jd.genie.util;
+
+import com.jd.genie.agent.util.SpringContextHolder;
+import com.jd.genie.config.GenieConfig;
+import com.jd.genie.model.response.AgentResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单连接异步 SSE 写出器
+ * 生产者（LLM 流读取线程等）只负责入队，由写出任务串行写往 emitter，慢客户端不再反压上游读取。
+ * 客户端滞后时，队尾同一 messageId 的 agent_stream/tool_thought/plan_thought 增量会被合并；
+ * 队列溢出按配置丢弃增量或断开连接。
+ */
+@Slf4j
+public class AsyncSseWriter {
+
+    /**
+     * 写出线程池：固定线程数（sse_writer.threads），每个连接同一时间最多占用一个线程，
+     * 每次最多写出 DRAIN_BATCH 个事件后重新排队，慢客户端不会独占线程
+     */
+    private static volatile ExecutorService writerPool;
+    private static final int DRAIN_BATCH = 64;
+
+    private static final Map<SseEmitter, AsyncSseWriter> WRITERS = new ConcurrentHashMap<>();
+
+    private static final Set<String> COALESCE_TYPES = Set.of("agent_stream", "tool_thought", "plan_thought");
+
+    private static final Object COMPLETE = new Object();
+
+    public enum OverflowPolicy {
+        DROP, DISCONNECT;
+
+        static OverflowPolicy of(String name) {
+            return "disconnect".equalsIgnoreCase(name) ? DISCONNECT : DROP;
+        }
+    }
+
+    private final SseEmitter emitter;
+    private final String requestId;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final List<Runnable> closeListeners = new CopyOnWriteArrayList<>();
+
+    // 连接指标
+    private final long createTime = System.currentTimeMillis();
+    private volatile long lastWriteTime = System.currentTimeMillis();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong merged = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong writeNanos = new AtomicLong();
+    private volatile long maxWriteNanos;
+    private volatile int maxDepth;
+
+    private AsyncSseWriter(SseEmitter emitter, String requestId, int capacity, OverflowPolicy overflowPolicy) {
+        this.emitter = emitter;
+        this.requestId = requestId;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * 获取 emitter 绑定的写出器，不存在时创建并接管 emitter 的完成、超时、异常回调
+     */
+    public static AsyncSseWriter of(SseEmitter emitter, String requestId) {
+        return WRITERS.computeIfAbsent(emitter, e -> {
+            GenieConfig genieConfig = SpringContextHolder.getApplicationContext().getBean(GenieConfig.class);
+            AsyncSseWriter writer = new AsyncSseWriter(e, requestId, genieConfig.getSseWriterQueueCapacity(),
+                    OverflowPolicy.of(genieConfig.getSseWriterOverflowPolicy()));
+            writer.bindCallbacks();
+            return writer;
+        });
+    }
+
+    /**
+     * 当前所有活跃连接的指标
+     */
+    public static List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (AsyncSseWriter writer : WRITERS.values()) {
+            stats.add(writer.stats());
+        }
+        return stats;
+    }
+
+    private void bindCallbacks() {
+        emitter.onCompletion(() -> {
+            log.info("SseSession Completion, requestId : {}", requestId);
+            onClosed();
+        });
+        emitter.onTimeout(() -> {
+            log.info("SseSession Timeout, requestId : {}", requestId);
+            onClosed();
+            emitter.complete();
+        });
+        emitter.onError((err) -> {
+            log.error("SseSession Error, msg: {}, requestId: {}", err.getMessage(), requestId);
+            onClosed();
+            emitter.completeWithError(err);
+        });
+    }
+
+    /**
+     * 注册连接关闭回调（正常完成、超时、异常仅触发一次）
+     */
+    public void onClose(Runnable listener) {
+        closeListeners.add(listener);
+        if (closed.get()) {
+            listener.run();
+        }
+    }
+
+    /**
+     * 事件入队，返回是否被接受
+     */
+    public boolean send(Object event) {
+        return send(0L, event);
+    }
+
+    /**
+     * 携带 SSE id（事件序号，供客户端 Last-Event-ID 重连）入队，id 不大于 0 时不输出 id
+     */
+    public boolean send(long id, Object event) {
+        if (closed.get()) {
+            return false;
+        }
+        boolean overflow = false;
+        synchronized (queue) {
+            if (tryMerge(id, event)) {
+                merged.incrementAndGet();
+                return true;
+            }
+            if (queue.size() >= capacity) {
+                if (overflowPolicy == OverflowPolicy.DISCONNECT || queue.size() >= capacity * 2) {
+                    overflow = true;
+                } else if (isDroppable(event)) {
+                    dropped.incrementAndGet();
+                    return false;
+                }
+            }
+            if (!overflow) {
+                queue.addLast(new Pending(id, event));
+                maxDepth = Math.max(maxDepth, queue.size());
+            }
+        }
+        if (overflow) {
+            log.warn("{} sse queue overflow, depth {}, disconnect", requestId, getQueueDepth());
+            disconnect(new IOException("SSE 发送队列溢出"));
+            return false;
+        }
+        schedule();
+        return true;
+    }
+
+    /**
+     * 队列写完后结束连接
+     */
+    public void complete() {
+        if (closed.get()) {
+            return;
+        }
+        synchronized (queue) {
+            queue.addLast(new Pending(0L, COMPLETE));
+        }
+        schedule();
+    }
+
+    public long getLastWriteTime() {
+        return lastWriteTime;
+    }
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    public int getQueueDepth() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public Map<String, Object> stats() {
+        long count = written.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("requestId", requestId);
+        stats.put("queueDepth", getQueueDepth());
+        stats.put("maxQueueDepth", maxDepth);
+        stats.put("written", count);
+        stats.put("merged", merged.get());
+        stats.put("dropped", dropped.get());
+        stats.put("avgWriteMs", count == 0 ? 0 : writeNanos.get() / count / 1_000_000.0);
+        stats.put("maxWriteMs", maxWriteNanos / 1_000_000.0);
+        stats.put("aliveMs", System.currentTimeMillis() - createTime);
+        return stats;
+    }
+
+    private boolean tryMerge(long id, Object event) {
+        if (!(event instanceof AgentResponse delta) || !isDroppable(event)) {
+            return false;
+        }
+        Pending last = queue.peekLast();
+        if (Objects.isNull(last) || !(last.event instanceof AgentResponse tail)
+                || !isDroppable(tail)
+                || !Objects.equals(tail.getMessageId(), delta.getMessageId())
+                || !Objects.equals(tail.getMessageType(), delta.getMessageType())) {
+            return false;
+        }
+        last.append(id, deltaText(delta));
+        return true;
+    }
+
+    static boolean isDroppable(Object event) {
+        return event instanceof AgentResponse response
+                && COALESCE_TYPES.contains(response.getMessageType())
+                && !Boolean.TRUE.equals(response.getIsFinal());
+    }
+
+    private static String deltaText(AgentResponse response) {
+        switch (response.getMessageType()) {
+            case "tool_thought":
+                return response.getToolThought();
+            case "plan_thought":
+                return response.getPlanThought();
+            default:
+                return response.getResult();
+        }
+    }
+
+    private void schedule() {
+        if (draining.compareAndSet(false, true)) {
+            writerPool().execute(this::drain);
+        }
+    }
+
+    static ExecutorService writerPool() {
+        if (Objects.isNull(writerPool)) {
+            synchronized (AsyncSseWriter.class) {
+                if (Objects.isNull(writerPool)) {
+                    GenieConfig genieConfig = SpringContextHolder.getApplicationContext().getBean(GenieConfig.class);
+                    writerPool = fixedPool(genieConfig.getSseWriterThreads(), "sse-writer-%d");
+                }
+            }
+        }
+        return writerPool;
+    }
+
+    /**
+     * 固定线程数、空闲回收的线程池，任务超出线程数时排队
+     */
+    static ExecutorService fixedPool(int threads, String namingPattern) {
+        int size = Math.max(1, threads);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new BasicThreadFactory.Builder().namingPattern(namingPattern).daemon(true).build());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private void drain() {
+        for (int count = 0; ; count++) {
+            if (count >= DRAIN_BATCH) {
+                // 让出线程给其他连接，draining 保持为 true
+                writerPool().execute(this::drain);
+                return;
+            }
+            Pending pending;
+            synchronized (queue) {
+                pending = queue.pollFirst();
+                if (Objects.isNull(pending)) {
+                    draining.set(false);
+                    return;
+                }
+            }
+            if (closed.get()) {
+                continue;
+            }
+            if (pending.event == COMPLETE) {
+                emitter.complete();
+                onClosed();
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                if (pending.id > 0) {
+                    emitter.send(SseEmitter.event().id(String.valueOf(pending.id)).data(pending.materialize()));
+                } else {
+                    emitter.send(pending.materialize());
+                }
+                long cost = System.nanoTime() - start;
+                writeNanos.addAndGet(cost);
+                maxWriteNanos = Math.max(maxWriteNanos, cost);
+                written.incrementAndGet();
+                lastWriteTime = System.currentTimeMillis();
+            } catch (Exception e) {
+                log.warn("{} sse write failed, close connection: {}", requestId, e.getMessage());
+                disconnect(e);
+            }
+        }
+    }
+
+    private void disconnect(Throwable e) {
+        if (closed.get()) {
+            return;
+        }
+        onClosed();
+        try {
+            emitter.completeWithError(e);
+        } catch (Exception ignore) {
+            // 连接已不可用
+        }
+    }
+
+    private void onClosed() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        WRITERS.remove(emitter);
+        synchronized (queue) {
+            queue.clear();
+        }
+        log.info("{} sse writer closed, stats {}", requestId, stats());
+        for (Runnable listener : closeListeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                log.error("{} sse close listener error", requestId, e);
+            }
+        }
+    }
+
+    /**
+     * 队列元素：合并后的增量在写出时才生成新对象，不修改原事件；合并后 id 取最后一个增量的序号
+     */
+    private static class Pending {
+        private final Object event;
+        private long id;
+        private StringBuilder mergedText;
+
+        Pending(long id, Object event) {
+            this.id = id;
+            this.event = event;
+        }
+
+        void append(long id, String text) {
+            this.id = Math.max(this.id, id);
+            if (Objects.isNull(mergedText)) {
+                mergedText = new StringBuilder(Objects.toString(deltaText((AgentResponse) event), ""));
+            }
+            mergedText.append(Objects.toString(text, ""));
+        }
+
+        Object materialize() {
+            if (Objects.isNull(mergedText)) {
+                return event;
+            }
+            AgentResponse merged = new AgentResponse();
+            BeanUtils.copyProperties(event, merged);
+            switch (merged.getMessageType()) {
+                case "tool_thought":
+                    merged.setToolThought(mergedText.toString());
+                    break;
+                case "plan_thought":
+                    merged.setPlanThought(mergedText.toString());
+                    break;
+                default:
+                    merged.setResult(mergedText.toString());
+                    break;
+            }
+            return merged;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.jd.genie.util;
+
+import com.jd.genie.agent.util.SpringContextHolder;
+import com.jd.genie.config.GenieConfig;
+import com.jd.genie.model.response.AgentResponse;
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.Session;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个 WebSocket 连接的异步写出器
+ * 连接上的多个会话（channel）共用一个有序队列，由写出任务串行编码（AgentFrameCodec）并发送二进制帧，
+ * 生产者只负责入队；队列溢出时丢弃增量消息，超过两倍容量断开连接（溢出策略同 SSE 写出器）。
+ */
+@Slf4j
+public class AsyncWsWriter {
+
+    /**
+     * 写出线程池：固定线程数（websocket.writer_threads），每次最多写出 DRAIN_BATCH 个帧后重新排队
+     */
+    private static volatile ExecutorService writerPool;
+    private static final int DRAIN_BATCH = 64;
+
+    private static final Set<AsyncWsWriter> WRITERS = ConcurrentHashMap.newKeySet();
+
+    private final Session session;
+    private final int capacity;
+    private final AsyncSseWriter.OverflowPolicy overflowPolicy;
+    private final AgentFrameCodec.Encoder encoder = new AgentFrameCodec.Encoder();
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+    private final Set<Integer> channels = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    // 连接指标
+    private final long createTime = System.currentTimeMillis();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong writtenBytes = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong writeNanos = new AtomicLong();
+    private volatile int maxDepth;
+
+    public AsyncWsWriter(Session session, int capacity, String overflowPolicy) {
+        this.session = session;
+        this.capacity = capacity;
+        this.overflowPolicy = AsyncSseWriter.OverflowPolicy.of(overflowPolicy);
+        WRITERS.add(this);
+    }
+
+    /**
+     * 当前所有活跃 WebSocket 连接的指标
+     */
+    public static List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (AsyncWsWriter writer : WRITERS) {
+            stats.add(writer.stats());
+        }
+        return stats;
+    }
+
+    /**
+     * 打开会话，返回 false 表示 channel 已被占用或连接已关闭
+     */
+    public boolean open(int channel, String requestId, Integer agentType) {
+        if (closed.get() || !channels.add(channel)) {
+            return false;
+        }
+        enqueue(new Pending(AgentFrameCodec.OPEN, channel, new Object[]{requestId, agentType}), true);
+        return true;
+    }
+
+    /**
+     * 事件入队，会话已结束或被客户端解除时丢弃
+     */
+    public boolean send(int channel, AgentResponse response) {
+        if (!channels.contains(channel)) {
+            return false;
+        }
+        return enqueue(new Pending(AgentFrameCodec.EVENT, channel, response), false);
+    }
+
+    /**
+     * 结束会话（可重复调用，仅第一次生效）
+     */
+    public void end(int channel) {
+        if (channels.remove(channel)) {
+            enqueue(new Pending(AgentFrameCodec.END, channel, null), true);
+        }
+    }
+
+    public void error(int channel, String message) {
+        enqueue(new Pending(AgentFrameCodec.ERROR, channel, message), true);
+    }
+
+    public boolean isOpen(int channel) {
+        return channels.contains(channel);
+    }
+
+    public int getChannelCount() {
+        return channels.size();
+    }
+
+    public int getQueueDepth() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long count = written.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sessionId", session.getId());
+        stats.put("channels", channels.size());
+        stats.put("queueDepth", getQueueDepth());
+        stats.put("maxQueueDepth", maxDepth);
+        stats.put("written", count);
+        stats.put("writtenBytes", writtenBytes.get());
+        stats.put("dropped", dropped.get());
+        stats.put("avgWriteMs", count == 0 ? 0 : writeNanos.get() / count / 1_000_000.0);
+        stats.put("aliveMs", System.currentTimeMillis() - createTime);
+        return stats;
+    }
+
+    /**
+     * 连接已关闭：清空队列，不再写出
+     */
+    public void closed() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        WRITERS.remove(this);
+        channels.clear();
+        synchronized (queue) {
+            queue.clear();
+        }
+        log.info("ws {} writer closed, stats {}", session.getId(), stats());
+    }
+
+    private boolean enqueue(Pending pending, boolean control) {
+        if (closed.get()) {
+            return false;
+        }
+        boolean overflow = false;
+        synchronized (queue) {
+            if (!control && queue.size() >= capacity) {
+                if (overflowPolicy == AsyncSseWriter.OverflowPolicy.DISCONNECT || queue.size() >= capacity * 2) {
+                    overflow = true;
+                } else if (AsyncSseWriter.isDroppable(pending.payload)) {
+                    dropped.incrementAndGet();
+                    return false;
+                }
+            }
+            if (!overflow) {
+                queue.addLast(pending);
+                maxDepth = Math.max(maxDepth, queue.size());
+            }
+        }
+        if (overflow) {
+            log.warn("ws {} queue overflow, depth {}, disconnect", session.getId(), getQueueDepth());
+            disconnect(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "send queue overflow"));
+            return false;
+        }
+        if (draining.compareAndSet(false, true)) {
+            writerPool().execute(this::drain);
+        }
+        return true;
+    }
+
+    private static ExecutorService writerPool() {
+        if (Objects.isNull(writerPool)) {
+            synchronized (AsyncWsWriter.class) {
+                if (Objects.isNull(writerPool)) {
+                    GenieConfig genieConfig = SpringContextHolder.getApplicationContext().getBean(GenieConfig.class);
+                    writerPool = AsyncSseWriter.fixedPool(genieConfig.getWebsocketWriterThreads(), "ws-writer-%d");
+                }
+            }
+        }
+        return writerPool;
+    }
+
+    private void drain() {
+        for (int count = 0; ; count++) {
+            if (count >= DRAIN_BATCH) {
+                writerPool().execute(this::drain);
+                return;
+            }
+            Pending pending;
+            synchronized (queue) {
+                pending = queue.pollFirst();
+                if (Objects.isNull(pending)) {
+                    draining.set(false);
+                    return;
+                }
+            }
+            if (closed.get()) {
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                for (ByteBuffer frame : encode(pending)) {
+                    int bytes = frame.remaining();
+                    session.getBasicRemote().sendBinary(frame);
+                    writtenBytes.addAndGet(bytes);
+                }
+                writeNanos.addAndGet(System.nanoTime() - start);
+                written.incrementAndGet();
+            } catch (Exception e) {
+                log.warn("ws {} write failed, close connection: {}", session.getId(), e.getMessage());
+                disconnect(new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION, "write failed"));
+            }
+        }
+    }
+
+    private List<ByteBuffer> encode(Pending pending) throws Exception {
+        switch (pending.kind) {
+            case AgentFrameCodec.OPEN:
+                Object[] args = (Object[]) pending.payload;
+                return List.of(encoder.open(pending.channel, (String) args[0], (Integer) args[1]));
+            case AgentFrameCodec.EVENT:
+                return encoder.event(pending.channel, (AgentResponse) pending.payload);
+            case AgentFrameCodec.END:
+                return List.of(encoder.end(pending.channel));
+            default:
+                return List.of(encoder.error(pending.channel, (String) pending.payload));
+        }
+    }
+
+    private void disconnect(CloseReason reason) {
+        closed();
+        try {
+            session.close(reason);
+        } catch (Exception ignore) {
+            // 连接已不可用
+        }
+    }
+
+    private static class Pending {
+        private final byte kind;
+        private final int channel;
+        private final Object payload;
+
+        Pending(byte kind, int channel, Object payload) {
+            this.kind = kind;
+            this.channel = channel;
+            this.payload = payload;
+        }
+    }
+}
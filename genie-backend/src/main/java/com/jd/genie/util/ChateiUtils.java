@@ -1,9 +1,11 @@
 package com.jd.genie.util;
 
 import com.jd.genie.agent.enums.AutoBotsResultStatus;
+import com.jd.genie.agent.enums.ResponseTypeEnum;
 import com.jd.genie.model.dto.AutoBotsResult;
 import com.jd.genie.model.req.AgentRequest;
 import com.jd.genie.model.req.GptQueryReq;
+import com.jd.genie.model.response.GptProcessResult;
 import org.apache.commons.lang3.StringUtils;
 
 public class ChateiUtils {
@@ -35,4 +37,19 @@ public class ChateiUtils {
         }
         return result;
     }
+
+    public static GptProcessResult buildHeartbeatData(String requestId) {
+        GptProcessResult result = new GptProcessResult();
+        result.setFinished(false);
+        result.setStatus("success");
+        result.setResponseType(ResponseTypeEnum.text.name());
+        result.setResponse("");
+        result.setResponseAll("");
+        result.setUseTimes(0);
+        result.setUseTokens(0);
+        result.setReqId(requestId);
+        result.setPackageType("heartbeat");
+        result.setEncrypted(false);
+        return result;
+    }
 }
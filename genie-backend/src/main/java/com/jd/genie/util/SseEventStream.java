@@ -0,0 +1,256 @@
+package com.jd.genie.util;
+
+import com.jd.genie.agent.util.SpringContextHolder;
+import com.jd.genie.config.GenieConfig;
+import com.jd.genie.model.multi.EventMessage;
+import com.jd.genie.model.response.AgentResponse;
+import com.jd.genie.model.response.GptProcessResult;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 可重连的 SSE 事件流（每个请求一个）
+ * 事件按发布顺序分配单调递增序号（即 SSE id），保存在有界缓冲中，超出容量淘汰最早的事件；
+ * 同一 messageId 的最终消息到达后，之前的流式增量被压缩移除（最终消息已包含全量内容）。
+ * 客户端断线后携带 Last-Event-ID 重连，从该序号之后补发并继续推送，智能体不重新执行。
+ * 请求结束或无客户端连接后缓冲保留 grace 时长，到期清除。
+ */
+@Slf4j
+public class SseEventStream {
+    public static final String SCOPE_AGENT = "agent";
+    public static final String SCOPE_INCR = "incr";
+
+    /**
+     * 最终消息包含全量内容、可替代此前增量的消息类型
+     */
+    private static final Set<String> COMPACT_TYPES = Set.of("agent_stream", "tool_thought", "plan_thought",
+            "html", "markdown", "ppt");
+
+    private static final Map<String, SseEventStream> STREAMS = new ConcurrentHashMap<>();
+
+    private static final ScheduledExecutorService EXPIRER = Executors.newSingleThreadScheduledExecutor(
+            new BasicThreadFactory.Builder().namingPattern("sse-replay-expire-%d").daemon(true).build());
+
+    private final String key;
+    private final String requestId;
+    private final int capacity;
+    private final long gracePeriod;
+    private final TreeMap<Long, Object> events = new TreeMap<>();
+    private final Map<String, List<Long>> deltas = new HashMap<>();
+    private long lastSeq;
+    private long compacted;
+    private long evicted;
+    private AsyncSseWriter writer;
+    private boolean completed;
+    private boolean expired;
+    private ScheduledFuture<?> expiry;
+
+    private SseEventStream(String key, String requestId, int capacity, long gracePeriod) {
+        this.key = key;
+        this.requestId = requestId;
+        this.capacity = capacity;
+        this.gracePeriod = gracePeriod;
+    }
+
+    /**
+     * 为新请求创建事件流并绑定首个连接
+     * 同 scope 同 requestId 的旧事件流不再可重连，但仍向已连接的客户端推送直至结束
+     */
+    public static SseEventStream create(String scope, String requestId, AsyncSseWriter writer) {
+        GenieConfig genieConfig = SpringContextHolder.getApplicationContext().getBean(GenieConfig.class);
+        SseEventStream stream = new SseEventStream(scope + ":" + requestId, requestId,
+                genieConfig.getSseReplayCapacity(), genieConfig.getSseReplayGracePeriod());
+        STREAMS.put(stream.key, stream);
+        stream.attach(writer, 0L);
+        return stream;
+    }
+
+    /**
+     * 由运行日志恢复事件流（服务重启后继续执行的请求），序号保持不变，等待客户端重连
+     */
+    public static SseEventStream restore(String scope, String requestId, SortedMap<Long, ?> restored, long lastSeq) {
+        GenieConfig genieConfig = SpringContextHolder.getApplicationContext().getBean(GenieConfig.class);
+        SseEventStream stream = new SseEventStream(scope + ":" + requestId, requestId,
+                genieConfig.getSseReplayCapacity(), genieConfig.getSseReplayGracePeriod());
+        synchronized (stream) {
+            for (Map.Entry<Long, ?> entry : restored.entrySet()) {
+                stream.events.put(entry.getKey(), entry.getValue());
+                stream.compact(entry.getKey(), entry.getValue());
+            }
+            while (stream.events.size() > stream.capacity) {
+                stream.events.pollFirstEntry();
+                stream.evicted++;
+            }
+            stream.lastSeq = restored.isEmpty() ? lastSeq : Math.max(lastSeq, restored.lastKey());
+        }
+        STREAMS.put(stream.key, stream);
+        return stream;
+    }
+
+    public static SseEventStream get(String scope, String requestId) {
+        return STREAMS.get(scope + ":" + requestId);
+    }
+
+    public static Map<String, Object> stats() {
+        int buffered = 0;
+        int attached = 0;
+        for (SseEventStream stream : STREAMS.values()) {
+            synchronized (stream) {
+                buffered += stream.events.size();
+                attached += Objects.nonNull(stream.writer) ? 1 : 0;
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("replayStreams", STREAMS.size());
+        stats.put("replayAttached", attached);
+        stats.put("replayBufferedEvents", buffered);
+        return stats;
+    }
+
+    /**
+     * 发布事件：分配序号、写入缓冲，并推送给当前连接（无连接时只缓存）
+     */
+    public synchronized void publish(Object event) {
+        if (expired) {
+            return;
+        }
+        long seq = ++lastSeq;
+        events.put(seq, event);
+        compact(seq, event);
+        while (events.size() > capacity) {
+            events.pollFirstEntry();
+            evicted++;
+        }
+        if (Objects.nonNull(writer)) {
+            writer.send(seq, event);
+        }
+    }
+
+    /**
+     * 请求结束：当前连接写完后关闭，缓冲保留至 grace 到期
+     */
+    public synchronized void complete() {
+        completed = true;
+        if (Objects.nonNull(writer)) {
+            writer.complete();
+        }
+        scheduleExpiry();
+    }
+
+    /**
+     * 绑定（重连）连接：补发 lastEventId 之后的事件，再接收后续推送；事件流已过期返回 false
+     */
+    public synchronized boolean attach(AsyncSseWriter newWriter, long lastEventId) {
+        if (expired) {
+            return false;
+        }
+        if (lastEventId > 0 && Objects.nonNull(events.firstEntry()) && events.firstKey() > lastEventId + 1 && evicted > 0) {
+            log.warn("{} replay from {} but earliest buffered event is {}, {} events evicted",
+                    requestId, lastEventId, events.firstKey(), evicted);
+        }
+        int replayed = 0;
+        for (Map.Entry<Long, Object> entry : events.tailMap(lastEventId, false).entrySet()) {
+            newWriter.send(entry.getKey(), entry.getValue());
+            replayed++;
+        }
+        if (lastEventId > 0 || replayed > 0) {
+            log.info("{} sse reconnect from {}, replay {} events, completed {}", requestId, lastEventId, replayed, completed);
+        }
+        if (Objects.nonNull(writer) && writer != newWriter) {
+            // 客户端已重连，旧连接不再推送
+            writer.complete();
+        }
+        writer = newWriter;
+        if (Objects.nonNull(expiry)) {
+            expiry.cancel(false);
+            expiry = null;
+        }
+        newWriter.onClose(() -> detach(newWriter));
+        if (completed) {
+            newWriter.complete();
+        }
+        return true;
+    }
+
+    /**
+     * seq 之后仍在缓冲中的事件（副本）
+     */
+    public synchronized SortedMap<Long, Object> eventsAfter(long seq) {
+        return new TreeMap<>(events.tailMap(seq, false));
+    }
+
+    public synchronized long getLastSeq() {
+        return lastSeq;
+    }
+
+    private synchronized void detach(AsyncSseWriter closedWriter) {
+        if (writer == closedWriter) {
+            writer = null;
+            scheduleExpiry();
+        }
+    }
+
+    private void scheduleExpiry() {
+        if (expired) {
+            return;
+        }
+        if (Objects.nonNull(expiry)) {
+            expiry.cancel(false);
+        }
+        expiry = EXPIRER.schedule(this::expire, gracePeriod, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void expire() {
+        if (expired || (Objects.nonNull(writer) && !completed)) {
+            return;
+        }
+        expired = true;
+        log.info("{} sse replay buffer expired, events {}, compacted {}, evicted {}", key, lastSeq, compacted, evicted);
+        events.clear();
+        deltas.clear();
+        STREAMS.remove(key, this);
+    }
+
+    /**
+     * 最终消息到达时移除同一 messageId 的历史增量
+     */
+    private void compact(long seq, Object event) {
+        AgentResponse response = agentResponse(event);
+        if (Objects.isNull(response) || Objects.isNull(response.getMessageId())
+                || !COMPACT_TYPES.contains(response.getMessageType())) {
+            return;
+        }
+        if (!Boolean.TRUE.equals(response.getIsFinal())) {
+            deltas.computeIfAbsent(response.getMessageId(), k -> new ArrayList<>()).add(seq);
+            return;
+        }
+        List<Long> superseded = deltas.remove(response.getMessageId());
+        if (Objects.isNull(superseded)) {
+            return;
+        }
+        for (Long delta : superseded) {
+            if (Objects.nonNull(events.remove(delta))) {
+                compacted++;
+            }
+        }
+    }
+
+    private static AgentResponse agentResponse(Object event) {
+        if (event instanceof AgentResponse response) {
+            return response;
+        }
+        if (event instanceof GptProcessResult result && Objects.nonNull(result.getResultMap())
+                && result.getResultMap().get("eventData") instanceof EventMessage message
+                && message.getResultMap() instanceof AgentResponse response) {
+            return response;
+        }
+        return null;
+    }
+}
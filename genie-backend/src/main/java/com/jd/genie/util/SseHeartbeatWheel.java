@@ -0,0 +1,145 @@
+package com.jd.genie.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * SSE 心跳时间轮
+ * 所有连接共用一个单线程哈希时间轮，每个连接按“最后写出时间 + 心跳间隔”落到对应槽位；
+ * 到期时只有空闲超过间隔的连接才发送心跳，有数据在写的连接只顺延到期时间。
+ * 槽位只由时间轮线程读写：新注册的连接先进入待入轮队列，每次 tick 开始时统一入轮。
+ */
+@Slf4j
+public class SseHeartbeatWheel {
+    private static final long TICK_MS = 1000L;
+    private static final int WHEEL_SIZE = 64;
+
+    private static final SseHeartbeatWheel INSTANCE = new SseHeartbeatWheel();
+
+    private final Set<Entry>[] buckets;
+    private final ConcurrentLinkedQueue<Entry> pending = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService ticker;
+    private long currentTick;
+    private final AtomicInteger registered = new AtomicInteger();
+    private final AtomicLong heartbeatCount = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    private SseHeartbeatWheel() {
+        buckets = new Set[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            buckets[i] = ConcurrentHashMap.newKeySet();
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(
+                new BasicThreadFactory.Builder().namingPattern("sse-heartbeat-%d").daemon(true).build());
+        ticker.scheduleAtFixedRate(this::tick, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 注册连接，连接关闭后自动移除
+     *
+     * @param writer     连接写出器
+     * @param intervalMs 心跳间隔（空闲超过该时长才发送）
+     * @param heartbeat  心跳消息
+     */
+    public static void register(AsyncSseWriter writer, long intervalMs, Supplier<Object> heartbeat) {
+        Entry entry = new Entry(writer, Math.max(intervalMs, TICK_MS), heartbeat);
+        INSTANCE.registered.incrementAndGet();
+        writer.onClose(() -> {
+            if (entry.cancelled.compareAndSet(false, true)) {
+                INSTANCE.registered.decrementAndGet();
+            }
+        });
+        if (entry.cancelled.get()) {
+            return;
+        }
+        INSTANCE.pending.add(entry);
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("heartbeatConnections", INSTANCE.registered.get());
+        stats.put("heartbeatSent", INSTANCE.heartbeatCount.get());
+        return stats;
+    }
+
+    /**
+     * 入轮，只在时间轮线程调用，槽位按当前 tick 计算不会与推进交错
+     */
+    private void schedule(Entry entry, long deadline) {
+        long ticks = Math.max(1, (deadline - System.currentTimeMillis() + TICK_MS - 1) / TICK_MS);
+        entry.rounds = (ticks - 1) / WHEEL_SIZE;
+        buckets[(int) ((currentTick + ticks) % WHEEL_SIZE)].add(entry);
+    }
+
+    private void tick() {
+        try {
+            Entry added;
+            while ((added = pending.poll()) != null) {
+                if (!added.cancelled.get()) {
+                    schedule(added, added.writer.getLastWriteTime() + added.intervalMs);
+                }
+            }
+            long tick = currentTick + 1;
+            Set<Entry> bucket = buckets[(int) (tick % WHEEL_SIZE)];
+            currentTick = tick;
+            long now = System.currentTimeMillis();
+            List<Entry> expired = new ArrayList<>();
+            for (Entry entry : bucket) {
+                if (entry.cancelled.get() || entry.writer.isClosed()) {
+                    bucket.remove(entry);
+                    continue;
+                }
+                if (entry.rounds > 0) {
+                    entry.rounds--;
+                    continue;
+                }
+                bucket.remove(entry);
+                expired.add(entry);
+            }
+            // 统一在遍历结束后重新入轮，避免落回当前槽位被重复处理
+            for (Entry entry : expired) {
+                long lastActive = Math.max(entry.writer.getLastWriteTime(), entry.lastHeartbeat);
+                if (now - lastActive >= entry.intervalMs) {
+                    log.debug("{} send heartbeat", entry.writer.getRequestId());
+                    entry.writer.send(entry.heartbeat.get());
+                    entry.lastHeartbeat = now;
+                    heartbeatCount.incrementAndGet();
+                    lastActive = now;
+                }
+                schedule(entry, lastActive + entry.intervalMs);
+            }
+        } catch (Exception e) {
+            log.error("sse heartbeat tick error", e);
+        }
+    }
+
+    private static class Entry {
+        private final AsyncSseWriter writer;
+        private final long intervalMs;
+        private final Supplier<Object> heartbeat;
+        private final AtomicBoolean cancelled = new AtomicBoolean(false);
+        private long rounds;
+        private long lastHeartbeat;
+
+        Entry(AsyncSseWriter writer, long intervalMs, Supplier<Object> heartbeat) {
+            this.writer = writer;
+            this.intervalMs = intervalMs;
+            this.heartbeat = heartbeat;
+        }
+    }
+}
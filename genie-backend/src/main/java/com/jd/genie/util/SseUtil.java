@@ -1,26 +1,43 @@
 package com.jd.genie.util;
 
+import com.jd.genie.agent.util.SpringContextHolder;
+import com.jd.genie.config.GenieConfig;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.Objects;
+import java.util.function.Supplier;
+
 @Slf4j
 public class SseUtil {
-    public static SseEmitter build(Long timeout, String requestId) {
+    /**
+     * 创建 SSE 连接，并注册到心跳时间轮（空闲超过心跳间隔才发送心跳）
+     *
+     * @param heartbeat 心跳消息
+     */
+    public static SseEmitter build(Long timeout, String requestId, Supplier<Object> heartbeat) {
         SseEmitter sseEmitter = new SseEmitterUTF8(timeout);
-        sseEmitter.onError((err)-> {
-            log.error("SseSession Error, msg: {}, requestId: {}", err.getMessage(), requestId);
-            sseEmitter.completeWithError(err);
-        });
+        // 完成、超时、异常回调由写出器统一接管
+        AsyncSseWriter writer = AsyncSseWriter.of(sseEmitter, requestId);
+        GenieConfig genieConfig = SpringContextHolder.getApplicationContext().getBean(GenieConfig.class);
+        SseHeartbeatWheel.register(writer, genieConfig.getSseHeartbeatInterval(), heartbeat);
+        return sseEmitter;
+    }
 
-        sseEmitter.onTimeout(() -> {
-            log.info("SseSession Timeout, requestId : {}", requestId);
+    /**
+     * 重连已有事件流：补发 lastEventId 之后的事件并继续推送，事件流不存在或已过期返回 null
+     */
+    public static SseEmitter reconnect(String scope, String requestId, long lastEventId, Long timeout, Supplier<Object> heartbeat) {
+        SseEventStream stream = SseEventStream.get(scope, requestId);
+        if (Objects.isNull(stream)) {
+            log.info("{} sse reconnect {} stream not found", requestId, scope);
+            return null;
+        }
+        SseEmitter sseEmitter = build(timeout, requestId, heartbeat);
+        if (!stream.attach(AsyncSseWriter.of(sseEmitter, requestId), lastEventId)) {
             sseEmitter.complete();
-        });
-
-        sseEmitter.onCompletion(() -> {
-            log.info("SseSession Completion, requestId : {}", requestId);
-        });
-
+            return null;
+        }
         return sseEmitter;
     }
 }
@@ -0,0 +1,117 @@
+package com.jd.genie.agent.agent;
+
+import com.jd.genie.agent.enums.AgentType;
+import com.jd.genie.agent.printer.Printer;
+import com.jd.genie.agent.printer.StreamFlushPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SummaryStream 分隔符处理：$$$ 跨增量到达时不输出分隔符及其后的文件列表，
+ * 不构成分隔符的 $ 原样输出（包括流结束时保留在末尾的 $）
+ */
+public class SummaryStreamTest {
+
+    @Test
+    public void separatorSplitAcrossDeltas() {
+        assertEquals("abc", run("abc$", "$$file.md"));
+        assertEquals("abc", run("abc$$", "$file.md"));
+        assertEquals("abc", run("abc", "$$$file.md"));
+        assertEquals("abc", run("abc$", "$", "$", "file.md"));
+        assertEquals("abc", run("abc", "$", "$$", "file.md"));
+    }
+
+    @Test
+    public void dollarsThatAreNotSeparatorAreKept() {
+        assertEquals("a$bc", run("a$", "bc"));
+        assertEquals("ab$$x", run("ab$$", "x"));
+        assertEquals("$$ $", run("$", "$ ", "$"));
+    }
+
+    @Test
+    public void trailingDollarsAreFlushedOnFinish() {
+        assertEquals("abc$", run("abc$"));
+        assertEquals("abc$$", run("abc", "$$"));
+        assertEquals("$", run("$"));
+    }
+
+    @Test
+    public void nothingIsSentAfterSeparator() {
+        assertEquals("abc", run("abc$$$", "more", "text$"));
+        assertEquals("", run("$$$file.md"));
+    }
+
+    @Test
+    public void everySplitPointGivesSameOutput() {
+        String text = "报告正文$含$$符号$$$file.md、data.csv";
+        for (int i = 0; i <= text.length(); i++) {
+            for (int j = i; j <= text.length(); j++) {
+                String output = run(text.substring(0, i), text.substring(i, j), text.substring(j));
+                assertEquals("报告正文$含$$符号", output, "split at " + i + "," + j);
+            }
+        }
+    }
+
+    @Test
+    public void firstTokenIsUnsetWithoutDeltas() {
+        SummaryStream stream = new SummaryStream(new RecordingPrinter(), new StreamFlushPolicy());
+        stream.finish();
+        assertEquals(-1, stream.getFirstTokenMs());
+
+        stream = new SummaryStream(new RecordingPrinter(), new StreamFlushPolicy());
+        stream.accept("a");
+        stream.finish();
+        assertTrue(stream.getFirstTokenMs() >= 0);
+    }
+
+    private static String run(String... deltas) {
+        RecordingPrinter printer = new RecordingPrinter();
+        SummaryStream stream = new SummaryStream(printer, new StreamFlushPolicy());
+        for (String delta : deltas) {
+            stream.accept(delta);
+        }
+        stream.finish();
+        return printer.text();
+    }
+
+    private static class RecordingPrinter implements Printer {
+        private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+
+        String text() {
+            synchronized (sent) {
+                return String.join("", sent);
+            }
+        }
+
+        @Override
+        public void send(String messageId, String messageType, Object message, String digitalEmployee, Boolean isFinal) {
+            assertEquals(SummaryStream.MESSAGE_TYPE, messageType);
+            sent.add((String) message);
+        }
+
+        @Override
+        public void send(String messageType, Object message) {
+        }
+
+        @Override
+        public void send(String messageType, Object message, String digitalEmployee) {
+        }
+
+        @Override
+        public void send(String messageId, String messageType, Object message, Boolean isFinal) {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void updateAgentType(AgentType agentType) {
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.jd.genie.agent.checkpoint;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jd.genie.agent.dto.Message;
+import com.jd.genie.agent.dto.Plan;
+import com.jd.genie.agent.dto.tool.ToolCall;
+import com.jd.genie.agent.enums.AgentState;
+import com.jd.genie.agent.enums.RoleType;
+import com.jd.genie.model.req.AgentRequest;
+import com.jd.genie.model.response.AgentResponse;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 运行日志恢复耗时（长历史）
+ * 按 CheckpointJournal 的记录格式生成合成日志：每个步骤执行智能体新增若干条大消息（工具结果），
+ * 规划智能体新增两条消息，并附带录制会话 sessions/plan_solve_session.jsonl 中的事件；
+ * JMH 测量 RunCheckpoint.load（读取、解析并回放全部记录）的耗时。
+ * main 方法先输出各规模的日志大小与单次恢复耗时，并校验末尾不完整记录被忽略。
+ * 运行：直接执行 main 方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@Fork(1)
+public class CheckpointRecoveryBenchmark {
+    private static final String SESSION = "/sessions/plan_solve_session.jsonl";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * 已完成的规划步骤数
+     */
+    @Param({"50", "200"})
+    private int steps;
+
+    /**
+     * 每步执行智能体新增的消息数
+     */
+    @Param({"20"})
+    private int messagesPerStep;
+
+    private Path journal;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        journal = Files.createTempFile("checkpoint-bench", ".journal");
+        write(journal, steps, messagesPerStep, loadSession());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(journal);
+    }
+
+    @Benchmark
+    public RunCheckpoint load() throws Exception {
+        return RunCheckpoint.load(journal);
+    }
+
+    /**
+     * 生成合成日志，记忆增量与事件与运行时写入方式一致
+     */
+    static void write(Path path, int steps, int messagesPerStep, List<AgentResponse> session) throws Exception {
+        MemoryTracker plannerTracker = new MemoryTracker();
+        MemoryTracker executorTracker = new MemoryTracker();
+        List<Message> planner = new ArrayList<>();
+        List<Message> executor = new ArrayList<>();
+        List<String> stepNames = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            stepNames.add("执行顺序" + (i + 1) + ". 子任务" + i);
+        }
+        Plan plan = Plan.create("合成任务", stepNames);
+        String toolResult = String.join("", Collections.nCopies(200, "检索结果片段，包含若干中文与 English 内容。"));
+        long seq = 0;
+        try (OutputStream out = Files.newOutputStream(path, StandardOpenOption.TRUNCATE_EXISTING)) {
+            AgentRequest request = AgentRequest.builder().requestId("bench").query("合成任务").agentType(3).isStream(true).build();
+            out.write(CheckpointRecord.builder().type(CheckpointRecord.BEGIN).requestId("bench")
+                    .time(System.currentTimeMillis()).request(request).build().toJsonLine());
+            for (int step = 0; step <= steps; step++) {
+                planner.add(Message.userMessage("步骤 " + step + " 执行结果：" + toolResult.substring(0, 500), null));
+                planner.add(Message.assistantMessage("规划更新 " + step, null));
+                if (step > 0) {
+                    for (int m = 0; m < messagesPerStep; m += 2) {
+                        ToolCall call = ToolCall.builder().id("call_" + step + "_" + m).type("function")
+                                .function(ToolCall.Function.builder().name("deep_search").arguments("{\"query\":\"q" + m + "\"}").build())
+                                .build();
+                        executor.add(Message.builder().role(RoleType.ASSISTANT).content("调用工具").toolCalls(List.of(call)).build());
+                        executor.add(Message.builder().role(RoleType.TOOL).toolCallId(call.getId()).content(toolResult).build());
+                    }
+                }
+                plan.updateStepStatus(step % stepNames.size(), "completed", "");
+                List<CheckpointRecord.ReplayEvent> events = new ArrayList<>();
+                for (AgentResponse event : session.subList(0, Math.min(30, session.size()))) {
+                    events.add(new CheckpointRecord.ReplayEvent(++seq, event));
+                }
+                out.write(CheckpointRecord.builder()
+                        .type(CheckpointRecord.STEP)
+                        .requestId("bench")
+                        .time(System.currentTimeMillis())
+                        .step(step)
+                        .planningResult("子任务" + step)
+                        .plan(plan)
+                        .plannerMemory(plannerTracker.delta(planner))
+                        .executorMemory(executorTracker.delta(executor))
+                        .plannerState(AgentState.FINISHED)
+                        .executorState(AgentState.FINISHED)
+                        .plannerCurrentStep(step)
+                        .executorCurrentStep(step * messagesPerStep / 2)
+                        .productFiles(new ArrayList<>())
+                        .events(events)
+                        .lastEventSeq(seq)
+                        .build()
+                        .toJsonLine());
+            }
+        }
+    }
+
+    public static void report() throws Exception {
+        List<AgentResponse> session = loadSession();
+        System.out.printf("%-8s %12s %10s %10s %12s%n", "steps", "bytes", "messages", "events", "load(ms)");
+        for (int steps : new int[]{50, 200, 500}) {
+            Path path = Files.createTempFile("checkpoint-bench", ".journal");
+            try {
+                write(path, steps, 20, session);
+                RunCheckpoint.load(path);
+                long start = System.nanoTime();
+                RunCheckpoint checkpoint = RunCheckpoint.load(path);
+                double cost = (System.nanoTime() - start) / 1e6;
+                if (checkpoint.getStep() != steps || !checkpoint.isResumable()) {
+                    throw new IllegalStateException("unexpected checkpoint step " + checkpoint.getStep());
+                }
+                System.out.printf("%-8d %12d %10d %10d %12.1f%n", steps, Files.size(path),
+                        checkpoint.getExecutorMessages().size(), checkpoint.getEvents().size(), cost);
+
+                // 写入中途宕机：末尾半条记录被忽略，恢复到上一个完整步骤
+                Files.write(path, "{\"type\":\"step\",\"step\":".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+                if (RunCheckpoint.load(path).getStep() != steps) {
+                    throw new IllegalStateException("torn record not ignored");
+                }
+            } finally {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static List<AgentResponse> loadSession() throws Exception {
+        List<AgentResponse> events = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                CheckpointRecoveryBenchmark.class.getResourceAsStream(SESSION), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    events.add(MAPPER.readValue(line, AgentResponse.class));
+                }
+            }
+        }
+        return events;
+    }
+
+    public static void main(String[] args) throws Exception {
+        report();
+        Options options = new OptionsBuilder()
+                .include(CheckpointRecoveryBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
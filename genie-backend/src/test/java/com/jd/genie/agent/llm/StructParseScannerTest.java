@@ -0,0 +1,129 @@
+package com.jd.genie.agent.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jd.genie.agent.util.IncrementalJsonRepairTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StructParseScanner 的随机性质测试：随机正文与 ```json 代码块拼接后按随机增量切分输入，
+ * 结果与原正则 findMatches 及 indexOf("```json") 的切分一致；截断在代码块中间时补全最后一个代码块
+ */
+public class StructParseScannerTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Pattern LEGACY = Pattern.compile("```json\\s*([\\s\\S]*?)\\s*```");
+    private static final int SAMPLES = 300;
+
+    @Test
+    public void streamedScanMatchesLegacyRegex() {
+        Random random = new Random(39);
+        for (int i = 0; i < SAMPLES; i++) {
+            String output = randomOutput(random, false);
+            StructParseScanner scanner = new StructParseScanner();
+            StringBuilder visible = new StringBuilder();
+            for (String delta : split(output, random)) {
+                visible.append(scanner.feed(delta));
+            }
+            visible.append(scanner.finish());
+
+            int stopPos = output.indexOf("```json");
+            assertEquals(output.substring(0, stopPos >= 0 ? stopPos : output.length()), visible.toString());
+            assertEquals(stopPos, scanner.getTextEnd());
+
+            List<String> legacy = legacyMatches(output);
+            assertEquals(legacy.size(), scanner.getBlocks().size(), output);
+            for (int j = 0; j < legacy.size(); j++) {
+                assertEquals(parse(legacy.get(j)), parse(scanner.getBlocks().get(j)));
+            }
+        }
+    }
+
+    @Test
+    public void truncatedBlockIsRepaired() {
+        Random random = new Random(40);
+        for (int i = 0; i < SAMPLES; i++) {
+            String output = randomOutput(random, true);
+            int lastFence = output.lastIndexOf("```json");
+            if (lastFence < 0) {
+                continue;
+            }
+            int blockStart = lastFence + "```json".length();
+            int end = blockStart + random.nextInt(output.length() - blockStart);
+            StructParseScanner scanner = StructParseScanner.scan(output.substring(0, end));
+            for (String block : scanner.getBlocks()) {
+                assertNotNull(parse(block), block);
+            }
+        }
+    }
+
+    @Test
+    public void backticksInsideStringsDoNotCloseBlock() {
+        String output = "先写文件\n```json\n{\"function_name\": \"file_tool\", \"content\": \"```python\\nprint(1)\\n```\"}\n```\n";
+        StructParseScanner scanner = StructParseScanner.scan(output);
+        assertEquals(1, scanner.getBlocks().size());
+        assertEquals("```python\nprint(1)\n```", parse(scanner.getBlocks().get(0)).get("content").asText());
+        assertEquals(output.indexOf("```json"), scanner.getTextEnd());
+    }
+
+    private static String randomOutput(Random random, boolean allowBackticks) {
+        StringBuilder sb = new StringBuilder();
+        int parts = 1 + random.nextInt(4);
+        for (int i = 0; i < parts; i++) {
+            appendProse(sb, random);
+            if (random.nextInt(4) > 0) {
+                sb.append("```json").append(random.nextBoolean() ? "\n" : " ");
+                sb.append(IncrementalJsonRepairTest.randomDocument(random, allowBackticks));
+                sb.append(random.nextBoolean() ? "\n```" : "```");
+            }
+        }
+        appendProse(sb, random);
+        return sb.toString();
+    }
+
+    /**
+     * 正文字符集不含 o/n，不会意外拼出 ```json
+     */
+    private static void appendProse(StringBuilder sb, Random random) {
+        String alphabet = "ab`js {}\n中文";
+        int length = random.nextInt(30);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+    }
+
+    private static List<String> split(String text, Random random) {
+        List<String> deltas = new ArrayList<>();
+        int pos = 0;
+        while (pos < text.length()) {
+            int next = Math.min(text.length(), pos + 1 + random.nextInt(10));
+            deltas.add(text.substring(pos, next));
+            pos = next;
+        }
+        return deltas;
+    }
+
+    private static List<String> legacyMatches(String text) {
+        Matcher m = LEGACY.matcher(text);
+        List<String> matches = new ArrayList<>();
+        while (m.find()) {
+            matches.add(m.group(1));
+        }
+        return matches;
+    }
+
+    private static JsonNode parse(String json) {
+        try {
+            return MAPPER.readTree(json);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.jd.genie.agent.tool.mcp;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * McpSseSession 对本地 MCP 替身服务（JDK HttpServer 实现的 HTTP+SSE 传输）的测试：
+ * 握手、并发调用多路复用（响应乱序返回）、服务端错误、连接断开后未完成调用失败
+ */
+public class McpSseSessionTest {
+    private StandInServer server;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = new StandInServer();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void initializeAndListTools() throws Exception {
+        McpSseSession session = new McpSseSession(server.url(), 2000).connect();
+        JSONObject result = session.request("tools/list", new JSONObject()).get(2, TimeUnit.SECONDS);
+        assertEquals("echo", result.getJSONArray("tools").getJSONObject(0).getString("name"));
+        assertEquals(1, server.sseConnections.get());
+        assertTrue(server.initialized.await(2, TimeUnit.SECONDS));
+        session.close("test");
+    }
+
+    @Test
+    public void concurrentCallsAreMultiplexedOnOneStream() throws Exception {
+        McpSseSession session = new McpSseSession(server.url(), 2000).connect();
+        int calls = 32;
+        List<CompletableFuture<JSONObject>> futures = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < calls; i++) {
+            JSONObject params = new JSONObject();
+            params.put("name", "echo");
+            // 先发出的调用延迟更长，响应乱序返回
+            params.put("arguments", Map.of("text", "call-" + i, "delayMs", (calls - i) * 10));
+            futures.add(session.request("tools/call", params));
+        }
+        for (int i = 0; i < calls; i++) {
+            JSONObject result = futures.get(i).get(5, TimeUnit.SECONDS);
+            assertEquals("call-" + i, result.getJSONArray("content").getJSONObject(0).getString("text"));
+        }
+        long cost = System.currentTimeMillis() - start;
+        // 串行执行需要 sum((calls - i) * 10) = 5280ms，多路复用只需最长的一次
+        assertTrue(cost < 2000, "calls were not multiplexed, cost " + cost + "ms");
+        assertEquals(1, server.sseConnections.get());
+        assertEquals(0, session.getPendingCount());
+        session.close("test");
+    }
+
+    @Test
+    public void serverErrorCompletesExceptionally() throws Exception {
+        McpSseSession session = new McpSseSession(server.url(), 2000).connect();
+        JSONObject params = new JSONObject();
+        params.put("name", "missing");
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> session.request("tools/call", params).get(2, TimeUnit.SECONDS));
+        assertInstanceOf(McpSseSession.McpException.class, e.getCause());
+        assertEquals(-32602, ((McpSseSession.McpException) e.getCause()).getCode());
+        assertTrue(session.isOpen());
+        session.close("test");
+    }
+
+    @Test
+    public void streamDropFailsPendingCalls() throws Exception {
+        McpSseSession session = new McpSseSession(server.url(), 2000).connect();
+        JSONObject params = new JSONObject();
+        params.put("name", "echo");
+        params.put("arguments", Map.of("text", "slow", "delayMs", 5000));
+        CompletableFuture<JSONObject> future = session.request("tools/call", params);
+        Thread.sleep(100);
+        server.dropStreams();
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(3, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, e.getCause());
+        assertFalse(session.isOpen());
+        // 新会话重新建立连接
+        McpSseSession reconnected = new McpSseSession(server.url(), 2000).connect();
+        assertTrue(reconnected.isOpen());
+        reconnected.close("test");
+    }
+
+    @Test
+    public void callStatsPercentiles() {
+        McpCallStats stats = new McpCallStats();
+        for (int i = 1; i <= 100; i++) {
+            stats.record("echo", i, i != 100);
+        }
+        Map<String, Object> echo = stats.snapshot().get("echo");
+        assertEquals(100L, echo.get("count"));
+        assertEquals(1L, echo.get("failures"));
+        assertEquals(50L, echo.get("p50"));
+        assertEquals(90L, echo.get("p90"));
+        assertEquals(99L, echo.get("p99"));
+        assertEquals(100L, echo.get("max"));
+    }
+
+    /**
+     * MCP HTTP+SSE 传输替身：GET /sse 下发 endpoint 事件，POST /messages 接收 JSON-RPC 后从 SSE 流异步返回
+     */
+    static class StandInServer {
+        private final HttpServer http;
+        private final ScheduledExecutorService responder = Executors.newScheduledThreadPool(4);
+        private final Map<String, OutputStream> streams = new ConcurrentHashMap<>();
+        private final AtomicInteger sseConnections = new AtomicInteger();
+        private final CountDownLatch initialized = new CountDownLatch(1);
+
+        StandInServer() throws IOException {
+            http = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            http.setExecutor(Executors.newCachedThreadPool());
+            http.createContext("/sse", this::sse);
+            http.createContext("/messages", this::message);
+            http.start();
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + http.getAddress().getPort() + "/sse";
+        }
+
+        void dropStreams() {
+            for (OutputStream out : streams.values()) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                }
+            }
+            streams.clear();
+        }
+
+        void stop() {
+            dropStreams();
+            responder.shutdownNow();
+            http.stop(0);
+        }
+
+        private void sse(HttpExchange exchange) throws IOException {
+            String sessionId = UUID.randomUUID().toString();
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            streams.put(sessionId, out);
+            sseConnections.incrementAndGet();
+            send(sessionId, "endpoint", "/messages?session_id=" + sessionId);
+        }
+
+        private void message(HttpExchange exchange) throws IOException {
+            String sessionId = exchange.getRequestURI().getQuery().replace("session_id=", "");
+            JSONObject request = JSON.parseObject(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            exchange.sendResponseHeaders(202, -1);
+            exchange.close();
+            String method = request.getString("method");
+            if (!request.containsKey("id")) {
+                if ("notifications/initialized".equals(method)) {
+                    initialized.countDown();
+                }
+                return;
+            }
+            JSONObject response = new JSONObject(true);
+            response.put("jsonrpc", "2.0");
+            response.put("id", request.get("id"));
+            long delay = 0;
+            switch (method) {
+                case "initialize":
+                    response.put("result", JSON.parseObject("{\"protocolVersion\":\"2024-11-05\",\"capabilities\":{\"tools\":{}},"
+                            + "\"serverInfo\":{\"name\":\"stand-in\",\"version\":\"1\"}}"));
+                    break;
+                case "tools/list":
+                    response.put("result", JSON.parseObject("{\"tools\":[{\"name\":\"echo\",\"description\":\"echo text\","
+                            + "\"inputSchema\":{\"type\":\"object\",\"properties\":{\"text\":{\"type\":\"string\"}}}}]}"));
+                    break;
+                case "tools/call":
+                    JSONObject params = request.getJSONObject("params");
+                    if (!"echo".equals(params.getString("name"))) {
+                        response.put("error", Map.of("code", -32602, "message", "Unknown tool: " + params.getString("name")));
+                        break;
+                    }
+                    JSONObject arguments = params.getJSONObject("arguments");
+                    delay = arguments.getLongValue("delayMs");
+                    response.put("result", Map.of("content", List.of(Map.of("type", "text", "text", arguments.getString("text"))),
+                            "isError", false));
+                    break;
+                default:
+                    response.put("error", Map.of("code", -32601, "message", "Method not found"));
+            }
+            responder.schedule(() -> send(sessionId, "message", response.toJSONString()), delay, TimeUnit.MILLISECONDS);
+        }
+
+        private void send(String sessionId, String event, String data) {
+            OutputStream out = streams.get(sessionId);
+            if (out == null) {
+                return;
+            }
+            synchronized (out) {
+                try {
+                    out.write(("event: " + event + "\ndata: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                } catch (IOException e) {
+                    streams.remove(sessionId);
+                }
+            }
+        }
+    }
+}
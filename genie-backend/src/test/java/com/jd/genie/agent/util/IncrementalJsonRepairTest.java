@@ -0,0 +1,244 @@
+package com.jd.genie.agent.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IncrementalJsonRepair 的随机性质测试（固定种子，可复现）：
+ * 完整文档不变、任意前缀都能补全为合法 JSON、原 fixTruncatedJson 能修好的输入结果一致、分块增量与一次性修复一致
+ */
+public class IncrementalJsonRepairTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int DOCUMENTS = 300;
+
+    @Test
+    public void completeDocumentsAreUnchanged() {
+        Random random = new Random(39);
+        for (int i = 0; i < DOCUMENTS; i++) {
+            String doc = randomDocument(random, true);
+            assertEquals(doc, IncrementalJsonRepair.repair(doc));
+            assertTrue(new IncrementalJsonRepair().append(doc).isComplete(), doc);
+        }
+    }
+
+    @Test
+    public void everyPrefixRepairsToValidJson() {
+        Random random = new Random(40);
+        for (int i = 0; i < DOCUMENTS; i++) {
+            String doc = randomDocument(random, true);
+            for (int end = 1; end <= doc.length(); end++) {
+                String prefix = doc.substring(0, end);
+                if (prefix.trim().isEmpty()) {
+                    continue;
+                }
+                String repaired = IncrementalJsonRepair.repair(prefix);
+                assertTrue(parse(repaired) != null, "prefix " + prefix + " -> " + repaired);
+            }
+        }
+    }
+
+    @Test
+    public void agreesWithLegacyRepairWheneverLegacySucceeds() {
+        Random random = new Random(41);
+        int compared = 0;
+        for (int i = 0; i < DOCUMENTS; i++) {
+            String doc = randomDocument(random, true);
+            for (int end = 1; end <= doc.length(); end++) {
+                String prefix = doc.substring(0, end);
+                JsonNode legacy = parse(legacyFixTruncatedJson(prefix));
+                if (legacy == null) {
+                    continue;
+                }
+                compared++;
+                assertEquals(legacy, parse(IncrementalJsonRepair.repair(prefix)), "prefix " + prefix);
+            }
+        }
+        assertTrue(compared > DOCUMENTS);
+    }
+
+    @Test
+    public void chunkedFeedingMatchesOneShotRepair() {
+        Random random = new Random(42);
+        for (int i = 0; i < DOCUMENTS; i++) {
+            String doc = randomDocument(random, true);
+            IncrementalJsonRepair repair = new IncrementalJsonRepair();
+            int pos = 0;
+            while (pos < doc.length()) {
+                int next = Math.min(doc.length(), pos + 1 + random.nextInt(8));
+                repair.append(doc.substring(pos, next));
+                pos = next;
+                assertEquals(doc.substring(0, pos), repair.text());
+                assertEquals(parse(IncrementalJsonRepair.repair(doc.substring(0, pos))), parse(repair.repaired()));
+            }
+            assertEquals(doc, repair.repaired());
+        }
+    }
+
+    @Test
+    public void repairsTruncationInsideTokens() {
+        assertEquals("{\"a\":\"x\"}", IncrementalJsonRepair.repair("{\"a\":\"x"));
+        assertEquals("{\"a\":\"x\"}", IncrementalJsonRepair.repair("{\"a\":\"x\\u4e"));
+        assertEquals("{\"a\":null}", IncrementalJsonRepair.repair("{\"a\""));
+        assertEquals("{\"a\":null}", IncrementalJsonRepair.repair("{\"a\":"));
+        assertEquals("{\"a\":null}", IncrementalJsonRepair.repair("{\"a"));
+        assertEquals("{\"a\":[1]}", IncrementalJsonRepair.repair("{\"a\":[1,"));
+        assertEquals("{\"a\":true}", IncrementalJsonRepair.repair("{\"a\":tr"));
+        assertEquals("{\"a\":-0}", IncrementalJsonRepair.repair("{\"a\":-"));
+        assertEquals("{\"a\":[{\"b\":1}]}", IncrementalJsonRepair.repair("{\"a\":[{\"b\":1"));
+        assertEquals("{\"query\":\"x\"}", IncrementalJsonRepair.repair("\"query\":\"x\""));
+    }
+
+    /**
+     * 随机生成的顶层对象，allowBackticks 控制字符串中是否出现 `
+     */
+    public static String randomDocument(Random random, boolean allowBackticks) {
+        StringBuilder sb = new StringBuilder();
+        appendObject(sb, random, 0, allowBackticks);
+        return sb.toString();
+    }
+
+    private static void appendValue(StringBuilder sb, Random random, int depth, boolean allowBackticks) {
+        int kind = random.nextInt(depth >= 3 ? 6 : 8);
+        switch (kind) {
+            case 0:
+            case 1:
+                appendString(sb, random, allowBackticks);
+                break;
+            case 2:
+                appendNumber(sb, random);
+                break;
+            case 3:
+                sb.append("true");
+                break;
+            case 4:
+                sb.append("false");
+                break;
+            case 5:
+                sb.append("null");
+                break;
+            case 6:
+                appendObject(sb, random, depth + 1, allowBackticks);
+                break;
+            default:
+                sb.append('[');
+                int size = random.nextInt(4);
+                for (int i = 0; i < size; i++) {
+                    if (i > 0) {
+                        sb.append(random.nextBoolean() ? "," : ", ");
+                    }
+                    appendValue(sb, random, depth + 1, allowBackticks);
+                }
+                sb.append(']');
+                break;
+        }
+    }
+
+    private static void appendObject(StringBuilder sb, Random random, int depth, boolean allowBackticks) {
+        sb.append('{');
+        int size = random.nextInt(depth == 0 ? 5 : 4) + (depth == 0 ? 1 : 0);
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(random.nextBoolean() ? "," : ",\n  ");
+            }
+            appendString(sb, random, allowBackticks);
+            sb.append(random.nextBoolean() ? ":" : ": ");
+            appendValue(sb, random, depth, allowBackticks);
+        }
+        sb.append('}');
+    }
+
+    private static void appendString(StringBuilder sb, Random random, boolean allowBackticks) {
+        String[] pieces = {"a", "b", "z", "文", "件", " ", "{", "}", "[", "]", ",", ":", "\\\"", "\\\\", "\\n", "\\u4e2d", "\\/"};
+        sb.append('"');
+        int length = random.nextInt(8);
+        for (int i = 0; i < length; i++) {
+            if (allowBackticks && random.nextInt(10) == 0) {
+                sb.append(random.nextBoolean() ? "`" : "```");
+            } else {
+                sb.append(pieces[random.nextInt(pieces.length)]);
+            }
+        }
+        sb.append('"');
+    }
+
+    private static void appendNumber(StringBuilder sb, Random random) {
+        if (random.nextBoolean()) {
+            sb.append('-');
+        }
+        sb.append(random.nextInt(3) == 0 ? "0" : String.valueOf(1 + random.nextInt(10000)));
+        if (random.nextBoolean()) {
+            sb.append('.').append(random.nextInt(1000));
+        }
+        if (random.nextInt(4) == 0) {
+            sb.append(random.nextBoolean() ? "e" : "E");
+            if (random.nextBoolean()) {
+                sb.append(random.nextBoolean() ? '+' : '-');
+            }
+            sb.append(1 + random.nextInt(20));
+        }
+    }
+
+    private static JsonNode parse(String json) {
+        try {
+            return MAPPER.readTree(json);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 原 BaseAgent.fixTruncatedJson 的实现，作为对照
+     */
+    private static String legacyFixTruncatedJson(String jsonStr) {
+        if (jsonStr == null || jsonStr.trim().isEmpty()) {
+            return jsonStr;
+        }
+        String fixed = jsonStr.trim();
+        if (!fixed.startsWith("{")) {
+            fixed = "{" + fixed;
+        }
+        int openBraces = 0;
+        int openBrackets = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        for (int i = 0; i < fixed.length(); i++) {
+            char c = fixed.charAt(i);
+            if (escaped) {
+                escaped = false;
+                continue;
+            }
+            if (c == '\\') {
+                escaped = true;
+                continue;
+            }
+            if (c == '"') {
+                inString = !inString;
+                continue;
+            }
+            if (!inString) {
+                if (c == '{') {
+                    openBraces++;
+                } else if (c == '}') {
+                    openBraces--;
+                } else if (c == '[') {
+                    openBrackets++;
+                } else if (c == ']') {
+                    openBrackets--;
+                }
+            }
+        }
+        StringBuilder balanced = new StringBuilder(fixed);
+        for (int i = 0; i < openBrackets; i++) {
+            balanced.append(']');
+        }
+        for (int i = 0; i < openBraces; i++) {
+            balanced.append('}');
+        }
+        return balanced.toString();
+    }
+}
@@ -0,0 +1,153 @@
+package com.jd.genie.agent.util;
+
+import com.alibaba.fastjson.JSON;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ObservationShaper：类型判断、压缩结果不超过预算，并保留表头、最后一行与日志中的错误行
+ */
+public class ObservationShaperTest {
+    private static final int BUDGET = 2000;
+    private static final int SAMPLE_ROWS = 10;
+
+    @Test
+    public void detectsContentType() {
+        assertEquals(ObservationShaper.TYPE_JSON, ObservationShaper.detect(json(3)));
+        assertEquals(ObservationShaper.TYPE_CSV, ObservationShaper.detect(csv(5, ',')));
+        assertEquals(ObservationShaper.TYPE_CSV, ObservationShaper.detect(csv(5, '\t')));
+        assertEquals(ObservationShaper.TYPE_MARKDOWN, ObservationShaper.detect(markdown(5)));
+        assertEquals(ObservationShaper.TYPE_LOG, ObservationShaper.detect(log(5, -1)));
+        assertEquals(ObservationShaper.TYPE_TEXT, ObservationShaper.detect(text(5)));
+        assertEquals(ObservationShaper.TYPE_TEXT, ObservationShaper.detect("{not json"));
+        assertEquals(ObservationShaper.TYPE_TEXT, ObservationShaper.detect(""));
+    }
+
+    @Test
+    public void contentWithinBudgetIsUnchanged() {
+        String content = csv(3, ',');
+        ObservationShaper.Shaped shaped = ObservationShaper.shape(content, BUDGET, SAMPLE_ROWS);
+        assertFalse(shaped.isChanged());
+        assertEquals(content, shaped.getText());
+    }
+
+    @Test
+    public void jsonKeepsStructureWithinBudget() {
+        ObservationShaper.Shaped shaped = ObservationShaper.shape(json(500), BUDGET, SAMPLE_ROWS);
+        assertTrue(shaped.isChanged());
+        assertEquals(ObservationShaper.TYPE_JSON, shaped.getType());
+        assertTrue(shaped.getText().length() <= BUDGET, "length " + shaped.getText().length());
+        assertTrue(shaped.getText().contains("\"id\":499"), "last item kept");
+    }
+
+    @Test
+    public void csvKeepsHeaderAndLastRow() {
+        for (char delimiter : new char[]{',', '\t'}) {
+            ObservationShaper.Shaped shaped = ObservationShaper.shape(csv(2000, delimiter), BUDGET, SAMPLE_ROWS);
+            String text = shaped.getText();
+            assertEquals(ObservationShaper.TYPE_CSV, shaped.getType());
+            assertTrue(text.length() <= BUDGET, "length " + text.length());
+            assertTrue(text.contains("\nid" + delimiter + "name" + delimiter + "amount\n"), "header kept");
+            assertTrue(text.contains("3 列，2000 行数据"), "row count reported");
+            assertTrue(text.contains("1999" + delimiter + "name_1999"), "last row kept");
+        }
+    }
+
+    @Test
+    public void markdownKeepsHeaderAndLastRow() {
+        ObservationShaper.Shaped shaped = ObservationShaper.shape("查询结果如下：\n" + markdown(2000), BUDGET, SAMPLE_ROWS);
+        String text = shaped.getText();
+        assertEquals(ObservationShaper.TYPE_MARKDOWN, shaped.getType());
+        assertTrue(text.length() <= BUDGET, "length " + text.length());
+        assertTrue(text.contains("| id | name | amount |"), "header kept");
+        assertTrue(text.contains("| 1999 | name_1999 |"), "last row kept");
+    }
+
+    @Test
+    public void logKeepsErrorLinesAndTail() {
+        ObservationShaper.Shaped shaped = ObservationShaper.shape(log(3000, 1500), BUDGET, SAMPLE_ROWS);
+        String text = shaped.getText();
+        assertEquals(ObservationShaper.TYPE_LOG, shaped.getType());
+        assertTrue(text.length() <= BUDGET, "length " + text.length());
+        assertTrue(text.contains("ERROR connection refused at step 1500"), "error line kept");
+        assertTrue(text.contains("step 2999 done"), "last line kept");
+    }
+
+    @Test
+    public void textKeepsHeadAndTail() {
+        ObservationShaper.Shaped shaped = ObservationShaper.shape(text(2000), BUDGET, SAMPLE_ROWS);
+        String text = shaped.getText();
+        assertEquals(ObservationShaper.TYPE_TEXT, shaped.getType());
+        assertTrue(text.length() <= BUDGET, "length " + text.length());
+        assertTrue(text.startsWith("第 0 段"), "head kept");
+        assertTrue(text.endsWith("第 1999 段内容。"), "tail kept");
+    }
+
+    @Test
+    public void alwaysWithinBudget() {
+        String[] contents = {json(500), csv(2000, ','), markdown(2000), log(3000, 1500), text(2000)};
+        for (int budget : new int[]{200, 500, 1000, 5000}) {
+            for (String content : contents) {
+                String text = ObservationShaper.shape(content, budget, SAMPLE_ROWS).getText();
+                assertTrue(text.length() <= budget, budget + " " + ObservationShaper.detect(content) + " length " + text.length());
+            }
+        }
+    }
+
+    private static String json(int items) {
+        StringBuilder sb = new StringBuilder("{\"total\":").append(items).append(",\"items\":[");
+        for (int i = 0; i < items; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"id\":").append(i).append(",\"title\":\"标题 ").append(i).append("\"}");
+        }
+        String content = sb.append("]}").toString();
+        JSON.parse(content);
+        return content;
+    }
+
+    private static String csv(int rows, char delimiter) {
+        StringBuilder sb = new StringBuilder("id").append(delimiter).append("name").append(delimiter).append("amount");
+        for (int i = 0; i < rows; i++) {
+            sb.append('\n').append(i).append(delimiter).append("name_").append(i).append(delimiter).append(i * 10);
+        }
+        return sb.toString();
+    }
+
+    private static String markdown(int rows) {
+        StringBuilder sb = new StringBuilder("| id | name | amount |\n| --- | --- | --- |");
+        for (int i = 0; i < rows; i++) {
+            sb.append("\n| ").append(i).append(" | name_").append(i).append(" | ").append(i * 10).append(" |");
+        }
+        return sb.toString();
+    }
+
+    private static String log(int lines, int errorAt) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            if (i > 0) {
+                sb.append('\n');
+            }
+            sb.append(String.format("2026-01-01 10:%02d:%02d ", (i / 60) % 60, i % 60));
+            if (i == errorAt) {
+                sb.append("ERROR connection refused at step ").append(i);
+            } else {
+                sb.append("INFO step ").append(i).append(" done");
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String text(int paragraphs) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < paragraphs; i++) {
+            if (i > 0) {
+                sb.append('\n');
+            }
+            sb.append("第 ").append(i).append(" 段内容。");
+        }
+        return sb.toString();
+    }
+}
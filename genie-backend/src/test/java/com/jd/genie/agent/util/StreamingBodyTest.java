@@ -0,0 +1,197 @@
+package com.jd.genie.agent.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StreamingBody 上传 100 MB 文件 / 文本的测试：上传在 -Xmx32m 的子进程中执行，
+ * 本地替身服务（JDK HttpServer）统计收到的字节数与 SHA-256，校验内容完整且内存不随文件大小增长
+ */
+public class StreamingBodyTest {
+    private static final long SIZE = 100L * 1024 * 1024;
+    private static final String SMALL_HEAP = "-Xmx32m";
+    /**
+     * 5 个 ASCII + 2 个中文，每 7 个字符 11 字节
+     */
+    private static final String PATTERN = "genie数据";
+
+    private HttpServer server;
+    private final Map<String, String> received = new ConcurrentHashMap<>();
+    private Path file;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/upload", this::receive);
+        server.start();
+        file = Files.createTempFile("streaming-body", ".bin");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        server.stop(0);
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void uploadLargeFileUnderSmallHeap() throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] block = new byte[StreamingBody.BUFFER_SIZE];
+        try (OutputStream out = new DigestOutputStream(Files.newOutputStream(file), digest)) {
+            for (long written = 0; written < SIZE; written += block.length) {
+                for (int i = 0; i < block.length; i++) {
+                    block[i] = (byte) (written + i * 31);
+                }
+                out.write(block);
+            }
+        }
+        assertEquals(0, runChild("file", file.toString()));
+        assertEquals(SIZE + ":" + hex(digest.digest()), received.get("file"));
+    }
+
+    @Test
+    public void uploadLargeTextUnderSmallHeap() throws Exception {
+        int chars = (int) (SIZE / 11 * 7);
+        CharSequence text = new Generated(chars);
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        long written;
+        try (OutputStream out = new DigestOutputStream(OutputStream.nullOutputStream(), digest)) {
+            written = StreamingBody.writeUtf8(text, out);
+        }
+        assertEquals(StreamingBody.utf8Length(text), written);
+        assertTrue(written >= SIZE - 11);
+        assertEquals(0, runChild("text", String.valueOf(chars)));
+        assertEquals(written + ":" + hex(digest.digest()), received.get("text"));
+    }
+
+    @Test
+    public void utf8LengthMatchesEncoder() {
+        String text = "abc中文😀\uD800x";
+        assertEquals(text.getBytes(StandardCharsets.UTF_8).length, StreamingBody.utf8Length(text));
+    }
+
+    private int runChild(String kind, String arg) throws Exception {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> command = new ArrayList<>(List.of(java, SMALL_HEAP, "-cp", System.getProperty("java.class.path"),
+                Child.class.getName(), "http://127.0.0.1:" + server.getAddress().getPort() + "/upload?kind=" + kind, kind, arg));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true)
+                .redirectOutput(new File(file + "." + kind + ".log")).start();
+        assertTrue(process.waitFor(5, TimeUnit.MINUTES));
+        Path log = Paths.get(file + "." + kind + ".log");
+        if (process.exitValue() != 0) {
+            System.err.println(new String(Files.readAllBytes(log), StandardCharsets.UTF_8));
+        }
+        Files.deleteIfExists(log);
+        return process.exitValue();
+    }
+
+    private void receive(HttpExchange exchange) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[StreamingBody.BUFFER_SIZE];
+            long total = 0;
+            try (InputStream in = exchange.getRequestBody()) {
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, n);
+                    total += n;
+                }
+            }
+            String kind = exchange.getRequestURI().getQuery().substring("kind=".length());
+            received.put(kind, total + ":" + hex(digest.digest()));
+            exchange.sendResponseHeaders(200, -1);
+        } catch (Exception e) {
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 按需生成字符的文本，不占用与长度成比例的内存
+     */
+    static class Generated implements CharSequence {
+        private final int length;
+
+        Generated(int length) {
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return PATTERN.charAt(index % PATTERN.length());
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            StringBuilder sb = new StringBuilder(end - start);
+            for (int i = start; i < end; i++) {
+                sb.append(charAt(i));
+            }
+            return sb;
+        }
+
+        @Override
+        public String toString() {
+            return subSequence(0, length).toString();
+        }
+    }
+
+    /**
+     * 子进程：以小堆上传，完整读入内存的实现会 OutOfMemoryError
+     */
+    public static class Child {
+        public static void main(String[] args) throws Exception {
+            MediaType type = MediaType.parse("application/octet-stream");
+            RequestBody body = "file".equals(args[1])
+                    ? StreamingBody.ofFile(Paths.get(args[2]), type)
+                    : StreamingBody.ofText(new Generated(Integer.parseInt(args[2])), type);
+            OkHttpClient client = new OkHttpClient.Builder().writeTimeout(5, TimeUnit.MINUTES).build();
+            try (Response response = client.newCall(new Request.Builder().url(args[0]).post(body).build()).execute()) {
+                System.out.println("upload " + args[1] + " " + body.contentLength() + " bytes: " + response.code()
+                        + ", max heap " + Runtime.getRuntime().maxMemory());
+                System.exit(response.isSuccessful() ? 0 : 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.jd.genie.handler;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jd.genie.model.multi.EventResult;
+import com.jd.genie.model.req.AgentRequest;
+import com.jd.genie.model.response.AgentResponse;
+import com.jd.genie.model.response.GptProcessResult;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 增量事件管道基准：单核每秒可处理的事件数（handler 组装 + SSE 出口序列化）
+ * typed：强类型对象直达 SSE 出口，仅序列化一次
+ * roundTrip：旧实现，事件数据先经 fastjson 序列化/反序列化往返，再在出口序列化
+ * 运行：直接执行 main 方法
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@Fork(1)
+public class EventPipelineBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BaseAgentResponseHandler handler = new BaseAgentResponseHandler();
+    private AgentRequest request;
+    private AgentResponse[] responses;
+    private EventResult eventResult;
+    private int cursor;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        request = AgentRequest.builder().requestId("bench-request").agentType(3).build();
+        eventResult = new EventResult();
+        responses = new AgentResponse[]{
+                delta("tool_thought", "正在分析用户的问题，准备调用搜索工具获取相关资料"),
+                delta("html", "<div class=\"section\"><h2>销售数据分析</h2><p>2024 年第一季度销售额同比增长 12%</p></div>"),
+                delta("deep_search", "根据搜索结果，行业整体呈现稳步上升趋势"),
+                toolResult(),
+        };
+        cursor = 0;
+    }
+
+    @Benchmark
+    public String typed() throws Exception {
+        GptProcessResult result = handler.buildIncrResult(request, eventResult, next());
+        return objectMapper.writeValueAsString(result);
+    }
+
+    @Benchmark
+    public String roundTrip() throws Exception {
+        GptProcessResult result = handler.buildIncrResult(request, eventResult, next());
+        // 复现旧实现：事件数据经 fastjson 往返一次
+        Map<String, Object> eventData = JSONObject.parseObject(JSON.toJSONString(result.getResultMap().get("eventData")));
+        result.getResultMap().put("eventData", eventData);
+        return objectMapper.writeValueAsString(result);
+    }
+
+    private AgentResponse next() {
+        AgentResponse response = responses[cursor];
+        cursor = (cursor + 1) % responses.length;
+        return response;
+    }
+
+    private static AgentResponse delta(String messageType, String text) {
+        Map<String, Object> resultMap = new HashMap<>();
+        resultMap.put("agentType", 3);
+        return AgentResponse.builder()
+                .requestId("bench-request")
+                .messageId("bench-message-" + messageType)
+                .messageType(messageType)
+                .messageTime(String.valueOf(System.currentTimeMillis()))
+                .isFinal(false)
+                .finish(false)
+                .toolThought("tool_thought".equals(messageType) ? text : null)
+                .result(text)
+                .resultMap(resultMap)
+                .build();
+    }
+
+    private static AgentResponse toolResult() {
+        Map<String, Object> toolParam = new HashMap<>();
+        toolParam.put("query", "2024年第一季度行业销售数据");
+        return AgentResponse.builder()
+                .requestId("bench-request")
+                .messageId("bench-message-tool_result")
+                .messageType("tool_result")
+                .messageTime(String.valueOf(System.currentTimeMillis()))
+                // 非 final，避免回放缓存随迭代无限增长干扰测量
+                .isFinal(false)
+                .finish(false)
+                .toolResult(AgentResponse.ToolResult.builder()
+                        .toolName("deep_search")
+                        .toolParam(toolParam)
+                        .toolResult("搜索完成，共获取 12 篇相关文档")
+                        .build())
+                .build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(EventPipelineBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
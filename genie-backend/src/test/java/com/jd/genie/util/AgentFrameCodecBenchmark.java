@@ -0,0 +1,172 @@
+package com.jd.genie.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.jd.genie.model.response.AgentResponse;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * SSE 与 WebSocket 二进制帧传输对比（录制会话 sessions/plan_solve_session.jsonl）
+ * 带宽：main 方法先输出两种传输的原始字节数与 deflate 后字节数（每条消息 SYNC_FLUSH、保留上下文，等同 permessage-deflate），
+ * 并校验二进制帧解码结果与原事件一致；
+ * CPU：JMH 测量编码整场会话的耗时（sse 为 "data:" + JSON 文本帧，binary 为 AgentFrameCodec）。
+ * 运行：直接执行 main 方法
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@Fork(1)
+public class AgentFrameCodecBenchmark {
+    private static final String SESSION = "/sessions/plan_solve_session.jsonl";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private List<AgentResponse> events;
+    private byte[] buffer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        events = loadSession();
+        buffer = new byte[64 * 1024];
+    }
+
+    @Benchmark
+    public long sse() throws Exception {
+        long bytes = 0;
+        for (AgentResponse event : events) {
+            bytes += sseFrame(event).length;
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public long binary() throws Exception {
+        AgentFrameCodec.Encoder encoder = new AgentFrameCodec.Encoder();
+        long bytes = encoder.open(1, events.get(0).getRequestId(), 3).remaining();
+        for (AgentResponse event : events) {
+            for (ByteBuffer frame : encoder.event(1, event)) {
+                bytes += frame.remaining();
+            }
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public long sseDeflate() throws Exception {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        long bytes = 0;
+        for (AgentResponse event : events) {
+            bytes += deflate(deflater, sseFrame(event), buffer);
+        }
+        deflater.end();
+        return bytes;
+    }
+
+    @Benchmark
+    public long binaryDeflate() throws Exception {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        AgentFrameCodec.Encoder encoder = new AgentFrameCodec.Encoder();
+        long bytes = deflate(deflater, toBytes(encoder.open(1, events.get(0).getRequestId(), 3)), buffer);
+        for (AgentResponse event : events) {
+            for (ByteBuffer frame : encoder.event(1, event)) {
+                bytes += deflate(deflater, toBytes(frame), buffer);
+            }
+        }
+        deflater.end();
+        return bytes;
+    }
+
+    /**
+     * 带宽对比，并校验二进制帧可还原为原事件（messageTime 除外）
+     */
+    public static void report() throws Exception {
+        AgentFrameCodecBenchmark bench = new AgentFrameCodecBenchmark();
+        bench.setUp();
+
+        AgentFrameCodec.Encoder encoder = new AgentFrameCodec.Encoder();
+        AgentFrameCodec.Decoder decoder = new AgentFrameCodec.Decoder();
+        decoder.decode(encoder.open(1, bench.events.get(0).getRequestId(), 3));
+        for (AgentResponse event : bench.events) {
+            AgentResponse decoded = null;
+            for (ByteBuffer frame : encoder.event(1, event)) {
+                decoded = decoder.decode(frame).response;
+            }
+            JsonNode expected = MAPPER.valueToTree(event);
+            ((ObjectNode) expected).remove("messageTime");
+            JsonNode actual = MAPPER.valueToTree(decoded);
+            if (!expected.equals(actual)) {
+                throw new IllegalStateException("decode mismatch\nexpected: " + expected + "\nactual:   " + actual);
+            }
+        }
+
+        long sse = bench.sse();
+        long binary = bench.binary();
+        long sseDeflate = bench.sseDeflate();
+        long binaryDeflate = bench.binaryDeflate();
+        System.out.printf("events: %d%n", bench.events.size());
+        System.out.printf("%-16s %10s %10s%n", "transport", "raw", "deflate");
+        System.out.printf("%-16s %10d %10d%n", "sse", sse, sseDeflate);
+        System.out.printf("%-16s %10d %10d%n", "websocket", binary, binaryDeflate);
+        System.out.printf("%-16s %9.1f%% %9.1f%%%n", "binary / sse", binary * 100.0 / sse, binaryDeflate * 100.0 / sseDeflate);
+    }
+
+    private static byte[] sseFrame(AgentResponse event) throws Exception {
+        // 与 SseEmitter 写出格式一致：data:<json>\n\n
+        return ("data:" + MAPPER.writeValueAsString(event) + "\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int deflate(Deflater deflater, byte[] input, byte[] buffer) {
+        deflater.setInput(input);
+        int total = 0;
+        int n;
+        do {
+            n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+            total += n;
+        } while (n == buffer.length);
+        // permessage-deflate 去掉每条消息末尾的 00 00 FF FF
+        return total - 4;
+    }
+
+    private static byte[] toBytes(ByteBuffer frame) {
+        byte[] bytes = new byte[frame.remaining()];
+        frame.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static List<AgentResponse> loadSession() throws Exception {
+        List<AgentResponse> events = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                AgentFrameCodecBenchmark.class.getResourceAsStream(SESSION), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    events.add(MAPPER.readValue(line, AgentResponse.class));
+                }
+            }
+        }
+        return events;
+    }
+
+    public static void main(String[] args) throws Exception {
+        report();
+        Options options = new OptionsBuilder()
+                .include(AgentFrameCodecBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
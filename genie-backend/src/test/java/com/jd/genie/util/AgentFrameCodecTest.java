@@ -0,0 +1,186 @@
+package com.jd.genie.util;
+
+import com.jd.genie.model.response.AgentResponse;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AgentFrameCodec 编码→解码往返：字符串表引用、RESET 标志、多字节 varint 的 channel、截断与非法帧
+ */
+public class AgentFrameCodecTest {
+    private static final String REQUEST_ID = "req-1";
+
+    @Test
+    public void textAndJsonEventsRoundTrip() throws IOException {
+        AgentFrameCodec.Encoder encoder = new AgentFrameCodec.Encoder();
+        AgentFrameCodec.Decoder decoder = new AgentFrameCodec.Decoder();
+        decoder.decode(encoder.open(1, REQUEST_ID, 3));
+
+        AgentResponse text = stream("msg-1", "第一段", false);
+        text.setDigitalEmployee("分析师");
+        AgentResponse decoded = roundTrip(encoder, decoder, 1, text);
+        assertEquals(REQUEST_ID, decoded.getRequestId());
+        assertEquals("agent_stream", decoded.getMessageType());
+        assertEquals("msg-1", decoded.getMessageId());
+        assertEquals("分析师", decoded.getDigitalEmployee());
+        assertEquals("第一段", decoded.getResult());
+        assertFalse(decoded.getIsFinal());
+
+        AgentResponse json = AgentResponse.builder()
+                .requestId(REQUEST_ID)
+                .messageId("msg-2")
+                .messageType("tool_result")
+                .isFinal(true)
+                .finish(true)
+                .toolResult(AgentResponse.ToolResult.builder().toolName("file_tool").toolResult("ok").build())
+                .ext(Collections.singletonMap("k", "v"))
+                .build();
+        decoded = roundTrip(encoder, decoder, 1, json);
+        assertEquals("tool_result", decoded.getMessageType());
+        assertEquals("msg-2", decoded.getMessageId());
+        assertEquals("file_tool", decoded.getToolResult().getToolName());
+        assertEquals("ok", decoded.getToolResult().getToolResult());
+        assertEquals("v", decoded.getExt().get("k"));
+        assertTrue(decoded.getIsFinal());
+        assertTrue(decoded.getFinish());
+        assertNull(decoded.getDigitalEmployee());
+    }
+
+    @Test
+    public void repeatedStringsAreSentAsReferences() throws IOException {
+        AgentFrameCodec.Encoder encoder = new AgentFrameCodec.Encoder();
+        AgentFrameCodec.Decoder decoder = new AgentFrameCodec.Decoder();
+        decoder.decode(encoder.open(1, REQUEST_ID, null));
+
+        byte[] first = bytes(single(encoder.event(1, stream("msg-1", "a", false))));
+        byte[] second = bytes(single(encoder.event(1, stream("msg-1", "b", false))));
+        // kind | channel | flags | messageType ref | messageId ref
+        assertEquals(1, first[3]);
+        assertEquals(2, second[3]);
+        assertEquals(3, second[4]);
+        assertTrue(second.length < first.length);
+
+        assertEquals("a", decoder.decode(ByteBuffer.wrap(first)).response.getResult());
+        AgentResponse decoded = decoder.decode(ByteBuffer.wrap(second)).response;
+        assertEquals("agent_stream", decoded.getMessageType());
+        assertEquals("msg-1", decoded.getMessageId());
+        assertEquals("b", decoded.getResult());
+    }
+
+    @Test
+    public void resetFlagClearsBothTables() throws IOException {
+        AgentFrameCodec.Encoder encoder = new AgentFrameCodec.Encoder(4);
+        AgentFrameCodec.Decoder decoder = new AgentFrameCodec.Decoder();
+        decoder.decode(encoder.open(1, REQUEST_ID, null));
+
+        boolean reset = false;
+        for (int i = 0; i < 10; i++) {
+            byte[] frame = bytes(single(encoder.event(1, stream("msg-" + i, "delta " + i, false))));
+            reset |= (frame[2] & AgentFrameCodec.FLAG_RESET) != 0;
+            AgentResponse decoded = decoder.decode(ByteBuffer.wrap(frame)).response;
+            assertEquals("agent_stream", decoded.getMessageType());
+            assertEquals("msg-" + i, decoded.getMessageId());
+            assertEquals("delta " + i, decoded.getResult());
+        }
+        assertTrue(reset, "string table reached its limit");
+    }
+
+    @Test
+    public void multiByteVarintChannels() throws IOException {
+        AgentFrameCodec.Encoder encoder = new AgentFrameCodec.Encoder();
+        AgentFrameCodec.Decoder decoder = new AgentFrameCodec.Decoder();
+        for (int channel : new int[]{127, 128, 16383, 16384, 2_000_000, Integer.MAX_VALUE}) {
+            AgentFrameCodec.Frame open = decoder.decode(encoder.open(channel, "req-" + channel, 5));
+            assertEquals(AgentFrameCodec.OPEN, open.kind);
+            assertEquals(channel, open.channel);
+
+            Map<String, Object> resultMap = new HashMap<>();
+            resultMap.put("agentType", 5);
+            AgentResponse event = stream("msg-" + channel, "x", true);
+            event.setResultMap(resultMap);
+            AgentFrameCodec.Frame frame = decoder.decode(single(encoder.event(channel, event)));
+            assertEquals(channel, frame.channel);
+            assertEquals("req-" + channel, frame.response.getRequestId());
+            assertEquals(5, frame.response.getResultMap().get("agentType"));
+            assertTrue(frame.response.getIsFinal());
+
+            AgentFrameCodec.Frame error = decoder.decode(encoder.error(channel, "失败"));
+            assertEquals(channel, error.channel);
+            assertEquals("失败", error.error);
+            assertEquals(channel, decoder.decode(encoder.end(channel)).channel);
+        }
+    }
+
+    @Test
+    public void truncatedAndGarbageFramesAreRejected() throws IOException {
+        AgentFrameCodec.Encoder encoder = new AgentFrameCodec.Encoder();
+        byte[] open = bytes(encoder.open(300, REQUEST_ID, 1));
+        AgentResponse event = stream("msg-1", "内容", false);
+        event.setDigitalEmployee("分析师");
+        byte[] frame = bytes(single(encoder.event(300, event)));
+
+        // 截断在帧头、varint 或字符串中间
+        for (int len = 0; len < 12; len++) {
+            byte[] truncated = Arrays.copyOf(frame, len);
+            AgentFrameCodec.Decoder decoder = new AgentFrameCodec.Decoder();
+            decoder.decode(ByteBuffer.wrap(open));
+            assertThrows(IOException.class, () -> decoder.decode(ByteBuffer.wrap(truncated)), "length " + len);
+        }
+        for (int len = 0; len < open.length - 1; len++) {
+            byte[] truncated = Arrays.copyOf(open, len);
+            assertThrows(IOException.class, () -> new AgentFrameCodec.Decoder().decode(ByteBuffer.wrap(truncated)),
+                    "open length " + len);
+        }
+
+        AgentFrameCodec.Decoder decoder = new AgentFrameCodec.Decoder();
+        assertThrows(IOException.class, () -> decoder.decode(ByteBuffer.wrap(new byte[]{0x7F, 0x01})), "unknown kind");
+        assertThrows(IOException.class, () -> decoder.decode(ByteBuffer.wrap(
+                new byte[]{AgentFrameCodec.EVENT, 0x01, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01})),
+                "malformed varint");
+        assertThrows(IOException.class, () -> decoder.decode(ByteBuffer.wrap(
+                new byte[]{AgentFrameCodec.EVENT, 0x01, 0x00, 0x09, 0x00})), "unknown string ref");
+        assertThrows(IOException.class, () -> decoder.decode(ByteBuffer.wrap(
+                new byte[]{AgentFrameCodec.EVENT, 0x01, (byte) AgentFrameCodec.FLAG_JSON, 0x00, 0x00, '{', 'x'})),
+                "broken json payload");
+    }
+
+    private static AgentResponse stream(String messageId, String text, boolean isFinal) {
+        return AgentResponse.builder()
+                .requestId(REQUEST_ID)
+                .messageId(messageId)
+                .messageType("agent_stream")
+                .messageTime("1700000000000")
+                .isFinal(isFinal)
+                .result(text)
+                .build();
+    }
+
+    private static AgentResponse roundTrip(AgentFrameCodec.Encoder encoder, AgentFrameCodec.Decoder decoder,
+                                           int channel, AgentResponse response) throws IOException {
+        AgentFrameCodec.Frame frame = decoder.decode(single(encoder.event(channel, response)));
+        assertEquals(AgentFrameCodec.EVENT, frame.kind);
+        assertEquals(channel, frame.channel);
+        return frame.response;
+    }
+
+    private static ByteBuffer single(List<ByteBuffer> frames) {
+        assertEquals(1, frames.size());
+        return frames.get(0);
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        ByteBuffer copy = buffer.duplicate();
+        byte[] bytes = new byte[copy.remaining()];
+        copy.get(bytes);
+        return bytes;
+    }
+}
@@ -5,9 +5,9 @@ from urllib.parse import quote, unquote
 from fastapi import APIRouter, File, Form, UploadFile
 from fastapi.responses import JSONResponse, Response, FileResponse
 
-from genie_tool.model.protocal import FileRequest, FileListRequest, FileUploadRequest, get_file_id
+from genie_tool.model.protocal import FileRequest, FileListRequest, FileUploadRequest, FileUploadBatchRequest, get_file_id
 from genie_tool.util.middleware_util import RequestHandlerRoute
-from genie_tool.db.file_table_op import FileInfoOp, get_file_preview_url, get_file_download_url
+from genie_tool.db.file_table_op import FileInfoOp, FileReferenceUnsupported, get_file_preview_url, get_file_download_url
 
 
 router = APIRouter(route_class=RequestHandlerRoute)
@@ -28,17 +28,66 @@ async def get_file(
         raise Exception("file not found")
 
 
+async def _add_upload(body: FileUploadRequest):
+    if body.file_path:
+        return await FileInfoOp.add_by_path(
+            filename=body.file_name, src_path=body.file_path, file_id=body.file_id, description=body.description,
+            request_id=body.request_id)
+    return await FileInfoOp.add_by_content(
+        filename=body.file_name, content=body.content or "", file_id=body.file_id, description=body.description,
+        request_id=body.request_id)
+
+
+def _reference_unsupported(e: FileReferenceUnsupported) -> Response:
+    # 415：调用方据此确定引用上传不可用，改为内联内容；其他错误仍为 500，可重试
+    return Response(content=str(e), status_code=415)
+
+
 @router.post("/upload_file")
 async def upload_file(
         body: FileUploadRequest
 ):
-    file_info = await FileInfoOp.add_by_content(
-        filename=body.file_name, content=body.content, file_id=body.file_id, description=body.description,
-        request_id=body.request_id)
+    try:
+        file_info = await _add_upload(body)
+    except FileReferenceUnsupported as e:
+        return _reference_unsupported(e)
+    preview_url = get_file_preview_url(file_id=file_info.request_id, file_name=file_info.filename)
+    download_url = get_file_download_url(file_id=file_info.request_id, file_name=file_info.filename)
+    return JSONResponse(content={"ossUrl": download_url, "downloadUrl": download_url, "domainUrl": preview_url, "fileSize": file_info.file_size})
+
+@router.post("/upload_file_batch")
+async def upload_file_batch(
+        body: FileUploadBatchRequest
+):
+    results = []
+    for item in body.files:
+        try:
+            file_info = await _add_upload(item)
+        except FileReferenceUnsupported as e:
+            return _reference_unsupported(e)
+        preview_url = get_file_preview_url(file_id=file_info.request_id, file_name=file_info.filename)
+        download_url = get_file_download_url(file_id=file_info.request_id, file_name=file_info.filename)
+        results.append({"ossUrl": download_url, "downloadUrl": download_url, "domainUrl": preview_url,
+                        "fileName": file_info.filename, "fileSize": file_info.file_size})
+    return JSONResponse(content={"results": results})
+
+
+@router.post("/upload_file_stream")
+async def upload_file_stream(
+        file: UploadFile = File(...),
+        request_id: str = Form(alias="requestId"),
+        file_name: str = Form(alias="fileName"),
+        description: str = Form(default="")
+):
+    """大文件流式上传：multipart 解析时文件部分超过内存阈值即落临时文件，保存时分块拷贝"""
+    file_id = get_file_id(request_id, file_name)
+    file_info = await FileInfoOp.add_by_stream(
+        filename=file_name, file=file, file_id=file_id, description=description, request_id=request_id)
     preview_url = get_file_preview_url(file_id=file_info.request_id, file_name=file_info.filename)
     download_url = get_file_download_url(file_id=file_info.request_id, file_name=file_info.filename)
     return JSONResponse(content={"ossUrl": download_url, "downloadUrl": download_url, "domainUrl": preview_url, "fileSize": file_info.file_size})
 
+
 @router.post("/upload_file_data")
 async def upload_file_data(file: UploadFile = File(...), request_id: str = Form(alias="requestId")):
     file.filename = unquote(file.filename)
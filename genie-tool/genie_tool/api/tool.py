@@ -10,12 +10,14 @@ import os
 import time
 
 from fastapi import APIRouter
+from fastapi.responses import JSONResponse
 from sse_starlette import ServerSentEvent, EventSourceResponse
 from loguru import logger
 
 from genie_tool.model.code import ActionOutput, CodeOuput
 from genie_tool.model.protocal import CIRequest, ReportRequest, DeepSearchRequest
 from genie_tool.util.file_util import upload_file
+from genie_tool.util.evidence_store import EvidenceStore
 from genie_tool.tool.report import report
 from genie_tool.tool.code_interpreter import code_interpreter_agent
 from genie_tool.util.middleware_util import RequestHandlerRoute
@@ -161,6 +163,14 @@ async def post_report(
         for idx, f_name in enumerate(body.file_names):
             if not f_name.startswith("/") and not f_name.startswith("http"):
                 body.file_names[idx] = f"{os.getenv('FILE_SERVER_URL')}/preview/{body.request_id}/{f_name}"
+
+    # 按哈希引用的工具结果：登记新增内容，取出相关子集（未给出时为全部）；缺失的哈希（服务重启或淘汰）由调用方补发
+    if body.evidence_refs is not None:
+        refs = body.relevant_refs if body.relevant_refs is not None else body.evidence_refs
+        resolved, missing = EvidenceStore.resolve(body.request_id, body.evidence, refs)
+        if missing:
+            return JSONResponse(status_code=409, content={"missing": missing})
+        body.tool_results = (body.tool_results or []) + resolved
     
     def _parser_html_content(content: str):
         """
@@ -1,4 +1,5 @@
 import os
+import shutil
 from typing import List
 
 from fastapi import UploadFile
@@ -9,13 +10,21 @@ from genie_tool.db.db_engine import async_session_local
 from genie_tool.util.log_util import timer
 
 
+# 分块拷贝大小，上传内存占用与文件大小无关
+CHUNK_SIZE = 1024 * 1024
+
+
+class FileReferenceUnsupported(Exception):
+    """按路径引用上传不可用：未配置 FILE_REF_ALLOWED_DIR，或路径不在允许目录内/不可见（不在同一主机、未共享目录）"""
+
+
 class _FileDB(object):
     def __init__(self):
         self._work_dir = os.getenv("FILE_SAVE_PATH", "file_db_dir")
         if not os.path.exists(self._work_dir):
             os.makedirs(self._work_dir)
 
-    async def save(self, file_name, content, scope) -> str:
+    def _target(self, file_name, scope) -> str:
         if "." in file_name:
             file_name = os.path.basename(file_name)
         else:
@@ -24,18 +33,41 @@ class _FileDB(object):
         save_path = os.path.join(self._work_dir, scope)
         if not os.path.exists(save_path):
             os.makedirs(save_path)
-        with open(f"{save_path}/{file_name}", "w") as f:
-            f.write(content)
         return f"{save_path}/{file_name}"
+
+    async def save(self, file_name, content, scope) -> str:
+        target = self._target(file_name, scope)
+        with open(target, "w") as f:
+            f.write(content)
+        return target
+
+    async def save_by_path(self, file_name, src_path, scope) -> str:
+        """按路径引用保存：genie-backend 本地文件存储中的文件直接复制，不经过 HTTP 传输内容"""
+        allowed_dir = os.getenv("FILE_REF_ALLOWED_DIR")
+        if not allowed_dir:
+            raise FileReferenceUnsupported("file reference upload is disabled")
+        allowed_dir = os.path.realpath(allowed_dir)
+        src_path = os.path.realpath(src_path)
+        if os.path.commonpath([src_path, allowed_dir]) != allowed_dir or not os.path.isfile(src_path):
+            raise FileReferenceUnsupported(f"file reference not allowed: {src_path}")
+        target = self._target(file_name, scope)
+        # 复制而不是硬链接：本地存储的内容文件按 hash 共享，不能被这里的后续写入改动
+        shutil.copyfile(src_path, target)
+        return target
     
     async def save_by_data(self, file: UploadFile) -> str:
         file_name = file.filename
-        file_data = file.file.read()
         save_path = os.path.join(self._work_dir, file_name)
         with open(save_path, "wb") as f:
-             f.write(file_data)
+            shutil.copyfileobj(file.file, f, CHUNK_SIZE)
         return save_path
 
+    async def save_by_stream(self, file_name, file: UploadFile, scope) -> str:
+        target = self._target(file_name, scope)
+        with open(target, "wb") as f:
+            shutil.copyfileobj(file.file, f, CHUNK_SIZE)
+        return target
+
 
 FileDB = _FileDB()
 
@@ -58,6 +90,38 @@ class FileInfoOp(object):
         )
         return await cls.add(file_info)
     
+    @classmethod
+    @timer()
+    async def add_by_stream(cls, filename: str, file: UploadFile, file_id: str, description: str = None,
+                            request_id: str = None) -> FileInfo:
+        file_path = await FileDB.save_by_stream(filename, file, scope=request_id)
+        file_info = FileInfo(
+            file_id=file_id,
+            filename=filename,
+            file_path=file_path,
+            description=description,
+            file_size=os.path.getsize(file_path),
+            status=1,
+            request_id=request_id
+        )
+        return await cls.add(file_info)
+
+    @classmethod
+    @timer()
+    async def add_by_path(cls, filename: str, src_path: str, file_id: str, description: str = None,
+                          request_id: str = None) -> FileInfo:
+        file_path = await FileDB.save_by_path(filename, src_path, scope=request_id)
+        file_info = FileInfo(
+            file_id=file_id,
+            filename=filename,
+            file_path=file_path,
+            description=description,
+            file_size=os.path.getsize(file_path),
+            status=1,
+            request_id=request_id
+        )
+        return await cls.add(file_info)
+
     @staticmethod
     @timer()
     async def add_by_file(file: UploadFile, file_id: str, request_id: str = None) -> FileInfo:
@@ -6,7 +6,7 @@
 # Date:   2025/7/7
 # =====================
 import hashlib
-from typing import Optional, Literal, List
+from typing import Optional, Literal, List, Dict
 
 from pydantic import BaseModel, Field, computed_field
 
@@ -37,6 +37,9 @@ class CIRequest(BaseModel):
 class ReportRequest(CIRequest):
     file_type: Literal["html", "markdown", "ppt"] = Field("html", alias="fileType", description="生成报告的文件类型")
     tool_results: Optional[List[str]] = Field(default=None, alias="toolResults", description="工具调用结果列表")
+    evidence: Optional[Dict[str, str]] = Field(default=None, description="上次报告以来新增的工具结果，哈希 -> 内容")
+    evidence_refs: Optional[List[str]] = Field(default=None, alias="evidenceRefs", description="会话全部工具结果的哈希，按产生顺序")
+    relevant_refs: Optional[List[str]] = Field(default=None, alias="relevantRefs", description="按与任务相关度排序的工具结果哈希子集")
 
 
 class FileRequest(BaseModel):
@@ -61,7 +64,12 @@ class FileListRequest(BaseModel):
 
 class FileUploadRequest(FileRequest):
     description: str = Field(description="返回的生成的文件描述")
-    content: str = Field(description="返回的生成的文件内容")
+    content: Optional[str] = Field(default=None, description="返回的生成的文件内容")
+    file_path: Optional[str] = Field(default=None, alias="filePath", description="本地文件路径，与 content 二选一")
+
+
+class FileUploadBatchRequest(BaseModel):
+    files: List[FileUploadRequest] = Field(description="同一会话的多个待上传文件")
 
 
 class DeepSearchRequest(BaseModel):
@@ -0,0 +1,100 @@
+# -*- coding: utf-8 -*-
+# =====================
+# 报告证据存储：同一会话的工具结果按内容哈希登记一次，报告请求只携带哈希引用与新增内容
+# 存放在文件目录（默认 FILE_SAVE_PATH/.evidence）而不是进程内存，uvicorn 多个 worker 共享同一份证据，
+# 同一会话的后续报告落到任意 worker 都能按引用取到
+# =====================
+import hashlib
+import os
+import re
+import shutil
+import time
+import uuid
+from typing import Dict, List, Optional, Tuple
+
+from loguru import logger
+
+
+# 证据哈希即文件名，只接受十六进制，防止路径穿越
+_HASH_PATTERN = re.compile(r"[0-9a-fA-F]{8,128}")
+
+
+class _EvidenceStore(object):
+
+    def __init__(self, root: Optional[str] = None):
+        self._root = root or os.getenv("EVIDENCE_DIR") or os.path.join(
+            os.getenv("FILE_SAVE_PATH", "file_db_dir"), ".evidence")
+        self._max_sessions = int(os.getenv("EVIDENCE_MAX_SESSIONS", 256))
+        self._ttl = int(os.getenv("EVIDENCE_TTL_SECONDS", 3 * 3600))
+        os.makedirs(self._root, exist_ok=True)
+
+    def register(self, session: str, evidence: Optional[Dict[str, str]]) -> str:
+        """登记新增内容，返回会话目录；目录修改时间即最近访问时间，按此淘汰"""
+        path = self._session_dir(session)
+        os.makedirs(path, exist_ok=True)
+        for digest, content in (evidence or {}).items():
+            if not _HASH_PATTERN.fullmatch(digest):
+                logger.warning(f"evidence {session}: invalid hash {digest!r} ignored")
+                continue
+            self._write(os.path.join(path, digest), content)
+        os.utime(path)
+        self._evict(keep=path)
+        return path
+
+    def resolve(self, session: str, delta: Optional[Dict[str, str]], refs: List[str]) -> Tuple[List[str], List[str]]:
+        """登记新增内容并按引用顺序取出，返回 (内容列表, 缺失的哈希)"""
+        path = self.register(session, delta)
+        resolved, missing = [], []
+        for ref in refs:
+            content = self._read(path, ref)
+            if content is None:
+                missing.append(ref)
+            else:
+                resolved.append(content)
+        logger.info(f"evidence {session}: {len(delta or {})} new, {len(refs)} refs, {len(missing)} missing")
+        return resolved, missing
+
+    def _session_dir(self, session: str) -> str:
+        return os.path.join(self._root, hashlib.sha256(session.encode("utf-8")).hexdigest())
+
+    @staticmethod
+    def _write(target: str, content: str):
+        # 内容按哈希寻址，已存在即相同；先写临时文件再改名，并发 worker 不会读到半个文件
+        if os.path.exists(target):
+            return
+        tmp = f"{target}.{os.getpid()}.{uuid.uuid4().hex}.tmp"
+        with open(tmp, "w", encoding="utf-8") as f:
+            f.write(content)
+        os.replace(tmp, target)
+
+    @staticmethod
+    def _read(path: str, ref: str) -> Optional[str]:
+        if not _HASH_PATTERN.fullmatch(ref):
+            return None
+        try:
+            with open(os.path.join(path, ref), "r", encoding="utf-8") as f:
+                return f.read()
+        except FileNotFoundError:
+            return None
+
+    def _evict(self, keep: str):
+        """删除超过 TTL 未访问的会话，会话数超过上限时按访问时间删除最旧的（多个 worker 可能同时删除，忽略错误）"""
+        now = time.time()
+        sessions = []
+        for name in os.listdir(self._root):
+            path = os.path.join(self._root, name)
+            try:
+                sessions.append((os.stat(path).st_mtime, path))
+            except FileNotFoundError:
+                continue
+        sessions.sort()
+        excess = len(sessions) - self._max_sessions
+        for mtime, path in sessions:
+            if path == keep:
+                continue
+            if now - mtime > self._ttl or excess > 0:
+                shutil.rmtree(path, ignore_errors=True)
+                excess -= 1
+
+
+EvidenceStore = _EvidenceStore()
@@ -0,0 +1,98 @@
+# -*- coding: utf-8 -*-
+# =====================
+# 报告证据存储：多个 worker（不同进程中的存储实例）共享同一目录，后续报告按引用取到先前登记的内容
+# 运行：cd genie-tool && python -m unittest discover -s tests
+# =====================
+import hashlib
+import multiprocessing
+import os
+import tempfile
+import time
+import unittest
+
+from genie_tool.util.evidence_store import _EvidenceStore
+
+
+def _sha(content: str) -> str:
+    return hashlib.sha256(content.encode("utf-8")).hexdigest()
+
+
+def _register_in_worker(root: str, session: str, evidence: dict):
+    _EvidenceStore(root).register(session, evidence)
+
+
+class EvidenceStoreTest(unittest.TestCase):
+
+    def setUp(self):
+        self._dir = tempfile.TemporaryDirectory()
+        self.root = self._dir.name
+
+    def tearDown(self):
+        self._dir.cleanup()
+
+    def test_second_report_on_another_store_instance_resolves_refs(self):
+        first, second = "搜索结果 A", "代码执行结果 B"
+        refs = [_sha(first), _sha(second)]
+        worker_a, worker_b = _EvidenceStore(self.root), _EvidenceStore(self.root)
+
+        resolved, missing = worker_a.resolve("req-1", {refs[0]: first, refs[1]: second}, refs)
+        self.assertEqual([first, second], resolved)
+        self.assertEqual([], missing)
+
+        # 第二份报告只带引用，落到另一个 worker
+        third = "新增结果 C"
+        resolved, missing = worker_b.resolve("req-1", {_sha(third): third}, refs + [_sha(third)])
+        self.assertEqual([first, second, third], resolved)
+        self.assertEqual([], missing)
+
+    def test_second_report_in_another_process_resolves_refs(self):
+        content = "跨进程登记的工具结果"
+        worker = multiprocessing.Process(target=_register_in_worker,
+                                         args=(self.root, "req-2", {_sha(content): content}))
+        worker.start()
+        worker.join(30)
+        self.assertEqual(0, worker.exitcode)
+
+        resolved, missing = _EvidenceStore(self.root).resolve("req-2", None, [_sha(content)])
+        self.assertEqual([content], resolved)
+        self.assertEqual([], missing)
+
+    def test_unknown_and_invalid_refs_are_missing(self):
+        store = _EvidenceStore(self.root)
+        store.register("req-3", {_sha("x"): "x", "../../etc/passwd": "y"})
+        resolved, missing = store.resolve("req-3", None, [_sha("x"), _sha("y"), "../../etc/passwd"])
+        self.assertEqual(["x"], resolved)
+        self.assertEqual([_sha("y"), "../../etc/passwd"], missing)
+        # 不同会话互不可见
+        self.assertEqual([_sha("x")], store.resolve("req-4", None, [_sha("x")])[1])
+
+    def test_oldest_sessions_are_evicted_beyond_limit(self):
+        os.environ["EVIDENCE_MAX_SESSIONS"] = "2"
+        try:
+            store = _EvidenceStore(self.root)
+        finally:
+            del os.environ["EVIDENCE_MAX_SESSIONS"]
+        for i in range(3):
+            store.register(f"req-{i}", {_sha(str(i)): str(i)})
+            # 目录修改时间即访问时间，间隔开保证顺序
+            past = time.time() - 100 + i
+            os.utime(store._session_dir(f"req-{i}"), (past, past))
+        store.register("req-3", {_sha("3"): "3"})
+        kept = [i for i in range(4) if os.path.exists(store._session_dir(f"req-{i}"))]
+        self.assertEqual([2, 3], kept)
+
+    def test_expired_sessions_are_removed(self):
+        os.environ["EVIDENCE_TTL_SECONDS"] = "60"
+        try:
+            store = _EvidenceStore(self.root)
+        finally:
+            del os.environ["EVIDENCE_TTL_SECONDS"]
+        store.register("old", {_sha("old"): "old"})
+        past = time.time() - 120
+        os.utime(store._session_dir("old"), (past, past))
+        store.register("new", {_sha("new"): "new"})
+        self.assertFalse(os.path.exists(store._session_dir("old")))
+
+
+if __name__ == "__main__":
+    unittest.main()
@@ -120,6 +120,9 @@ function handleTaskMessageByType(
     case "deep_search":
       handleDeepSearchMessage(eventData, currentChat, taskIndex, toolIndex);
       break;
+    case "agent_stream":
+      handleAgentStreamMessage(eventData, currentChat, taskIndex, toolIndex);
+      break;
     default:
       handleNonStreamingMessage(eventData, currentChat, taskIndex);
       break;
@@ -168,6 +171,36 @@ function handleToolThoughtMessage(
   updateToolThought(tasks[taskIndex][toolIndex], toolThought || '', isFinal);
 }
 
+/**
+ * 处理总结的流式增量：同一 messageId 的增量拼接到 result 上，result 消息到达前作为结论展示
+ * @param eventData 事件数据
+ * @param currentChat 当前聊天项
+ * @param taskIndex 任务索引
+ * @param toolIndex 工具索引
+ */
+function handleAgentStreamMessage(
+  eventData: MESSAGE.EventData,
+  currentChat: CHAT.ChatItem,
+  taskIndex: number,
+  toolIndex: number
+) {
+  const { tasks } = currentChat.multiAgent;
+  const { taskId, resultMap } = eventData;
+
+  if (taskIndex === -1) {
+    tasks.push([createNewTask(taskId, resultMap)]);
+    return;
+  }
+
+  if (toolIndex === -1) {
+    tasks[taskIndex].push(createNewTask(taskId, resultMap));
+    return;
+  }
+
+  const tool = tasks[taskIndex][toolIndex];
+  tool.result = (tool.result || '') + (resultMap.result || '');
+}
+
 /**
  * 创建新任务对象
  * @param taskId 任务ID
@@ -513,6 +546,7 @@ export const handleTaskData = (
   currentChat.thought = planThought || "";
 
   let conclusion;
+  let streamingConclusion;
   let plan = fullPlan;
   const taskList: MESSAGE.Task[] = [];
 
@@ -564,7 +598,7 @@ export const handleTaskData = (
           hidden: false,
           children: [],
         });
-      } else if (task?.messageType !== "result" && !isCodeOutputOnly) {
+      } else if (task?.messageType !== "result" && task?.messageType !== "agent_stream" && !isCodeOutputOnly) {
         chatList[groupIndex]?.at(-1)?.children.push(...processedInfo);
       }
 
@@ -579,12 +613,16 @@ export const handleTaskData = (
       if (task?.messageType === "result") {
         conclusion = task;
       }
+
+      if (task?.messageType === "agent_stream") {
+        streamingConclusion = task;
+      }
     });
   });
 
   currentChat.tasks = chatList;
   currentChat.plan = plan;
-  currentChat.conclusion = conclusion;
+  currentChat.conclusion = conclusion ?? streamingConclusion;
   currentChat.planList = plan?.stages?.reduce(
     (result: CHAT.PlanItem[], stage: string, index: number) => {
       const group = result.find((item) => item.name === stage);